@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.data.Abstraction;
+import soot.jimple.infoflow.data.AccessPath;
+
+/**
+ * Measures the derivation of new abstractions and the equality checks and
+ * hash codes the solver needs for every abstraction it puts into its jump
+ * functions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AbstractionBenchmark {
+
+	private Abstraction[] abstractions;
+	private AccessPath[] accessPaths;
+	private Stmt[] stmts;
+	private int idx = 0;
+
+	@Setup
+	public void setUp() {
+		BenchmarkScene scene = BenchmarkScene.v();
+		List<Abstraction> abs = scene.getAbstractions();
+		this.abstractions = abs.toArray(new Abstraction[abs.size()]);
+		List<AccessPath> aps = scene.getAccessPaths();
+		this.accessPaths = aps.toArray(new AccessPath[aps.size()]);
+		List<Stmt> stmts = scene.getFieldStmts();
+		this.stmts = stmts.toArray(new Stmt[stmts.size()]);
+	}
+
+	private int next() {
+		if (++idx >= abstractions.length)
+			idx = 0;
+		return idx;
+	}
+
+	/**
+	 * Derives a new abstraction with a different access path, as done by
+	 * the flow functions for every assignment
+	 */
+	@Benchmark
+	public Abstraction deriveNewAbstraction() {
+		int i = next();
+		return abstractions[i].deriveNewAbstraction(accessPaths[accessPaths.length - 1 - i],
+				stmts[i % stmts.length]);
+	}
+
+	/**
+	 * Compares two abstractions that are equal, but not identical
+	 */
+	@Benchmark
+	public boolean equalsPositive() {
+		Abstraction abs = abstractions[next()];
+		return abs.equals(abs.clone());
+	}
+
+	/**
+	 * Compares two different abstractions
+	 */
+	@Benchmark
+	public boolean equalsNegative() {
+		int i = next();
+		return abstractions[i].equals(abstractions[abstractions.length - 1 - i]);
+	}
+
+	/**
+	 * Computes the hash code of a fresh copy of an abstraction. The hash code
+	 * is cached inside the abstraction, so the copy is required to measure
+	 * the actual computation.
+	 */
+	@Benchmark
+	public int hashCodeUncached() {
+		return abstractions[next()].clone().hashCode();
+	}
+
+	/**
+	 * Gets the cached hash code of an abstraction
+	 */
+	@Benchmark
+	public int hashCodeCached() {
+		return abstractions[next()].hashCode();
+	}
+
+}
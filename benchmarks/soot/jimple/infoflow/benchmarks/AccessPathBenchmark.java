@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
+
+/**
+ * Measures the construction of access paths through the factory and the
+ * entailment check between the access path of a base object and the access
+ * path of one of its fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AccessPathBenchmark {
+
+	private InstanceFieldRef[] fieldRefs;
+	private AccessPath[] accessPaths;
+	private int idx = 0;
+
+	@Setup
+	public void setUp() {
+		BenchmarkScene scene = BenchmarkScene.v();
+		List<InstanceFieldRef> refs = scene.getFieldRefs();
+		this.fieldRefs = refs.toArray(new InstanceFieldRef[refs.size()]);
+		List<AccessPath> aps = scene.getAccessPaths();
+		this.accessPaths = aps.toArray(new AccessPath[aps.size()]);
+	}
+
+	private InstanceFieldRef nextFieldRef() {
+		if (++idx >= fieldRefs.length)
+			idx = 0;
+		return fieldRefs[idx];
+	}
+
+	/**
+	 * Creates the access path for a field reference through the factory.
+	 * After the first round, this hits the construction cache.
+	 */
+	@Benchmark
+	public AccessPath createAccessPath() {
+		return AccessPathFactory.v().createAccessPath(nextFieldRef(), true);
+	}
+
+	/**
+	 * Checks whether the access path of a base object entails the access
+	 * path of one of its fields
+	 */
+	@Benchmark
+	public boolean entails() {
+		// Bases and fields are stored in pairs
+		idx += 2;
+		if (idx + 1 >= accessPaths.length)
+			idx = 0;
+		return accessPaths[idx].entails(accessPaths[idx + 1]);
+	}
+
+	/**
+	 * Checks whether the access path of a field entails the access path of
+	 * its base object, which must always fail
+	 */
+	@Benchmark
+	public boolean entailsNegative() {
+		idx += 2;
+		if (idx + 1 >= accessPaths.length)
+			idx = 0;
+		return accessPaths[idx + 1].entails(accessPaths[idx]);
+	}
+
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.Local;
+import soot.jimple.infoflow.aliasing.Aliasing;
+import soot.jimple.infoflow.aliasing.PtsBasedAliasStrategy;
+import soot.jimple.infoflow.data.AccessPath;
+
+/**
+ * Measures the may-alias checks between access paths and between plain
+ * values that the taint propagation performs for every field access.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AliasingBenchmark {
+
+	private Aliasing aliasing;
+	private AccessPath[] accessPaths;
+	private Local[] locals;
+	private int idx = 0;
+
+	@Setup
+	public void setUp() {
+		BenchmarkScene scene = BenchmarkScene.v();
+		this.aliasing = new Aliasing(new PtsBasedAliasStrategy(scene.getICFG()),
+				scene.getICFG());
+		List<AccessPath> aps = scene.getAccessPaths();
+		this.accessPaths = aps.toArray(new AccessPath[aps.size()]);
+		List<Local> locals = scene.getLocals();
+		this.locals = locals.toArray(new Local[locals.size()]);
+	}
+
+	/**
+	 * Checks a tainted base object against the access path of one of its
+	 * fields, which always aliases
+	 */
+	@Benchmark
+	public AccessPath mayAliasSameBase() {
+		idx += 2;
+		if (idx + 1 >= accessPaths.length)
+			idx = 0;
+		return aliasing.mayAlias(accessPaths[idx], accessPaths[idx + 1]);
+	}
+
+	/**
+	 * Checks pairs of access paths from different parts of the test code,
+	 * which mostly do not alias
+	 */
+	@Benchmark
+	public AccessPath mayAliasMixed() {
+		if (++idx >= accessPaths.length)
+			idx = 0;
+		return aliasing.mayAlias(accessPaths[idx], accessPaths[accessPaths.length - 1 - idx]);
+	}
+
+	/**
+	 * Checks two locals for aliasing
+	 */
+	@Benchmark
+	public boolean mayAliasValues() {
+		if (++idx >= locals.length)
+			idx = 0;
+		return aliasing.mayAlias(locals[idx], locals[locals.length - 1 - idx]);
+	}
+
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import soot.G;
+import soot.Local;
+import soot.PackManager;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.AssignStmt;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.data.Abstraction;
+import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
+import soot.jimple.infoflow.solver.IInfoflowCFG;
+import soot.jimple.infoflow.solver.InfoflowCFG;
+import soot.options.Options;
+
+/**
+ * Shared input data for the micro benchmarks. The scene is built once per
+ * JVM from the test code classes in soot.jimple.infoflow.test, so that the
+ * benchmarks work on the same statements, fields and access paths as the
+ * JUnit tests. JMH forks a new JVM for every benchmark, so the global Soot
+ * state is never shared between two benchmarks.
+ *
+ * The application classpath defaults to the directories the ant build
+ * writes to and can be overwritten with the "benchmark.appPath" system
+ * property. The library classpath can be set with "benchmark.libPath".
+ */
+public class BenchmarkScene {
+
+	private static final String[] TEST_CLASSES = new String[] {
+		"soot.jimple.infoflow.test.HeapTestCode",
+		"soot.jimple.infoflow.test.ListTestCode",
+		"soot.jimple.infoflow.test.MapTestCode",
+		"soot.jimple.infoflow.test.StringTestCode",
+		"soot.jimple.infoflow.test.EasyWrapperTestCode"
+	};
+
+	private static BenchmarkScene instance = null;
+
+	private final IInfoflowCFG icfg;
+	private final List<Stmt> fieldStmts = new ArrayList<Stmt>();
+	private final List<InstanceFieldRef> fieldRefs = new ArrayList<InstanceFieldRef>();
+	private final List<Local> locals = new ArrayList<Local>();
+	private final List<Stmt> libraryCalls = new ArrayList<Stmt>();
+	private final List<AccessPath> libraryCallBases = new ArrayList<AccessPath>();
+	private final List<AccessPath> accessPaths = new ArrayList<AccessPath>();
+	private final List<Abstraction> abstractions = new ArrayList<Abstraction>();
+
+	/**
+	 * Gets the benchmark scene, building it on first use
+	 * @return The benchmark scene
+	 */
+	public static synchronized BenchmarkScene v() {
+		if (instance == null)
+			instance = new BenchmarkScene();
+		return instance;
+	}
+
+	private BenchmarkScene() {
+		final String sep = File.pathSeparator;
+		String appPath = System.getProperty("benchmark.appPath",
+				"build" + File.separator + "classes" + sep
+				+ "build" + File.separator + "testclasses");
+		String libPath = System.getProperty("benchmark.libPath",
+				System.getProperty("java.home") + File.separator + "lib"
+						+ File.separator + "rt.jar");
+
+		G.reset();
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_output_format(Options.output_format_none);
+		Options.v().set_whole_program(true);
+		Options.v().set_soot_classpath(appPath + sep + libPath);
+		Options.v().setPhaseOption("cg.cha", "on");
+		Options.v().setPhaseOption("cg", "trim-clinit:false");
+		Options.v().setPhaseOption("jb.ulp", "off");
+
+		for (String className : TEST_CLASSES)
+			Scene.v().addBasicClass(className, SootClass.BODIES);
+		Scene.v().loadNecessaryClasses();
+
+		// Every method in the test classes is an entry point
+		List<SootMethod> entryPoints = new ArrayList<SootMethod>();
+		for (String className : TEST_CLASSES) {
+			SootClass c = Scene.v().forceResolve(className, SootClass.BODIES);
+			if (c.isPhantom())
+				throw new RuntimeException("Test class " + className + " not found on "
+						+ appPath);
+			c.setApplicationClass();
+			for (SootMethod sm : c.getMethods())
+				if (sm.isConcrete()) {
+					sm.retrieveActiveBody();
+					entryPoints.add(sm);
+				}
+		}
+		Scene.v().setEntryPoints(entryPoints);
+		PackManager.v().getPack("cg").apply();
+		this.icfg = new InfoflowCFG();
+
+		for (SootMethod sm : entryPoints)
+			collectInputs(sm);
+		if (accessPaths.isEmpty() || libraryCalls.isEmpty())
+			throw new RuntimeException("No benchmark inputs found in the test classes");
+	}
+
+	/**
+	 * Collects the statements, values and access paths used as benchmark
+	 * inputs from the given method
+	 * @param sm The method from which to collect the inputs
+	 */
+	private void collectInputs(SootMethod sm) {
+		for (Local l : sm.getActiveBody().getLocals())
+			if (l.getType() instanceof RefLikeType)
+				locals.add(l);
+
+		for (Unit u : sm.getActiveBody().getUnits()) {
+			Stmt stmt = (Stmt) u;
+			if (stmt instanceof AssignStmt) {
+				AssignStmt assignStmt = (AssignStmt) stmt;
+				for (Value val : new Value[] { assignStmt.getLeftOp(), assignStmt.getRightOp() })
+					if (val instanceof InstanceFieldRef) {
+						InstanceFieldRef ref = (InstanceFieldRef) val;
+						fieldStmts.add(stmt);
+						fieldRefs.add(ref);
+
+						AccessPath baseAP = AccessPathFactory.v().createAccessPath(ref.getBase(), true);
+						AccessPath fieldAP = AccessPathFactory.v().createAccessPath(ref, true);
+						if (baseAP == null || fieldAP == null)
+							continue;
+						accessPaths.add(baseAP);
+						accessPaths.add(fieldAP);
+
+						Abstraction abs = new Abstraction(baseAP, stmt, null, false, false);
+						abstractions.add(abs);
+						abstractions.add(abs.deriveNewAbstraction(fieldAP, stmt));
+					}
+			}
+
+			// Calls into the runtime library are handled by the taint wrapper
+			if (stmt.containsInvokeExpr()
+					&& stmt.getInvokeExpr() instanceof InstanceInvokeExpr
+					&& stmt.getInvokeExpr().getMethod().getDeclaringClass().getName().startsWith("java.")) {
+				AccessPath baseAP = AccessPathFactory.v().createAccessPath
+						(((InstanceInvokeExpr) stmt.getInvokeExpr()).getBase(), true);
+				if (baseAP != null) {
+					libraryCalls.add(stmt);
+					libraryCallBases.add(baseAP);
+				}
+			}
+		}
+	}
+
+	public IInfoflowCFG getICFG() {
+		return this.icfg;
+	}
+
+	/**
+	 * Gets all statements reading or writing an instance field
+	 * @return All statements reading or writing an instance field. Every
+	 * statement is contained once for every field reference in it, so that
+	 * the list is aligned with {@link #getFieldRefs()}.
+	 */
+	public List<Stmt> getFieldStmts() {
+		return Collections.unmodifiableList(this.fieldStmts);
+	}
+
+	/**
+	 * Gets all instance field references in the test classes
+	 * @return All instance field references in the test classes
+	 */
+	public List<InstanceFieldRef> getFieldRefs() {
+		return Collections.unmodifiableList(this.fieldRefs);
+	}
+
+	/**
+	 * Gets all locals of reference types in the test classes
+	 * @return All locals of reference types in the test classes
+	 */
+	public List<Local> getLocals() {
+		return Collections.unmodifiableList(this.locals);
+	}
+
+	/**
+	 * Gets all instance calls into classes of the Java runtime library
+	 * @return All instance calls into the runtime library
+	 */
+	public List<Stmt> getLibraryCalls() {
+		return Collections.unmodifiableList(this.libraryCalls);
+	}
+
+	/**
+	 * Gets the access paths of the base objects of the calls returned by
+	 * {@link #getLibraryCalls()}
+	 * @return The access paths of the base objects of the library calls
+	 */
+	public List<AccessPath> getLibraryCallBases() {
+		return Collections.unmodifiableList(this.libraryCallBases);
+	}
+
+	/**
+	 * Gets the access paths for all field references and their bases. Every
+	 * base is directly followed by its field reference.
+	 * @return The access paths for all field references and their bases
+	 */
+	public List<AccessPath> getAccessPaths() {
+		return Collections.unmodifiableList(this.accessPaths);
+	}
+
+	/**
+	 * Gets source abstractions for all field references along with the
+	 * abstractions derived from them. Every source abstraction is directly
+	 * followed by its derived abstraction.
+	 * @return The abstractions for all field references
+	 */
+	public List<Abstraction> getAbstractions() {
+		return Collections.unmodifiableList(this.abstractions);
+	}
+
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.solver.IInfoflowCFG;
+import soot.jimple.infoflow.taintWrappers.EasyTaintWrapper;
+
+/**
+ * Measures the taint wrapper lookups for calls into the Java runtime
+ * library. The rules are loaded from the EasyTaintWrapperSource.txt file in
+ * the working directory unless a different file is given in the
+ * "benchmark.taintWrapper" system property.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EasyTaintWrapperBenchmark {
+
+	private EasyTaintWrapper taintWrapper;
+	private IInfoflowCFG icfg;
+	private Stmt[] calls;
+	private AccessPath[] bases;
+	private int idx = 0;
+
+	@Setup
+	public void setUp() throws IOException {
+		BenchmarkScene scene = BenchmarkScene.v();
+		this.taintWrapper = new EasyTaintWrapper(System.getProperty
+				("benchmark.taintWrapper", "EasyTaintWrapperSource.txt"));
+		this.taintWrapper.initialize();
+		this.icfg = scene.getICFG();
+		List<Stmt> calls = scene.getLibraryCalls();
+		this.calls = calls.toArray(new Stmt[calls.size()]);
+		List<AccessPath> bases = scene.getLibraryCallBases();
+		this.bases = bases.toArray(new AccessPath[bases.size()]);
+	}
+
+	/**
+	 * Gets the taints for a library call on a tainted base object
+	 */
+	@Benchmark
+	public Set<AccessPath> getTaintsForMethod() {
+		if (++idx >= calls.length)
+			idx = 0;
+		return taintWrapper.getTaintsForMethod(calls[idx], bases[idx], icfg);
+	}
+
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.data.Abstraction;
+import soot.jimple.infoflow.solver.fastSolver.JumpFunctions;
+
+/**
+ * Measures the insertion of new edges into the jump functions while several
+ * threads write into the same table, just like the solver threads do. The
+ * table is cleared for every iteration, so that every iteration starts with
+ * mostly new edges and ends with mostly known ones. The number of threads
+ * can be changed with the "-t" option of JMH.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class JumpFunctionsBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class SharedState {
+
+		private Abstraction[] abstractions;
+		private Stmt[] stmts;
+		private JumpFunctions<Unit, Abstraction> jumpFunctions;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			BenchmarkScene scene = BenchmarkScene.v();
+			List<Abstraction> abs = scene.getAbstractions();
+			this.abstractions = abs.toArray(new Abstraction[abs.size()]);
+			List<Stmt> stmts = scene.getFieldStmts();
+			this.stmts = stmts.toArray(new Stmt[stmts.size()]);
+		}
+
+		@Setup(Level.Iteration)
+		public void resetJumpFunctions() {
+			this.jumpFunctions = new JumpFunctions<Unit, Abstraction>();
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadState {
+
+		private int sourceIdx;
+		private int targetIdx;
+		private int stmtIdx;
+
+		@Setup(Level.Iteration)
+		public void setUp() {
+			// Let the threads start at different edges, but make them overlap
+			// later on
+			this.sourceIdx = (int) (Thread.currentThread().getId() * 7);
+			this.targetIdx = 0;
+			this.stmtIdx = 0;
+		}
+
+	}
+
+	@Benchmark
+	public Abstraction addFunction(SharedState shared, ThreadState thread) {
+		final Abstraction[] abs = shared.abstractions;
+		if (++thread.targetIdx >= abs.length) {
+			thread.targetIdx = 0;
+			if (++thread.stmtIdx >= shared.stmts.length) {
+				thread.stmtIdx = 0;
+				thread.sourceIdx++;
+			}
+		}
+		return shared.jumpFunctions.addFunction(abs[thread.sourceIdx % abs.length],
+				shared.stmts[thread.stmtIdx], abs[thread.targetIdx]);
+	}
+
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.data.Abstraction;
+import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.SourceContextAndPath;
+
+/**
+ * Measures the extension of taint propagation paths during the path
+ * reconstruction. The paths are extended with a chain of derived
+ * abstractions whose length is given by the "pathLength" parameter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SourceContextAndPathBenchmark {
+
+	@Param({ "1", "10", "50" })
+	private int pathLength;
+
+	private SourceContextAndPath[] paths;
+	private Abstraction[] extensions;
+	private int idx = 0;
+
+	@Setup
+	public void setUp() {
+		BenchmarkScene scene = BenchmarkScene.v();
+		List<AccessPath> aps = scene.getAccessPaths();
+		List<Stmt> stmts = scene.getFieldStmts();
+
+		// Build one path of the requested length for every source
+		List<Abstraction> sources = scene.getAbstractions();
+		int numPaths = sources.size() / 2;
+		this.paths = new SourceContextAndPath[numPaths];
+		this.extensions = new Abstraction[numPaths];
+		for (int i = 0; i < numPaths; i++) {
+			Abstraction abs = sources.get(i * 2);
+			SourceContextAndPath scap = new SourceContextAndPath(abs.getAccessPath(),
+					abs.getSourceContext().getStmt());
+			for (int j = 0; j < pathLength; j++) {
+				abs = abs.deriveNewAbstraction(aps.get((i + j + 1) % aps.size()),
+						stmts.get((i + j) % stmts.size()));
+				// Looping paths are not extended
+				SourceContextAndPath extended = scap.extendPath(abs);
+				if (extended != null)
+					scap = extended;
+			}
+			this.paths[i] = scap;
+			this.extensions[i] = abs.deriveNewAbstraction(aps.get(i % aps.size()),
+					stmts.get((i + pathLength) % stmts.size()));
+		}
+	}
+
+	/**
+	 * Extends an existing path with one more abstraction
+	 */
+	@Benchmark
+	public SourceContextAndPath extendPath() {
+		if (++idx >= paths.length)
+			idx = 0;
+		return paths[idx].extendPath(extensions[idx]);
+	}
+
+}
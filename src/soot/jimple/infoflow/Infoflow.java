@@ -9,24 +9,25 @@
  ******************************************************************************/
 package soot.jimple.infoflow;
 
-import heros.solver.CountingThreadPoolExecutor;
-
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import soot.BodyTransformer;
 import soot.MethodOrMethodContext;
 import soot.PackManager;
 import soot.PatchingChain;
@@ -35,6 +36,7 @@ import soot.SootClass;
 import soot.SootMethod;
 import soot.Unit;
 import soot.jimple.Stmt;
+import soot.jimple.infoflow.aliasing.AliasQueryTable;
 import soot.jimple.infoflow.aliasing.FlowSensitiveAliasStrategy;
 import soot.jimple.infoflow.aliasing.IAliasingStrategy;
 import soot.jimple.infoflow.aliasing.PtsBasedAliasStrategy;
@@ -43,6 +45,9 @@ import soot.jimple.infoflow.cfg.LibraryClassPatcher;
 import soot.jimple.infoflow.config.IInfoflowConfig;
 import soot.jimple.infoflow.data.AbstractionAtSink;
 import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
+import soot.jimple.infoflow.data.SinkResultPruner;
+import soot.jimple.infoflow.data.pathBuilders.AbstractPathBuilderFactory;
 import soot.jimple.infoflow.data.pathBuilders.DefaultPathBuilderFactory;
 import soot.jimple.infoflow.data.pathBuilders.IAbstractionPathBuilder;
 import soot.jimple.infoflow.data.pathBuilders.IPathBuilderFactory;
@@ -58,13 +63,25 @@ import soot.jimple.infoflow.results.InfoflowResults;
 import soot.jimple.infoflow.results.ResultSinkInfo;
 import soot.jimple.infoflow.results.ResultSourceInfo;
 import soot.jimple.infoflow.solver.BackwardsInfoflowCFG;
+import soot.jimple.infoflow.solver.FrozenInfoflowCFG;
 import soot.jimple.infoflow.solver.IInfoflowCFG;
 import soot.jimple.infoflow.solver.InfoflowCFG;
+import soot.jimple.infoflow.solver.executors.DefaultSolverExecutorFactory;
+import soot.jimple.infoflow.solver.executors.ISolverExecutor;
+import soot.jimple.infoflow.solver.executors.ISolverExecutorFactory;
+import soot.jimple.infoflow.solver.memory.MemoryGovernor;
+import soot.jimple.infoflow.solver.summaries.PersistentSummaryCache;
+import soot.jimple.infoflow.solver.telemetry.ISolverTelemetryListener;
+import soot.jimple.infoflow.solver.telemetry.SolverTelemetry;
 import soot.jimple.infoflow.solver.fastSolver.InfoflowSolver;
+import soot.jimple.infoflow.source.DefaultSourceSinkManager;
 import soot.jimple.infoflow.source.ISourceSinkManager;
 import soot.jimple.infoflow.util.InterproceduralConstantValuePropagator;
+import soot.jimple.infoflow.util.PartitionedProcessor;
+import soot.jimple.infoflow.util.PartitionedProcessor.IElementProcessor;
 import soot.jimple.infoflow.util.SootMethodRepresentationParser;
 import soot.jimple.infoflow.util.SystemClassHandler;
+import soot.jimple.toolkits.callgraph.CallGraph;
 import soot.jimple.toolkits.callgraph.ReachableMethods;
 import soot.jimple.toolkits.scalar.ConditionalBranchFolder;
 import soot.jimple.toolkits.scalar.ConstantPropagatorAndFolder;
@@ -72,27 +89,80 @@ import soot.jimple.toolkits.scalar.DeadAssignmentEliminator;
 import soot.jimple.toolkits.scalar.UnreachableCodeEliminator;
 import soot.options.Options;
 import soot.util.queue.QueueReader;
+
+import com.google.common.collect.Sets;
+
 /**
  * main infoflow class which triggers the analysis and offers method to customize it.
  *
  */
 public class Infoflow extends AbstractInfoflow {
 	
+	/**
+	 * The phases of an analysis run for which the time is recorded
+	 */
+	public enum AnalysisPhase {
+		/**
+		 * Resetting Soot and loading the classes
+		 */
+		SootInitialization,
+		/**
+		 * Callgraph construction including the library patches
+		 */
+		Callgraph,
+		/**
+		 * Interprocedural constant propagation and dead code elimination
+		 */
+		DeadCodeElimination,
+		/**
+		 * Building the interprocedural CFG along with the method effect
+		 * summaries and the optional snapshot
+		 */
+		ICFG,
+		/**
+		 * Scanning the methods for sources and sinks
+		 */
+		SeedScan,
+		/**
+		 * Running the forward and backward solvers
+		 */
+		TaintPropagation,
+		/**
+		 * Removing results that are entailed by other results
+		 */
+		ResultPruning,
+		/**
+		 * Reconstructing the paths between sources and sinks
+		 */
+		PathReconstruction
+	}
+	
     private final Logger logger = LoggerFactory.getLogger(getClass());
     
+	private static final int SEED_SCAN_PARTITION_SIZE = 64;
+	
 	private static int accessPathLength = 5;
 	private static boolean useRecursiveAccessPaths = true;
 	private static boolean pathAgnosticResults = true;
 	private static boolean oneResultPerAccessPath = false;
 	
 	private InfoflowResults results = null;
-	private final IPathBuilderFactory pathBuilderFactory;
+	private IPathBuilderFactory pathBuilderFactory;
 
 	private final String androidPath;
 	private final boolean forceAndroidJar;
 	private IInfoflowConfig sootConfig;
 	
 	private IIPCManager ipcManager = new DefaultIPCManager(new ArrayList<String>());
+	private ISolverExecutorFactory solverExecutorFactory = new DefaultSolverExecutorFactory();
+	private MemoryGovernor memoryGovernor = null;
+	private PersistentSummaryCache summaryCache = null;
+	private boolean freezeICFG = false;
+	private boolean batchEdgeProcessing = false;
+	private boolean mergePointChecking = false;
+	private boolean precomputeMustAliases = true;
+	private List<ISolverTelemetryListener> telemetryListeners = new ArrayList<ISolverTelemetryListener>();
+	private long telemetryInterval = 10000;
 	
     private IInfoflowCFG iCfg;
     
@@ -100,6 +170,9 @@ public class Infoflow extends AbstractInfoflow {
     private Set<TaintPropagationHandler> taintPropagationHandlers = new HashSet<TaintPropagationHandler>();
     
     private long maxMemoryConsumption = -1;
+    private final Map<AnalysisPhase, Long> phaseTimes = new EnumMap<AnalysisPhase, Long>(AnalysisPhase.class);
+    private long forwardPropagationCount = -1;
+    private long backwardPropagationCount = -1;
 
 	/**
 	 * Creates a new instance of the InfoFlow class for analyzing plain Java code without any references to APKs or the Android SDK.
@@ -306,7 +379,10 @@ public class Infoflow extends AbstractInfoflow {
 			return;
 		}
 		
+		resetStatistics();
+		long beforeInit = System.nanoTime();
 		initializeSoot(appPath, libPath, entryPointCreator.getRequiredClasses());
+		recordPhase(AnalysisPhase.SootInitialization, beforeInit);
 
 		// entryPoints are the entryPoints required by Soot to calculate Graph - if there is no main method,
 		// we have to create a new main method and use it as entryPoint and store our real entryPoints
@@ -324,9 +400,12 @@ public class Infoflow extends AbstractInfoflow {
 			return;
 		}
 
+		resetStatistics();
+		long beforeInit = System.nanoTime();
 		initializeSoot(appPath, libPath,
 				SootMethodRepresentationParser.v().parseClassNames
 					(Collections.singletonList(entryPoint), false).keySet(), entryPoint);
+		recordPhase(AnalysisPhase.SootInitialization, beforeInit);
 
 		if (!Scene.v().containsMethod(entryPoint)){
 			logger.error("Entry point not found: " + entryPoint);
@@ -356,14 +435,17 @@ public class Infoflow extends AbstractInfoflow {
 		maxMemoryConsumption = -1;
 		ipcManager.updateJimpleForICC();
 		
-		// Clear the base registrations from previous runs
+		// Clear the base registrations and canonical access paths from
+		// previous runs
 		AccessPath.clearBaseRegister();
+		AccessPathFactory.v().clear();
 		
 		// Run the preprocessors
         for (PreAnalysisHandler tr : preProcessors)
             tr.onBeforeCallgraphConstruction();
         
         // Patch the system libraries we need for callgraph construction
+        long beforeCallgraph = System.nanoTime();
         LibraryClassPatcher patcher = new LibraryClassPatcher();
         patcher.patchLibraries();
 		
@@ -372,6 +454,7 @@ public class Infoflow extends AbstractInfoflow {
 	        PackManager.v().getPack("wjpp").apply();
 	        PackManager.v().getPack("cg").apply();
 		}
+		recordPhase(AnalysisPhase.Callgraph, beforeCallgraph);
 		
 		// Run the preprocessors
         for (PreAnalysisHandler tr : preProcessors)
@@ -383,14 +466,46 @@ public class Infoflow extends AbstractInfoflow {
 			eliminateDeadCode(sourcesSinks);
 			logger.info("Dead code elimination took " + (System.nanoTime() - currentMillis) / 1E9
 					+ " seconds");
+			recordPhase(AnalysisPhase.DeadCodeElimination, currentMillis);
         }
 		
         if (callgraphAlgorithm != CallgraphAlgorithm.OnDemand)
         	logger.info("Callgraph has {} edges", Scene.v().getCallGraph().size());
+        long beforeICFG = System.nanoTime();
         iCfg = icfgFactory.buildBiDirICFG(callgraphAlgorithm);
-		        
         int numThreads = Runtime.getRuntime().availableProcessors();
-		CountingThreadPoolExecutor executor = createExecutor(numThreads);
+        
+        // Summarize the effects of all methods once the callgraph is final
+        if (callgraphAlgorithm != CallgraphAlgorithm.OnDemand && iCfg instanceof InfoflowCFG) {
+        	long beforeSummaries = System.nanoTime();
+        	((InfoflowCFG) iCfg).computeEffectSummaries(numThreads);
+        	logger.info("Method effect summaries computed in {} seconds",
+        			(System.nanoTime() - beforeSummaries) / 1E9);
+        }
+        
+        // The on-demand callgraph is only built during the analysis, so we
+        // cannot take a snapshot of it beforehand
+        if (freezeICFG && callgraphAlgorithm != CallgraphAlgorithm.OnDemand) {
+        	long beforeFreeze = System.nanoTime();
+        	List<SootMethod> reachableMethods = new ArrayList<SootMethod>();
+        	for (QueueReader<MethodOrMethodContext> rdr =
+        			Scene.v().getReachableMethods().listener(); rdr.hasNext(); )
+        		reachableMethods.add(rdr.next().method());
+        	FrozenInfoflowCFG frozenCfg = new FrozenInfoflowCFG(iCfg, reachableMethods);
+        	iCfg = frozenCfg;
+        	logger.info("Froze interprocedural CFG with {} units in {} seconds",
+        			frozenCfg.getUnitCount(), (System.nanoTime() - beforeFreeze) / 1E9);
+        }
+        recordPhase(AnalysisPhase.ICFG, beforeICFG);
+		        
+		ISolverExecutor executor = createExecutor(numThreads);
+		
+		// If the path builder only needs the sources of the abstractions at
+		// the sinks, we do not need to build the graph of abstractions
+		final boolean resultsOnly = pathBuilderFactory instanceof AbstractPathBuilderFactory
+				&& !((AbstractPathBuilderFactory) pathBuilderFactory).requiresAbstractionGraph();
+		final boolean jumpPredecessors = !resultsOnly
+				&& !pathBuilderFactory.supportsPathReconstruction();
 		
 		BackwardsInfoflowProblem backProblem;
 		InfoflowSolver backSolver;
@@ -400,10 +515,14 @@ public class Infoflow extends AbstractInfoflow {
 				backProblem = new BackwardsInfoflowProblem(new BackwardsInfoflowCFG(iCfg), sourcesSinks);
 				// need to set this before creating the zero abstraction
 				backProblem.setFlowSensitiveAliasing(flowSensitiveAliasing);
+				backProblem.setResultsOnly(resultsOnly);
 				
 				backSolver = new InfoflowSolver(backProblem, executor);
-				backSolver.setJumpPredecessors(!pathBuilderFactory.supportsPathReconstruction());
-//				backSolver.setEnableMergePointChecking(true);
+				backSolver.setJumpPredecessors(jumpPredecessors);
+				backSolver.setResultsOnly(resultsOnly);
+				backSolver.setMemoryGovernor(memoryGovernor);
+				backSolver.setBatchEdges(batchEdgeProcessing);
+				backSolver.setEnableMergePointChecking(mergePointChecking);
 				
 				aliasingStrategy = new FlowSensitiveAliasStrategy(iCfg, backSolver);
 				break;
@@ -420,14 +539,35 @@ public class Infoflow extends AbstractInfoflow {
 				aliasingStrategy);
 		// need to set this before creating the zero abstraction
 		forwardProblem.setFlowSensitiveAliasing(flowSensitiveAliasing);
+		forwardProblem.setResultsOnly(resultsOnly);
 		if (backProblem != null)
 			forwardProblem.setZeroValue(backProblem.createZeroValue());
 		
 		// Set the options
 		InfoflowSolver forwardSolver = new InfoflowSolver(forwardProblem, executor);
 		aliasingStrategy.setForwardSolver(forwardSolver);
-		forwardSolver.setJumpPredecessors(!pathBuilderFactory.supportsPathReconstruction());
-//		forwardSolver.setEnableMergePointChecking(true);
+		forwardSolver.setJumpPredecessors(jumpPredecessors);
+		forwardSolver.setResultsOnly(resultsOnly);
+		forwardSolver.setMemoryGovernor(memoryGovernor);
+		forwardSolver.setBatchEdges(batchEdgeProcessing);
+		if (summaryCache != null) {
+			// Sinks inside the cached methods would be missed when skipping them
+			if (ignoreFlowsInSystemPackages) {
+				summaryCache.resetScene();
+				summaryCache.setConfiguration(taintWrapper, sourcesSinks,
+						"aliasing=" + aliasingAlgorithm
+						+ ";flowSensitiveAliasing=" + flowSensitiveAliasing
+						+ ";staticFields=" + enableStaticFields
+						+ ";exceptions=" + enableExceptions
+						+ ";implicitFlows=" + enableImplicitFlows
+						+ ";accessPathLength=" + accessPathLength);
+				summaryCache.setAliasesComputedOnReturn(aliasingStrategy.requiresAnalysisOnReturn());
+				forwardSolver.setSummaryCache(summaryCache);
+			}
+			else
+				logger.warn("Flows in system packages are not ignored, not using the summary cache");
+		}
+		forwardSolver.setEnableMergePointChecking(mergePointChecking);
 		
 		forwardProblem.setInspectSources(inspectSources);
 		forwardProblem.setInspectSinks(inspectSinks);
@@ -463,11 +603,19 @@ public class Infoflow extends AbstractInfoflow {
 
 		// We have to look through the complete program to find sources
 		// which are then taken as seeds.
-		int sinkCount = 0;
         logger.info("Looking for sources and sinks...");
         
-        for (SootMethod sm : getMethodsForSeeds(iCfg))
-			sinkCount += scanMethodForSourcesSinks(sourcesSinks, forwardProblem, sm);
+        long beforeSeedMethods = System.nanoTime();
+        List<SootMethod> seedMethods = getMethodsForSeeds(iCfg);
+		logger.info("Collecting {} seed methods took {} seconds", seedMethods.size(),
+				(System.nanoTime() - beforeSeedMethods) / 1E9);
+		
+        long beforeScan = System.nanoTime();
+		int sinkCount = scanMethodsForSourcesSinks(sourcesSinks, forwardProblem,
+				seedMethods, numThreads);
+		logger.info("Scanning for sources and sinks took {} seconds",
+				(System.nanoTime() - beforeScan) / 1E9);
+		recordPhase(AnalysisPhase.SeedScan, beforeSeedMethods);
         
 		// We optionally also allow additional seeds to be specified
 		if (additionalSeeds != null)
@@ -489,11 +637,46 @@ public class Infoflow extends AbstractInfoflow {
 		logger.info("Source lookup done, found {} sources and {} sinks.", forwardProblem.getInitialSeeds().size(),
 				sinkCount);
 		
+		// Compute the must-alias tables up front in parallel, so that the
+		// solvers only need to look up the results
+		if (precomputeMustAliases && callgraphAlgorithm != CallgraphAlgorithm.OnDemand) {
+			long beforeMustAliases = System.nanoTime();
+			List<SootMethod> aliasMethods = new ArrayList<SootMethod>();
+			for (QueueReader<MethodOrMethodContext> rdr =
+					Scene.v().getReachableMethods().listener(); rdr.hasNext(); ) {
+				SootMethod sm = rdr.next().method();
+				if (sm == null || !sm.hasActiveBody())
+					continue;
+				if (ignoreFlowsInSystemPackages && SystemClassHandler.isClassInSystemPackage
+						(sm.getDeclaringClass().getName()))
+					continue;
+				aliasMethods.add(sm);
+			}
+			forwardProblem.getAliasing().getMustAliasTables().precompute(aliasMethods, numThreads);
+			logger.info("Must-alias tables for {} methods computed in {} seconds",
+					aliasMethods.size(), (System.nanoTime() - beforeMustAliases) / 1E9);
+		}
+		
 		// Initialize the taint wrapper if we have one
 		if (taintWrapper != null)
 			taintWrapper.initialize();
 		
-		forwardSolver.solve();
+		// The backward solver runs on the same executor and is never started
+		// on its own, so we start the telemetry of both solvers here
+		SolverTelemetry<SootMethod> forwardTelemetry = createTelemetry("forward", forwardSolver, numThreads);
+		SolverTelemetry<SootMethod> backwardTelemetry = backSolver == null ? null
+				: createTelemetry("backward", backSolver, numThreads);
+		
+		long beforeSolver = System.nanoTime();
+		try {
+			forwardSolver.solve();
+		}
+		finally {
+			if (forwardTelemetry != null)
+				forwardTelemetry.stop();
+			if (backwardTelemetry != null)
+				backwardTelemetry.stop();
+		}
 		maxMemoryConsumption = Math.max(maxMemoryConsumption, getUsedMemory());
 		
 		// Not really nice, but sometimes Heros returns before all
@@ -515,6 +698,21 @@ public class Infoflow extends AbstractInfoflow {
 		}
 		if (executor.getActiveCount() != 0 || !executor.isTerminated())
 			logger.error("Executor did not terminate gracefully");
+		recordPhase(AnalysisPhase.TaintPropagation, beforeSolver);
+		forwardPropagationCount = forwardSolver.propagationCount;
+		backwardPropagationCount = backSolver == null ? 0 : backSolver.propagationCount;
+		
+		// Store the library summaries for the next run. If the solver was
+		// stopped early, the summaries are incomplete.
+		if (summaryCache != null && ignoreFlowsInSystemPackages && !stopAfterFirstFlow) {
+			logger.info("Stored {} summaries in the summary cache", forwardSolver.storeSummaries());
+			try {
+				summaryCache.save();
+			}
+			catch (IOException ex) {
+				logger.error("Could not write the summary cache", ex);
+			}
+		}
 
 		// Print taint wrapper statistics
 		if (taintWrapper != null) {
@@ -522,21 +720,23 @@ public class Infoflow extends AbstractInfoflow {
 			logger.info("Taint wrapper misses: " + taintWrapper.getWrapperMisses());
 		}
 		
+		// Print alias query statistics
+		if (aliasingStrategy instanceof FlowSensitiveAliasStrategy) {
+			AliasQueryTable queryTable = ((FlowSensitiveAliasStrategy) aliasingStrategy).getQueryTable();
+			logger.info("Alias queries: {}, repeated queries dropped: {} ({}%)",
+					queryTable.getQueryCount(), queryTable.getHitCount(),
+					Math.round(queryTable.getHitRate() * 100));
+			queryTable.clear();
+		}
+		
 		Set<AbstractionAtSink> res = forwardProblem.getResults();
 		
 		// We need to prune access paths that are entailed by another one
-		for (Iterator<AbstractionAtSink> absAtSinkIt = res.iterator(); absAtSinkIt.hasNext(); ) {
-			AbstractionAtSink curAbs = absAtSinkIt.next();
-			for (AbstractionAtSink checkAbs : res)
-				if (checkAbs != curAbs
-						&& checkAbs.getSinkStmt() == curAbs.getSinkStmt()
-						&& checkAbs.getAbstraction().isImplicit() == curAbs.getAbstraction().isImplicit())
-					if (checkAbs.getAbstraction().getAccessPath().entails(
-							curAbs.getAbstraction().getAccessPath())) {
-						absAtSinkIt.remove();
-						break;
-					}
-		}
+		long beforePruning = System.nanoTime();
+		int pruned = SinkResultPruner.prune(res);
+		logger.info("Pruned {} entailed results in {} seconds", pruned,
+				(System.nanoTime() - beforePruning) / 1E9);
+		recordPhase(AnalysisPhase.ResultPruning, beforePruning);
 		
 		logger.info("IFDS problem with {} forward and {} backward edges solved, "
 				+ "processing {} results...", forwardSolver.propagationCount,
@@ -556,7 +756,9 @@ public class Infoflow extends AbstractInfoflow {
 		forwardProblem = null;
 		Runtime.getRuntime().gc();
 		
+		long beforePaths = System.nanoTime();
 		computeTaintPaths(res);
+		recordPhase(AnalysisPhase.PathReconstruction, beforePaths);
 		
 		if (results.getResults().isEmpty())
 			logger.warn("No results found.");
@@ -584,6 +786,25 @@ public class Infoflow extends AbstractInfoflow {
 		maxMemoryConsumption = Math.max(maxMemoryConsumption, getUsedMemory());
 	}
 	
+	/**
+	 * Clears the statistics of the previous analysis run
+	 */
+	private void resetStatistics() {
+		phaseTimes.clear();
+		forwardPropagationCount = -1;
+		backwardPropagationCount = -1;
+	}
+	
+	/**
+	 * Records the time spent in the given phase
+	 * @param phase The phase that has just been completed
+	 * @param beforePhase The value of {@link System#nanoTime()} at the start
+	 * of the phase
+	 */
+	private void recordPhase(AnalysisPhase phase, long beforePhase) {
+		phaseTimes.put(phase, System.nanoTime() - beforePhase);
+	}
+	
 	/**
 	 * Gets the memory used by FlowDroid at the moment
 	 * @return FlowDroid's current memory consumption in bytes
@@ -601,29 +822,21 @@ public class Infoflow extends AbstractInfoflow {
 	 */
 	private void eliminateDeadCode(ISourceSinkManager sourcesSinks) {
 		// Perform an intra-procedural constant propagation to prepare for the
-		// inter-procedural one
+		// inter-procedural one. We exclude the dummy main method.
+		Set<SootMethod> entryPoints = Sets.newIdentityHashSet();
+		entryPoints.addAll(Scene.v().getEntryPoints());
+		List<SootMethod> methods = new ArrayList<SootMethod>();
 		for (QueueReader<MethodOrMethodContext> rdr =
 				Scene.v().getReachableMethods().listener(); rdr.hasNext(); ) {
 			MethodOrMethodContext sm = rdr.next();
 			if (sm.method() == null || !sm.method().hasActiveBody())
 				continue;
-			
-			// Exclude the dummy main method
-			if (Scene.v().getEntryPoints().contains(sm.method()))
-				continue;
-			
-			List<Unit> callSites = getCallsInMethod(sm.method());
-			
-			ConstantPropagatorAndFolder.v().transform(sm.method().getActiveBody());
-			DeadAssignmentEliminator.v().transform(sm.method().getActiveBody());
-			
-			// Remove the dead callgraph edges
-			List<Unit> newCallSites = getCallsInMethod(sm.method());
-			if (callSites != null)
-				for (Unit u : callSites)
-					if (newCallSites == null ||  !newCallSites.contains(u))
-						Scene.v().getCallGraph().removeAllEdgesOutOf(u);
+			if (!entryPoints.contains(sm.method()))
+				methods.add(sm.method());
 		}
+		transformMethods(methods, new BodyTransformer[] {
+				ConstantPropagatorAndFolder.v(),
+				DeadAssignmentEliminator.v() });
 		
 		// Perform an inter-procedural constant propagation and code cleanup
 		InterproceduralConstantValuePropagator ipcvp =
@@ -635,8 +848,14 @@ public class Infoflow extends AbstractInfoflow {
 		ipcvp.setRemoveSideEffectFreeMethods(codeEliminationMode
 				== CodeEliminationMode.RemoveSideEffectFreeCode && !enableImplicitFlows);
 		ipcvp.transform();
+		logger.info("Interprocedural constant propagation removed {} call edges and folded "
+				+ "{} call sites, skipping {} of {} method checks that had nothing to propagate",
+				ipcvp.getCallEdgesRemoved(), ipcvp.getCallSitesFolded(),
+				ipcvp.getMethodsChecked() - ipcvp.getMethodsProcessed(),
+				ipcvp.getMethodsChecked());
 		
 		// Get rid of all dead code
+		methods.clear();
 		for (QueueReader<MethodOrMethodContext> rdr =
 				Scene.v().getReachableMethods().listener(); rdr.hasNext(); ) {
 			MethodOrMethodContext sm = rdr.next();
@@ -648,16 +867,68 @@ public class Infoflow extends AbstractInfoflow {
 				continue;
 			
 			ConditionalBranchFolder.v().transform(sm.method().getActiveBody());
-			
-			// Delete all dead code. We need to be careful and patch the cfg so
-			// that it does not retain edges for call statements we have deleted
-			List<Unit> callSites = getCallsInMethod(sm.method());
-			UnreachableCodeEliminator.v().transform(sm.method().getActiveBody());
-			List<Unit> newCallSites = getCallsInMethod(sm.method());
-			if (callSites != null)
+			methods.add(sm.method());
+		}
+		transformMethods(methods, new BodyTransformer[] {
+				UnreachableCodeEliminator.v() });
+		
+		// The constant propagation has already asked for sources and sinks,
+		// but the bodies have changed since then
+		if (sourcesSinks instanceof DefaultSourceSinkManager)
+			((DefaultSourceSinkManager) sourcesSinks).resetStatementCache();
+	}
+	
+	/**
+	 * Applies the given body transformers to the given methods. Call sites
+	 * that have been removed by the transformers are collected and their
+	 * callgraph edges are removed afterwards in a single batch.
+	 *
+	 * The methods are transformed one after another. The transformers build
+	 * exceptional unit graphs, which register new exception sets with the
+	 * global ThrowableSet manager, and they may create new types in the
+	 * Scene. Neither is thread-safe.
+	 * @param methods The methods to transform
+	 * @param transformers The transformers to apply to every method in the
+	 * given order
+	 */
+	private void transformMethods(List<SootMethod> methods,
+			BodyTransformer[] transformers) {
+		List<Unit> removedCallSites = new ArrayList<Unit>();
+		for (SootMethod sm : methods)
+			transformMethod(sm, transformers, removedCallSites);
+		
+		// Remove the dead callgraph edges
+		CallGraph cg = Scene.v().getCallGraph();
+		for (Unit u : removedCallSites)
+			cg.removeAllEdgesOutOf(u);
+	}
+	
+	/**
+	 * Applies the given body transformers to the given method. We need to be
+	 * careful and patch the callgraph so that it does not retain edges for
+	 * call statements we have deleted.
+	 * @param method The method to transform
+	 * @param transformers The transformers to apply in the given order
+	 * @param removedCallSites The list to which to add all call sites that
+	 * have been removed from the method
+	 */
+	private void transformMethod(SootMethod method, BodyTransformer[] transformers,
+			List<Unit> removedCallSites) {
+		List<Unit> callSites = getCallsInMethod(method);
+		for (BodyTransformer transformer : transformers)
+			transformer.transform(method.getActiveBody());
+		
+		if (callSites != null) {
+			List<Unit> newCallSites = getCallsInMethod(method);
+			if (newCallSites == null)
+				removedCallSites.addAll(callSites);
+			else {
+				Set<Unit> remaining = Sets.newIdentityHashSet();
+				remaining.addAll(newCallSites);
 				for (Unit u : callSites)
-					if (newCallSites == null ||  !newCallSites.contains(u))
-						Scene.v().getCallGraph().removeAllEdgesOutOf(u);
+					if (!remaining.contains(u))
+						removedCallSites.add(u);
+			}
 		}
 	}
 	
@@ -683,11 +954,9 @@ public class Infoflow extends AbstractInfoflow {
 	 * @param numThreads The number of threads to use
 	 * @return The generated executor
 	 */
-	private CountingThreadPoolExecutor createExecutor(int numThreads) {
-		return new CountingThreadPoolExecutor
-				(maxThreadNum == -1 ? numThreads : Math.min(maxThreadNum, numThreads),
-				Integer.MAX_VALUE, 30, TimeUnit.SECONDS,
-				new LinkedBlockingQueue<Runnable>());
+	private ISolverExecutor createExecutor(int numThreads) {
+		return solverExecutorFactory.createExecutor
+				(maxThreadNum == -1 ? numThreads : Math.min(maxThreadNum, numThreads));
 	}
 	
 	/**
@@ -702,8 +971,8 @@ public class Infoflow extends AbstractInfoflow {
     	builder.shutdown();
 	}
 
-	private Collection<SootMethod> getMethodsForSeeds(IInfoflowCFG icfg) {
-		List<SootMethod> seeds = new LinkedList<SootMethod>();
+	private List<SootMethod> getMethodsForSeeds(IInfoflowCFG icfg) {
+		List<SootMethod> seeds = new ArrayList<SootMethod>();
 		// If we have a callgraph, we retrieve the reachable methods. Otherwise,
 		// we have no choice but take all application methods as an approximation
 		if (Scene.v().hasCallGraph()) {
@@ -714,11 +983,9 @@ public class Infoflow extends AbstractInfoflow {
 				seeds.add(iter.next().method());
 		}
 		else {
-			long beforeSeedMethods = System.nanoTime();
 			Set<SootMethod> doneSet = new HashSet<SootMethod>();
 			for (SootMethod sm : Scene.v().getEntryPoints())
 				getMethodsForSeedsIncremental(sm, doneSet, seeds, icfg);
-			logger.info("Collecting seed methods took {} seconds", (System.nanoTime() - beforeSeedMethods) / 1E9);
 		}
 		return seeds;
 	}
@@ -737,6 +1004,37 @@ public class Infoflow extends AbstractInfoflow {
 		}
 	}
 
+	/**
+	 * Scans the given methods for sources and sinks in parallel, see
+	 * {@link PartitionedProcessor}. Sinks are just counted, sources are added
+	 * to the InfoflowProblem as seeds.
+	 * @param sourcesSinks The SourceSinkManager to be used for identifying
+	 * sources and sinks. It must be thread-safe.
+	 * @param forwardProblem The InfoflowProblem in which to register the
+	 * sources as seeds
+	 * @param methods The methods to scan for sources and sinks
+	 * @param numThreads The number of threads to use
+	 * @return The number of sinks found in the given methods
+	 */
+	private int scanMethodsForSourcesSinks(
+			final ISourceSinkManager sourcesSinks,
+			final InfoflowProblem forwardProblem,
+			List<SootMethod> methods,
+			int numThreads) {
+		final AtomicInteger sinkCount = new AtomicInteger();
+		PartitionedProcessor.process(methods, new IElementProcessor<SootMethod>() {
+			
+			@Override
+			public void process(SootMethod sm, int index) {
+				int count = scanMethodForSourcesSinks(sourcesSinks, forwardProblem, sm);
+				if (count > 0)
+					sinkCount.addAndGet(count);
+			}
+			
+		}, SEED_SCAN_PARTITION_SIZE, numThreads, "scanning for sources and sinks");
+		return sinkCount.get();
+	}
+	
 	/**
 	 * Scans the given method for sources and sinks contained in it. Sinks are
 	 * just counted, sources are added to the InfoflowProblem as seeds.
@@ -896,6 +1194,137 @@ public class Infoflow extends AbstractInfoflow {
 	    this.ipcManager = ipcManager;
 	}
 	
+	/**
+	 * Sets the factory that creates the path builder for reconstructing the
+	 * paths between sources and sinks
+	 * @param factory The factory for creating the path builder
+	 */
+	public void setPathBuilderFactory(IPathBuilderFactory factory) {
+		this.pathBuilderFactory = factory;
+	}
+	
+	/**
+	 * Creates and starts the telemetry for the given solver if there are any
+	 * telemetry listeners
+	 * @param name The name of the solver in the telemetry snapshots
+	 * @param solver The solver to monitor
+	 * @param numThreads The number of threads the solver runs on
+	 * @return The new telemetry object, or null if no listeners have been
+	 * registered
+	 */
+	private SolverTelemetry<SootMethod> createTelemetry(String name,
+			InfoflowSolver solver, int numThreads) {
+		if (telemetryListeners.isEmpty())
+			return null;
+		SolverTelemetry<SootMethod> telemetry = new SolverTelemetry<SootMethod>(name, numThreads);
+		for (ISolverTelemetryListener listener : telemetryListeners)
+			telemetry.addListener(listener);
+		solver.setTelemetry(telemetry);
+		telemetry.start(telemetryInterval);
+		return telemetry;
+	}
+	
+	/**
+	 * Adds a listener that receives the telemetry snapshots of the forward
+	 * and the backward solver. The telemetry is only recorded if at least
+	 * one listener has been registered.
+	 * @param listener The listener to add
+	 */
+	public void addSolverTelemetryListener(ISolverTelemetryListener listener) {
+		this.telemetryListeners.add(listener);
+	}
+	
+	/**
+	 * Sets the interval in which telemetry snapshots are sent to the
+	 * listeners while the solvers are running. A final snapshot is always
+	 * sent when the solvers have finished.
+	 * @param telemetryInterval The interval in milliseconds. If this value
+	 * is not positive, only the final snapshot is sent.
+	 */
+	public void setTelemetryInterval(long telemetryInterval) {
+		this.telemetryInterval = telemetryInterval;
+	}
+	
+	/**
+	 * Sets the factory that creates the executor on which the forward and
+	 * the backward solver run
+	 * @param solverExecutorFactory The factory for creating the solver
+	 * executor
+	 */
+	public void setSolverExecutorFactory(ISolverExecutorFactory solverExecutorFactory) {
+		this.solverExecutorFactory = solverExecutorFactory;
+	}
+	
+	/**
+	 * Sets the governor that allows the solvers to spill the summaries of
+	 * methods that have not been used recently to disk when the heap is
+	 * running full. Large analyses then finish more slowly instead of
+	 * running out of memory.
+	 * @param memoryGovernor The memory governor to use, or null to keep all
+	 * solver data in memory
+	 */
+	public void setMemoryGovernor(MemoryGovernor memoryGovernor) {
+		this.memoryGovernor = memoryGovernor;
+	}
+	
+	/**
+	 * Sets the cache that keeps the summaries of library methods across
+	 * analysis runs. Methods with cached summaries are not analyzed again.
+	 * The cache is bound to the taint wrapper, the sources and sinks, and
+	 * the analysis options of every run, and drops its contents if they
+	 * change. It is only used if flows in system packages are ignored.
+	 * @param summaryCache The summary cache to use, or null to analyze all
+	 * methods in every run
+	 */
+	public void setSummaryCache(PersistentSummaryCache summaryCache) {
+		this.summaryCache = summaryCache;
+	}
+	
+	/**
+	 * Sets whether the interprocedural control-flow graph shall be frozen
+	 * into an array-based snapshot after callgraph construction and dead code
+	 * elimination. This speeds up the solvers, but takes some time and memory
+	 * up front. The option is ignored for on-demand callgraphs.
+	 * @param freezeICFG True if the control-flow graph shall be frozen,
+	 * otherwise false
+	 */
+	public void setFreezeICFG(boolean freezeICFG) {
+		this.freezeICFG = freezeICFG;
+	}
+	
+	/**
+	 * Sets whether the solvers shall process all facts that reach the same
+	 * statement together instead of creating a separate task for every
+	 * edge
+	 * @param batchEdgeProcessing True if the facts at a statement shall be
+	 * processed together, otherwise false
+	 */
+	public void setBatchEdgeProcessing(boolean batchEdgeProcessing) {
+		this.batchEdgeProcessing = batchEdgeProcessing;
+	}
+	
+	/**
+	 * Sets whether the solvers shall only record jump functions at merge
+	 * points. Facts on straight-line code are then not deduplicated, which
+	 * saves memory, but may lead to some facts being processed twice.
+	 * @param mergePointChecking True if jump functions shall only be
+	 * recorded at merge points, otherwise false
+	 */
+	public void setEnableMergePointChecking(boolean mergePointChecking) {
+		this.mergePointChecking = mergePointChecking;
+	}
+	
+	/**
+	 * Sets whether the must-alias tables for all reachable methods shall be
+	 * computed in parallel before the taint propagation starts. Otherwise,
+	 * the tables are computed on demand by the solver threads.
+	 * @param precomputeMustAliases True if the must-alias tables shall be
+	 * computed before the taint propagation, otherwise false
+	 */
+	public void setPrecomputeMustAliases(boolean precomputeMustAliases) {
+		this.precomputeMustAliases = precomputeMustAliases;
+	}
+	
 	/**
 	 * Gets the maximum memory consumption during the last analysis run
 	 * @return The maximum memory consumption during the last analysis run if
@@ -905,4 +1334,35 @@ public class Infoflow extends AbstractInfoflow {
 		return this.maxMemoryConsumption;
 	}
 	
+	/**
+	 * Gets the wall time spent in the phases of the last analysis run.
+	 * Phases that have not been run, e.g. because the analysis was aborted
+	 * early, are not contained in the map.
+	 * @return A map from the phases of the last analysis run to their wall
+	 * time in nanoseconds
+	 */
+	public Map<AnalysisPhase, Long> getPhaseTimes() {
+		return new EnumMap<AnalysisPhase, Long>(this.phaseTimes);
+	}
+	
+	/**
+	 * Gets the number of edges propagated by the forward solver during the
+	 * last analysis run
+	 * @return The number of edges propagated by the forward solver if
+	 * available, otherwise -1
+	 */
+	public long getForwardPropagationCount() {
+		return this.forwardPropagationCount;
+	}
+	
+	/**
+	 * Gets the number of edges propagated by the backward solver during the
+	 * last analysis run
+	 * @return The number of edges propagated by the backward solver, 0 if
+	 * no backward solver was used, or -1 if not available
+	 */
+	public long getBackwardPropagationCount() {
+		return this.backwardPropagationCount;
+	}
+	
 }
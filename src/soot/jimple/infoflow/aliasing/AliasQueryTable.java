@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.aliasing;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.data.Abstraction;
+import soot.jimple.infoflow.data.SourceContext;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Table of the alias queries that have already been sent to the backward
+ * solver. A query is identified by the context in the forward solver, the
+ * statement at which the heap object has been tainted and the new taint
+ * abstraction. Once a query has been issued, the backward solver delivers all
+ * of its answers to the forward solver in the same context, no matter whether
+ * the query is still in flight or has already been answered. Repeated
+ * queries can thus be dropped before they cause any work in the backward
+ * solver, i.e., before the inactive abstraction is derived, the predecessors
+ * are looked up and one edge per predecessor goes through the backward
+ * solver's jump functions.
+ *
+ * The table only remembers a bounded number of queries. A query that has
+ * been evicted is simply sent to the backward solver again, which then drops
+ * it through its own jump functions, so eviction never loses answers.
+ *
+ * Answers are not replayed to other forward contexts. The aliases found
+ * above the method's start point come from the incoming edges of the
+ * calling context, so they differ between contexts.
+ *
+ * If the abstractions carry their sets of sources, a query is only repeated
+ * if the abstraction still has the same set of sources. An abstraction that
+ * has gained new sources must be sent again, so that the aliases gain the
+ * new sources as well.
+ */
+public class AliasQueryTable {
+
+	/**
+	 * The default maximum number of queries to remember
+	 */
+	private static final long DEFAULT_MAX_QUERIES = 100000;
+
+	private final Cache<AliasQuery, Boolean> queries;
+	private final AtomicLong queryCount = new AtomicLong();
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/**
+	 * A single query for the aliases of a tainted heap object
+	 */
+	private static class AliasQuery {
+
+		private final Abstraction d1;
+		private final Stmt src;
+		private final Abstraction abs;
+		private final Set<SourceContext> sourceContexts;
+		private final int hashCode;
+
+		public AliasQuery(Abstraction d1, Stmt src, Abstraction abs) {
+			this.d1 = d1;
+			this.src = src;
+			this.abs = abs;
+			this.sourceContexts = abs == null ? null : abs.getSourceContexts();
+
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((d1 == null) ? 0 : d1.hashCode());
+			result = prime * result + ((src == null) ? 0 : src.hashCode());
+			result = prime * result + ((abs == null) ? 0 : abs.hashCode());
+			this.hashCode = result;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			AliasQuery other = (AliasQuery) obj;
+			if (this.hashCode != other.hashCode)
+				return false;
+			if (src != other.src)
+				return false;
+			// The sets of sources are immutable, so a set that has grown is
+			// a different object
+			if (sourceContexts != other.sourceContexts)
+				return false;
+			if (d1 == null) {
+				if (other.d1 != null)
+					return false;
+			} else if (!d1.equals(other.d1))
+				return false;
+			if (abs == null) {
+				if (other.abs != null)
+					return false;
+			} else if (!abs.equals(other.abs))
+				return false;
+			return true;
+		}
+
+	}
+
+	/**
+	 * Creates a new table that remembers up to 100,000 queries
+	 */
+	public AliasQueryTable() {
+		this(DEFAULT_MAX_QUERIES);
+	}
+
+	/**
+	 * Creates a new table
+	 * @param maxQueries The maximum number of queries to remember
+	 */
+	public AliasQueryTable(long maxQueries) {
+		this.queries = CacheBuilder.newBuilder()
+				.concurrencyLevel(Runtime.getRuntime().availableProcessors())
+				.maximumSize(maxQueries).build();
+	}
+
+	/**
+	 * Registers a new alias query
+	 * @param d1 The context in which the heap object has been tainted
+	 * @param src The statement that has tainted the heap object
+	 * @param abs The abstraction for the tainted heap object
+	 * @return True if this query must be sent to the backward solver, false
+	 * if the same query has already been issued before
+	 */
+	public boolean addQuery(Abstraction d1, Stmt src, Abstraction abs) {
+		queryCount.incrementAndGet();
+		if (queries.asMap().putIfAbsent(new AliasQuery(d1, src, abs), Boolean.TRUE) == null)
+			return true;
+		hitCount.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Gets the total number of queries, including the repeated ones
+	 * @return The total number of queries
+	 */
+	public long getQueryCount() {
+		return queryCount.get();
+	}
+
+	/**
+	 * Gets the number of queries that were dropped because the same query
+	 * had already been issued before
+	 * @return The number of repeated queries
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Gets the share of queries that were dropped because the same query had
+	 * already been issued before
+	 * @return The hit rate between 0 and 1
+	 */
+	public double getHitRate() {
+		long total = queryCount.get();
+		return total == 0 ? 0 : (double) hitCount.get() / total;
+	}
+
+	/**
+	 * Removes all queries from this table
+	 */
+	public void clear() {
+		queries.invalidateAll();
+	}
+
+}
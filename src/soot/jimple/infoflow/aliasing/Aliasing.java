@@ -13,6 +13,7 @@ import soot.Value;
 import soot.jimple.Constant;
 import soot.jimple.Stmt;
 import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
 import soot.jimple.infoflow.data.AccessPath.BasePair;
 import soot.jimple.infoflow.solver.IInfoflowCFG;
 import soot.jimple.toolkits.pointer.LocalMustAliasAnalysis;
@@ -31,6 +32,7 @@ public class Aliasing {
 	
 	private final IAliasingStrategy aliasingStrategy;
 	private final IInfoflowCFG cfg;
+	private final MustAliasTables mustAliasTables;
 	
 	protected final LoadingCache<SootMethod,LocalMustAliasAnalysis> strongAliasAnalysis =
 			IDESolver.DEFAULT_CACHE_BUILDER.build( new CacheLoader<SootMethod,LocalMustAliasAnalysis>() {
@@ -44,6 +46,7 @@ public class Aliasing {
 	public Aliasing(IAliasingStrategy aliasingStrategy, IInfoflowCFG cfg) {
 		this.aliasingStrategy = aliasingStrategy;
 		this.cfg = cfg;
+		this.mustAliasTables = new MustAliasTables(cfg);
 	}
 	
 	/**
@@ -125,7 +128,7 @@ public class Aliasing {
 							System.arraycopy(taintedAP.getFieldTypes(), fieldIdx, cutFieldTypes,
 									fieldIdx + base.getTypes().length, taintedAP.getFieldCount() - fieldIdx);
 
-							return new AccessPath(taintedAP.getPlainValue(),
+							return AccessPathFactory.v().createAccessPath(taintedAP.getPlainValue(),
 									cutFields, taintedAP.getBaseType(), cutFieldTypes,
 									taintedAP.getTaintSubFields(), false, false);
 						}
@@ -164,7 +167,8 @@ public class Aliasing {
 		
 		// If we have an interactive aliasing algorithm, we check that as well
 		if (aliasingStrategy.isInteractive())
-			return aliasingStrategy.mayAlias(new AccessPath(val1, false), new AccessPath(val2, false));
+			return aliasingStrategy.mayAlias(AccessPathFactory.v().createAccessPath(val1, false),
+					AccessPathFactory.v().createAccessPath(val2, false));
 		
 		return false;		
 	}
@@ -195,8 +199,22 @@ public class Aliasing {
 		if (!(val1.getType() instanceof RefLikeType) || !(val2.getType() instanceof RefLikeType))
 			return false;
 
-		LocalMustAliasAnalysis lmaa = strongAliasAnalysis.getUnchecked(cfg.getMethodOf(position));
+		// Methods that are too large for a table are analyzed directly
+		SootMethod method = cfg.getMethodOf(position);
+		if (mustAliasTables.hasTable(method))
+			return mustAliasTables.mustAlias(val1, val2, method, position);
+
+		LocalMustAliasAnalysis lmaa = strongAliasAnalysis.getUnchecked(method);
 		return lmaa.mustAlias(val1, position, val2, position);
 	}
+	
+	/**
+	 * Gets the precomputed must-alias tables used by
+	 * {@link #mustAlias(Local, Local, Stmt)}
+	 * @return The precomputed must-alias tables
+	 */
+	public MustAliasTables getMustAliasTables() {
+		return this.mustAliasTables;
+	}
 
 }
@@ -20,6 +20,7 @@ import soot.jimple.infoflow.solver.IInfoflowSolver;
 public class FlowSensitiveAliasStrategy extends AbstractBulkAliasStrategy {
 	
 	private final IInfoflowSolver bSolver;
+	private final AliasQueryTable queryTable = new AliasQueryTable();
 	
 	public FlowSensitiveAliasStrategy(IInfoflowCFG cfg, IInfoflowSolver backwardsSolver) {
 		super(cfg);
@@ -33,6 +34,11 @@ public class FlowSensitiveAliasStrategy extends AbstractBulkAliasStrategy {
 			SootMethod method, Abstraction newAbs) {
 		//TODO: only start backwards search for RefLikeTypes
 		
+		// If we have already asked for the aliases of the same object in the
+		// same context, the backward solver will deliver the answers anyway
+		if (!queryTable.addQuery(d1, src, newAbs))
+			return;
+		
 		// Start the backwards solver
 		Abstraction bwAbs = newAbs.deriveInactiveAbstraction(src);
 		for (Unit predUnit : interproceduralCFG().getPredsOf(src))
@@ -46,6 +52,14 @@ public class FlowSensitiveAliasStrategy extends AbstractBulkAliasStrategy {
 		bSolver.injectContext(fSolver, callee, d3, callSite, source, d1);
 	}
 
+	/**
+	 * Gets the table of alias queries sent to the backward solver
+	 * @return The table of alias queries sent to the backward solver
+	 */
+	public AliasQueryTable getQueryTable() {
+		return this.queryTable;
+	}
+	
 	@Override
 	public boolean isFlowSensitive() {
 		return true;
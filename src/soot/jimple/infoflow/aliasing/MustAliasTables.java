@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.aliasing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.Body;
+import soot.Local;
+import soot.RefLikeType;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.solver.IInfoflowCFG;
+import soot.jimple.infoflow.util.PartitionedProcessor;
+import soot.jimple.infoflow.util.PartitionedProcessor.IElementProcessor;
+import soot.jimple.toolkits.pointer.StrongLocalMustAliasAnalysis;
+import soot.toolkits.graph.UnitGraph;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Compiled results of the {@link StrongLocalMustAliasAnalysis}. For every
+ * method, the value number of every local of a reference type before every
+ * statement is stored in an int array. Two locals must alias at a statement
+ * if they have the same known value number there. Statements with identical
+ * value numbers for all locals share the same array, which keeps the tables
+ * small for long stretches of code that do not assign references.
+ *
+ * The tables can be computed for all methods in parallel before the taint
+ * analysis starts. Lookups afterwards do not allocate any memory and do not
+ * need any locks. The tables are kept in a cache that is bounded by the
+ * number of cells. Evicted tables are rebuilt on the next lookup. A table is
+ * also rebuilt if the active body of its method has been replaced or has
+ * gained or lost statements. Callers that change statements in place must
+ * call {@link #invalidate(SootMethod)}.
+ */
+public class MustAliasTables {
+
+	/**
+	 * The value number for locals that do not have a known value
+	 */
+	private static final int UNKNOWN = -1;
+
+	/**
+	 * Methods for which the table would have more cells than this are not
+	 * compiled, the analysis is used directly instead
+	 */
+	private static final long MAX_TABLE_CELLS = 1 << 20;
+
+	/**
+	 * The maximum number of cells in all cached tables together. Every
+	 * segment of the cache can still hold the largest table.
+	 */
+	private static final long DEFAULT_MAX_CACHED_CELLS = 1 << 26;
+
+	private static final int CONCURRENCY_LEVEL = Runtime.getRuntime().availableProcessors();
+
+	private static final int PARTITION_SIZE = 64;
+
+	/**
+	 * The must-alias table of a single method
+	 */
+	private static class MethodTable {
+
+		private final Body body;
+		private final int numUnits;
+		private final Map<Local, Integer> locals;
+		private final Map<Unit, Integer> units;
+		private final int[][] valueNumbers;
+		private final int weight;
+
+		public MethodTable(Body body, Map<Local, Integer> locals, Map<Unit, Integer> units,
+				int[][] valueNumbers, int weight) {
+			this.body = body;
+			this.numUnits = body == null ? 0 : body.getUnits().size();
+			this.locals = locals;
+			this.units = units;
+			this.valueNumbers = valueNumbers;
+			this.weight = weight;
+		}
+
+		/**
+		 * Checks whether this table still matches the given method's body
+		 * @param method The method to check
+		 * @return True if the method still has the body from which this
+		 * table was built, and the number of statements has not changed
+		 */
+		public boolean isValidFor(SootMethod method) {
+			if (!method.hasActiveBody())
+				return body == null;
+			Body activeBody = method.getActiveBody();
+			return activeBody == body && activeBody.getUnits().size() == numUnits;
+		}
+
+		public boolean mustAlias(Local val1, Local val2, Stmt position) {
+			if (valueNumbers == null)
+				return false;
+
+			Integer unitIdx = units.get(position);
+			Integer idx1 = locals.get(val1);
+			Integer idx2 = locals.get(val2);
+			if (unitIdx == null || idx1 == null || idx2 == null)
+				return false;
+
+			int[] numbers = valueNumbers[unitIdx];
+			int vn = numbers[idx1];
+			return vn != UNKNOWN && vn == numbers[idx2];
+		}
+
+	}
+
+	/**
+	 * Must-alias analysis that gives access to the value numbers it has
+	 * computed
+	 */
+	private static class ValueNumberAnalysis extends StrongLocalMustAliasAnalysis {
+
+		public ValueNumberAnalysis(UnitGraph g) {
+			super(g);
+		}
+
+		/**
+		 * Gets the value number of the given local before the given statement
+		 * @param l The local
+		 * @param stmt The statement
+		 * @return The value number of the given local, or {@link #UNKNOWN}
+		 * if the value is unknown
+		 */
+		public int getValueNumber(Local l, Stmt stmt) {
+			// The strong analysis invalidates value numbers that are
+			// reassigned inside loops. Such locals do not even alias with
+			// themselves.
+			Object vn = getFlowBefore(stmt).get(l);
+			if (!(vn instanceof Integer) || invalidInstanceKeys.contains(vn))
+				return UNKNOWN;
+			return (Integer) vn;
+		}
+
+	}
+
+	private final IInfoflowCFG cfg;
+	private final Cache<SootMethod, MethodTable> tables;
+
+	public MustAliasTables(IInfoflowCFG cfg) {
+		this(cfg, DEFAULT_MAX_CACHED_CELLS);
+	}
+
+	/**
+	 * Creates a new instance of the {@link MustAliasTables} class
+	 * @param cfg The interprocedural control flow graph
+	 * @param maxCachedCells The maximum number of cells in all tables that
+	 * are kept in memory together
+	 */
+	public MustAliasTables(IInfoflowCFG cfg, long maxCachedCells) {
+		this.cfg = cfg;
+		this.tables = CacheBuilder.newBuilder().concurrencyLevel(CONCURRENCY_LEVEL)
+				.maximumWeight(maxCachedCells)
+				.weigher(new Weigher<SootMethod, MethodTable>() {
+					@Override
+					public int weigh(SootMethod method, MethodTable table) {
+						return table.weight;
+					}
+				}).build();
+	}
+
+	/**
+	 * Computes the tables for the given methods in parallel
+	 * @param methods The methods for which to compute the tables
+	 * @param numThreads The number of threads to use
+	 */
+	public void precompute(Collection<SootMethod> methods, int numThreads) {
+		List<SootMethod> methodList = new ArrayList<SootMethod>(methods.size());
+		for (SootMethod sm : methods)
+			if (sm.hasActiveBody())
+				methodList.add(sm);
+
+		PartitionedProcessor.process(methodList, new IElementProcessor<SootMethod>() {
+
+			@Override
+			public void process(SootMethod sm, int index) {
+				getTable(sm);
+			}
+
+		}, PARTITION_SIZE, numThreads, "computing must-alias tables");
+	}
+
+	/**
+	 * Checks whether the two given locals must point to the same object at
+	 * the given statement
+	 * @param val1 The first local
+	 * @param val2 The second local
+	 * @param method The method containing the statement
+	 * @param position The statement at which to check for aliasing
+	 * @return True if the two locals must alias, false if they may not alias
+	 * or the method is too large to have a table. In the latter case, callers
+	 * must fall back to running the analysis themselves, see
+	 * {@link #hasTable(SootMethod)}.
+	 */
+	public boolean mustAlias(Local val1, Local val2, SootMethod method, Stmt position) {
+		return getTable(method).mustAlias(val1, val2, position);
+	}
+
+	/**
+	 * Checks whether the given method has a must-alias table. Methods that are
+	 * too large are not compiled.
+	 * @param method The method to check
+	 * @return True if the given method has a must-alias table, otherwise
+	 * false
+	 */
+	public boolean hasTable(SootMethod method) {
+		return getTable(method).valueNumbers != null;
+	}
+
+	private MethodTable getTable(SootMethod method) {
+		MethodTable table = tables.getIfPresent(method);
+		if (table == null || !table.isValidFor(method)) {
+			// Two threads may compute the same table, but this is cheaper than
+			// blocking all other threads
+			table = buildTable(method);
+			tables.put(method, table);
+		}
+		return table;
+	}
+
+	private MethodTable buildTable(SootMethod method) {
+		if (!method.hasActiveBody())
+			return new MethodTable(null, null, null, null, 1);
+		Body body = method.getActiveBody();
+
+		Map<Local, Integer> locals = new HashMap<Local, Integer>();
+		for (Local l : body.getLocals())
+			if (l.getType() instanceof RefLikeType)
+				locals.put(l, locals.size());
+		int numUnits = body.getUnits().size();
+
+		// Methods that are too large get an empty table, so that we do not
+		// try again for the same body
+		if ((long) locals.size() * numUnits > MAX_TABLE_CELLS)
+			return new MethodTable(body, null, null, null, 1);
+
+		ValueNumberAnalysis lmaa = new ValueNumberAnalysis
+				((UnitGraph) cfg.getOrCreateUnitGraph(method));
+
+		Map<Unit, Integer> units = new HashMap<Unit, Integer>(numUnits * 2);
+		int[][] valueNumbers = new int[numUnits][];
+		int[] lastNumbers = null;
+		int weight = numUnits + 1;
+		for (Unit u : body.getUnits()) {
+			Stmt stmt = (Stmt) u;
+			int[] numbers = new int[locals.size()];
+			for (Map.Entry<Local, Integer> entry : locals.entrySet())
+				numbers[entry.getValue()] = lmaa.getValueNumber(entry.getKey(), stmt);
+
+			// Share the array with the previous statement if nothing has
+			// changed
+			if (lastNumbers != null && Arrays.equals(lastNumbers, numbers))
+				numbers = lastNumbers;
+			else
+				weight += numbers.length;
+			int unitIdx = units.size();
+			units.put(u, unitIdx);
+			valueNumbers[unitIdx] = numbers;
+			lastNumbers = numbers;
+		}
+		return new MethodTable(body, locals, units, valueNumbers, weight);
+	}
+
+	/**
+	 * Removes the table of the given method. Call this method after the
+	 * statements of the method's body have been changed in place.
+	 * @param method The method whose table shall be removed
+	 */
+	public void invalidate(SootMethod method) {
+		tables.invalidate(method);
+	}
+
+	/**
+	 * Removes all tables
+	 */
+	public void clear() {
+		tables.invalidateAll();
+	}
+
+}
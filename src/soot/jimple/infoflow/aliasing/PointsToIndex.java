@@ -0,0 +1,497 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.aliasing;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import soot.Local;
+import soot.PointsToAnalysis;
+import soot.PointsToSet;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.ArrayRef;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.FieldRef;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.StaticFieldRef;
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Index over the points-to sets used by the {@link PtsBasedAliasStrategy}.
+ * Every points-to set is interned, so that equal sets share the same ID and
+ * the result of intersecting two sets only needs to be computed once. For
+ * every method, the interned points-to sets of all values relevant for
+ * aliasing are precomputed once, so that the alias strategy only needs
+ * index lookups when scanning a method.
+ *
+ * All lookups are lock-free. The points-to analysis itself is only queried
+ * on cache misses, and only while holding a lock on it, since Spark is not
+ * thread-safe. The memo of intersection results is bounded, since the number
+ * of pairs of points-to sets grows quadratically. Evicted results are simply
+ * computed again.
+ */
+public class PointsToIndex {
+
+	/**
+	 * The default maximum number of intersection results to keep
+	 */
+	private static final int DEFAULT_MAX_INTERSECTIONS = 1 << 20;
+
+	/**
+	 * An interned points-to set
+	 */
+	public static class PointsToSetId {
+
+		private final int id;
+		private final int[] nodes;
+		private final PointsToSet pts;
+
+		private PointsToSetId(int id, int[] nodes, PointsToSet pts) {
+			this.id = id;
+			this.nodes = nodes;
+			this.pts = pts;
+		}
+
+		public int getId() {
+			return this.id;
+		}
+
+		/**
+		 * Gets whether this points-to set is empty
+		 * @return True if this points-to set is empty, otherwise false
+		 */
+		public boolean isEmpty() {
+			return id == 0;
+		}
+
+	}
+
+	/**
+	 * Key for interning points-to sets by the allocation nodes they contain
+	 */
+	private static class NodeArrayKey {
+
+		private final int[] nodes;
+		private final int hashCode;
+
+		public NodeArrayKey(int[] nodes) {
+			this.nodes = nodes;
+			this.hashCode = Arrays.hashCode(nodes);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			NodeArrayKey other = (NodeArrayKey) obj;
+			return this.hashCode == other.hashCode && Arrays.equals(nodes, other.nodes);
+		}
+
+	}
+
+	/**
+	 * Collects the numbers of all allocation nodes in a Spark points-to set
+	 */
+	private static class NodeCollector extends P2SetVisitor {
+
+		private int[] nodes = new int[16];
+		private int size = 0;
+
+		@Override
+		public void visit(Node n) {
+			if (size == nodes.length)
+				nodes = Arrays.copyOf(nodes, size * 2);
+			nodes[size++] = n.getNumber();
+		}
+
+		public int[] getNodes() {
+			int[] res = Arrays.copyOf(nodes, size);
+			Arrays.sort(res);
+			return res;
+		}
+
+	}
+
+	/**
+	 * The interned points-to sets of all values relevant for aliasing in a
+	 * single statement
+	 */
+	public static class StmtEntry {
+
+		private final Stmt stmt;
+		private final PointsToSetId base;
+		private final PointsToSetId[] args;
+		private final PointsToSetId left;
+		private final PointsToSetId right;
+
+		private StmtEntry(Stmt stmt, PointsToSetId base, PointsToSetId[] args,
+				PointsToSetId left, PointsToSetId right) {
+			this.stmt = stmt;
+			this.base = base;
+			this.args = args;
+			this.left = left;
+			this.right = right;
+		}
+
+		public Stmt getStmt() {
+			return this.stmt;
+		}
+
+		/**
+		 * Gets the points-to set of the base object of the call in this
+		 * statement
+		 * @return The points-to set of the base object, or null if this
+		 * statement contains no instance call
+		 */
+		public PointsToSetId getBase() {
+			return this.base;
+		}
+
+		/**
+		 * Gets the points-to sets of the local arguments of the call in this
+		 * statement
+		 * @return The points-to sets of the local arguments, or null if this
+		 * statement contains no call
+		 */
+		public PointsToSetId[] getArgs() {
+			return this.args;
+		}
+
+		/**
+		 * Gets the points-to set of the left side of this assignment
+		 * @return The points-to set of the left side, or null if this is no
+		 * assignment or the left side is neither a local, nor a field
+		 * reference, nor an array reference
+		 */
+		public PointsToSetId getLeft() {
+			return this.left;
+		}
+
+		/**
+		 * Gets the points-to set of the right side of this assignment
+		 * @return The points-to set of the right side, or null if this is no
+		 * assignment or the right side is neither a local, nor a field
+		 * reference, nor an array reference
+		 */
+		public PointsToSetId getRight() {
+			return this.right;
+		}
+
+	}
+
+	/**
+	 * The precomputed points-to sets of all statements in a method
+	 */
+	public static class MethodIndex {
+
+		private final StmtEntry[] entries;
+		private final Map<Unit, Integer> positions;
+
+		private MethodIndex(StmtEntry[] entries) {
+			this.entries = entries;
+			this.positions = new HashMap<Unit, Integer>(entries.length * 2);
+			for (int i = 0; i < entries.length; i++)
+				positions.put(entries[i].stmt, i);
+		}
+
+		public int size() {
+			return this.entries.length;
+		}
+
+		public StmtEntry getEntry(int i) {
+			return this.entries[i];
+		}
+
+		/**
+		 * Gets the position of the given unit in the method
+		 * @param u The unit to look for
+		 * @return The position of the given unit, or -1 if the unit is not
+		 * part of the method
+		 */
+		public int getPosition(Unit u) {
+			Integer pos = positions.get(u);
+			return pos == null ? -1 : pos;
+		}
+
+	}
+
+	private final PointsToAnalysis pta;
+	private final PointsToSetId emptySet = new PointsToSetId(0, new int[0], null);
+	private final AtomicInteger nextId = new AtomicInteger(1);
+
+	private final ConcurrentMap<NodeArrayKey, PointsToSetId> internedSets =
+			new ConcurrentHashMap<NodeArrayKey, PointsToSetId>();
+	private final ConcurrentMap<PointsToSet, PointsToSetId> internedForeignSets =
+			new ConcurrentHashMap<PointsToSet, PointsToSetId>();
+	private final Cache<Long, Boolean> intersections;
+	private final ConcurrentMap<Local, PointsToSetId> localSets =
+			new ConcurrentHashMap<Local, PointsToSetId>();
+	private final ConcurrentMap<AccessPath, PointsToSetId> accessPathSets =
+			new ConcurrentHashMap<AccessPath, PointsToSetId>();
+	private final ConcurrentMap<SootMethod, MethodIndex> methodIndices =
+			new ConcurrentHashMap<SootMethod, MethodIndex>();
+
+	/**
+	 * Creates a new index
+	 * @param pta The points-to analysis from which to take the points-to
+	 * sets
+	 */
+	public PointsToIndex(PointsToAnalysis pta) {
+		this(pta, DEFAULT_MAX_INTERSECTIONS);
+	}
+
+	/**
+	 * Creates a new index
+	 * @param pta The points-to analysis from which to take the points-to
+	 * sets
+	 * @param maxIntersections The maximum number of intersection results to
+	 * keep in memory
+	 */
+	public PointsToIndex(PointsToAnalysis pta, int maxIntersections) {
+		this.pta = pta;
+		this.intersections = CacheBuilder.newBuilder()
+				.concurrencyLevel(Runtime.getRuntime().availableProcessors())
+				.maximumSize(maxIntersections).build();
+	}
+
+	/**
+	 * Gets the index for the given method, building it on first use
+	 * @param method The method for which to get the index
+	 * @return The index for the given method
+	 */
+	public MethodIndex getMethodIndex(SootMethod method) {
+		MethodIndex index = methodIndices.get(method);
+		if (index == null) {
+			// Two threads may build the same index, but this is cheaper than
+			// blocking all other threads
+			MethodIndex newIndex = buildMethodIndex(method);
+			index = methodIndices.putIfAbsent(method, newIndex);
+			if (index == null)
+				index = newIndex;
+		}
+		return index;
+	}
+
+	private MethodIndex buildMethodIndex(SootMethod method) {
+		StmtEntry[] entries = new StmtEntry[method.getActiveBody().getUnits().size()];
+		int i = 0;
+		for (Unit u : method.getActiveBody().getUnits()) {
+			Stmt stmt = (Stmt) u;
+			PointsToSetId base = null;
+			PointsToSetId[] args = null;
+			PointsToSetId left = null;
+			PointsToSetId right = null;
+
+			if (stmt.containsInvokeExpr()) {
+				InvokeExpr invExpr = stmt.getInvokeExpr();
+				if (invExpr instanceof InstanceInvokeExpr)
+					base = getPointsToSet(((InstanceInvokeExpr) invExpr).getBase());
+				args = new PointsToSetId[invExpr.getArgCount()];
+				for (int j = 0; j < args.length; j++) {
+					Value arg = invExpr.getArg(j);
+					args[j] = arg instanceof Local ? getPointsToSet(arg) : emptySet;
+				}
+			}
+			else if (stmt instanceof DefinitionStmt) {
+				DefinitionStmt def = (DefinitionStmt) stmt;
+				if (isAliasingValue(def.getLeftOp()))
+					left = getPointsToSet(def.getLeftOp());
+				if (isAliasingValue(def.getRightOp()))
+					right = getPointsToSet(def.getRightOp());
+			}
+			entries[i++] = new StmtEntry(stmt, base, args, left, right);
+		}
+		return new MethodIndex(entries);
+	}
+
+	private boolean isAliasingValue(Value val) {
+		return val instanceof FieldRef || val instanceof Local || val instanceof ArrayRef;
+	}
+
+	/**
+	 * Checks whether the two given points-to sets have a non-empty
+	 * intersection
+	 * @param pts1 The first points-to set
+	 * @param pts2 The second points-to set
+	 * @return True if the two points-to sets have at least one allocation
+	 * site in common, otherwise false
+	 */
+	public boolean hasNonEmptyIntersection(PointsToSetId pts1, PointsToSetId pts2) {
+		if (pts1.isEmpty() || pts2.isEmpty())
+			return false;
+		if (pts1 == pts2)
+			return true;
+
+		long key = pts1.id < pts2.id ? ((long) pts1.id << 32) | pts2.id
+				: ((long) pts2.id << 32) | pts1.id;
+		Boolean res = intersections.getIfPresent(key);
+		if (res == null) {
+			res = computeIntersection(pts1, pts2);
+			intersections.put(key, res);
+		}
+		return res;
+	}
+
+	/**
+	 * Gets the number of intersection results currently kept in memory
+	 * @return The number of cached intersection results
+	 */
+	public long getCachedIntersectionCount() {
+		return intersections.size();
+	}
+
+	private boolean computeIntersection(PointsToSetId pts1, PointsToSetId pts2) {
+		if (pts1.nodes != null && pts2.nodes != null) {
+			int i = 0, j = 0;
+			while (i < pts1.nodes.length && j < pts2.nodes.length) {
+				if (pts1.nodes[i] == pts2.nodes[j])
+					return true;
+				if (pts1.nodes[i] < pts2.nodes[j])
+					i++;
+				else
+					j++;
+			}
+			return false;
+		}
+		if (pts1.pts != null && pts2.pts != null)
+			return pts1.pts.hasNonEmptyIntersection(pts2.pts);
+
+		// We cannot compare sets from different analyses, so we have to be
+		// conservative
+		return true;
+	}
+
+	/**
+	 * Gets the interned points-to set for the given value
+	 * @param targetValue The value for which to get the points-to set
+	 * @return The interned points-to set for the given value
+	 */
+	public PointsToSetId getPointsToSet(Value targetValue) {
+		if (targetValue instanceof Local) {
+			Local local = (Local) targetValue;
+			PointsToSetId pts = localSets.get(local);
+			if (pts == null) {
+				pts = intern(queryPointsToSet(targetValue));
+				localSets.put(local, pts);
+			}
+			return pts;
+		}
+		return intern(queryPointsToSet(targetValue));
+	}
+
+	/**
+	 * Gets the interned points-to set for the given access path
+	 * @param accessPath The access path for which to get the points-to set
+	 * @return The interned points-to set for the given access path
+	 */
+	public PointsToSetId getPointsToSet(AccessPath accessPath) {
+		PointsToSetId pts = accessPathSets.get(accessPath);
+		if (pts == null) {
+			synchronized (pta) {
+				if (accessPath.isLocal())
+					pts = intern(pta.reachingObjects(accessPath.getPlainValue()));
+				else if (accessPath.isInstanceFieldRef())
+					pts = intern(pta.reachingObjects(accessPath.getPlainValue(),
+							accessPath.getFirstField()));
+				else if (accessPath.isStaticFieldRef())
+					pts = intern(pta.reachingObjects(accessPath.getFirstField()));
+				else
+					throw new RuntimeException("Unexepected access path type");
+			}
+			accessPathSets.put(accessPath, pts);
+		}
+		return pts;
+	}
+
+	private PointsToSet queryPointsToSet(Value targetValue) {
+		synchronized (pta) {
+			if (targetValue instanceof Local)
+				return pta.reachingObjects((Local) targetValue);
+			else if (targetValue instanceof InstanceFieldRef) {
+				InstanceFieldRef iref = (InstanceFieldRef) targetValue;
+				return pta.reachingObjects((Local) iref.getBase(), iref.getField());
+			}
+			else if (targetValue instanceof StaticFieldRef) {
+				StaticFieldRef sref = (StaticFieldRef) targetValue;
+				return pta.reachingObjects(sref.getField());
+			}
+			else if (targetValue instanceof ArrayRef) {
+				ArrayRef aref = (ArrayRef) targetValue;
+				return pta.reachingObjects((Local) aref.getBase());
+			}
+			else
+				throw new RuntimeException("Unexpected value type for aliasing: " + targetValue.getClass());
+		}
+	}
+
+	/**
+	 * Gets the interned copy of the given points-to set
+	 * @param pts The points-to set to intern
+	 * @return The interned copy of the given points-to set
+	 */
+	private PointsToSetId intern(PointsToSet pts) {
+		if (pts == null || pts.isEmpty())
+			return emptySet;
+
+		// Spark sets are interned by their contents. For other analyses, we
+		// can only rely on the identity of the set objects.
+		if (pts instanceof PointsToSetInternal) {
+			NodeCollector collector = new NodeCollector();
+			((PointsToSetInternal) pts).forall(collector);
+			int[] nodes = collector.getNodes();
+			if (nodes.length == 0)
+				return emptySet;
+
+			NodeArrayKey key = new NodeArrayKey(nodes);
+			PointsToSetId id = internedSets.get(key);
+			if (id == null) {
+				PointsToSetId newId = new PointsToSetId(nextId.getAndIncrement(), nodes, null);
+				id = internedSets.putIfAbsent(key, newId);
+				if (id == null)
+					id = newId;
+			}
+			return id;
+		}
+		else {
+			PointsToSetId id = internedForeignSets.get(pts);
+			if (id == null) {
+				PointsToSetId newId = new PointsToSetId(nextId.getAndIncrement(), null, pts);
+				id = internedForeignSets.putIfAbsent(pts, newId);
+				if (id == null)
+					id = newId;
+			}
+			return id;
+		}
+	}
+
+}
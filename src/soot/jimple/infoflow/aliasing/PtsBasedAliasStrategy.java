@@ -7,32 +7,25 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
-import soot.Local;
-import soot.PointsToAnalysis;
-import soot.PointsToSet;
 import soot.Scene;
 import soot.SootField;
 import soot.SootMethod;
 import soot.Type;
 import soot.Unit;
 import soot.Value;
-import soot.jimple.ArrayRef;
 import soot.jimple.DefinitionStmt;
-import soot.jimple.FieldRef;
-import soot.jimple.InstanceFieldRef;
 import soot.jimple.InstanceInvokeExpr;
-import soot.jimple.InvokeExpr;
-import soot.jimple.StaticFieldRef;
 import soot.jimple.Stmt;
+import soot.jimple.infoflow.aliasing.PointsToIndex.MethodIndex;
+import soot.jimple.infoflow.aliasing.PointsToIndex.PointsToSetId;
+import soot.jimple.infoflow.aliasing.PointsToIndex.StmtEntry;
+import soot.jimple.infoflow.collect.ConcurrentHashSet;
 import soot.jimple.infoflow.data.Abstraction;
 import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
 import soot.jimple.infoflow.solver.IInfoflowCFG;
 import soot.jimple.infoflow.solver.IInfoflowSolver;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
-
 /**
  * A simple points-to-based aliasing strategy for FlowDroid
  * 
@@ -40,7 +33,52 @@ import com.google.common.collect.Table;
  */
 public class PtsBasedAliasStrategy extends AbstractBulkAliasStrategy {
 	
-	private final Table<SootMethod, Abstraction, Set<Abstraction>> aliases = HashBasedTable.create();
+	private final Set<AliasContext> aliases = new ConcurrentHashSet<AliasContext>();
+	private volatile PointsToIndex ptsIndex = null;
+	
+	/**
+	 * A tainted heap object in a method for which the aliases have been
+	 * computed. Contexts are compared by identity.
+	 */
+	private static class AliasContext {
+		
+		private final SootMethod method;
+		private final Abstraction abs;
+		private final Abstraction d1;
+		private final int hashCode;
+		
+		public AliasContext(SootMethod method, Abstraction abs, Abstraction d1) {
+			this.method = method;
+			this.abs = abs;
+			this.d1 = d1;
+			
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + method.hashCode();
+			result = prime * result + abs.hashCode();
+			result = prime * result + System.identityHashCode(d1);
+			this.hashCode = result;
+		}
+		
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			AliasContext other = (AliasContext) obj;
+			return this.hashCode == other.hashCode
+					&& this.method == other.method
+					&& this.d1 == other.d1
+					&& this.abs.equals(other.abs);
+		}
+		
+	}
 
 	public PtsBasedAliasStrategy(IInfoflowCFG cfg) {
 		super(cfg);
@@ -56,19 +94,8 @@ public class PtsBasedAliasStrategy extends AbstractBulkAliasStrategy {
 	public void computeAliasTaintsInternal(Abstraction d1, SootMethod method,
 			Abstraction newAbs, List<SootField> appendFields, List<Type> appendTypes, boolean taintSubFields, Stmt actStmt) {
 		// Record the incoming abstraction
-		synchronized(aliases) {
-			if (aliases.contains(method, newAbs)) {
-				Set<Abstraction> d1s = aliases.get(method, newAbs);
-				if (d1s.contains(d1))
-					return;
-				d1s.add(d1);
-			}
-			else {
-				Set<Abstraction> d1s = Sets.newIdentityHashSet();
-				d1s.add(d1);
-				aliases.put(method, newAbs, d1s);
-			}
-		}
+		if (!aliases.add(new AliasContext(method, newAbs, d1)))
+			return;
 		
 		// Also check for aliases for parts of the access path
 		final AccessPath ap = newAbs.getAccessPath();
@@ -87,57 +114,56 @@ public class PtsBasedAliasStrategy extends AbstractBulkAliasStrategy {
 		if (ap.getFieldCount() > 1)
 			return;
 		
-		PointsToSet ptsTaint = getPointsToSet(newAbs.getAccessPath());
+		final PointsToIndex ptsIndex = getPointsToIndex();
+		final MethodIndex methodIndex = ptsIndex.getMethodIndex(method);
+		final PointsToSetId ptsTaint = ptsIndex.getPointsToSet(newAbs.getAccessPath());
 		SootField[] appendFieldsA = appendFields.toArray(new SootField[appendFields.size()]);
 		Type[] appendTypesA = appendTypes.toArray(new Type[appendTypes.size()]);
 		
 		// We run once per method and we are flow-insensitive anyway, so we
 		// can just say that every use of a variable aliased with a tainted
 		// one automatically taints the corresponding def set.
-		boolean beforeActUnit = method.getActiveBody().getUnits().contains(actStmt);
-		for (Unit u : method.getActiveBody().getUnits()) {			
-			Stmt stmt = (Stmt) u;
-			if (stmt == actStmt)
-				beforeActUnit = false;
+		final int actPos = methodIndex.getPosition(actStmt);
+		PointsToSetId ptsBaseOrg = null;
+		for (int i = 0; i < methodIndex.size(); i++) {
+			final StmtEntry entry = methodIndex.getEntry(i);
+			final Stmt stmt = entry.getStmt();
+			final boolean beforeActUnit = i < actPos;
 			
-			if (stmt.containsInvokeExpr()) {
+			if (entry.getArgs() != null) {
 				// If we have a call, we must check whether the base or one of
 				// the parameter aliases with the given taint
-				InvokeExpr invExpr = (InvokeExpr) stmt.getInvokeExpr();
 				boolean baseAliases = false;
-				if (invExpr instanceof InstanceInvokeExpr && !newAbs.getAccessPath().isStaticFieldRef()) {
-					InstanceInvokeExpr iinvExpr = (InstanceInvokeExpr) invExpr;
-					PointsToSet ptsBase = getPointsToSet((Local) iinvExpr.getBase());
-					PointsToSet ptsBaseOrg = getPointsToSet(newAbs.getAccessPath().getPlainValue());
-					baseAliases = ptsBase.hasNonEmptyIntersection(ptsBaseOrg);
+				if (entry.getBase() != null && !newAbs.getAccessPath().isStaticFieldRef()) {
+					if (ptsBaseOrg == null)
+						ptsBaseOrg = ptsIndex.getPointsToSet(newAbs.getAccessPath().getPlainValue());
+					baseAliases = ptsIndex.hasNonEmptyIntersection(entry.getBase(), ptsBaseOrg);
 				}
 				
 				boolean parameterAliases = false;
-				for (Value arg : invExpr.getArgs())
-					if (arg instanceof Local)
-						if (getPointsToSet(arg).hasNonEmptyIntersection(ptsTaint)) {
-							parameterAliases = true;
-							break;
-						}
+				for (PointsToSetId ptsArg : entry.getArgs())
+					if (ptsIndex.hasNonEmptyIntersection(ptsArg, ptsTaint)) {
+						parameterAliases = true;
+						break;
+					}
 					
 				if (baseAliases || parameterAliases) {
 					Abstraction absCallee = newAbs.deriveNewAbstraction(newAbs.getAccessPath().appendFields
 							(appendFieldsA, appendTypesA, taintSubFields), stmt);
 					if (beforeActUnit)
 						absCallee = absCallee.deriveInactiveAbstraction(actStmt);
-					getForwardSolver().processEdge(new PathEdge<Unit, Abstraction>(d1, u, absCallee));
+					getForwardSolver().processEdge(new PathEdge<Unit, Abstraction>(d1, stmt, absCallee));
 				}
 			}
-			else if (u instanceof DefinitionStmt) {
-				DefinitionStmt assign = (DefinitionStmt) u;
+			else if (stmt instanceof DefinitionStmt) {
+				DefinitionStmt assign = (DefinitionStmt) stmt;
 				
 				// If we have a = b and our taint is an alias to b, we must add
 				// a taint for a.
-				if (assign.getRightOp() instanceof FieldRef || assign.getRightOp() instanceof Local
-						|| assign.getRightOp() instanceof ArrayRef) {
-					if (isAliasedAtStmt(ptsTaint, assign.getRightOp())
+				if (entry.getRight() != null) {
+					if (ptsIndex.hasNonEmptyIntersection(ptsTaint, entry.getRight())
 							&& (appendFields != null && appendFields.size() > 0)) {
-						Abstraction aliasAbsLeft = newAbs.deriveNewAbstraction(new AccessPath
+						Abstraction aliasAbsLeft = newAbs.deriveNewAbstraction(AccessPathFactory.v().createAccessPath
 								(assign.getLeftOp(), appendFieldsA, taintSubFields), stmt);
 						if (beforeActUnit)
 							aliasAbsLeft = aliasAbsLeft.deriveInactiveAbstraction(actStmt);
@@ -149,68 +175,37 @@ public class PtsBasedAliasStrategy extends AbstractBulkAliasStrategy {
 
 				// If we have a = b and our taint is an alias to a, we must add
 				// a taint for b.
-				if (assign.getLeftOp() instanceof FieldRef || assign.getLeftOp() instanceof Local
-						|| assign.getLeftOp() instanceof ArrayRef)
-					if (assign.getRightOp() instanceof FieldRef || assign.getRightOp() instanceof Local
-							|| assign.getRightOp() instanceof ArrayRef) {
-						if (isAliasedAtStmt(ptsTaint, assign.getLeftOp())) {
-							Abstraction aliasAbsRight = newAbs.deriveNewAbstraction(new AccessPath
-									(assign.getRightOp(), appendFieldsA, taintSubFields), stmt);
-							if (beforeActUnit)
-								aliasAbsRight = aliasAbsRight.deriveInactiveAbstraction(actStmt);
-							getForwardSolver().processEdge(new PathEdge<Unit, Abstraction>(d1, u, aliasAbsRight));
-						}
+				if (entry.getLeft() != null && entry.getRight() != null) {
+					if (ptsIndex.hasNonEmptyIntersection(ptsTaint, entry.getLeft())) {
+						Abstraction aliasAbsRight = newAbs.deriveNewAbstraction(AccessPathFactory.v().createAccessPath
+								(assign.getRightOp(), appendFieldsA, taintSubFields), stmt);
+						if (beforeActUnit)
+							aliasAbsRight = aliasAbsRight.deriveInactiveAbstraction(actStmt);
+						getForwardSolver().processEdge(new PathEdge<Unit, Abstraction>(d1, stmt, aliasAbsRight));
 					}
+				}
 			}
 		}
 	}
 	
-	private boolean isAliasedAtStmt(PointsToSet ptsTaint, Value val) {
-		PointsToSet ptsRight = getPointsToSet(val);
-		return ptsTaint.hasNonEmptyIntersection(ptsRight);
-	}
-	
 	/**
-	 * Gets the points-to-set for the given value
-	 * @param targetValue The value for which to get the points-to-set
-	 * @return The points-to-set for the given value
+	 * Gets the index over the points-to sets, creating it on first use. The
+	 * points-to analysis is only available once the callgraph has been
+	 * built, so we cannot create the index in the constructor.
+	 * @return The index over the points-to sets
 	 */
-	private PointsToSet getPointsToSet(Value targetValue) {
-		PointsToAnalysis pta = Scene.v().getPointsToAnalysis();
-		synchronized (pta) {			
-			if (targetValue instanceof Local)
-				return pta.reachingObjects((Local) targetValue);
-			else if (targetValue instanceof InstanceFieldRef) {
-				InstanceFieldRef iref = (InstanceFieldRef) targetValue;
-				return pta.reachingObjects((Local) iref.getBase(), iref.getField());
-			}
-			else if (targetValue instanceof StaticFieldRef) {
-				StaticFieldRef sref = (StaticFieldRef) targetValue;
-				return pta.reachingObjects(sref.getField());
-			}
-			else if (targetValue instanceof ArrayRef) {
-				ArrayRef aref = (ArrayRef) targetValue;
-				return pta.reachingObjects((Local) aref.getBase());
+	private PointsToIndex getPointsToIndex() {
+		PointsToIndex index = this.ptsIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = this.ptsIndex;
+				if (index == null) {
+					index = new PointsToIndex(Scene.v().getPointsToAnalysis());
+					this.ptsIndex = index;
+				}
 			}
-			else
-				throw new RuntimeException("Unexpected value type for aliasing: " + targetValue.getClass());
 		}
-	}
-
-	/**
-	 * Gets the points-to-set for the given access path
-	 * @param accessPath The access path for which to get the points-to-set
-	 * @return The points-to-set for the given access path
-	 */
-	private PointsToSet getPointsToSet(AccessPath accessPath) {
-		if (accessPath.isLocal())
-			return Scene.v().getPointsToAnalysis().reachingObjects(accessPath.getPlainValue());
-		else if (accessPath.isInstanceFieldRef())
-			return Scene.v().getPointsToAnalysis().reachingObjects(accessPath.getPlainValue(), accessPath.getFirstField());
-		else if (accessPath.isStaticFieldRef())
-			return Scene.v().getPointsToAnalysis().reachingObjects(accessPath.getFirstField());
-		else
-			throw new RuntimeException("Unexepected access path type");
+		return index;
 	}
 	
 	@Override
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.collect;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe map that assigns dense integer identifiers to objects. Two
+ * objects that are equal receive the same identifier. Identifiers start at
+ * zero, have no gaps and are never reused until the map is cleared.
+ *
+ * @param <K> The type of objects to which identifiers shall be assigned
+ */
+public class ConcurrentIdMap<K> {
+
+	private final ConcurrentMap<K, Integer> ids;
+	private int nextId = 0;
+
+	/**
+	 * Creates a new, empty ConcurrentIdMap
+	 */
+	public ConcurrentIdMap() {
+		this.ids = new ConcurrentHashMap<K, Integer>(10000, 0.75f,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Gets the identifier of the given object. If the object has not been seen
+	 * before, a new identifier is assigned to it. Only the assignment of new
+	 * identifiers is synchronized, lookups of existing ones are not.
+	 * @param key The object for which to get the identifier
+	 * @return The identifier of the given object
+	 */
+	public int getOrCreateId(K key) {
+		Integer id = ids.get(key);
+		if (id != null)
+			return id;
+
+		// Only take an identifier once we know that nobody else has
+		// registered the object in the meantime, so that no identifiers
+		// are wasted
+		synchronized (this) {
+			id = ids.get(key);
+			if (id == null) {
+				id = nextId++;
+				ids.put(key, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Gets the identifier of the given object without creating a new one
+	 * @param key The object for which to get the identifier
+	 * @return The identifier of the given object if one has been assigned,
+	 * otherwise -1
+	 */
+	public int getId(K key) {
+		Integer id = ids.get(key);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the number of objects for which identifiers have been assigned
+	 * @return The number of objects in this map
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Removes all identifiers from this map
+	 */
+	public synchronized void clear() {
+		ids.clear();
+		nextId = 0;
+	}
+
+}
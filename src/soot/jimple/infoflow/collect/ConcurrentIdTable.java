@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.collect;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe table that assigns dense integer identifiers to objects and
+ * can map the identifiers back to the objects. Two objects that are equal
+ * receive the same identifier. In contrast to {@link ConcurrentIdMap}, this
+ * table keeps a reverse index, so it should only be used if objects actually
+ * need to be looked up by their identifiers.
+ *
+ * @param <K> The type of objects to which identifiers shall be assigned
+ */
+public class ConcurrentIdTable<K> {
+
+	private static final int CHUNK_BITS = 12;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final ConcurrentMap<K, Integer> ids;
+	private final CopyOnWriteArrayList<AtomicReferenceArray<K>> chunks =
+			new CopyOnWriteArrayList<AtomicReferenceArray<K>>();
+	private int nextId = 0;
+
+	/**
+	 * Creates a new, empty ConcurrentIdTable
+	 */
+	public ConcurrentIdTable() {
+		this.ids = new ConcurrentHashMap<K, Integer>(10000, 0.75f,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Gets the identifier of the given object. If the object has not been seen
+	 * before, a new identifier is assigned to it. Only the assignment of new
+	 * identifiers is synchronized, lookups of existing ones are not.
+	 * @param key The object for which to get the identifier
+	 * @return The identifier of the given object
+	 */
+	public int getOrCreateId(K key) {
+		Integer id = ids.get(key);
+		if (id != null)
+			return id;
+
+		synchronized (chunks) {
+			id = ids.get(key);
+			if (id != null)
+				return id;
+
+			// Register the reverse mapping before publishing the identifier,
+			// so that everyone who sees the identifier can also resolve it
+			int newId = nextId++;
+			getOrMakeChunk(newId >>> CHUNK_BITS).set(newId & CHUNK_MASK, key);
+			ids.put(key, newId);
+			return newId;
+		}
+	}
+
+	/**
+	 * Gets the object with the given identifier
+	 * @param id The identifier of the object to get
+	 * @return The object with the given identifier, or null if no such
+	 * identifier has been assigned
+	 */
+	public K getObject(int id) {
+		int chunkIdx = id >>> CHUNK_BITS;
+		if (id < 0 || chunkIdx >= chunks.size())
+			return null;
+		return chunks.get(chunkIdx).get(id & CHUNK_MASK);
+	}
+
+	private AtomicReferenceArray<K> getOrMakeChunk(int chunkIdx) {
+		if (chunkIdx < chunks.size())
+			return chunks.get(chunkIdx);
+		synchronized (chunks) {
+			while (chunkIdx >= chunks.size())
+				chunks.add(new AtomicReferenceArray<K>(CHUNK_SIZE));
+		}
+		return chunks.get(chunkIdx);
+	}
+
+	/**
+	 * Gets the number of objects for which identifiers have been assigned
+	 * @return The number of objects in this table
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Removes all identifiers from this table
+	 */
+	public void clear() {
+		synchronized (chunks) {
+			ids.clear();
+			chunks.clear();
+			nextId = 0;
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.collect;
+
+/**
+ * Thread-safe map from triples of non-negative integers to values. The map
+ * is implemented as a set of independently locked open-addressing tables
+ * over primitive arrays, so that neither lookups nor insertions of existing
+ * keys allocate any objects. The first two components of a key are packed
+ * into a single long value.
+ *
+ * @param <V> The type of the values in this map
+ */
+public class ConcurrentIntTripleMap<V> {
+
+	private static final int DEFAULT_SEGMENT_CAPACITY = 256;
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private final Segment<V>[] segments;
+	private final int segmentMask;
+
+	/**
+	 * A single open-addressing table. All accesses are guarded by the lock
+	 * on the segment object.
+	 */
+	private static class Segment<V> {
+
+		private long[] keysAB;
+		private int[] keysC;
+		private Object[] values;
+		private int size = 0;
+		private int threshold;
+
+		public Segment(int capacity) {
+			allocate(capacity);
+		}
+
+		private void allocate(int capacity) {
+			this.keysAB = new long[capacity];
+			this.keysC = new int[capacity];
+			this.values = new Object[capacity];
+			this.threshold = (int) (capacity * LOAD_FACTOR);
+		}
+
+		@SuppressWarnings("unchecked")
+		public synchronized V get(long ab, int c, int hash) {
+			int mask = values.length - 1;
+			for (int idx = hash & mask; values[idx] != null; idx = (idx + 1) & mask)
+				if (keysAB[idx] == ab && keysC[idx] == c)
+					return (V) values[idx];
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		public synchronized V putIfAbsent(long ab, int c, int hash, V value) {
+			int mask = values.length - 1;
+			int idx = hash & mask;
+			for (; values[idx] != null; idx = (idx + 1) & mask)
+				if (keysAB[idx] == ab && keysC[idx] == c)
+					return (V) values[idx];
+
+			keysAB[idx] = ab;
+			keysC[idx] = c;
+			values[idx] = value;
+			if (++size > threshold)
+				rehash();
+			return null;
+		}
+
+		private void rehash() {
+			long[] oldKeysAB = keysAB;
+			int[] oldKeysC = keysC;
+			Object[] oldValues = values;
+			allocate(oldValues.length << 1);
+
+			int mask = values.length - 1;
+			for (int i = 0; i < oldValues.length; i++) {
+				if (oldValues[i] == null)
+					continue;
+				int idx = hash(oldKeysAB[i], oldKeysC[i]) & mask;
+				while (values[idx] != null)
+					idx = (idx + 1) & mask;
+				keysAB[idx] = oldKeysAB[i];
+				keysC[idx] = oldKeysC[i];
+				values[idx] = oldValues[i];
+			}
+		}
+
+		public synchronized int size() {
+			return size;
+		}
+
+	}
+
+	/**
+	 * Creates a new, empty ConcurrentIntTripleMap with four segments per
+	 * available processor, rounded up to the next power of two
+	 */
+	public ConcurrentIntTripleMap() {
+		this(Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	/**
+	 * Creates a new, empty ConcurrentIntTripleMap
+	 * @param concurrencyLevel The estimated number of concurrently updating
+	 * threads
+	 */
+	@SuppressWarnings("unchecked")
+	public ConcurrentIntTripleMap(int concurrencyLevel) {
+		int numSegments = 1;
+		while (numSegments < concurrencyLevel)
+			numSegments <<= 1;
+		this.segments = new Segment[numSegments];
+		for (int i = 0; i < numSegments; i++)
+			this.segments[i] = new Segment<V>(DEFAULT_SEGMENT_CAPACITY);
+		this.segmentMask = numSegments - 1;
+	}
+
+	private static long pack(int a, int b) {
+		return ((long) a << 32) | (b & 0xFFFFFFFFL);
+	}
+
+	private static int hash(long ab, int c) {
+		long h = ab * 0x9E3779B97F4A7C15L + c;
+		h ^= (h >>> 31);
+		h *= 0xBF58476D1CE4E5B9L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private Segment<V> segmentFor(int hash) {
+		// Use the upper bits for the segment, the lower ones for the slot
+		return segments[(hash >>> 24) & segmentMask];
+	}
+
+	/**
+	 * Gets the value associated with the given key
+	 * @param a The first component of the key
+	 * @param b The second component of the key
+	 * @param c The third component of the key
+	 * @return The value associated with the given key if there is one,
+	 * otherwise null
+	 */
+	public V get(int a, int b, int c) {
+		long ab = pack(a, b);
+		int hash = hash(ab, c);
+		return segmentFor(hash).get(ab, c, hash);
+	}
+
+	/**
+	 * Puts the given value into the map if no mapping for the given key
+	 * exists yet
+	 * @param a The first component of the key
+	 * @param b The second component of the key
+	 * @param c The third component of the key
+	 * @param value The value to put. Must not be null.
+	 * @return The value previously associated with the given key if there
+	 * was one, otherwise null
+	 */
+	public V putIfAbsent(int a, int b, int c, V value) {
+		assert value != null;
+		long ab = pack(a, b);
+		int hash = hash(ab, c);
+		return segmentFor(hash).putIfAbsent(ab, c, hash, value);
+	}
+
+	/**
+	 * Gets the number of entries in this map
+	 * @return The number of entries in this map
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment<V> segment : segments)
+			size += segment.size();
+		return size;
+	}
+
+}
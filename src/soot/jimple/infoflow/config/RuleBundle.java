@@ -0,0 +1,496 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.config;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import soot.jimple.infoflow.util.SootMethodRepresentationParser;
+
+/**
+ * The rules of the taint wrapper and the source and sink definitions in a
+ * precompiled form. The text files remain the format in which the rules are
+ * written. They can be compiled into a binary bundle with the
+ * {@link RuleBundleCompiler}, which is then memory-mapped and decoded
+ * without parsing any method signatures when the analysis starts.
+ *
+ * A bundle file starts with the magic number {@value #MAGIC}, the format
+ * version and the CRC32 checksum of the remaining data. All strings are
+ * stored once in a string table and referenced by their index.
+ *
+ * A bundle cannot be modified. The maps, sets and lists returned by this
+ * class are read-only views, so taint wrappers created from a bundle must
+ * copy the rules before they can add to them.
+ */
+public class RuleBundle {
+
+	/**
+	 * The magic number at the beginning of every bundle file ("FDRB")
+	 */
+	public static final int MAGIC = 0x46445242;
+
+	/**
+	 * The version of the binary format. Bundles with other versions are
+	 * rejected and must be compiled again.
+	 */
+	public static final int VERSION = 1;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final Map<String, Set<String>> wrapperRules;
+	private final Map<String, Set<String>> excludeRules;
+	private final Map<String, Set<String>> killRules;
+	private final Set<String> includePrefixes;
+
+	private final List<String> sources;
+	private final List<String> sinks;
+	private final List<String> parameterTaintMethods;
+	private final List<String> returnTaintMethods;
+
+	public RuleBundle(Map<String, Set<String>> wrapperRules,
+			Map<String, Set<String>> excludeRules,
+			Map<String, Set<String>> killRules,
+			Set<String> includePrefixes,
+			List<String> sources,
+			List<String> sinks,
+			List<String> parameterTaintMethods,
+			List<String> returnTaintMethods) {
+		this.wrapperRules = freezeClassMap(wrapperRules);
+		this.excludeRules = freezeClassMap(excludeRules);
+		this.killRules = freezeClassMap(killRules);
+		this.includePrefixes = Collections.unmodifiableSet(new HashSet<String>(includePrefixes));
+		this.sources = freezeList(sources);
+		this.sinks = freezeList(sinks);
+		this.parameterTaintMethods = freezeList(parameterTaintMethods);
+		this.returnTaintMethods = freezeList(returnTaintMethods);
+	}
+
+	/**
+	 * Creates a read-only copy of the given mapping from class names to
+	 * method subsignatures
+	 */
+	private static Map<String, Set<String>> freezeClassMap(Map<String, Set<String>> classMap) {
+		Map<String, Set<String>> copy = new HashMap<String, Set<String>>(classMap.size() * 2);
+		for (Map.Entry<String, Set<String>> entry : classMap.entrySet())
+			copy.put(entry.getKey(), Collections.unmodifiableSet(new HashSet<String>(entry.getValue())));
+		return Collections.unmodifiableMap(copy);
+	}
+
+	/**
+	 * Creates a read-only copy of the given list. Lists that are not defined
+	 * stay null.
+	 */
+	private static List<String> freezeList(List<String> list) {
+		return list == null ? null : Collections.unmodifiableList(new ArrayList<String>(list));
+	}
+
+	/**
+	 * Creates a new bundle that only contains the rules from the given taint
+	 * wrapper file in the format of EasyTaintWrapperSource.txt
+	 * @param wrapperFile The file containing the taint wrapper rules
+	 * @return The new bundle
+	 * @throws IOException Thrown if the given file cannot be read
+	 */
+	public static RuleBundle fromTaintWrapperFile(File wrapperFile) throws IOException {
+		return fromTextFiles(wrapperFile, null, null, null, null);
+	}
+
+	/**
+	 * Creates a new bundle from the given text files. Source and sink files
+	 * contain one method signature per line. In all files, empty lines and
+	 * lines starting with "%" are ignored.
+	 * @param wrapperFile The file containing the taint wrapper rules in the
+	 * format of EasyTaintWrapperSource.txt, or null if the bundle shall not
+	 * contain any taint wrapper rules
+	 * @param sourcesFile The file containing the source methods, or null
+	 * @param sinksFile The file containing the sink methods, or null
+	 * @param parameterTaintFile The file containing the methods whose
+	 * parameters shall be regarded as sources, or null
+	 * @param returnTaintFile The file containing the methods whose return
+	 * values shall be regarded as sinks, or null
+	 * @return The new bundle
+	 * @throws IOException Thrown if one of the given files cannot be read
+	 */
+	public static RuleBundle fromTextFiles(File wrapperFile, File sourcesFile,
+			File sinksFile, File parameterTaintFile, File returnTaintFile)
+			throws IOException {
+		List<String> methodList = new LinkedList<String>();
+		List<String> excludeList = new LinkedList<String>();
+		List<String> killList = new LinkedList<String>();
+		Set<String> includeList = new HashSet<String>();
+		if (wrapperFile != null)
+			for (String line : readLines(wrapperFile))
+				if (line.startsWith("~"))
+					excludeList.add(line.substring(1));
+				else if (line.startsWith("-"))
+					killList.add(line.substring(1));
+				else if (line.startsWith("^"))
+					includeList.add(line.substring(1));
+				else
+					methodList.add(line);
+
+		SootMethodRepresentationParser parser = SootMethodRepresentationParser.v();
+		return new RuleBundle(parser.parseClassNames(methodList, true),
+				parser.parseClassNames(excludeList, true),
+				parser.parseClassNames(killList, true),
+				includeList,
+				sourcesFile == null ? null : readMethodList(sourcesFile),
+				sinksFile == null ? null : readMethodList(sinksFile),
+				parameterTaintFile == null ? null : readMethodList(parameterTaintFile),
+				returnTaintFile == null ? null : readMethodList(returnTaintFile));
+	}
+
+	/**
+	 * Reads all lines from the given file that are neither empty nor
+	 * comments
+	 */
+	private static List<String> readLines(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null)
+				if (!line.isEmpty() && !line.startsWith("%"))
+					lines.add(line);
+		}
+		finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+	private static List<String> readMethodList(File file) throws IOException {
+		List<String> methods = new ArrayList<String>();
+		for (String line : readLines(file)) {
+			line = line.trim();
+			if (!line.isEmpty())
+				methods.add(line);
+		}
+		return methods;
+	}
+
+	/**
+	 * Checks whether the given file is a binary rule bundle
+	 * @param file The file to check
+	 * @return True if the given file starts with the magic number of a rule
+	 * bundle, otherwise false
+	 * @throws IOException Thrown if the given file cannot be read
+	 */
+	public static boolean isBundle(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			byte[] header = new byte[4];
+			int read = 0;
+			while (read < header.length) {
+				int len = is.read(header, read, header.length - read);
+				if (len < 0)
+					return false;
+				read += len;
+			}
+			return ByteBuffer.wrap(header).getInt() == MAGIC;
+		}
+		finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Loads a binary rule bundle from the given file
+	 * @param file The file to load
+	 * @return The rule bundle loaded from the given file
+	 * @throws IOException Thrown if the given file cannot be read or is not a
+	 * valid rule bundle of the current version
+	 */
+	public static RuleBundle load(File file) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			FileChannel channel = fis.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(buffer, file);
+		}
+		finally {
+			fis.close();
+		}
+	}
+
+	private static RuleBundle read(ByteBuffer buffer, File file) throws IOException {
+		try {
+			if (buffer.getInt() != MAGIC)
+				throw new IOException(file + " is not a rule bundle");
+			int version = buffer.getInt();
+			if (version != VERSION)
+				throw new IOException("Rule bundle " + file + " has version " + version
+						+ ", but version " + VERSION + " is required. Please compile it again.");
+			int checksum = buffer.getInt();
+
+			ByteBuffer payload = buffer.slice();
+			if (checksum != computeChecksum(payload.duplicate()))
+				throw new IOException("Rule bundle " + file + " is corrupt");
+
+			String[] strings = new String[payload.getInt()];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] data = new byte[payload.getInt()];
+				payload.get(data);
+				strings[i] = new String(data, UTF8);
+			}
+
+			Map<String, Set<String>> wrapperRules = readClassMap(payload, strings);
+			Map<String, Set<String>> excludeRules = readClassMap(payload, strings);
+			Map<String, Set<String>> killRules = readClassMap(payload, strings);
+			List<String> includePrefixes = readList(payload, strings);
+			return new RuleBundle(wrapperRules, excludeRules, killRules,
+					new HashSet<String>(includePrefixes),
+					readList(payload, strings),
+					readList(payload, strings),
+					readList(payload, strings),
+					readList(payload, strings));
+		}
+		catch (BufferUnderflowException ex) {
+			throw new IOException("Rule bundle " + file + " is truncated", ex);
+		}
+		catch (IndexOutOfBoundsException ex) {
+			throw new IOException("Rule bundle " + file + " is corrupt", ex);
+		}
+	}
+
+	private static Map<String, Set<String>> readClassMap(ByteBuffer buffer, String[] strings) {
+		int numClasses = buffer.getInt();
+		Map<String, Set<String>> classMap = new HashMap<String, Set<String>>(numClasses * 2);
+		for (int i = 0; i < numClasses; i++) {
+			String className = strings[buffer.getInt()];
+			int numMethods = buffer.getInt();
+			Set<String> methods = new HashSet<String>(numMethods * 2);
+			for (int j = 0; j < numMethods; j++)
+				methods.add(strings[buffer.getInt()]);
+			classMap.put(className, methods);
+		}
+		return classMap;
+	}
+
+	private static List<String> readList(ByteBuffer buffer, String[] strings) {
+		int size = buffer.getInt();
+		if (size < 0)
+			return null;
+		List<String> list = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++)
+			list.add(strings[buffer.getInt()]);
+		return list;
+	}
+
+	private static int computeChecksum(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		byte[] chunk = new byte[8192];
+		while (buffer.hasRemaining()) {
+			int len = Math.min(chunk.length, buffer.remaining());
+			buffer.get(chunk, 0, len);
+			crc.update(chunk, 0, len);
+		}
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Writes this bundle into the given file in the binary format
+	 * @param file The file to write to
+	 * @throws IOException Thrown if the given file cannot be written
+	 */
+	public void write(File file) throws IOException {
+		// Collect all strings
+		Map<String, Integer> stringIds = new LinkedHashMap<String, Integer>();
+		for (Map<String, Set<String>> classMap : getClassMaps())
+			for (Map.Entry<String, Set<String>> entry : classMap.entrySet()) {
+				addString(stringIds, entry.getKey());
+				for (String method : entry.getValue())
+					addString(stringIds, method);
+			}
+		for (Collection<String> list : getLists())
+			if (list != null)
+				for (String s : list)
+					addString(stringIds, s);
+
+		ByteBufferOutputStream payload = new ByteBufferOutputStream();
+		DataOutputStream out = new DataOutputStream(payload);
+		out.writeInt(stringIds.size());
+		for (String s : stringIds.keySet()) {
+			byte[] data = s.getBytes(UTF8);
+			out.writeInt(data.length);
+			out.write(data);
+		}
+		for (Map<String, Set<String>> classMap : getClassMaps()) {
+			out.writeInt(classMap.size());
+			for (Map.Entry<String, Set<String>> entry : classMap.entrySet()) {
+				out.writeInt(stringIds.get(entry.getKey()));
+				out.writeInt(entry.getValue().size());
+				for (String method : entry.getValue())
+					out.writeInt(stringIds.get(method));
+			}
+		}
+		for (Collection<String> list : getLists()) {
+			if (list == null) {
+				out.writeInt(-1);
+				continue;
+			}
+			out.writeInt(list.size());
+			for (String s : list)
+				out.writeInt(stringIds.get(s));
+		}
+		out.flush();
+
+		ByteBuffer payloadBuffer = payload.toByteBuffer();
+		DataOutputStream fileOut = new DataOutputStream(new FileOutputStream(file));
+		try {
+			fileOut.writeInt(MAGIC);
+			fileOut.writeInt(VERSION);
+			fileOut.writeInt(computeChecksum(payloadBuffer.duplicate()));
+			fileOut.write(payloadBuffer.array(), 0, payloadBuffer.limit());
+		}
+		finally {
+			fileOut.close();
+		}
+	}
+
+	private static void addString(Map<String, Integer> stringIds, String s) {
+		if (!stringIds.containsKey(s))
+			stringIds.put(s, stringIds.size());
+	}
+
+	/**
+	 * Gets the class maps in the order in which they are stored
+	 */
+	private List<Map<String, Set<String>>> getClassMaps() {
+		List<Map<String, Set<String>>> maps = new ArrayList<Map<String, Set<String>>>(3);
+		maps.add(wrapperRules);
+		maps.add(excludeRules);
+		maps.add(killRules);
+		return maps;
+	}
+
+	/**
+	 * Gets the lists in the order in which they are stored
+	 */
+	private List<Collection<String>> getLists() {
+		List<Collection<String>> lists = new ArrayList<Collection<String>>(5);
+		lists.add(includePrefixes);
+		lists.add(sources);
+		lists.add(sinks);
+		lists.add(parameterTaintMethods);
+		lists.add(returnTaintMethods);
+		return lists;
+	}
+
+	/**
+	 * Output stream that exposes its buffer without copying it
+	 */
+	private static class ByteBufferOutputStream extends ByteArrayOutputStream {
+
+		public ByteBuffer toByteBuffer() {
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+
+	}
+
+	/**
+	 * Gets the methods that create new taints in the taint wrapper
+	 * @return A mapping from class names to the subsignatures of the methods
+	 * that create new taints
+	 */
+	public Map<String, Set<String>> getWrapperRules() {
+		return this.wrapperRules;
+	}
+
+	/**
+	 * Gets the methods that are excluded from taint wrapping
+	 * @return A mapping from class names to the subsignatures of the methods
+	 * that are excluded from taint wrapping
+	 */
+	public Map<String, Set<String>> getExcludeRules() {
+		return this.excludeRules;
+	}
+
+	/**
+	 * Gets the methods that kill taints in the taint wrapper
+	 * @return A mapping from class names to the subsignatures of the methods
+	 * that kill taints
+	 */
+	public Map<String, Set<String>> getKillRules() {
+		return this.killRules;
+	}
+
+	/**
+	 * Gets the prefixes of the class names to which the taint wrapper applies
+	 * @return The prefixes of the class names to which the taint wrapper
+	 * applies
+	 */
+	public Set<String> getIncludePrefixes() {
+		return this.includePrefixes;
+	}
+
+	/**
+	 * Gets the signatures of the source methods
+	 * @return The signatures of the source methods, or null if the bundle
+	 * does not define any sources
+	 */
+	public List<String> getSources() {
+		return this.sources;
+	}
+
+	/**
+	 * Gets the signatures of the sink methods
+	 * @return The signatures of the sink methods, or null if the bundle
+	 * does not define any sinks
+	 */
+	public List<String> getSinks() {
+		return this.sinks;
+	}
+
+	/**
+	 * Gets the signatures of the methods whose parameters shall be regarded
+	 * as sources
+	 * @return The signatures of the methods whose parameters shall be
+	 * regarded as sources, or null if the bundle does not define any
+	 */
+	public List<String> getParameterTaintMethods() {
+		return this.parameterTaintMethods;
+	}
+
+	/**
+	 * Gets the signatures of the methods whose return values shall be
+	 * regarded as sinks
+	 * @return The signatures of the methods whose return values shall be
+	 * regarded as sinks, or null if the bundle does not define any
+	 */
+	public List<String> getReturnTaintMethods() {
+		return this.returnTaintMethods;
+	}
+
+}
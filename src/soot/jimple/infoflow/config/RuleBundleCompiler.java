@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.config;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compiles the taint wrapper rules and the source and sink definitions from
+ * their text files into a binary {@link RuleBundle}.
+ *
+ * Usage: RuleBundleCompiler -out FILE [-wrapper FILE] [-sources FILE]
+ * [-sinks FILE] [-parametertaint FILE] [-returntaint FILE]
+ */
+public class RuleBundleCompiler {
+
+	public static void main(String[] args) throws IOException {
+		File outFile = null;
+		File wrapperFile = null;
+		File sourcesFile = null;
+		File sinksFile = null;
+		File parameterTaintFile = null;
+		File returnTaintFile = null;
+
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length)
+				usage("Missing value for option " + args[i]);
+			File value = new File(args[i + 1]);
+			if (args[i].equals("-out"))
+				outFile = value;
+			else if (args[i].equals("-wrapper"))
+				wrapperFile = value;
+			else if (args[i].equals("-sources"))
+				sourcesFile = value;
+			else if (args[i].equals("-sinks"))
+				sinksFile = value;
+			else if (args[i].equals("-parametertaint"))
+				parameterTaintFile = value;
+			else if (args[i].equals("-returntaint"))
+				returnTaintFile = value;
+			else
+				usage("Unknown option " + args[i]);
+		}
+		if (outFile == null)
+			usage("No output file given");
+
+		long beforeCompile = System.nanoTime();
+		RuleBundle bundle = RuleBundle.fromTextFiles(wrapperFile, sourcesFile, sinksFile,
+				parameterTaintFile, returnTaintFile);
+		bundle.write(outFile);
+		System.out.println("Compiled rule bundle " + outFile + " with wrapper rules for "
+				+ bundle.getWrapperRules().size() + " classes in "
+				+ (System.nanoTime() - beforeCompile) / 1E9 + " seconds");
+	}
+
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println("Usage: RuleBundleCompiler -out FILE [-wrapper FILE] [-sources FILE] "
+				+ "[-sinks FILE] [-parametertaint FILE] [-returntaint FILE]");
+		System.exit(2);
+	}
+
+}
@@ -11,11 +11,10 @@
 package soot.jimple.infoflow.data;
 
 
-import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
-import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import soot.NullType;
 import soot.SootMethod;
@@ -28,6 +27,7 @@ import soot.jimple.infoflow.solver.IInfoflowCFG.UnitContainer;
 import soot.jimple.infoflow.solver.fastSolver.FastSolverLinkedNode;
 import soot.jimple.internal.JimpleLocal;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
 /**
@@ -40,6 +40,17 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 	
 	private static boolean flowSensitiveAliasing = true;
 	
+	/**
+	 * taint is thrown by an exception (is set to false when it reaches the catch-Stmt)
+	 */
+	private static final int FLAG_EXCEPTION_THROWN = 1;
+	private static final int FLAG_IMPLICIT = 2;
+	/**
+	 * Only valid for inactive abstractions. Specifies whether an access paths
+	 * has been cut during alias analysis.
+	 */
+	private static final int FLAG_DEPENDS_ON_CUT_AP = 4;
+	
 	/**
 	 * the access path contains the currently tainted variable or field
 	 */
@@ -51,6 +62,17 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 	private Stmt correspondingCallSite = null;
 	
 	private SourceContext sourceContext = null;
+	
+	/**
+	 * The sources from which this abstraction stems if the sources are
+	 * tracked along with the abstraction instead of through its predecessors.
+	 * The set is immutable and replaced as a whole when it grows.
+	 */
+	private volatile Set<SourceContext> sourceContexts = null;
+	
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<Abstraction, Set> sourceContextsUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(Abstraction.class, Set.class, "sourceContexts");
 
 	// only used in path generation
 	private Set<SourceContextAndPath> pathCache = null;
@@ -59,24 +81,14 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 	 * Unit/Stmt which activates the taint when the abstraction passes it
 	 */
 	private Unit activationUnit = null;
-	/**
-	 * taint is thrown by an exception (is set to false when it reaches the catch-Stmt)
-	 */
-	private boolean exceptionThrown = false;
+	private int flags = 0;
 	private int hashCode = 0;
 
 	/**
 	 * The postdominators we need to pass in order to leave the current conditional
-	 * branch. Do not use the synchronized Stack class here to avoid deadlocks.
+	 * branch. The stack is immutable and shared between abstractions.
 	 */
-	private List<UnitContainer> postdominators = null;
-	private boolean isImplicit = false;
-	
-	/**
-	 * Only valid for inactive abstractions. Specifies whether an access paths
-	 * has been cut during alias analysis.
-	 */
-	private boolean dependsOnCutAP = false;
+	private PostdominatorStack postdominators = null;
 	
 	private BitSet pathFlags = null;
 	
@@ -97,10 +109,8 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 		this.sourceContext = sourceContext;
 		this.accessPath = apToTaint;
 		this.activationUnit = null;
-		this.exceptionThrown = exceptionThrown;
-		
-		this.neighbors = null;
-		this.isImplicit = isImplicit;
+		setFlag(FLAG_EXCEPTION_THROWN, exceptionThrown);
+		setFlag(FLAG_IMPLICIT, isImplicit);
 		this.currentStmt = sourceContext == null ? null : sourceContext.getStmt();
 	}
 
@@ -113,28 +123,34 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 	protected Abstraction(AccessPath p, Abstraction original){
 		if (original == null) {
 			sourceContext = null;
-			exceptionThrown = false;
 			activationUnit = null;
 			flowSensitiveAliasing = true;
-			isImplicit = false;
 		}
 		else {
 			sourceContext = original.sourceContext;
-			exceptionThrown = original.exceptionThrown;
+			sourceContexts = original.sourceContexts;
 			activationUnit = original.activationUnit;
 			assert activationUnit == null || flowSensitiveAliasing;
 			
-			postdominators = original.postdominators == null ? null
-					: new ArrayList<UnitContainer>(original.postdominators);
-			
-			dependsOnCutAP = original.dependsOnCutAP;
-			isImplicit = original.isImplicit;
+			// The stack is immutable, so we can share it
+			postdominators = original.postdominators;
+			flags = original.flags;
 		}
 		accessPath = p;
-		neighbors = null;
 		currentStmt = null;
 	}
 	
+	private boolean getFlag(int flag) {
+		return (flags & flag) != 0;
+	}
+	
+	private void setFlag(int flag, boolean value) {
+		if (value)
+			flags |= flag;
+		else
+			flags &= ~flag;
+	}
+	
 	public final Abstraction deriveInactiveAbstraction(Unit activationUnit){
 		if (!flowSensitiveAliasing) {
 			assert this.isAbstractionActive();
@@ -148,12 +164,13 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 		Abstraction a = deriveNewAbstractionMutable(accessPath, null);
 		a.postdominators = null;
 		a.activationUnit = activationUnit;
-		a.dependsOnCutAP |= a.getAccessPath().isCutOffApproximation();
+		if (a.getAccessPath().isCutOffApproximation())
+			a.setFlag(FLAG_DEPENDS_ON_CUT_AP, true);
 		return a;
 	}
 
 	public Abstraction deriveNewAbstraction(AccessPath p, Stmt currentStmt){
-		return deriveNewAbstraction(p, currentStmt, isImplicit);
+		return deriveNewAbstraction(p, currentStmt, isImplicit());
 	}
 	
 	public Abstraction deriveNewAbstraction(AccessPath p, Stmt currentStmt,
@@ -161,11 +178,11 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 		// If the new abstraction looks exactly like the current one, there is
 		// no need to create a new object
 		if (this.accessPath.equals(p) && this.currentStmt == currentStmt
-				&& this.isImplicit == isImplicit)
+				&& this.isImplicit() == isImplicit)
 			return this;
 		
 		Abstraction abs = deriveNewAbstractionMutable(p, currentStmt);
-		abs.isImplicit = isImplicit;
+		abs.setFlag(FLAG_IMPLICIT, isImplicit);
 		return abs;
 	}
 	
@@ -177,13 +194,14 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 		}
 		
 		Abstraction abs = new Abstraction(p, this);
-		abs.predecessor = this;
+		if (sourceContexts == null)
+			abs.predecessor = this;
 		abs.currentStmt = currentStmt;
 		
 		if (!abs.getAccessPath().isEmpty())
 			abs.postdominators = null;
-		if (!abs.isAbstractionActive())
-			abs.dependsOnCutAP = abs.dependsOnCutAP || p.isCutOffApproximation();
+		if (!abs.isAbstractionActive() && p.isCutOffApproximation())
+			abs.setFlag(FLAG_DEPENDS_ON_CUT_AP, true);
 		
 		abs.sourceContext = null;
 		return abs;
@@ -206,12 +224,12 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 	 * @return The newly derived abstraction
 	 */
 	public final Abstraction deriveNewAbstractionOnThrow(Stmt throwStmt){
-		assert !this.exceptionThrown;
+		assert !this.getExceptionThrown();
 		Abstraction abs = clone();
 		
 		abs.currentStmt = throwStmt;
 		abs.sourceContext = null;
-		abs.exceptionThrown = true;
+		abs.setFlag(FLAG_EXCEPTION_THROWN, true);
 		return abs;
 	}
 	
@@ -222,9 +240,9 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 	 * @return The newly derived abstraction
 	 */
 	public final Abstraction deriveNewAbstractionOnCatch(Value taint){
-		assert this.exceptionThrown;
-		Abstraction abs = deriveNewAbstractionMutable(new AccessPath(taint, true), null);
-		abs.exceptionThrown = false;
+		assert this.getExceptionThrown();
+		Abstraction abs = deriveNewAbstractionMutable(AccessPathFactory.v().createAccessPath(taint, true), null);
+		abs.setFlag(FLAG_EXCEPTION_THROWN, false);
 		return abs;
 	}
 		
@@ -269,7 +287,7 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 	}
 	
 	public boolean isImplicit() {
-		return isImplicit;
+		return getFlag(FLAG_IMPLICIT);
 	}
 	
 	@Override
@@ -300,7 +318,7 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 	 * false
 	 */
 	public boolean getExceptionThrown() {
-		return this.exceptionThrown;
+		return getFlag(FLAG_EXCEPTION_THROWN);
 	}
 	
 	public final Abstraction deriveConditionalAbstractionEnter(UnitContainer postdom,
@@ -312,10 +330,7 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 		
 		Abstraction abs = deriveNewAbstractionMutable
 				(AccessPath.getEmptyAccessPath(), conditionalUnit);
-		if (abs.postdominators == null)
-			abs.postdominators = Collections.singletonList(postdom);
-		else
-			abs.postdominators.add(0, postdom);
+		abs.postdominators = PostdominatorStack.push(abs.postdominators, postdom);
 		return abs;
 	}
 	
@@ -334,19 +349,19 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 	}
 	
 	public final Abstraction dropTopPostdominator() {
-		if (postdominators == null || postdominators.isEmpty())
+		if (postdominators == null)
 			return this;
 		
 		Abstraction abs = clone();
 		abs.sourceContext = null;
-		abs.postdominators.remove(0);
+		abs.postdominators = postdominators.pop();
 		return abs;
 	}
 	
 	public UnitContainer getTopPostdominator() {
-		if (postdominators == null || postdominators.isEmpty())
+		if (postdominators == null)
 			return null;
-		return this.postdominators.get(0);
+		return this.postdominators.getTop();
 	}
 	
 	public boolean isTopPostdominator(Unit u) {
@@ -366,7 +381,8 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 	@Override
 	public Abstraction clone() {
 		Abstraction abs = new Abstraction(accessPath, this);
-		abs.predecessor = this;
+		if (sourceContexts == null)
+			abs.predecessor = this;
 		abs.neighbors = null;
 		abs.currentStmt = null;
 		
@@ -417,17 +433,13 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 				return false;
 		} else if (!activationUnit.equals(other.activationUnit))
 			return false;
-		if (this.exceptionThrown != other.exceptionThrown)
+		if (this.flags != other.flags)
 			return false;
 		if (postdominators == null) {
 			if (other.postdominators != null)
 				return false;
 		} else if (!postdominators.equals(other.postdominators))
 			return false;
-		if(this.dependsOnCutAP != other.dependsOnCutAP)
-			return false;
-		if(this.isImplicit != other.isImplicit)
-			return false;
 		return true;
 	}
 	
@@ -443,10 +455,8 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 		result = prime * result + ((sourceContext == null) ? 0 : sourceContext.hashCode());
 		result = prime * result + ((accessPath == null) ? 0 : accessPath.hashCode());
 		result = prime * result + ((activationUnit == null) ? 0 : activationUnit.hashCode());
-		result = prime * result + (exceptionThrown ? 1231 : 1237);
+		result = prime * result + flags;
 		result = prime * result + ((postdominators == null) ? 0 : postdominators.hashCode());
-		result = prime * result + (dependsOnCutAP ? 1231 : 1237);
-		result = prime * result + (isImplicit ? 1231 : 1237);
 		this.hashCode = result;
 		
 		return this.hashCode;
@@ -477,7 +487,7 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 	}
 	
 	public boolean dependsOnCutAP() {
-		return dependsOnCutAP;
+		return getFlag(FLAG_DEPENDS_ON_CUT_AP);
 	}
 	
 	@Override
@@ -531,7 +541,7 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 		
 	public static Abstraction getZeroAbstraction(boolean flowSensitiveAliasing) {
 		Abstraction zeroValue = new Abstraction(
-				new AccessPath(new JimpleLocal("zero", NullType.v()), false),
+				AccessPathFactory.v().createAccessPath(new JimpleLocal("zero", NullType.v()), false),
 				null,
 				false,
 				false);
@@ -576,6 +586,55 @@ public class Abstraction implements Cloneable, FastSolverLinkedNode<Abstraction,
 		return true;
 	}
 	
+	/**
+	 * Makes this source abstraction and all abstractions derived from it
+	 * carry the set of sources they stem from instead of recording their
+	 * predecessors. The sources are not part of the identity of an
+	 * abstraction, so equal abstractions from different sources are still
+	 * merged. Their sets of sources must then be merged using
+	 * {@link #addSourceContexts(Abstraction)}.
+	 * @return This abstraction
+	 */
+	public Abstraction trackSourceContexts() {
+		assert sourceContext != null && predecessor == null;
+		this.sourceContexts = Collections.singleton(sourceContext);
+		return this;
+	}
+	
+	/**
+	 * Gets the sources from which this abstraction stems if the sources are
+	 * tracked along with the abstraction
+	 * @return The immutable set of sources from which this abstraction
+	 * stems, or null if the sources are only known through the predecessors.
+	 * A set that has grown is a different object, while the same object
+	 * always contains the same sources.
+	 */
+	public Set<SourceContext> getSourceContexts() {
+		return this.sourceContexts;
+	}
+	
+	/**
+	 * Adds the sources of the given abstraction to the sources of this
+	 * abstraction
+	 * @param other The abstraction whose sources to add
+	 * @return True if this abstraction has gained new sources, otherwise
+	 * false
+	 */
+	public boolean addSourceContexts(Abstraction other) {
+		final Set<SourceContext> otherContexts = other.sourceContexts;
+		if (otherContexts == null)
+			return false;
+		while (true) {
+			final Set<SourceContext> curContexts = this.sourceContexts;
+			if (curContexts == null || curContexts.containsAll(otherContexts))
+				return false;
+			Set<SourceContext> newContexts = ImmutableSet.<SourceContext>builder()
+					.addAll(curContexts).addAll(otherContexts).build();
+			if (sourceContextsUpdater.compareAndSet(this, curContexts, newContexts))
+				return true;
+		}
+	}
+	
 	public Abstraction injectSourceContext(SourceContext sourceContext) {
 		if (this.sourceContext != null && this.sourceContext.equals(sourceContext))
 			return this;
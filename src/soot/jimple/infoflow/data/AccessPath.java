@@ -50,6 +50,13 @@ public class AccessPath implements Cloneable {
 	private final boolean taintSubFields;
 	private final boolean cutOffApproximation;
 	
+	/**
+	 * Generation of the {@link AccessPathFactory} in which this access path
+	 * was registered as the canonical instance, 0 if it is not canonical
+	 */
+	private final int canonicalGeneration;
+	private volatile AccessPath dropLastFieldCache = null;
+	
 	private int hashCode = 0;
 	
 	/**
@@ -125,24 +132,51 @@ public class AccessPath implements Cloneable {
 		this.fieldTypes = null;
 		this.taintSubFields = true;
 		this.cutOffApproximation = false;
+		this.canonicalGeneration = 0;
 	}
 	
-	public AccessPath(Value val, boolean taintSubFields){
+	/**
+	 * Creates the canonical copy of the given access path that shares the
+	 * given field arrays. Only used by the {@link AccessPathFactory}.
+	 * @param original The access path to copy
+	 * @param fields The shared array of fields, must be equal to the fields
+	 * of the original access path
+	 * @param fieldTypes The shared array of field types, must be equal to the
+	 * field types of the original access path
+	 * @param canonicalGeneration The generation of the factory
+	 */
+	AccessPath(AccessPath original, SootField[] fields, Type[] fieldTypes,
+			int canonicalGeneration) {
+		assert Arrays.equals(original.fields, fields);
+		assert Arrays.equals(original.fieldTypes, fieldTypes);
+		this.value = original.value;
+		this.fields = fields;
+		this.baseType = original.baseType;
+		this.fieldTypes = fieldTypes;
+		this.taintSubFields = original.taintSubFields;
+		this.cutOffApproximation = original.cutOffApproximation;
+		this.canonicalGeneration = canonicalGeneration;
+		this.hashCode = original.hashCode;
+	}
+	
+	AccessPath(Value val, boolean taintSubFields){
 		this(val, (SootField[]) null, null, (Type[]) null, taintSubFields);
 	}
 	
-	public AccessPath(Value val, SootField[] appendingFields, boolean taintSubFields){
+	AccessPath(Value val, SootField[] appendingFields, boolean taintSubFields){
 		this(val, appendingFields, null, (Type[]) null, taintSubFields);
 	}
 	
-	public AccessPath(Value val, SootField[] appendingFields, Type valType,
+	AccessPath(Value val, SootField[] appendingFields, Type valType,
 			Type[] appendingFieldTypes, boolean taintSubFields) {
 		this(val, appendingFields, valType, appendingFieldTypes, taintSubFields, false, true);
 	}
 	
-	public AccessPath(Value val, SootField[] appendingFields, Type valType,
+	AccessPath(Value val, SootField[] appendingFields, Type valType,
 			Type[] appendingFieldTypes, boolean taintSubFields,
 			boolean cutFirstField, boolean reduceBases){
+		this.canonicalGeneration = 0;
+		
 		// Make sure that the base object is valid
 		assert (val == null && appendingFields != null && appendingFields.length > 0)
 		 	|| canContainValue(val);
@@ -277,6 +311,12 @@ public class AccessPath implements Cloneable {
 				this.fields = null;
 				this.fieldTypes = null;
 			}
+			else if (fieldNum == fields.length && fields != appendingFields
+					&& fieldTypes != appendingFieldTypes) {
+				// We have created these arrays ourselves, no need to copy them
+				this.fields = fields;
+				this.fieldTypes = fieldTypes;
+			}
 			else {
 				this.fields = new SootField[fieldNum];
 				this.fieldTypes = new Type[fieldNum];
@@ -306,11 +346,11 @@ public class AccessPath implements Cloneable {
 		assert !isEmpty() || this.baseType == null;
 	}
 	
-	public AccessPath(SootField staticfield, boolean taintSubFields){
+	AccessPath(SootField staticfield, boolean taintSubFields){
 		this(null, new SootField[] { staticfield }, null, new Type[] { staticfield.getType() }, taintSubFields);
 	}
 
-	public AccessPath(Value base, SootField field, boolean taintSubFields){
+	AccessPath(Value base, SootField field, boolean taintSubFields){
 		this(base, field == null ? null : new SootField[] { field }, null,
 				field == null ? null : new Type[] { field.getType() }, taintSubFields);
 		assert base instanceof Local;
@@ -434,6 +474,14 @@ public class AccessPath implements Cloneable {
 		
 		AccessPath other = (AccessPath) obj;
 		
+		// There is only one canonical instance per access path. Two different
+		// canonical instances can only be equal if they differ in the cut-off
+		// flag which is not considered here.
+		if (canonicalGeneration != 0
+				&& canonicalGeneration == other.canonicalGeneration
+				&& cutOffApproximation == other.cutOffApproximation)
+			return false;
+		
 		if (value == null) {
 			if (other.value != null)
 				return false;
@@ -505,6 +553,8 @@ public class AccessPath implements Cloneable {
 				&& this.baseType.equals(newType))
 			return this;
 		
+		if (canonicalGeneration != 0)
+			return AccessPathFactory.v().copyWithNewValue(this, val, newType, cutFirstField);
 		return new AccessPath(val, fields, newType, fieldTypes, this.taintSubFields,
 				cutFirstField, true);
 	}
@@ -514,6 +564,10 @@ public class AccessPath implements Cloneable {
 		// The empty access path is a singleton
 		if (this == emptyAccessPath)
 			return this;
+		
+		// Canonical access paths are immutable and unique
+		if (canonicalGeneration != 0)
+			return this;
 
 		AccessPath a = new AccessPath(value, fields, baseType, fieldTypes, taintSubFields);
 		assert a.equals(this);
@@ -582,6 +636,21 @@ public class AccessPath implements Cloneable {
 	 * @return The new access path
 	 */
 	public AccessPath appendFields(SootField[] apFields, Type[] apFieldTypes, boolean taintSubFields) {
+		if (canonicalGeneration != 0)
+			return AccessPathFactory.v().appendFields(this, apFields, apFieldTypes, taintSubFields);
+		return appendFieldsInternal(apFields, apFieldTypes, taintSubFields);
+	}
+	
+	/**
+	 * Appends additional fields to this access path without consulting the
+	 * {@link AccessPathFactory}
+	 * @param apFields The fields to append
+	 * @param apFieldTypes The types of the fields to append
+	 * @param taintSubFields True if the new access path shall taint all objects
+	 * reachable through it, false if it shall only point to precisely one object
+	 * @return The new access path
+	 */
+	AccessPath appendFieldsInternal(SootField[] apFields, Type[] apFieldTypes, boolean taintSubFields) {
 		int offset = this.fields == null ? 0 : this.fields.length;
 		SootField[] fields = new SootField[offset + (apFields == null ? 0 : apFields.length)];
 		Type[] fieldTypes = new Type[offset + (apFields == null ? 0 : apFields.length)];
@@ -620,7 +689,8 @@ public class AccessPath implements Cloneable {
 			newFields = null;
 			newTypes = null;
 		}
-		return new AccessPath(value, newFields, fieldTypes[0], newTypes, taintSubFields);		
+		AccessPath ap = new AccessPath(value, newFields, fieldTypes[0], newTypes, taintSubFields);
+		return canonicalGeneration != 0 ? AccessPathFactory.v().intern(ap) : ap;
 	}
 	
 	/**
@@ -632,6 +702,10 @@ public class AccessPath implements Cloneable {
 		if (fields == null || fields.length == 0)
 			return this;
 		
+		AccessPath cachedAP = dropLastFieldCache;
+		if (cachedAP != null)
+			return cachedAP;
+		
 		final SootField[] newFields;
 		final Type[] newTypes;
 		if (fields.length > 1) {
@@ -645,7 +719,12 @@ public class AccessPath implements Cloneable {
 			newFields = null;
 			newTypes = null;
 		}
-		return new AccessPath(value, newFields, baseType, newTypes, taintSubFields);
+		AccessPath ap = new AccessPath(value, newFields, baseType, newTypes, taintSubFields);
+		if (canonicalGeneration != 0) {
+			ap = AccessPathFactory.v().intern(ap);
+			dropLastFieldCache = ap;
+		}
+		return ap;
 	}
 	
 	/**
@@ -676,4 +755,15 @@ public class AccessPath implements Cloneable {
 		return this.cutOffApproximation;
 	}
 	
+	/**
+	 * Gets whether this access path is the canonical instance registered in
+	 * the given generation of the {@link AccessPathFactory}
+	 * @param generation The generation of the factory
+	 * @return True if this access path is canonical in the given generation,
+	 * otherwise false
+	 */
+	boolean isCanonical(int generation) {
+		return this.canonicalGeneration == generation;
+	}
+	
 }
@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.data;
+
+import java.util.Arrays;
+
+import soot.SootField;
+import soot.Type;
+import soot.Value;
+import soot.jimple.infoflow.collect.MyConcurrentHashMap;
+import soot.jimple.infoflow.data.AccessPath.BasePair;
+
+/**
+ * Factory for creating canonical {@link AccessPath} objects. For every
+ * access path, there is only one canonical instance, so canonical access
+ * paths can be compared by identity. The field arrays are shared between
+ * all canonical access paths with the same field chain. The results of
+ * deriving new access paths from canonical ones are memoized.
+ *
+ * The factory must be cleared whenever the access path configuration (e.g.
+ * the maximum access path length) changes.
+ */
+public class AccessPathFactory {
+
+	private static final AccessPathFactory instance = new AccessPathFactory();
+
+	/**
+	 * Key for looking up the result of an access path constructor call
+	 */
+	private static class ConstructionKey {
+
+		private final Value val;
+		private final SootField[] appendingFields;
+		private final Type valType;
+		private final Type[] appendingFieldTypes;
+		private final int flags;
+		private final int hashCode;
+
+		public ConstructionKey(Value val, SootField[] appendingFields, Type valType,
+				Type[] appendingFieldTypes, boolean taintSubFields,
+				boolean cutFirstField, boolean reduceBases) {
+			this.val = val;
+			this.appendingFields = appendingFields;
+			this.valType = valType;
+			this.appendingFieldTypes = appendingFieldTypes;
+			this.flags = (taintSubFields ? 1 : 0) | (cutFirstField ? 2 : 0)
+					| (reduceBases ? 4 : 0);
+
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + (val == null ? 0 : val.hashCode());
+			result = prime * result + Arrays.hashCode(appendingFields);
+			result = prime * result + (valType == null ? 0 : valType.hashCode());
+			result = prime * result + Arrays.hashCode(appendingFieldTypes);
+			result = prime * result + flags;
+			this.hashCode = result;
+		}
+
+		/**
+		 * Creates a copy of this key that does not share any arrays with the
+		 * caller, so that it can safely be stored in a map
+		 * @return A copy of this key that owns its arrays
+		 */
+		public ConstructionKey detach() {
+			return new ConstructionKey(val,
+					appendingFields == null ? null : appendingFields.clone(),
+					valType,
+					appendingFieldTypes == null ? null : appendingFieldTypes.clone(),
+					(flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			ConstructionKey other = (ConstructionKey) obj;
+			if (hashCode != other.hashCode || flags != other.flags)
+				return false;
+			if (val == null ? other.val != null : !val.equals(other.val))
+				return false;
+			if (valType == null ? other.valType != null : !valType.equals(other.valType))
+				return false;
+			return Arrays.equals(appendingFields, other.appendingFields)
+					&& Arrays.equals(appendingFieldTypes, other.appendingFieldTypes);
+		}
+
+	}
+
+	/**
+	 * Key for looking up the result of deriving a new access path from a
+	 * canonical one. The original access path is compared by identity.
+	 */
+	private static class TransitionKey {
+
+		private final AccessPath original;
+		private final Object arg1;
+		private final Object arg2;
+		private final boolean flag;
+		private final int hashCode;
+
+		public TransitionKey(AccessPath original, Object arg1, Object arg2,
+				boolean flag) {
+			this.original = original;
+			this.arg1 = arg1;
+			this.arg2 = arg2;
+			this.flag = flag;
+
+			final int prime = 31;
+			int result = System.identityHashCode(original);
+			result = prime * result + (arg1 == null ? 0 : arg1.hashCode());
+			result = prime * result + (arg2 == null ? 0 : arg2.hashCode());
+			result = prime * result + (flag ? 1 : 0);
+			this.hashCode = result;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			TransitionKey other = (TransitionKey) obj;
+			return original == other.original
+					&& flag == other.flag
+					&& (arg1 == null ? other.arg1 == null : arg1.equals(other.arg1))
+					&& (arg2 == null ? other.arg2 == null : arg2.equals(other.arg2));
+		}
+
+	}
+
+	private volatile int generation = 1;
+
+	// Canonical access paths, separated by whether they are cut-off
+	// approximations since this flag is not part of AccessPath.equals()
+	private final MyConcurrentHashMap<AccessPath, AccessPath> canonicalPaths =
+			new MyConcurrentHashMap<AccessPath, AccessPath>();
+	private final MyConcurrentHashMap<AccessPath, AccessPath> canonicalCutOffPaths =
+			new MyConcurrentHashMap<AccessPath, AccessPath>();
+	private final MyConcurrentHashMap<BasePair, BasePair> canonicalFields =
+			new MyConcurrentHashMap<BasePair, BasePair>();
+
+	private final MyConcurrentHashMap<ConstructionKey, AccessPath> constructionCache =
+			new MyConcurrentHashMap<ConstructionKey, AccessPath>();
+	private final MyConcurrentHashMap<TransitionKey, AccessPath> copyWithNewValueCache =
+			new MyConcurrentHashMap<TransitionKey, AccessPath>();
+	private final MyConcurrentHashMap<TransitionKey, AccessPath> appendFieldsCache =
+			new MyConcurrentHashMap<TransitionKey, AccessPath>();
+
+	private AccessPathFactory() {
+
+	}
+
+	public static AccessPathFactory v() {
+		return instance;
+	}
+
+	public AccessPath createAccessPath(Value val, boolean taintSubFields) {
+		return createAccessPath(val, (SootField[]) null, null, (Type[]) null, taintSubFields);
+	}
+
+	public AccessPath createAccessPath(Value val, SootField[] appendingFields,
+			boolean taintSubFields) {
+		return createAccessPath(val, appendingFields, null, (Type[]) null, taintSubFields);
+	}
+
+	public AccessPath createAccessPath(Value val, SootField[] appendingFields,
+			Type valType, Type[] appendingFieldTypes, boolean taintSubFields) {
+		return createAccessPath(val, appendingFields, valType, appendingFieldTypes,
+				taintSubFields, false, true);
+	}
+
+	public AccessPath createAccessPath(SootField staticfield, boolean taintSubFields) {
+		return createAccessPath(null, new SootField[] { staticfield }, null,
+				new Type[] { staticfield.getType() }, taintSubFields);
+	}
+
+	public AccessPath createAccessPath(Value base, SootField field, boolean taintSubFields) {
+		return createAccessPath(base, field == null ? null : new SootField[] { field }, null,
+				field == null ? null : new Type[] { field.getType() }, taintSubFields);
+	}
+
+	/**
+	 * Gets the canonical access path for the given constructor arguments.
+	 * See {@link AccessPath#AccessPath(Value, SootField[], Type, Type[], boolean, boolean, boolean)}
+	 * for a description of the parameters.
+	 * @return The canonical access path for the given arguments
+	 */
+	public AccessPath createAccessPath(Value val, SootField[] appendingFields,
+			Type valType, Type[] appendingFieldTypes, boolean taintSubFields,
+			boolean cutFirstField, boolean reduceBases) {
+		ConstructionKey key = new ConstructionKey(val, appendingFields, valType,
+				appendingFieldTypes, taintSubFields, cutFirstField, reduceBases);
+		AccessPath ap = constructionCache.get(key);
+		if (ap != null)
+			return ap;
+
+		ap = intern(new AccessPath(val, appendingFields, valType, appendingFieldTypes,
+				taintSubFields, cutFirstField, reduceBases));
+		return constructionCache.putIfAbsentElseGet(key.detach(), ap);
+	}
+
+	/**
+	 * Gets the canonical instance of the given access path
+	 * @param ap The access path for which to get the canonical instance
+	 * @return The canonical instance of the given access path
+	 */
+	public AccessPath intern(AccessPath ap) {
+		if (ap.isCanonical(generation) || ap == AccessPath.getEmptyAccessPath())
+			return ap;
+
+		MyConcurrentHashMap<AccessPath, AccessPath> paths = ap.isCutOffApproximation()
+				? canonicalCutOffPaths : canonicalPaths;
+		AccessPath canonicalAP = paths.get(ap);
+		if (canonicalAP != null)
+			return canonicalAP;
+
+		// Share the field arrays with all other canonical access paths
+		SootField[] fields = ap.getFields();
+		Type[] fieldTypes = ap.getFieldTypes();
+		if (fields != null) {
+			BasePair fieldPair = new BasePair(fields, fieldTypes);
+			fieldPair = canonicalFields.putIfAbsentElseGet(fieldPair, fieldPair);
+			fields = fieldPair.getFields();
+			fieldTypes = fieldPair.getTypes();
+		}
+		canonicalAP = new AccessPath(ap, fields, fieldTypes, generation);
+		return paths.putIfAbsentElseGet(canonicalAP, canonicalAP);
+	}
+
+	/**
+	 * Memoized implementation of {@link AccessPath#copyWithNewValue(Value, Type, boolean)}
+	 * for canonical access paths
+	 */
+	AccessPath copyWithNewValue(AccessPath original, Value val, Type newType,
+			boolean cutFirstField) {
+		TransitionKey key = new TransitionKey(original, val, newType, cutFirstField);
+		AccessPath ap = copyWithNewValueCache.get(key);
+		if (ap != null)
+			return ap;
+
+		ap = intern(new AccessPath(val, original.getFields(), newType,
+				original.getFieldTypes(), original.getTaintSubFields(),
+				cutFirstField, true));
+		return copyWithNewValueCache.putIfAbsentElseGet(key, ap);
+	}
+
+	/**
+	 * Memoized implementation of {@link AccessPath#appendFields(SootField[], Type[], boolean)}
+	 * for canonical access paths
+	 */
+	AccessPath appendFields(AccessPath original, SootField[] apFields,
+			Type[] apFieldTypes, boolean taintSubFields) {
+		BasePair appended = new BasePair(apFields, apFieldTypes);
+		TransitionKey key = new TransitionKey(original, appended, null, taintSubFields);
+		AccessPath ap = appendFieldsCache.get(key);
+		if (ap != null)
+			return ap;
+
+		ap = intern(original.appendFieldsInternal(apFields, apFieldTypes, taintSubFields));
+		appended = new BasePair(apFields == null ? null : apFields.clone(),
+				apFieldTypes == null ? null : apFieldTypes.clone());
+		return appendFieldsCache.putIfAbsentElseGet(new TransitionKey(original,
+				appended, null, taintSubFields), ap);
+	}
+
+	/**
+	 * Gets the number of canonical access paths in this factory
+	 * @return The number of canonical access paths in this factory
+	 */
+	public int size() {
+		return canonicalPaths.size() + canonicalCutOffPaths.size();
+	}
+
+	/**
+	 * Removes all canonical access paths and memoized results from this
+	 * factory. Access paths created before this call are no longer
+	 * canonical afterwards.
+	 */
+	public synchronized void clear() {
+		generation++;
+		canonicalPaths.clear();
+		canonicalCutOffPaths.clear();
+		canonicalFields.clear();
+		constructionCache.clear();
+		copyWithNewValueCache.clear();
+		appendFieldsCache.clear();
+	}
+
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.data;
+
+import soot.jimple.infoflow.solver.IInfoflowCFG.UnitContainer;
+
+/**
+ * Immutable stack of postdominators implemented as a persistent linked list.
+ * Pushing and popping elements creates new stacks that share their tails
+ * with the original stack, so abstractions can share their postdominator
+ * stacks without copying them. The empty stack is represented as null.
+ */
+public class PostdominatorStack {
+
+	private final UnitContainer top;
+	private final PostdominatorStack tail;
+	private final int size;
+	private int hashCode = 0;
+
+	private PostdominatorStack(UnitContainer top, PostdominatorStack tail) {
+		this.top = top;
+		this.tail = tail;
+		this.size = tail == null ? 1 : tail.size + 1;
+	}
+
+	/**
+	 * Creates a new stack by pushing the given postdominator onto the given
+	 * stack
+	 * @param stack The stack onto which to push the postdominator, null for
+	 * the empty stack
+	 * @param postdom The postdominator to push
+	 * @return The new stack with the given postdominator on top
+	 */
+	public static PostdominatorStack push(PostdominatorStack stack, UnitContainer postdom) {
+		return new PostdominatorStack(postdom, stack);
+	}
+
+	/**
+	 * Gets the topmost element of this stack
+	 * @return The topmost element of this stack
+	 */
+	public UnitContainer getTop() {
+		return this.top;
+	}
+
+	/**
+	 * Gets the stack without its topmost element
+	 * @return The stack without its topmost element, null if this stack only
+	 * has one element
+	 */
+	public PostdominatorStack pop() {
+		return this.tail;
+	}
+
+	/**
+	 * Gets the number of elements on this stack
+	 * @return The number of elements on this stack
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Checks whether the given postdominator is on this stack
+	 * @param postdom The postdominator to look for
+	 * @return True if the given postdominator is on this stack, otherwise
+	 * false
+	 */
+	public boolean contains(UnitContainer postdom) {
+		for (PostdominatorStack cur = this; cur != null; cur = cur.tail)
+			if (cur.top.equals(postdom))
+				return true;
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		if (hashCode != 0)
+			return hashCode;
+
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + top.hashCode();
+		result = prime * result + (tail == null ? 0 : tail.hashCode());
+		this.hashCode = result;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+
+		PostdominatorStack cur = this;
+		PostdominatorStack other = (PostdominatorStack) obj;
+		if (cur.size != other.size)
+			return false;
+		while (cur != null) {
+			// Stacks often share their tails
+			if (cur == other)
+				return true;
+			if (cur.hashCode != 0 && other.hashCode != 0
+					&& cur.hashCode != other.hashCode)
+				return false;
+			if (!cur.top.equals(other.top))
+				return false;
+			cur = cur.tail;
+			other = other.tail;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (PostdominatorStack cur = this; cur != null; cur = cur.tail) {
+			if (cur != this)
+				sb.append(", ");
+			sb.append(cur.top);
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+
+}
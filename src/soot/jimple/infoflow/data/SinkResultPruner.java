@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.data;
+
+import heros.solver.Pair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.SootField;
+import soot.Value;
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.collect.IdentityPair;
+
+/**
+ * Class for removing results whose access path is entailed by the access
+ * path of another result at the same sink. Results are grouped by sink
+ * statement, implicit flag, source context and base value. Inside each
+ * group, the access paths are inserted into a prefix trie over their fields
+ * from the shortest to the longest one, so that every check only needs to
+ * walk along the fields of the current access path.
+ *
+ * Results that carry different source contexts are never pruned against
+ * each other, since each of them is the only record of its source.
+ */
+public class SinkResultPruner {
+
+	/**
+	 * Node in the prefix trie over the fields of the access paths in one
+	 * group
+	 */
+	private static class TrieNode {
+
+		private Map<SootField, TrieNode> children = null;
+		private boolean terminal = false;
+
+		public TrieNode getOrCreateChild(SootField field) {
+			if (children == null)
+				children = new HashMap<SootField, TrieNode>();
+			TrieNode child = children.get(field);
+			if (child == null) {
+				child = new TrieNode();
+				children.put(field, child);
+			}
+			return child;
+		}
+
+	}
+
+	private static final Comparator<AbstractionAtSink> FIELD_COUNT_COMPARATOR =
+			new Comparator<AbstractionAtSink>() {
+
+		@Override
+		public int compare(AbstractionAtSink o1, AbstractionAtSink o2) {
+			return Integer.compare(o1.getAbstraction().getAccessPath().getFieldCount(),
+					o2.getAbstraction().getAccessPath().getFieldCount());
+		}
+
+	};
+
+	/**
+	 * Removes all results from the given set whose access path is entailed
+	 * by the access path of another result with the same sink statement,
+	 * implicit flag and source context. The survivors are chosen as follows:
+	 * <ul>
+	 * <li>Of a.f and a.f.g, a.f is kept, since it entails a.f.g.</li>
+	 * <li>Of a plain local a and a.f, a.f is kept. Both access paths entail
+	 * each other, and the field access path is the more precise one. The
+	 * plain local is only kept if there is no access path with fields on
+	 * the same base.</li>
+	 * <li>Of several access paths with the same fields, e.g., a.f and a.f.*,
+	 * the one that comes first in the iteration order of the given set is
+	 * kept.</li>
+	 * </ul>
+	 * Static fields are handled like fields on a common base.
+	 * @param results The set of results to prune. This set is modified in
+	 * place.
+	 * @return The number of results that have been removed
+	 */
+	public static int prune(Set<AbstractionAtSink> results) {
+		if (results == null || results.size() < 2)
+			return 0;
+
+		// Group the results. Empty access paths neither entail nor are
+		// entailed by anything, so we can skip them.
+		Map<IdentityPair<Stmt, Boolean>, Map<Pair<SourceContext, Value>, List<AbstractionAtSink>>> groups =
+				new HashMap<IdentityPair<Stmt, Boolean>, Map<Pair<SourceContext, Value>, List<AbstractionAtSink>>>();
+		for (AbstractionAtSink abs : results) {
+			AccessPath ap = abs.getAbstraction().getAccessPath();
+			if (ap.isEmpty())
+				continue;
+
+			IdentityPair<Stmt, Boolean> sinkKey = new IdentityPair<Stmt, Boolean>
+					(abs.getSinkStmt(), Boolean.valueOf(abs.getAbstraction().isImplicit()));
+			Map<Pair<SourceContext, Value>, List<AbstractionAtSink>> byBase = groups.get(sinkKey);
+			if (byBase == null) {
+				byBase = new HashMap<Pair<SourceContext, Value>, List<AbstractionAtSink>>();
+				groups.put(sinkKey, byBase);
+			}
+
+			// Static field references have no base value
+			Pair<SourceContext, Value> baseKey = new Pair<SourceContext, Value>
+					(abs.getAbstraction().getSourceContext(), ap.getPlainValue());
+			List<AbstractionAtSink> group = byBase.get(baseKey);
+			if (group == null) {
+				group = new ArrayList<AbstractionAtSink>();
+				byBase.put(baseKey, group);
+			}
+			group.add(abs);
+		}
+
+		int removed = 0;
+		for (Map<Pair<SourceContext, Value>, List<AbstractionAtSink>> byBase : groups.values())
+			for (List<AbstractionAtSink> group : byBase.values()) {
+				if (group.size() < 2)
+					continue;
+
+				// An access path can only be entailed by one that is at most as
+				// long as itself, so shorter paths must be in the trie first.
+				// The sort is stable, so equivalent paths keep their order.
+				Collections.sort(group, FIELD_COUNT_COMPARATOR);
+
+				// A plain local and a field on it entail each other. We keep
+				// the field, so the plain local only goes into the trie if
+				// there are no fields on this base at all.
+				boolean hasFields = group.get(group.size() - 1).getAbstraction()
+						.getAccessPath().getFieldCount() > 0;
+				TrieNode root = new TrieNode();
+				for (AbstractionAtSink abs : group) {
+					AccessPath ap = abs.getAbstraction().getAccessPath();
+					if ((hasFields && ap.getFieldCount() == 0) || isEntailed(root, ap)) {
+						results.remove(abs);
+						removed++;
+					}
+				}
+			}
+		return removed;
+	}
+
+	/**
+	 * Checks whether the given access path is entailed by one of the access
+	 * paths already in the trie. If not, the access path is added to the
+	 * trie.
+	 * @param root The root of the trie
+	 * @param ap The access path to check
+	 * @return True if the given access path is entailed by an access path
+	 * in the trie, otherwise false
+	 */
+	private static boolean isEntailed(TrieNode root, AccessPath ap) {
+		TrieNode node = root;
+		if (node.terminal)
+			return true;
+
+		SootField[] fields = ap.getFields();
+		if (fields != null)
+			for (SootField field : fields) {
+				node = node.getOrCreateChild(field);
+				if (node.terminal)
+					return true;
+			}
+		node.terminal = true;
+		return false;
+	}
+
+}
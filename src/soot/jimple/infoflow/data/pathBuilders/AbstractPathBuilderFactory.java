@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.data.pathBuilders;
+
+/**
+ * Abstract base class for path builder factories
+ */
+public abstract class AbstractPathBuilderFactory implements IPathBuilderFactory {
+	
+	/**
+	 * Gets whether the {@link IAbstractionPathBuilder} object created by this
+	 * factory needs the graph of abstractions, i.e. the predecessors and
+	 * neighbors of the abstractions at the sinks.
+	 * @return True if the path builder walks the graph of abstractions,
+	 * false if it only needs the sources of the abstractions at the sinks.
+	 * In the latter case, the data flow solvers can run in a results-only
+	 * mode that never builds the graph.
+	 */
+	public boolean requiresAbstractionGraph() {
+		return true;
+	}
+	
+}
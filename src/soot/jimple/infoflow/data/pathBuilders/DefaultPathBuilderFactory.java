@@ -7,7 +7,7 @@ import soot.jimple.infoflow.solver.IInfoflowCFG;
  * 
  * @author Steven Arzt
  */
-public class DefaultPathBuilderFactory implements IPathBuilderFactory {
+public class DefaultPathBuilderFactory extends AbstractPathBuilderFactory {
 	
 	private final boolean reconstructPaths;
 	
@@ -100,4 +100,18 @@ public class DefaultPathBuilderFactory implements IPathBuilderFactory {
 		throw new RuntimeException("Unsupported path building algorithm");
 	}
 	
+	@Override
+	public boolean requiresAbstractionGraph() {
+		switch (pathBuilder) {
+		case Recursive :
+		case ContextSensitive :
+		case ContextInsensitive :
+			return true;
+		case ContextInsensitiveSourceFinder :
+		case None:
+			return false;
+		}
+		throw new RuntimeException("Unsupported path building algorithm");
+	}
+	
 }
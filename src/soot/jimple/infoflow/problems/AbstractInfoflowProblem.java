@@ -10,7 +10,6 @@
  ******************************************************************************/
 package soot.jimple.infoflow.problems;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -56,7 +55,8 @@ import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
 public abstract class AbstractInfoflowProblem extends DefaultJimpleIFDSTabulationProblem<Abstraction,
 			BiDiInterproceduralCFG<Unit, SootMethod>> {
 
-	protected final Map<Unit, Set<Abstraction>> initialSeeds = new HashMap<Unit, Set<Abstraction>>();
+	protected final MyConcurrentHashMap<Unit, Set<Abstraction>> initialSeeds =
+			new MyConcurrentHashMap<Unit, Set<Abstraction>>();
 	protected ITaintPropagationWrapper taintWrapper;
 	
 	protected final NativeCallHandler ncHandler = new DefaultNativeCallHandler();
@@ -68,6 +68,7 @@ public abstract class AbstractInfoflowProblem extends DefaultJimpleIFDSTabulatio
 	protected boolean enableStaticFields = true;
 	protected boolean enableExceptions = true;
 	protected boolean flowSensitiveAliasing = true;
+	protected boolean resultsOnly = false;
 	protected boolean enableTypeChecking = true;
 	protected boolean ignoreFlowsInSystemPackages = true;
 	
@@ -199,6 +200,18 @@ public abstract class AbstractInfoflowProblem extends DefaultJimpleIFDSTabulatio
 		this.zeroValue = null;
 	}
 	
+	/**
+	 * Sets whether the solver shall only compute the source-to-sink
+	 * connections without recording the predecessors and neighbors of the
+	 * abstractions. Paths cannot be reconstructed in this mode. Instead, the
+	 * abstractions created at the sources carry their sets of sources along.
+	 * @param resultsOnly True if only the source-to-sink connections shall
+	 * be computed, otherwise false
+	 */
+	public void setResultsOnly(boolean resultsOnly) {
+		this.resultsOnly = resultsOnly;
+	}
+	
 	/**
 	 * Sets whether type checking shall be done on casts and method calls
 	 * @param enableTypeChecking True if type checking shall be performed,
@@ -365,10 +378,11 @@ public abstract class AbstractInfoflowProblem extends DefaultJimpleIFDSTabulatio
 	 * @param seeds The abstractions with which to start at the given seed
 	 */
 	public void addInitialSeeds(Unit unit, Set<Abstraction> seeds) {
-		if (this.initialSeeds.containsKey(unit))
-			this.initialSeeds.get(unit).addAll(seeds);
-		else
-			this.initialSeeds.put(unit, new HashSet<Abstraction>(seeds));
+		Set<Abstraction> unitSeeds = this.initialSeeds.get(unit);
+		if (unitSeeds == null)
+			unitSeeds = this.initialSeeds.putIfAbsentElseGet(unit,
+					new ConcurrentHashSet<Abstraction>());
+		unitSeeds.addAll(seeds);
 	}
 	
 	/**
@@ -50,6 +50,7 @@ import soot.jimple.Stmt;
 import soot.jimple.infoflow.collect.MutableTwoElementSet;
 import soot.jimple.infoflow.data.Abstraction;
 import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
 import soot.jimple.infoflow.solver.IInfoflowSolver;
 import soot.jimple.infoflow.solver.functions.SolverCallFlowFunction;
 import soot.jimple.infoflow.solver.functions.SolverCallToReturnFlowFunction;
@@ -197,11 +198,11 @@ public class BackwardsInfoflowProblem extends AbstractInfoflowProblem {
 							// Special type handling for certain operations
 							else if (defStmt.getRightOp() instanceof LengthExpr) {
 								assert source.getAccessPath().getBaseType() instanceof ArrayType;
-								newLeftAbs = source.deriveNewAbstraction(new AccessPath(leftValue, null,
+								newLeftAbs = source.deriveNewAbstraction(AccessPathFactory.v().createAccessPath(leftValue, null,
 										IntType.v(), (Type[]) null, true), defStmt);
 							}
 							else if (defStmt.getRightOp() instanceof InstanceOfExpr)
-								newLeftAbs = source.deriveNewAbstraction(new AccessPath(leftValue, null,
+								newLeftAbs = source.deriveNewAbstraction(AccessPathFactory.v().createAccessPath(leftValue, null,
 										BooleanType.v(), (Type[]) null, true), defStmt);
 							
 							if (newLeftAbs == null)
@@ -63,6 +63,8 @@ import soot.jimple.infoflow.collect.MyConcurrentHashMap;
 import soot.jimple.infoflow.data.Abstraction;
 import soot.jimple.infoflow.data.AbstractionAtSink;
 import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
+import soot.jimple.infoflow.data.SourceContext;
 import soot.jimple.infoflow.handlers.TaintPropagationHandler;
 import soot.jimple.infoflow.handlers.TaintPropagationHandler.FlowFunctionType;
 import soot.jimple.infoflow.solver.IInfoflowCFG;
@@ -362,7 +364,7 @@ public class InfoflowProblem extends AbstractInfoflowProblem {
 					}
 					// Special type handling for certain operations
 					else if (rightValue instanceof InstanceOfExpr)
-						newAbs = source.deriveNewAbstraction(new AccessPath(leftValue, null,
+						newAbs = source.deriveNewAbstraction(AccessPathFactory.v().createAccessPath(leftValue, null,
 								BooleanType.v(), (Type[]) null, true), assignStmt);
 				}
 				else
@@ -372,7 +374,7 @@ public class InfoflowProblem extends AbstractInfoflowProblem {
 				// also taint the target of the assignment
 				if (newAbs == null)
 					if (source.getAccessPath().isEmpty())
-						newAbs = source.deriveNewAbstraction(new AccessPath(leftValue, true), assignStmt, true);
+						newAbs = source.deriveNewAbstraction(AccessPathFactory.v().createAccessPath(leftValue, true), assignStmt, true);
 					else
 						newAbs = source.deriveNewAbstraction(leftValue, cutFirstField, assignStmt, targetType);
 				taintSet.add(newAbs);
@@ -428,12 +430,10 @@ public class InfoflowProblem extends AbstractInfoflowProblem {
 							// This may also be a parameter access we regard as a source
 							Set<Abstraction> res = new HashSet<Abstraction>();
 							if (source == getZeroValue() && sourceInfo != null) {
-								Abstraction abs = new Abstraction(
-										new AccessPath(is.getLeftOp(), true),
+								Abstraction abs = createSourceAbstraction(
+										AccessPathFactory.v().createAccessPath(is.getLeftOp(), true),
 										is,
-										sourceInfo.getUserData(),
-										false,
-										false);
+										sourceInfo.getUserData());
 								res.add(abs);
 								
 								// Compute the aliases
@@ -482,12 +482,10 @@ public class InfoflowProblem extends AbstractInfoflowProblem {
 							// Fields can be sources in some cases
                             if (source == getZeroValue() && sourceInfo != null) {
     							Set<Abstraction> res = new HashSet<Abstraction>();
-                                final Abstraction abs = new Abstraction(
-                                		new AccessPath(assignStmt.getRightOp(), true),
+                                final Abstraction abs = createSourceAbstraction(
+                                		AccessPathFactory.v().createAccessPath(assignStmt.getRightOp(), true),
                                 		assignStmt,
-                                		sourceInfo.getUserData(),
-                                		false,
-                                		false);
+                                		sourceInfo.getUserData());
                                 res.add(abs);
                                 
                                 // Compute the aliases
@@ -636,7 +634,7 @@ public class InfoflowProblem extends AbstractInfoflowProblem {
 										
 										// Check for aliasing
 										mappedAP = aliasing.mayAlias(newSource.getAccessPath(),
-												new AccessPath(rightRef, false));
+												AccessPathFactory.v().createAccessPath(rightRef, false));
 										
 										// check if static variable is tainted (same name, same class)
 										//y = X.f && X.f tainted --> y, X.f tainted
@@ -720,7 +718,7 @@ public class InfoflowProblem extends AbstractInfoflowProblem {
 										|| newSource.getAccessPath().getBaseType() instanceof ArrayType;
 								assert leftValue instanceof Local;
 								
-								Abstraction lenAbs = newSource.deriveNewAbstraction(new AccessPath
+								Abstraction lenAbs = newSource.deriveNewAbstraction(AccessPathFactory.v().createAccessPath
 										(leftValue, null, IntType.v(), (Type[]) null, true), assignStmt);
 								return new TwoElementSet<Abstraction>(newSource, lenAbs);
 							}
@@ -1336,12 +1334,10 @@ public class InfoflowProblem extends AbstractInfoflowProblem {
 							else
 								target = ((InstanceInvokeExpr) invExpr).getBase();
 								
-							final Abstraction abs = new Abstraction(
-									new AccessPath(target, sourceInfo.getTaintSubFields()),
+							final Abstraction abs = createSourceAbstraction(
+									AccessPathFactory.v().createAccessPath(target, sourceInfo.getTaintSubFields()),
 									iCallStmt,
-									sourceInfo.getUserData(),
-									false,
-									false);
+									sourceInfo.getUserData());
 							res.add(abs);
 							
 							// Compute the aliases
@@ -1428,7 +1424,7 @@ public class InfoflowProblem extends AbstractInfoflowProblem {
 										&& !(leftVal instanceof FieldRef))
 									return Collections.singleton(newSource);
 								
-								Abstraction abs = newSource.deriveNewAbstraction(new AccessPath(leftVal, true),
+								Abstraction abs = newSource.deriveNewAbstraction(AccessPathFactory.v().createAccessPath(leftVal, true),
 										iCallStmt);
 								return new TwoElementSet<Abstraction>(newSource, abs);
 							}
@@ -1599,6 +1595,22 @@ public class InfoflowProblem extends AbstractInfoflowProblem {
 		};
 	}
 
+	/**
+	 * Creates the abstraction for a value that has been tainted by a source
+	 * @param sourceVal The access path of the tainted value
+	 * @param sourceStmt The source statement
+	 * @param userData The user data of the source
+	 * @return The new abstraction
+	 */
+	private Abstraction createSourceAbstraction(AccessPath sourceVal,
+			Stmt sourceStmt, Object userData) {
+		Abstraction abs = new Abstraction(sourceVal, sourceStmt, userData,
+				false, false);
+		if (resultsOnly)
+			abs.trackSourceContexts();
+		return abs;
+	}
+	
 	@Override
 	public boolean autoAddZero() {
 		return false;
@@ -1614,6 +1626,20 @@ public class InfoflowProblem extends AbstractInfoflowProblem {
 				(interproceduralCFG().getMethodOf(resultAbs.getSinkStmt()).getDeclaringClass().getName()))
 			return;
 		
+		// If we only need the source-to-sink connections, the abstraction
+		// carries its sources and we need no neighbors. We record one result
+		// per source, since equal abstractions from different sources have
+		// been merged.
+		if (resultsOnly) {
+			Abstraction abs = resultAbs.getAbstraction();
+			for (SourceContext sc : abs.getSourceContexts()) {
+				Abstraction sourceAbs = abs.injectSourceContext(sc);
+				this.results.putIfAbsent(new AbstractionAtSink(sourceAbs,
+						resultAbs.getSinkStmt()), sourceAbs);
+			}
+			return;
+		}
+		
 		// Make sure that the sink statement also appears inside the
 		// abstraction
 		resultAbs = new AbstractionAtSink
@@ -1628,6 +1654,14 @@ public class InfoflowProblem extends AbstractInfoflowProblem {
 			newAbs.addNeighbor(resultAbs.getAbstraction());
 	}
 
+	/**
+	 * Gets the helper object for aliasing operations used by this problem
+	 * @return The helper object for aliasing operations
+	 */
+	public Aliasing getAliasing() {
+		return this.aliasing;
+	}
+	
 	/**
 	 * Gets the results of the data flow analysis
 	 */
@@ -1,5 +1,7 @@
 package soot.jimple.infoflow.solver;
 
+import soot.SootField;
+import soot.SootMethod;
 import soot.jimple.toolkits.ide.icfg.BackwardsInterproceduralCFG;
 
 /**
@@ -21,4 +23,19 @@ public class BackwardsInfoflowCFG extends InfoflowCFG {
 		return this.baseCFG;
 	}
 	
+	@Override
+	public boolean isStaticFieldRead(SootMethod method, SootField variable) {
+		return baseCFG.isStaticFieldRead(method, variable);
+	}
+	
+	@Override
+	public boolean isStaticFieldUsed(SootMethod method, SootField variable) {
+		return baseCFG.isStaticFieldUsed(method, variable);
+	}
+	
+	@Override
+	public boolean hasSideEffects(SootMethod method) {
+		return baseCFG.hasSideEffects(method);
+	}
+	
 }
@@ -0,0 +1,571 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import soot.SootField;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.toolkits.graph.DirectedGraph;
+
+/**
+ * Immutable snapshot of an interprocedural control-flow graph. All units of
+ * the given methods receive dense integer identifiers. Successors,
+ * predecessors, return sites, callees, callers, start and end points are
+ * stored in flat arrays in compressed sparse row format, so that the solvers
+ * do not need to go through the caches of the original graph for every
+ * edge they process.
+ *
+ * The snapshot must only be taken once the callgraph and the method bodies
+ * are final. Units that are not part of the snapshot, as well as units of
+ * methods that have changed after the snapshot was taken, are looked up in
+ * the original graph.
+ */
+public class FrozenInfoflowCFG implements IInfoflowCFG {
+
+	private static final byte FLAG_CALL = 0x01;
+	private static final byte FLAG_EXIT = 0x02;
+	private static final byte FLAG_START = 0x04;
+	private static final byte FLAG_RETURN_SITE = 0x08;
+
+	/**
+	 * Read-only map from objects to integer identifiers that compares the
+	 * keys by identity. It uses open addressing to avoid boxing and entry
+	 * objects.
+	 */
+	private static class IdentityIndex {
+
+		private final Object[] keys;
+		private final int[] values;
+		private final int mask;
+
+		public IdentityIndex(int expectedSize) {
+			int capacity = Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1;
+			this.keys = new Object[capacity];
+			this.values = new int[capacity];
+			this.mask = capacity - 1;
+		}
+
+		private int indexFor(Object key) {
+			int h = System.identityHashCode(key);
+			// Spread the bits, identity hash codes are often sequential
+			h ^= (h >>> 16);
+			h *= 0x85ebca6b;
+			h ^= (h >>> 13);
+			return h & mask;
+		}
+
+		public void put(Object key, int value) {
+			int idx = indexFor(key);
+			while (keys[idx] != null && keys[idx] != key)
+				idx = (idx + 1) & mask;
+			keys[idx] = key;
+			values[idx] = value;
+		}
+
+		public int get(Object key) {
+			int idx = indexFor(key);
+			Object k;
+			while ((k = keys[idx]) != null) {
+				if (k == key)
+					return values[idx];
+				idx = (idx + 1) & mask;
+			}
+			return -1;
+		}
+
+	}
+
+	/**
+	 * Growable array of integers used while building the snapshot
+	 */
+	private static class IntBuffer {
+
+		private int[] data = new int[1024];
+		private int size = 0;
+
+		public void add(int value) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, size * 2);
+			data[size++] = value;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int[] toArray() {
+			return Arrays.copyOf(data, size);
+		}
+
+	}
+
+	/**
+	 * Unmodifiable list view on a range of unit identifiers
+	 */
+	private static class UnitIdList extends AbstractList<Unit> implements RandomAccess {
+
+		private final Unit[] units;
+		private final int[] ids;
+		private final int from;
+		private final int size;
+
+		public UnitIdList(Unit[] units, int[] ids, int from, int to) {
+			this.units = units;
+			this.ids = ids;
+			this.from = from;
+			this.size = to - from;
+		}
+
+		@Override
+		public Unit get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			return units[ids[from + index]];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+	}
+
+	/**
+	 * Unmodifiable list view on a range of an object array
+	 */
+	private static class ArraySlice<T> extends AbstractList<T> implements RandomAccess {
+
+		private final T[] data;
+		private final int from;
+		private final int size;
+
+		public ArraySlice(T[] data, int from, int to) {
+			this.data = data;
+			this.from = from;
+			this.size = to - from;
+		}
+
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			return data[from + index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+	}
+
+	protected final IInfoflowCFG delegate;
+
+	private final IdentityIndex unitIndex;
+	private final IdentityIndex methodIndex;
+
+	private final Unit[] units;
+	private final int[] unitToMethod;
+	private final byte[] unitFlags;
+
+	private final int[] succOffsets;
+	private final int[] succs;
+	private final int[] predOffsets;
+	private final int[] preds;
+	private final int[] returnSiteOffsets;
+	private final int[] returnSites;
+	private final int[] calleeOffsets;
+	private final SootMethod[] callees;
+
+	private final SootMethod[] methods;
+	private final int[] startPointOffsets;
+	private final int[] startPoints;
+	private final int[] endPointOffsets;
+	private final int[] endPoints;
+	private final int[] callerOffsets;
+	private final Unit[] callers;
+
+	private volatile boolean[] changedMethods;
+
+	/**
+	 * Creates a snapshot of the given interprocedural control-flow graph
+	 * @param delegate The control-flow graph of which to take a snapshot
+	 * @param methods The methods to include in the snapshot. Methods without
+	 * an active body are skipped.
+	 */
+	public FrozenInfoflowCFG(IInfoflowCFG delegate, Collection<SootMethod> methods) {
+		this.delegate = delegate;
+
+		// Assign the identifiers
+		int methodCount = 0;
+		int unitCount = 0;
+		for (SootMethod sm : methods)
+			if (sm.hasActiveBody()) {
+				methodCount++;
+				unitCount += sm.getActiveBody().getUnits().size();
+			}
+
+		this.methods = new SootMethod[methodCount];
+		this.methodIndex = new IdentityIndex(methodCount);
+		this.units = new Unit[unitCount];
+		this.unitToMethod = new int[unitCount];
+		this.unitIndex = new IdentityIndex(unitCount);
+
+		int methodId = 0;
+		int unitId = 0;
+		for (SootMethod sm : methods) {
+			if (!sm.hasActiveBody() || methodIndex.get(sm) >= 0)
+				continue;
+			this.methods[methodId] = sm;
+			methodIndex.put(sm, methodId);
+			for (Unit u : sm.getActiveBody().getUnits()) {
+				units[unitId] = u;
+				unitToMethod[unitId] = methodId;
+				unitIndex.put(u, unitId);
+				unitId++;
+			}
+			methodId++;
+		}
+		this.changedMethods = new boolean[methodId];
+
+		// Record the per-unit information
+		this.unitFlags = new byte[unitId];
+		this.succOffsets = new int[unitId + 1];
+		this.predOffsets = new int[unitId + 1];
+		this.returnSiteOffsets = new int[unitId + 1];
+		this.calleeOffsets = new int[unitId + 1];
+		IntBuffer succBuf = new IntBuffer();
+		IntBuffer predBuf = new IntBuffer();
+		IntBuffer retSiteBuf = new IntBuffer();
+		SootMethod[] calleeBuf = new SootMethod[Math.max(unitId / 8, 16)];
+		int calleeCount = 0;
+		for (int i = 0; i < unitId; i++) {
+			Unit u = units[i];
+			byte flags = 0;
+
+			addUnitIds(delegate.getSuccsOf(u), succBuf);
+			succOffsets[i + 1] = succBuf.size();
+			addUnitIds(delegate.getPredsOf(u), predBuf);
+			predOffsets[i + 1] = predBuf.size();
+
+			if (delegate.isCallStmt(u)) {
+				flags |= FLAG_CALL;
+				addUnitIds(delegate.getReturnSitesOfCallAt(u), retSiteBuf);
+				for (SootMethod callee : delegate.getCalleesOfCallAt(u)) {
+					if (calleeCount == calleeBuf.length)
+						calleeBuf = Arrays.copyOf(calleeBuf, calleeCount * 2);
+					calleeBuf[calleeCount++] = callee;
+				}
+			}
+			returnSiteOffsets[i + 1] = retSiteBuf.size();
+			calleeOffsets[i + 1] = calleeCount;
+
+			if (delegate.isExitStmt(u))
+				flags |= FLAG_EXIT;
+			if (delegate.isStartPoint(u))
+				flags |= FLAG_START;
+			if (delegate.isReturnSite(u))
+				flags |= FLAG_RETURN_SITE;
+			unitFlags[i] = flags;
+		}
+		this.succs = succBuf.toArray();
+		this.preds = predBuf.toArray();
+		this.returnSites = retSiteBuf.toArray();
+		this.callees = Arrays.copyOf(calleeBuf, calleeCount);
+
+		// Record the per-method information
+		this.startPointOffsets = new int[methodId + 1];
+		this.endPointOffsets = new int[methodId + 1];
+		this.callerOffsets = new int[methodId + 1];
+		IntBuffer startBuf = new IntBuffer();
+		IntBuffer endBuf = new IntBuffer();
+		Unit[] callerBuf = new Unit[Math.max(methodId * 2, 16)];
+		int callerCount = 0;
+		for (int i = 0; i < methodId; i++) {
+			SootMethod sm = this.methods[i];
+			addUnitIds(delegate.getStartPointsOf(sm), startBuf);
+			startPointOffsets[i + 1] = startBuf.size();
+			addUnitIds(delegate.getEndPointsOf(sm), endBuf);
+			endPointOffsets[i + 1] = endBuf.size();
+			for (Unit caller : delegate.getCallersOf(sm)) {
+				if (callerCount == callerBuf.length)
+					callerBuf = Arrays.copyOf(callerBuf, callerCount * 2);
+				callerBuf[callerCount++] = caller;
+			}
+			callerOffsets[i + 1] = callerCount;
+		}
+		this.startPoints = startBuf.toArray();
+		this.endPoints = endBuf.toArray();
+		this.callers = Arrays.copyOf(callerBuf, callerCount);
+	}
+
+	/**
+	 * Adds the identifiers of the given units to the given buffer. All units
+	 * must belong to the same method as the unit for which they have been
+	 * computed, so they are always part of the snapshot.
+	 * @param units The units whose identifiers to add
+	 * @param buffer The buffer to which to add the identifiers
+	 */
+	private void addUnitIds(Collection<Unit> units, IntBuffer buffer) {
+		for (Unit u : units) {
+			int id = unitIndex.get(u);
+			if (id < 0)
+				throw new RuntimeException("Unit " + u + " is not part of the snapshot");
+			buffer.add(id);
+		}
+	}
+
+	/**
+	 * Gets the identifier of the given unit in this snapshot
+	 * @param u The unit for which to get the identifier
+	 * @return The identifier of the given unit, or -1 if the unit is not
+	 * part of the snapshot or its method has changed since the snapshot was
+	 * taken
+	 */
+	private int getUnitId(Unit u) {
+		int id = unitIndex.get(u);
+		if (id >= 0 && changedMethods[unitToMethod[id]])
+			return -1;
+		return id;
+	}
+
+	/**
+	 * Gets the identifier of the given method in this snapshot
+	 * @param m The method for which to get the identifier
+	 * @return The identifier of the given method, or -1 if the method is
+	 * not part of the snapshot or has changed since the snapshot was taken
+	 */
+	private int getMethodId(SootMethod m) {
+		int id = methodIndex.get(m);
+		if (id >= 0 && changedMethods[id])
+			return -1;
+		return id;
+	}
+
+	private List<Unit> unitList(int[] offsets, int[] ids, int idx) {
+		int from = offsets[idx];
+		int to = offsets[idx + 1];
+		if (from == to)
+			return Collections.emptyList();
+		return new UnitIdList(units, ids, from, to);
+	}
+
+	/**
+	 * Gets the number of units in this snapshot
+	 * @return The number of units in this snapshot
+	 */
+	public int getUnitCount() {
+		return unitFlags.length;
+	}
+
+	/**
+	 * Gets the control-flow graph of which this snapshot was taken
+	 * @return The control-flow graph of which this snapshot was taken
+	 */
+	public IInfoflowCFG getDelegate() {
+		return this.delegate;
+	}
+
+	@Override
+	public SootMethod getMethodOf(Unit u) {
+		int id = getUnitId(u);
+		if (id < 0)
+			return delegate.getMethodOf(u);
+		return methods[unitToMethod[id]];
+	}
+
+	@Override
+	public List<Unit> getSuccsOf(Unit u) {
+		int id = getUnitId(u);
+		if (id < 0)
+			return delegate.getSuccsOf(u);
+		return unitList(succOffsets, succs, id);
+	}
+
+	@Override
+	public List<Unit> getPredsOf(Unit u) {
+		int id = getUnitId(u);
+		if (id < 0)
+			return delegate.getPredsOf(u);
+		return unitList(predOffsets, preds, id);
+	}
+
+	@Override
+	public List<Unit> getPredsOfCallAt(Unit u) {
+		return getPredsOf(u);
+	}
+
+	@Override
+	public boolean isCallStmt(Unit u) {
+		int id = getUnitId(u);
+		if (id < 0)
+			return delegate.isCallStmt(u);
+		return (unitFlags[id] & FLAG_CALL) != 0;
+	}
+
+	@Override
+	public boolean isExitStmt(Unit u) {
+		int id = getUnitId(u);
+		if (id < 0)
+			return delegate.isExitStmt(u);
+		return (unitFlags[id] & FLAG_EXIT) != 0;
+	}
+
+	@Override
+	public boolean isStartPoint(Unit u) {
+		int id = getUnitId(u);
+		if (id < 0)
+			return delegate.isStartPoint(u);
+		return (unitFlags[id] & FLAG_START) != 0;
+	}
+
+	@Override
+	public boolean isReturnSite(Unit n) {
+		int id = getUnitId(n);
+		if (id < 0)
+			return delegate.isReturnSite(n);
+		return (unitFlags[id] & FLAG_RETURN_SITE) != 0;
+	}
+
+	@Override
+	public Collection<SootMethod> getCalleesOfCallAt(Unit u) {
+		int id = getUnitId(u);
+		if (id < 0)
+			return delegate.getCalleesOfCallAt(u);
+		int from = calleeOffsets[id];
+		int to = calleeOffsets[id + 1];
+		if (from == to)
+			return Collections.emptyList();
+		return new ArraySlice<SootMethod>(callees, from, to);
+	}
+
+	@Override
+	public Collection<Unit> getReturnSitesOfCallAt(Unit u) {
+		int id = getUnitId(u);
+		if (id < 0)
+			return delegate.getReturnSitesOfCallAt(u);
+		return unitList(returnSiteOffsets, returnSites, id);
+	}
+
+	@Override
+	public Collection<Unit> getStartPointsOf(SootMethod m) {
+		int id = getMethodId(m);
+		if (id < 0)
+			return delegate.getStartPointsOf(m);
+		return unitList(startPointOffsets, startPoints, id);
+	}
+
+	@Override
+	public Collection<Unit> getEndPointsOf(SootMethod m) {
+		int id = getMethodId(m);
+		if (id < 0)
+			return delegate.getEndPointsOf(m);
+		return unitList(endPointOffsets, endPoints, id);
+	}
+
+	@Override
+	public Collection<Unit> getCallersOf(SootMethod m) {
+		int id = getMethodId(m);
+		if (id < 0)
+			return delegate.getCallersOf(m);
+		int from = callerOffsets[id];
+		int to = callerOffsets[id + 1];
+		if (from == to)
+			return Collections.emptyList();
+		return new ArraySlice<Unit>(callers, from, to);
+	}
+
+	//delegate methods follow
+
+	@Override
+	public boolean isFallThroughSuccessor(Unit u, Unit succ) {
+		return delegate.isFallThroughSuccessor(u, succ);
+	}
+
+	@Override
+	public boolean isBranchTarget(Unit u, Unit succ) {
+		return delegate.isBranchTarget(u, succ);
+	}
+
+	@Override
+	public Set<Unit> allNonCallStartNodes() {
+		return delegate.allNonCallStartNodes();
+	}
+
+	@Override
+	public Set<Unit> allNonCallEndNodes() {
+		return delegate.allNonCallEndNodes();
+	}
+
+	@Override
+	public Set<Unit> getCallsFromWithin(SootMethod m) {
+		return delegate.getCallsFromWithin(m);
+	}
+
+	@Override
+	public DirectedGraph<Unit> getOrCreateUnitGraph(SootMethod m) {
+		return delegate.getOrCreateUnitGraph(m);
+	}
+
+	@Override
+	public List<Value> getParameterRefs(SootMethod m) {
+		return delegate.getParameterRefs(m);
+	}
+
+	@Override
+	public UnitContainer getPostdominatorOf(Unit u) {
+		return delegate.getPostdominatorOf(u);
+	}
+
+	@Override
+	public boolean isStaticFieldRead(SootMethod method, SootField variable) {
+		return delegate.isStaticFieldRead(method, variable);
+	}
+
+	@Override
+	public boolean isStaticFieldUsed(SootMethod method, SootField variable) {
+		return delegate.isStaticFieldUsed(method, variable);
+	}
+
+	@Override
+	public boolean hasSideEffects(SootMethod method) {
+		return delegate.hasSideEffects(method);
+	}
+
+	@Override
+	public boolean methodReadsValue(SootMethod m, Value v) {
+		return delegate.methodReadsValue(m, v);
+	}
+
+	@Override
+	public synchronized void notifyMethodChanged(SootMethod m) {
+		delegate.notifyMethodChanged(m);
+
+		// The snapshot of this method is outdated, so we need to ask the
+		// original graph from now on
+		int id = methodIndex.get(m);
+		if (id >= 0 && !changedMethods[id]) {
+			boolean[] newChanged = Arrays.copyOf(changedMethods, changedMethods.length);
+			newChanged[id] = true;
+			this.changedMethods = newChanged;
+		}
+	}
+
+}
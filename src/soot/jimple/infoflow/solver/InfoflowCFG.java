@@ -22,6 +22,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import soot.Local;
+import soot.MethodOrMethodContext;
 import soot.Scene;
 import soot.SootField;
 import soot.SootMethod;
@@ -32,14 +33,17 @@ import soot.jimple.AssignStmt;
 import soot.jimple.FieldRef;
 import soot.jimple.StaticFieldRef;
 import soot.jimple.Stmt;
+import soot.jimple.infoflow.solver.MethodEffectSummaries.ISideEffectCondition;
 import soot.jimple.toolkits.callgraph.Edge;
 import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
 import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
 import soot.toolkits.graph.DirectedGraph;
-import soot.toolkits.graph.MHGPostDominatorsFinder;
+import soot.util.queue.QueueReader;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
 
 /**
  * Interprocedural control-flow graph for the infoflow solver
@@ -64,18 +68,37 @@ public class InfoflowCFG implements IInfoflowCFG {
 	
 	protected final BiDiInterproceduralCFG<Unit, SootMethod> delegate; 
 	
-	protected final LoadingCache<Unit,UnitContainer> unitToPostdominator =
-			IDESolver.DEFAULT_CACHE_BUILDER.build( new CacheLoader<Unit,UnitContainer>() {
+	protected volatile MethodEffectSummaries effectSummaries = null;
+	
+	/**
+	 * The maximum number of units for which postdominator trees are kept in
+	 * memory at the same time
+	 */
+	private static final long MAX_POSTDOMINATOR_UNITS = 500000;
+	
+	/**
+	 * Postdominator trees weighted by their number of units and evicted in
+	 * least-recently-used order. Guava splits the maximum weight among the
+	 * segments of a cache, and a tree that is heavier than its segment would
+	 * be evicted right after it has been computed. We therefore use a single
+	 * segment, so that every tree of up to MAX_POSTDOMINATOR_UNITS units
+	 * fits. Lookups do not lock the segment, only loads and evictions do.
+	 */
+	protected final LoadingCache<SootMethod,PostdominatorTree> methodToPostdominators =
+			CacheBuilder.newBuilder().concurrencyLevel(1)
+			.maximumWeight(MAX_POSTDOMINATOR_UNITS)
+			.weigher(new Weigher<SootMethod, PostdominatorTree>() {
 				@Override
-				public UnitContainer load(Unit unit) throws Exception {
-					SootMethod method = getMethodOf(unit);
-					DirectedGraph<Unit> graph = delegate.getOrCreateUnitGraph(method);
-					MHGPostDominatorsFinder<Unit> postdominatorFinder = new MHGPostDominatorsFinder<Unit>(graph);
-					Unit postdom = postdominatorFinder.getImmediateDominator(unit);
-					if (postdom == null)
-						return new UnitContainer(method);
-					else
-						return new UnitContainer(postdom);
+				public int weigh(SootMethod method, PostdominatorTree tree) {
+					// A tree larger than the whole budget still gets cached,
+					// but displaces all others
+					return (int) Math.min(Math.max(tree.size(), 1), MAX_POSTDOMINATOR_UNITS);
+				}
+			})
+			.build(new CacheLoader<SootMethod,PostdominatorTree>() {
+				@Override
+				public PostdominatorTree load(SootMethod method) throws Exception {
+					return new PostdominatorTree(method, delegate.getOrCreateUnitGraph(method));
 				}
 			});
 	
@@ -117,7 +140,20 @@ public class InfoflowCFG implements IInfoflowCFG {
 	
 	@Override
 	public UnitContainer getPostdominatorOf(Unit u) {
-		return unitToPostdominator.getUnchecked(u);
+		SootMethod method = getMethodOf(u);
+		UnitContainer postdom = getPostdominatorTree(method).getPostdominatorOf(u);
+		return postdom == null ? new UnitContainer(method) : postdom;
+	}
+	
+	/**
+	 * Gets the postdominator tree of the given method. The tree is computed
+	 * once and then shared by all units of the method until it is evicted
+	 * from the cache.
+	 * @param method The method for which to get the postdominator tree
+	 * @return The postdominator tree of the given method
+	 */
+	public PostdominatorTree getPostdominatorTree(SootMethod method) {
+		return methodToPostdominators.getUnchecked(method);
 	}
 	
 	//delegate methods follow
@@ -222,13 +258,62 @@ public class InfoflowCFG implements IInfoflowCFG {
 		return delegate.isReturnSite(n);
 	}
 	
+	/**
+	 * Computes the static field accesses and side effects of all reachable
+	 * methods in one bottom-up pass over the callgraph. Afterwards, the
+	 * respective queries on these methods are simple lookups. This method
+	 * must only be called once the callgraph is complete.
+	 * @param numThreads The number of threads to use
+	 */
+	public void computeEffectSummaries(int numThreads) {
+		List<SootMethod> methods = new ArrayList<SootMethod>();
+		for (QueueReader<MethodOrMethodContext> rdr =
+				Scene.v().getReachableMethods().listener(); rdr.hasNext(); )
+			methods.add(rdr.next().method());
+		
+		this.effectSummaries = new MethodEffectSummaries(Scene.v().getCallGraph(),
+				methods, new ISideEffectCondition() {
+			
+			@Override
+			public boolean isEffectFree(SootMethod method) {
+				return false;
+			}
+			
+			@Override
+			public boolean hasSideEffect(SootMethod method, Stmt stmt) {
+				return stmt instanceof AssignStmt
+						&& ((AssignStmt) stmt).getLeftOp() instanceof FieldRef;
+			}
+			
+		}, true, numThreads);
+	}
+	
+	/**
+	 * Gets the effect summaries for the given method if they are available
+	 * @param method The method for which to get the effect summaries
+	 * @return The effect summaries if they contain the given method,
+	 * otherwise null
+	 */
+	private MethodEffectSummaries getEffectSummaries(SootMethod method) {
+		MethodEffectSummaries summaries = this.effectSummaries;
+		if (summaries != null && summaries.hasSummary(method))
+			return summaries;
+		return null;
+	}
+	
 	@Override
 	public boolean isStaticFieldRead(SootMethod method, SootField variable) {
+		MethodEffectSummaries summaries = getEffectSummaries(method);
+		if (summaries != null)
+			return summaries.isStaticFieldRead(method, variable);
 		return isStaticFieldUsed(method, variable, new HashSet<SootMethod>(), true);
 	}
 	
 	@Override
 	public boolean isStaticFieldUsed(SootMethod method, SootField variable) {
+		MethodEffectSummaries summaries = getEffectSummaries(method);
+		if (summaries != null)
+			return summaries.isStaticFieldUsed(method, variable);
 		return isStaticFieldUsed(method, variable, new HashSet<SootMethod>(), false);
 	}
 	
@@ -328,6 +413,9 @@ public class InfoflowCFG implements IInfoflowCFG {
 
 	@Override
 	public boolean hasSideEffects(SootMethod method) {
+		MethodEffectSummaries summaries = getEffectSummaries(method);
+		if (summaries != null)
+			return summaries.hasSideEffects(method);
 		return hasSideEffects(method, new HashSet<SootMethod>());
 	}
 	
@@ -371,6 +459,10 @@ public class InfoflowCFG implements IInfoflowCFG {
 	
 	@Override
 	public void notifyMethodChanged(SootMethod m) {
+		methodToPostdominators.invalidate(m);
+		
+		// The method might have gained new effects
+		this.effectSummaries = null;
 		if (delegate instanceof JimpleBasedInterproceduralCFG)
 			((JimpleBasedInterproceduralCFG) delegate).initializeUnitToOwner(m);
 	}
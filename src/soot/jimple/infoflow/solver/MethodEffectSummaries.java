@@ -0,0 +1,608 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import soot.Body;
+import soot.Local;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.AssignStmt;
+import soot.jimple.StaticFieldRef;
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.collect.ConcurrentIdMap;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+
+/**
+ * Bottom-up summaries of the effects of methods and all of their transitive
+ * callees. The callgraph is split into strongly connected components which
+ * are summarized in reverse topological order, so that every component only
+ * needs to merge the summaries of the components it calls. Independent
+ * components are processed in parallel. All methods in a component share
+ * the same summary.
+ *
+ * The summaries reflect the callgraph and the method bodies at the time they
+ * were computed. They must be recomputed if either changes in a way that
+ * can add new effects.
+ *
+ * Optionally, every component also gets a digest over the signatures and
+ * Jimple bodies of its methods and the digests of all components it calls.
+ * Two methods with the same digest in two different Soot runs thus have the
+ * same code and the same transitive callees with the same code.
+ */
+public class MethodEffectSummaries {
+
+	/**
+	 * Condition that decides which statements have side effects
+	 */
+	public interface ISideEffectCondition {
+
+		/**
+		 * Checks whether the given method shall be regarded as free of any
+		 * effects regardless of its body and its callees
+		 * @param method The method to check
+		 * @return True if the given method shall be regarded as free of
+		 * effects, otherwise false
+		 */
+		public boolean isEffectFree(SootMethod method);
+
+		/**
+		 * Checks whether the given statement has a side effect
+		 * @param method The method containing the statement
+		 * @param stmt The statement to check
+		 * @return True if the given statement has a side effect, otherwise
+		 * false
+		 */
+		public boolean hasSideEffect(SootMethod method, Stmt stmt);
+
+	}
+
+	/**
+	 * The effects of a strongly connected component and all of its callees
+	 */
+	private static class Summary {
+
+		private BitSet staticReads = null;
+		private BitSet staticWrites = null;
+		private boolean sideEffects = false;
+		private String digest = null;
+
+	}
+
+	/**
+	 * Union of bit sets that shares the first non-empty set until a second
+	 * one needs to be added
+	 */
+	private static class BitSetUnion {
+
+		private BitSet set = null;
+		private boolean owned = false;
+
+		public void add(BitSet other) {
+			if (other == null || other.isEmpty() || other == set)
+				return;
+			if (set == null) {
+				set = other;
+				return;
+			}
+			if (!owned) {
+				set = (BitSet) set.clone();
+				owned = true;
+			}
+			set.or(other);
+		}
+
+	}
+
+	private final ISideEffectCondition condition;
+	private final boolean trackStaticFields;
+	private final boolean computeDigests;
+	private final ConcurrentIdMap<SootField> fieldIds = new ConcurrentIdMap<SootField>();
+
+	private final Map<SootMethod, Summary> methodToSummary;
+
+	// Only used while computing the summaries
+	private List<SootMethod> methods;
+	private int[][] callees;
+	private int[] sccOf;
+	private List<int[]> sccs;
+	private Summary[] sccSummaries;
+
+	/**
+	 * Computes the effect summaries of the given methods and all of their
+	 * transitive callees
+	 * @param callGraph The callgraph to use
+	 * @param entryMethods The methods for which to compute summaries
+	 * @param condition The condition that decides which statements have side
+	 * effects
+	 * @param trackStaticFields True if the static fields read and written by
+	 * the methods shall be recorded, otherwise false
+	 * @param numThreads The number of threads to use
+	 */
+	public MethodEffectSummaries(CallGraph callGraph, Collection<SootMethod> entryMethods,
+			ISideEffectCondition condition, boolean trackStaticFields, int numThreads) {
+		this(callGraph, entryMethods, condition, trackStaticFields, false, numThreads);
+	}
+
+	/**
+	 * Computes the effect summaries of the given methods and all of their
+	 * transitive callees
+	 * @param callGraph The callgraph to use
+	 * @param entryMethods The methods for which to compute summaries
+	 * @param condition The condition that decides which statements have side
+	 * effects
+	 * @param trackStaticFields True if the static fields read and written by
+	 * the methods shall be recorded, otherwise false
+	 * @param computeDigests True if a digest over the code of every method
+	 * and its transitive callees shall be computed, see
+	 * {@link #getDigest(SootMethod)}
+	 * @param numThreads The number of threads to use
+	 */
+	public MethodEffectSummaries(CallGraph callGraph, Collection<SootMethod> entryMethods,
+			ISideEffectCondition condition, boolean trackStaticFields,
+			boolean computeDigests, int numThreads) {
+		this.condition = condition;
+		this.trackStaticFields = trackStaticFields;
+		this.computeDigests = computeDigests;
+
+		buildCallGraph(callGraph, entryMethods);
+		computeSCCs();
+
+		this.sccSummaries = new Summary[sccs.size()];
+		for (int i = 0; i < sccSummaries.length; i++)
+			sccSummaries[i] = new Summary();
+		if (numThreads <= 1 || sccs.size() < 2) {
+			// The components are already in reverse topological order
+			for (int i = 0; i < sccs.size(); i++)
+				summarize(i);
+		}
+		else
+			summarizeParallel(numThreads);
+
+		this.methodToSummary = new HashMap<SootMethod, Summary>(methods.size() * 2);
+		for (int i = 0; i < methods.size(); i++)
+			methodToSummary.put(methods.get(i), sccSummaries[sccOf[i]]);
+
+		this.methods = null;
+		this.callees = null;
+		this.sccOf = null;
+		this.sccs = null;
+		this.sccSummaries = null;
+	}
+
+	/**
+	 * Collects all methods with bodies that are transitively reachable from
+	 * the given methods, together with their callees
+	 * @param callGraph The callgraph to use
+	 * @param entryMethods The methods from which to start
+	 */
+	private void buildCallGraph(CallGraph callGraph, Collection<SootMethod> entryMethods) {
+		this.methods = new ArrayList<SootMethod>(entryMethods.size());
+		Map<SootMethod, Integer> methodIndex = new HashMap<SootMethod, Integer>(entryMethods.size() * 2);
+		for (SootMethod sm : entryMethods)
+			if (sm.hasActiveBody() && !methodIndex.containsKey(sm)) {
+				methodIndex.put(sm, methods.size());
+				methods.add(sm);
+			}
+
+		List<int[]> calleeList = new ArrayList<int[]>(methods.size());
+		int[] buffer = new int[16];
+		for (int i = 0; i < methods.size(); i++) {
+			SootMethod sm = methods.get(i);
+			int count = 0;
+			if (!condition.isEffectFree(sm))
+				for (Unit u : sm.getActiveBody().getUnits()) {
+					if (!((Stmt) u).containsInvokeExpr())
+						continue;
+					for (Iterator<Edge> edgeIt = callGraph.edgesOutOf(u); edgeIt.hasNext(); ) {
+						SootMethod tgt = edgeIt.next().getTgt().method();
+						if (!tgt.hasActiveBody())
+							continue;
+
+						Integer tgtIdx = methodIndex.get(tgt);
+						if (tgtIdx == null) {
+							tgtIdx = methods.size();
+							methodIndex.put(tgt, tgtIdx);
+							methods.add(tgt);
+						}
+						if (count == buffer.length)
+							buffer = Arrays.copyOf(buffer, count * 2);
+						buffer[count++] = tgtIdx;
+					}
+				}
+			calleeList.add(Arrays.copyOf(buffer, count));
+		}
+		this.callees = calleeList.toArray(new int[calleeList.size()][]);
+	}
+
+	/**
+	 * Computes the strongly connected components of the callgraph using an
+	 * iterative version of Tarjan's algorithm. The components are found in
+	 * reverse topological order, i.e., callees before their callers.
+	 */
+	private void computeSCCs() {
+		final int n = methods.size();
+		this.sccOf = new int[n];
+		this.sccs = new ArrayList<int[]>();
+
+		int[] index = new int[n];
+		int[] lowLink = new int[n];
+		boolean[] onStack = new boolean[n];
+		for (int i = 0; i < n; i++)
+			index[i] = -1;
+
+		int[] sccStack = new int[n];
+		int sccSp = 0;
+		int[] callStack = new int[n];
+		int[] edgePos = new int[n];
+		int nextIndex = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] >= 0)
+				continue;
+
+			int sp = 0;
+			callStack[0] = root;
+			edgePos[0] = 0;
+			index[root] = lowLink[root] = nextIndex++;
+			sccStack[sccSp++] = root;
+			onStack[root] = true;
+
+			while (sp >= 0) {
+				int v = callStack[sp];
+				if (edgePos[sp] < callees[v].length) {
+					int w = callees[v][edgePos[sp]++];
+					if (index[w] < 0) {
+						index[w] = lowLink[w] = nextIndex++;
+						sccStack[sccSp++] = w;
+						onStack[w] = true;
+						sp++;
+						callStack[sp] = w;
+						edgePos[sp] = 0;
+					}
+					else if (onStack[w])
+						lowLink[v] = Math.min(lowLink[v], index[w]);
+				}
+				else {
+					if (lowLink[v] == index[v]) {
+						// v is the root of a component
+						int start = sccSp;
+						do {
+							start--;
+						} while (sccStack[start] != v);
+						int[] members = Arrays.copyOfRange(sccStack, start, sccSp);
+						for (int m : members) {
+							onStack[m] = false;
+							sccOf[m] = sccs.size();
+						}
+						sccs.add(members);
+						sccSp = start;
+					}
+					sp--;
+					if (sp >= 0) {
+						int parent = callStack[sp];
+						lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the summary of the given component. The summaries of all
+	 * components it calls must already be available.
+	 * @param scc The index of the component to summarize
+	 */
+	private void summarize(int scc) {
+		Summary summary = sccSummaries[scc];
+		BitSet localReads = null;
+		BitSet localWrites = null;
+		BitSetUnion reads = new BitSetUnion();
+		BitSetUnion writes = new BitSetUnion();
+
+		for (int m : sccs.get(scc)) {
+			SootMethod sm = methods.get(m);
+			if (condition.isEffectFree(sm))
+				continue;
+
+			for (Unit u : sm.getActiveBody().getUnits()) {
+				Stmt s = (Stmt) u;
+				if (trackStaticFields && s instanceof AssignStmt) {
+					AssignStmt assign = (AssignStmt) s;
+					if (assign.getLeftOp() instanceof StaticFieldRef) {
+						if (localWrites == null)
+							localWrites = new BitSet();
+						localWrites.set(fieldIds.getOrCreateId(
+								((StaticFieldRef) assign.getLeftOp()).getField()));
+					}
+					if (assign.getRightOp() instanceof StaticFieldRef) {
+						if (localReads == null)
+							localReads = new BitSet();
+						localReads.set(fieldIds.getOrCreateId(
+								((StaticFieldRef) assign.getRightOp()).getField()));
+					}
+				}
+				if (!summary.sideEffects && condition.hasSideEffect(sm, s))
+					summary.sideEffects = true;
+			}
+
+			for (int callee : callees[m]) {
+				if (sccOf[callee] == scc)
+					continue;
+				Summary calleeSummary = sccSummaries[sccOf[callee]];
+				reads.add(calleeSummary.staticReads);
+				writes.add(calleeSummary.staticWrites);
+				summary.sideEffects |= calleeSummary.sideEffects;
+			}
+		}
+
+		reads.add(localReads);
+		writes.add(localWrites);
+		summary.staticReads = reads.set;
+		summary.staticWrites = writes.set;
+
+		if (computeDigests)
+			summary.digest = computeDigest(scc);
+	}
+
+	/**
+	 * Computes the digest of the given component. The digests of all
+	 * components it calls must already be available. Members and callees
+	 * are sorted, so that the digest does not depend on the order in which
+	 * Soot has loaded the methods.
+	 * @param scc The index of the component
+	 * @return The digest of the given component as a hex string
+	 */
+	private String computeDigest(int scc) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+
+			List<SootMethod> members = new ArrayList<SootMethod>();
+			List<String> calleeDigests = new ArrayList<String>();
+			for (int m : sccs.get(scc)) {
+				members.add(methods.get(m));
+				for (int callee : callees[m])
+					if (sccOf[callee] != scc)
+						calleeDigests.add(sccSummaries[sccOf[callee]].digest);
+			}
+			Collections.sort(members, new Comparator<SootMethod>() {
+
+				@Override
+				public int compare(SootMethod o1, SootMethod o2) {
+					return o1.getSignature().compareTo(o2.getSignature());
+				}
+
+			});
+			Collections.sort(calleeDigests);
+
+			for (SootMethod sm : members) {
+				md.update((sm.getSignature() + "{").getBytes("UTF-8"));
+				Body body = sm.getActiveBody();
+				for (Local l : body.getLocals())
+					md.update((l.getName() + ":" + l.getType() + ";").getBytes("UTF-8"));
+				for (Unit u : body.getUnits())
+					md.update((u.toString() + ";").getBytes("UTF-8"));
+				md.update("}".getBytes("UTF-8"));
+			}
+			String lastDigest = null;
+			for (String calleeDigest : calleeDigests)
+				if (!calleeDigest.equals(lastDigest)) {
+					md.update(calleeDigest.getBytes("UTF-8"));
+					lastDigest = calleeDigest;
+				}
+
+			StringBuilder sb = new StringBuilder();
+			for (byte b : md.digest())
+				sb.append(String.format("%02x", b));
+			return sb.toString();
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new RuntimeException("Could not compute method digest", ex);
+		}
+		catch (UnsupportedEncodingException ex) {
+			throw new RuntimeException("Could not compute method digest", ex);
+		}
+	}
+
+	/**
+	 * Computes the summaries of all components in parallel. A component is
+	 * scheduled as soon as all components it calls have been summarized.
+	 * @param numThreads The number of threads to use
+	 */
+	private void summarizeParallel(int numThreads) {
+		final int sccCount = sccs.size();
+
+		// Build the reverse edges between the components
+		final AtomicIntegerArray pendingCallees = new AtomicIntegerArray(sccCount);
+		final int[][] sccCallers = new int[sccCount][];
+		int[] callerCounts = new int[sccCount];
+		int[] lastCaller = new int[sccCount];
+		Arrays.fill(lastCaller, -1);
+		for (int pass = 0; pass < 2; pass++) {
+			if (pass == 1)
+				for (int i = 0; i < sccCount; i++) {
+					sccCallers[i] = new int[callerCounts[i]];
+					callerCounts[i] = 0;
+					lastCaller[i] = -1;
+				}
+			for (int scc = 0; scc < sccCount; scc++)
+				for (int m : sccs.get(scc))
+					for (int callee : callees[m]) {
+						int calleeScc = sccOf[callee];
+						if (calleeScc == scc || lastCaller[calleeScc] == scc)
+							continue;
+						lastCaller[calleeScc] = scc;
+						if (pass == 0)
+							pendingCallees.incrementAndGet(scc);
+						else
+							sccCallers[calleeScc][callerCounts[calleeScc]] = scc;
+						callerCounts[calleeScc]++;
+					}
+		}
+
+		final CountDownLatch done = new CountDownLatch(sccCount);
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+		/**
+		 * Task that summarizes a single component and then schedules all
+		 * callers that no longer wait for any other component
+		 */
+		class SummaryTask implements Runnable {
+
+			private final int scc;
+
+			public SummaryTask(int scc) {
+				this.scc = scc;
+			}
+
+			@Override
+			public void run() {
+				try {
+					if (error.get() == null)
+						summarize(scc);
+				}
+				catch (Throwable t) {
+					error.compareAndSet(null, t);
+				}
+				finally {
+					for (int caller : sccCallers[scc])
+						if (pendingCallees.decrementAndGet(caller) == 0)
+							executor.execute(new SummaryTask(caller));
+					done.countDown();
+				}
+			}
+
+		}
+
+		// Collect the components without callees before starting any task.
+		// Otherwise, a component could be scheduled both by a finished task
+		// and by this loop.
+		List<Integer> initialSccs = new ArrayList<Integer>();
+		for (int scc = 0; scc < sccCount; scc++)
+			if (pendingCallees.get(scc) == 0)
+				initialSccs.add(scc);
+
+		try {
+			for (int scc : initialSccs)
+				executor.execute(new SummaryTask(scc));
+			done.await();
+		}
+		catch (InterruptedException ex) {
+			throw new RuntimeException("Interrupted while computing method effect summaries", ex);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+
+		if (error.get() != null)
+			throw new RuntimeException("Could not compute method effect summaries", error.get());
+	}
+
+	/**
+	 * Checks whether a summary is available for the given method
+	 * @param method The method to check
+	 * @return True if a summary is available for the given method, otherwise
+	 * false
+	 */
+	public boolean hasSummary(SootMethod method) {
+		return methodToSummary.containsKey(method);
+	}
+
+	/**
+	 * Checks whether the given static field is read inside the given method
+	 * or one of its transitive callees
+	 * @param method The method to check
+	 * @param field The static field to check
+	 * @return True if the given static field is read inside the given
+	 * method, otherwise false
+	 */
+	public boolean isStaticFieldRead(SootMethod method, SootField field) {
+		Summary summary = methodToSummary.get(method);
+		if (summary == null || summary.staticReads == null)
+			return false;
+		int id = fieldIds.getId(field);
+		return id >= 0 && summary.staticReads.get(id);
+	}
+
+	/**
+	 * Checks whether the given static field is read or written inside the
+	 * given method or one of its transitive callees
+	 * @param method The method to check
+	 * @param field The static field to check
+	 * @return True if the given static field is used inside the given
+	 * method, otherwise false
+	 */
+	public boolean isStaticFieldUsed(SootMethod method, SootField field) {
+		Summary summary = methodToSummary.get(method);
+		if (summary == null)
+			return false;
+		int id = fieldIds.getId(field);
+		if (id < 0)
+			return false;
+		return (summary.staticReads != null && summary.staticReads.get(id))
+				|| (summary.staticWrites != null && summary.staticWrites.get(id));
+	}
+
+	/**
+	 * Checks whether the given method or one of its transitive callees has
+	 * side effects
+	 * @param method The method to check
+	 * @return True if the given method or one of its transitive callees has
+	 * side effects, otherwise false
+	 */
+	public boolean hasSideEffects(SootMethod method) {
+		Summary summary = methodToSummary.get(method);
+		return summary != null && summary.sideEffects;
+	}
+
+	/**
+	 * Gets the digest over the code of the given method and all of its
+	 * transitive callees. If any of these methods or the callgraph edges
+	 * between them change, the digest changes as well.
+	 * @param method The method for which to get the digest
+	 * @return The digest of the given method, or null if no summary is
+	 * available for the method or no digests have been computed
+	 */
+	public String getDigest(SootMethod method) {
+		Summary summary = methodToSummary.get(method);
+		return summary == null ? null : summary.digest;
+	}
+
+	/**
+	 * Gets the number of methods for which summaries are available
+	 * @return The number of methods for which summaries are available
+	 */
+	public int size() {
+		return methodToSummary.size();
+	}
+
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.infoflow.solver.IInfoflowCFG.UnitContainer;
+import soot.toolkits.graph.DirectedGraph;
+
+/**
+ * Immediate postdominators of all units in a method. The tree is computed
+ * once for the whole method with the iterative algorithm by Cooper, Harvey
+ * and Kennedy on the reversed unit graph, using a virtual exit node behind
+ * all tails. Units whose only postdominator is this virtual exit node are
+ * postdominated by the method itself.
+ */
+public class PostdominatorTree {
+
+	private final Map<Unit, Integer> unitToIndex;
+	private final Unit[] units;
+	private final int[] ipdom;
+	private final UnitContainer[] containers;
+
+	/**
+	 * Computes the postdominator tree for the given method
+	 * @param method The method for which to compute the postdominator tree
+	 * @param graph The unit graph of the method
+	 */
+	public PostdominatorTree(SootMethod method, DirectedGraph<Unit> graph) {
+		final int n = graph.size();
+		final int exit = n;
+
+		// Number the units
+		this.unitToIndex = new HashMap<Unit, Integer>(n * 2);
+		this.units = new Unit[n];
+		int idx = 0;
+		for (Unit u : graph) {
+			units[idx] = u;
+			unitToIndex.put(u, idx);
+			idx++;
+		}
+
+		// In the reversed graph, the successors of a unit are its original
+		// predecessors and the virtual exit node leads to all tails
+		int[][] revSuccs = new int[n + 1][];
+		int[][] revPreds = new int[n + 1][];
+		boolean[] isTail = new boolean[n];
+		List<Unit> tails = graph.getTails();
+		revSuccs[exit] = toIndices(tails, false);
+		revPreds[exit] = new int[0];
+		for (Unit tail : tails)
+			isTail[unitToIndex.get(tail)] = true;
+		for (int i = 0; i < n; i++) {
+			revSuccs[i] = toIndices(graph.getPredsOf(units[i]), false);
+			revPreds[i] = toIndices(graph.getSuccsOf(units[i]), isTail[i]);
+		}
+
+		// Compute the postorder of the reversed graph starting at the exit
+		int[] postNum = new int[n + 1];
+		int[] order = new int[n + 1];
+		for (int i = 0; i <= n; i++)
+			postNum[i] = -1;
+		boolean[] visited = new boolean[n + 1];
+		int[] nodeStack = new int[n + 1];
+		int[] edgeStack = new int[n + 1];
+		int sp = 0;
+		int count = 0;
+		nodeStack[0] = exit;
+		edgeStack[0] = 0;
+		visited[exit] = true;
+		while (sp >= 0) {
+			int node = nodeStack[sp];
+			if (edgeStack[sp] < revSuccs[node].length) {
+				int succ = revSuccs[node][edgeStack[sp]++];
+				if (!visited[succ]) {
+					visited[succ] = true;
+					sp++;
+					nodeStack[sp] = succ;
+					edgeStack[sp] = 0;
+				}
+			}
+			else {
+				postNum[node] = count;
+				order[count++] = node;
+				sp--;
+			}
+		}
+
+		// Compute the immediate dominators in the reversed graph. The exit is
+		// the last node in postorder.
+		int[] idom = new int[n + 1];
+		for (int i = 0; i <= n; i++)
+			idom[i] = -1;
+		idom[exit] = exit;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = count - 2; i >= 0; i--) {
+				int b = order[i];
+				int newIdom = -1;
+				for (int p : revPreds[b]) {
+					if (idom[p] < 0)
+						continue;
+					newIdom = newIdom < 0 ? p : intersect(p, newIdom, idom, postNum);
+				}
+				if (idom[b] != newIdom) {
+					idom[b] = newIdom;
+					changed = true;
+				}
+			}
+		}
+
+		// Build the result. Units that cannot reach any tail are treated like
+		// units that are only postdominated by the exit.
+		this.ipdom = new int[n];
+		this.containers = new UnitContainer[n];
+		UnitContainer methodContainer = new UnitContainer(method);
+		UnitContainer[] unitContainers = new UnitContainer[n];
+		for (int i = 0; i < n; i++) {
+			int d = idom[i];
+			if (d < 0 || d == exit) {
+				ipdom[i] = -1;
+				containers[i] = methodContainer;
+			}
+			else {
+				ipdom[i] = d;
+				if (unitContainers[d] == null)
+					unitContainers[d] = new UnitContainer(units[d]);
+				containers[i] = unitContainers[d];
+			}
+		}
+	}
+
+	private int[] toIndices(List<Unit> units, boolean addExit) {
+		int[] res = new int[units.size() + (addExit ? 1 : 0)];
+		int i = 0;
+		for (Unit u : units)
+			res[i++] = unitToIndex.get(u);
+		if (addExit)
+			res[i] = this.units.length;
+		return res;
+	}
+
+	private static int intersect(int a, int b, int[] idom, int[] postNum) {
+		while (a != b) {
+			while (postNum[a] < postNum[b])
+				a = idom[a];
+			while (postNum[b] < postNum[a])
+				b = idom[b];
+		}
+		return a;
+	}
+
+	/**
+	 * Gets the postdominator of the given unit
+	 * @param u The unit for which to get the postdominator
+	 * @return The postdominator of the given unit, or null if the unit is
+	 * not part of this tree
+	 */
+	public UnitContainer getPostdominatorOf(Unit u) {
+		Integer idx = unitToIndex.get(u);
+		return idx == null ? null : containers[idx];
+	}
+
+	/**
+	 * Gets the immediate postdominator of the given unit
+	 * @param u The unit for which to get the immediate postdominator
+	 * @return The immediate postdominator of the given unit, or null if the
+	 * unit is only postdominated by the end of the method or is not part of
+	 * this tree
+	 */
+	public Unit getImmediatePostdominator(Unit u) {
+		Integer idx = unitToIndex.get(u);
+		if (idx == null || ipdom[idx] < 0)
+			return null;
+		return units[ipdom[idx]];
+	}
+
+	/**
+	 * Gets the number of units in this tree
+	 * @return The number of units in this tree
+	 */
+	public int size() {
+		return units.length;
+	}
+
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.executors;
+
+import heros.solver.CountingThreadPoolExecutor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solver executor based on Heros' {@link CountingThreadPoolExecutor}. All
+ * worker threads share a single task queue. Affinity keys are ignored.
+ */
+public class CountingSolverExecutor extends CountingThreadPoolExecutor
+		implements ISolverExecutor {
+
+	public CountingSolverExecutor(int corePoolSize, int maximumPoolSize,
+			long keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue) {
+		super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
+	}
+
+	@Override
+	public void execute(Runnable task, Object affinityKey) {
+		execute(task);
+	}
+
+	@Override
+	public boolean usesAffinity() {
+		return false;
+	}
+
+	@Override
+	public long getQueueSize() {
+		return getQueue().size();
+	}
+
+}
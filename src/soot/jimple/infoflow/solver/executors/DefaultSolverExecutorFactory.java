@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.executors;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default factory class for solver executors
+ */
+public class DefaultSolverExecutorFactory implements ISolverExecutorFactory {
+
+	private static final int DEFAULT_BATCH_SIZE = 16;
+
+	/**
+	 * Enumeration containing the supported executors
+	 */
+	public enum SolverExecutor {
+		/**
+		 * Thread pool in which all workers share a single task queue
+		 */
+		ThreadPool,
+		/**
+		 * Work-stealing executor with one task deque per worker
+		 */
+		WorkStealing
+	}
+
+	private final SolverExecutor solverExecutor;
+	private final boolean methodAffinity;
+	private final int batchSize;
+
+	/**
+	 * Creates a new instance of the {@link DefaultSolverExecutorFactory} class
+	 */
+	public DefaultSolverExecutorFactory() {
+		this(SolverExecutor.ThreadPool, false, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Creates a new instance of the {@link DefaultSolverExecutorFactory} class
+	 * @param solverExecutor The type of executor to create
+	 * @param methodAffinity True if edges in the same method shall preferably
+	 * be processed by the same worker thread. This option is only supported
+	 * by the work-stealing executor.
+	 * @param batchSize The number of tasks a worker of the work-stealing
+	 * executor runs from its own deque before it wakes up an idle worker to
+	 * steal from it
+	 */
+	public DefaultSolverExecutorFactory(SolverExecutor solverExecutor,
+			boolean methodAffinity, int batchSize) {
+		this.solverExecutor = solverExecutor;
+		this.methodAffinity = methodAffinity;
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public ISolverExecutor createExecutor(int numThreads) {
+		switch (solverExecutor) {
+		case ThreadPool:
+			return new CountingSolverExecutor(numThreads, Integer.MAX_VALUE,
+					30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		case WorkStealing:
+			return new WorkStealingSolverExecutor(numThreads, methodAffinity,
+					batchSize);
+		}
+		throw new RuntimeException("Unsupported solver executor");
+	}
+
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.executors;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Common interface for all executors that run the edge processing tasks of
+ * the IFDS solvers. Implementations must keep track of all submitted tasks
+ * so that clients can wait for the exploded super graph to be complete.
+ */
+public interface ISolverExecutor extends Executor {
+
+	/**
+	 * Schedules the given task for execution
+	 * @param task The task to execute
+	 * @param affinityKey An object identifying related tasks, e.g. the method
+	 * in which an edge is processed. Executors that support affinity try to
+	 * run tasks with the same key on the same worker thread. If this value
+	 * is null, the task is scheduled without any affinity.
+	 */
+	public void execute(Runnable task, Object affinityKey);
+
+	/**
+	 * Gets whether this executor makes use of affinity keys. If not, clients
+	 * need not compute any keys when submitting tasks.
+	 * @return True if this executor distributes tasks based on their
+	 * affinity keys, otherwise false
+	 */
+	public boolean usesAffinity();
+
+	/**
+	 * Waits until all tasks that have been submitted to this executor,
+	 * including the ones submitted by other tasks, have been completed, or
+	 * until a task has thrown an exception.
+	 * @throws InterruptedException Thrown if the current thread was
+	 * interrupted while waiting
+	 */
+	public void awaitCompletion() throws InterruptedException;
+
+	/**
+	 * Gets the first exception that was thrown by a task of this executor
+	 * @return The first exception that was thrown by a task if any,
+	 * otherwise null
+	 */
+	public Throwable getException();
+
+	/**
+	 * Initiates an orderly shutdown. Tasks that have already been submitted
+	 * are executed, but no new tasks are accepted.
+	 */
+	public void shutdown();
+
+	/**
+	 * Gets whether this executor is in the process of shutting down
+	 * @return True if this executor has been shut down, but there are still
+	 * worker threads running, otherwise false
+	 */
+	public boolean isTerminating();
+
+	/**
+	 * Gets whether all worker threads of this executor have terminated
+	 * after a shutdown
+	 * @return True if this executor has been shut down completely, otherwise
+	 * false
+	 */
+	public boolean isTerminated();
+
+	/**
+	 * Gets the approximate number of threads that are currently executing
+	 * tasks
+	 * @return The approximate number of threads that are currently executing
+	 * tasks
+	 */
+	public int getActiveCount();
+
+	/**
+	 * Gets the approximate number of tasks that have been submitted, but
+	 * have not been started yet
+	 * @return The approximate number of tasks waiting for execution
+	 */
+	public long getQueueSize();
+
+}
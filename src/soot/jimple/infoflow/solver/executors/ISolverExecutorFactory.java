@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.executors;
+
+/**
+ * Common interface for all factories that create the executors on which the
+ * IFDS solvers run
+ */
+public interface ISolverExecutorFactory {
+
+	/**
+	 * Creates a new executor
+	 * @param numThreads The number of worker threads to use
+	 * @return The newly created executor
+	 */
+	public ISolverExecutor createExecutor(int numThreads);
+
+}
@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.executors;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Solver executor in which every worker thread has its own task deque. Tasks
+ * submitted by a worker are pushed onto the worker's own deque and processed
+ * in LIFO order, which keeps the data of related edges in the worker's
+ * cache. Idle workers steal the oldest tasks from other workers. Optionally,
+ * tasks with the same affinity key (e.g. the same method) are always pushed
+ * onto the deque of the same worker.
+ *
+ * The termination semantics are the same as for the
+ * {@link CountingSolverExecutor}: {@link #awaitCompletion()} returns once
+ * all transitively submitted tasks have been completed or a task has thrown
+ * an exception.
+ */
+public class WorkStealingSolverExecutor implements ISolverExecutor {
+
+	private static final int IDLE_WAIT_MILLIS = 5;
+
+	private final Worker[] workers;
+	private final ConcurrentLinkedDeque<Runnable>[] queues;
+	private final boolean methodAffinity;
+	private final int batchSize;
+
+	private final AtomicLong outstandingTasks = new AtomicLong();
+	private final AtomicInteger activeCount = new AtomicInteger();
+	private final AtomicInteger nextQueue = new AtomicInteger();
+	private final CountDownLatch terminationLatch;
+
+	private final Object idleLock = new Object();
+	private volatile int idleWorkers = 0;
+	private final Object completionLock = new Object();
+
+	private volatile boolean shutdown = false;
+	private volatile Throwable exception = null;
+
+	/**
+	 * Worker thread that processes the tasks from its own deque and steals
+	 * from the other workers if its own deque is empty
+	 */
+	private class Worker extends Thread {
+
+		private final int index;
+
+		public Worker(int index) {
+			super("WorkStealingSolverExecutor-" + index);
+			this.index = index;
+			this.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				int ownTasks = 0;
+				while (true) {
+					// Tasks are taken one at a time, so that everything
+					// else in our deque can still be stolen
+					Runnable task = queues[index].pollFirst();
+					if (task != null) {
+						runTask(task);
+						
+						// If we have been busy with our own deque for a
+						// while, make sure that idle workers help out
+						if (++ownTasks >= batchSize) {
+							ownTasks = 0;
+							if (idleWorkers > 0 && !queues[index].isEmpty())
+								synchronized (idleLock) {
+									idleLock.notify();
+								}
+						}
+						continue;
+					}
+					ownTasks = 0;
+					
+					task = steal(index);
+					if (task != null) {
+						runTask(task);
+						continue;
+					}
+
+					// We have nothing to do, so we wait for new tasks
+					synchronized (idleLock) {
+						if (hasQueuedTasks())
+							continue;
+						if (shutdown)
+							return;
+						idleWorkers++;
+						try {
+							idleLock.wait(IDLE_WAIT_MILLIS);
+						}
+						finally {
+							idleWorkers--;
+						}
+					}
+				}
+			}
+			catch (InterruptedException ex) {
+				// We were asked to terminate
+			}
+			finally {
+				terminationLatch.countDown();
+			}
+		}
+
+	}
+
+	/**
+	 * Creates a new instance of the {@link WorkStealingSolverExecutor} class
+	 * @param numThreads The number of worker threads to use
+	 * @param methodAffinity True if tasks with the same affinity key shall be
+	 * scheduled on the same worker, otherwise false
+	 * @param batchSize The number of tasks a worker runs from its own deque
+	 * before it wakes up an idle worker to steal from it
+	 */
+	@SuppressWarnings("unchecked")
+	public WorkStealingSolverExecutor(int numThreads, boolean methodAffinity,
+			int batchSize) {
+		numThreads = Math.max(1, numThreads);
+		this.methodAffinity = methodAffinity;
+		this.batchSize = Math.max(1, batchSize);
+		this.terminationLatch = new CountDownLatch(numThreads);
+
+		this.queues = new ConcurrentLinkedDeque[numThreads];
+		this.workers = new Worker[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			this.queues[i] = new ConcurrentLinkedDeque<Runnable>();
+			this.workers[i] = new Worker(i);
+		}
+		for (Worker worker : workers)
+			worker.start();
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		execute(task, null);
+	}
+
+	@Override
+	public void execute(Runnable task, Object affinityKey) {
+		if (shutdown)
+			throw new RejectedExecutionException("Executor has been shut down");
+
+		outstandingTasks.incrementAndGet();
+		queues[getQueueIndex(affinityKey)].offerFirst(task);
+		if (idleWorkers > 0)
+			synchronized (idleLock) {
+				idleLock.notify();
+			}
+	}
+
+	/**
+	 * Gets the index of the deque into which to put a new task
+	 * @param affinityKey The affinity key of the new task, or null if the
+	 * task has no affinity
+	 * @return The index of the deque into which to put the new task
+	 */
+	private int getQueueIndex(Object affinityKey) {
+		if (methodAffinity && affinityKey != null) {
+			int hash = affinityKey.hashCode();
+			hash ^= (hash >>> 16);
+			return (hash & 0x7FFFFFFF) % queues.length;
+		}
+
+		// Tasks spawned by one of our own workers stay with that worker
+		Thread curThread = Thread.currentThread();
+		if (curThread instanceof Worker) {
+			Worker worker = (Worker) curThread;
+			if (workers[worker.index] == worker)
+				return worker.index;
+		}
+		return (nextQueue.getAndIncrement() & 0x7FFFFFFF) % queues.length;
+	}
+
+	/**
+	 * Steals the oldest task from another worker
+	 * @param index The index of the worker that wants to run a task
+	 * @return The stolen task, or null if all other deques are empty
+	 */
+	private Runnable steal(int index) {
+		for (int i = 1; i < queues.length; i++) {
+			Runnable task = queues[(index + i) % queues.length].pollLast();
+			if (task != null)
+				return task;
+		}
+		return null;
+	}
+
+	/**
+	 * Runs the given task and records any exception that it throws
+	 * @param task The task to run
+	 */
+	private void runTask(Runnable task) {
+		activeCount.incrementAndGet();
+		try {
+			if (exception == null)
+				task.run();
+		}
+		catch (Throwable t) {
+			synchronized (completionLock) {
+				if (exception == null)
+					exception = t;
+			}
+			shutdown = true;
+			
+			// The dropped tasks will never run, so they are no longer
+			// outstanding
+			long dropped = 0;
+			for (ConcurrentLinkedDeque<Runnable> queue : queues)
+				while (queue.pollFirst() != null)
+					dropped++;
+			outstandingTasks.addAndGet(-dropped);
+			signalCompletion();
+		}
+		finally {
+			activeCount.decrementAndGet();
+			if (outstandingTasks.decrementAndGet() == 0)
+				signalCompletion();
+		}
+	}
+
+	private void signalCompletion() {
+		synchronized (completionLock) {
+			completionLock.notifyAll();
+		}
+	}
+
+	private boolean hasQueuedTasks() {
+		for (ConcurrentLinkedDeque<Runnable> queue : queues)
+			if (!queue.isEmpty())
+				return true;
+		return false;
+	}
+
+	@Override
+	public boolean usesAffinity() {
+		return methodAffinity;
+	}
+
+	@Override
+	public void awaitCompletion() throws InterruptedException {
+		synchronized (completionLock) {
+			while (outstandingTasks.get() > 0 && exception == null)
+				completionLock.wait();
+		}
+	}
+
+	@Override
+	public Throwable getException() {
+		return exception;
+	}
+
+	@Override
+	public void shutdown() {
+		shutdown = true;
+		synchronized (idleLock) {
+			idleLock.notifyAll();
+		}
+	}
+
+	@Override
+	public boolean isTerminating() {
+		return shutdown && !isTerminated();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return terminationLatch.getCount() == 0;
+	}
+
+	@Override
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+
+	@Override
+	public long getQueueSize() {
+		// Outstanding tasks are either queued or running
+		return Math.max(0, outstandingTasks.get() - activeCount.get());
+	}
+
+}
@@ -21,10 +21,11 @@ import heros.FlowFunctions;
 import heros.IFDSTabulationProblem;
 import heros.SynchronizedBy;
 import heros.ZeroedFlowFunctions;
-import heros.solver.CountingThreadPoolExecutor;
 import heros.solver.Pair;
 import heros.solver.PathEdge;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -42,6 +43,11 @@ import soot.SootMethod;
 import soot.Unit;
 import soot.jimple.infoflow.collect.ConcurrentHashSet;
 import soot.jimple.infoflow.collect.MyConcurrentHashMap;
+import soot.jimple.infoflow.solver.executors.CountingSolverExecutor;
+import soot.jimple.infoflow.solver.executors.ISolverExecutor;
+import soot.jimple.infoflow.solver.memory.MemoryGovernor;
+import soot.jimple.infoflow.solver.telemetry.FlowFunctionKind;
+import soot.jimple.infoflow.solver.telemetry.SolverTelemetry;
 import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
 
 import com.google.common.cache.CacheBuilder;
@@ -66,8 +72,10 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 
     //enable with -Dorg.slf4j.simpleLogger.defaultLogLevel=trace
     public static final boolean DEBUG = logger.isDebugEnabled();
+    
+    public static final int DEFAULT_MAX_INLINE_EDGES = 64;
 
-	protected CountingThreadPoolExecutor executor;
+	protected ISolverExecutor executor;
 	
 	@DontSynchronize("only used by single thread")
 	protected int numThreads;
@@ -114,6 +122,26 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 	@DontSynchronize("readOnly")
 	private boolean enableMergePointChecking = false;
 	
+	@DontSynchronize("readOnly")
+	private boolean resultsOnly = false;
+	
+	@DontSynchronize("readOnly")
+	protected SummarySpiller<N,D,M> summarySpiller = null;
+	
+	@DontSynchronize("readOnly")
+	protected SolverTelemetry<M> telemetry = null;
+	
+	@DontSynchronize("readOnly")
+	private boolean batchEdges = false;
+	
+	@DontSynchronize("readOnly")
+	private int maxInlineEdges = DEFAULT_MAX_INLINE_EDGES;
+	
+	//facts that have reached a unit and wait for being processed together
+	@SynchronizedBy("consistent lock on the batch")
+	protected final MyConcurrentHashMap<N, EdgeBatch> pendingBatches =
+			new MyConcurrentHashMap<N, EdgeBatch>();
+	
 	/**
 	 * Creates a solver for the given problem, which caches flow functions and edge functions.
 	 * The solver must then be started by calling {@link #solve()}.
@@ -170,7 +198,7 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 			N startPoint = seed.getKey();
 			for(D val: seed.getValue())
 				propagate(zeroValue, startPoint, val, null, false);
-			jumpFn.addFunction(new PathEdge<N, D>(zeroValue, startPoint, zeroValue));
+			jumpFn.addFunction(zeroValue, startPoint, zeroValue);
 		}
 	}
 
@@ -225,9 +253,63 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
     	// in submitting new tasks
     	if (executor.isTerminating())
     		return;
-    	executor.execute(new PathEdgeProcessingTask(edge));
+    	
+    	// In batch mode, we only need a new task if there is no pending batch
+    	// for the target unit yet
+    	final Runnable task;
+    	if (batchEdges) {
+    		EdgeBatch batch = addToBatch(edge);
+    		task = batch == null ? null : new EdgeBatchProcessingTask(edge.getTarget(), batch);
+    	}
+    	else
+    		task = new PathEdgeProcessingTask(edge);
+    	
+    	// Executors with affinity try to keep the edges of one method together
+    	final SolverTelemetry<M> telemetry = this.telemetry;
+    	if (executor.usesAffinity() || telemetry != null) {
+    		M method = icfg.getMethodOf(edge.getTarget());
+    		if (telemetry != null)
+    			telemetry.onEdge(method);
+    		if (task != null) {
+    			if (executor.usesAffinity())
+    				executor.execute(task, method);
+    			else
+    				executor.execute(task);
+    		}
+    	}
+    	else if (task != null)
+    		executor.execute(task);
     	propagationCount++;
     }
+    
+    /**
+     * Adds the given edge to the pending batch of its target unit
+     * @param edge The edge to add
+     * @return The new batch if a new batch has been created for the edge and
+     * must be scheduled, null if the edge has been added to a batch that is
+     * already scheduled
+     */
+    private EdgeBatch addToBatch(PathEdge<N,D> edge) {
+    	final N n = edge.getTarget();
+    	while (true) {
+    		EdgeBatch batch = pendingBatches.get(n);
+    		if (batch == null) {
+    			EdgeBatch newBatch = new EdgeBatch();
+    			newBatch.add(edge.factAtSource(), edge.factAtTarget());
+    			batch = pendingBatches.putIfAbsentElseGet(n, newBatch);
+    			if (batch == newBatch)
+    				return newBatch;
+    		}
+    		synchronized (batch) {
+    			if (!batch.closed) {
+    				batch.add(edge.factAtSource(), edge.factAtTarget());
+    				return null;
+    			}
+    		}
+    		// The batch has already been taken by a worker, so we need a new
+    		// one
+    	}
+    }
 	
 	/**
 	 * Lines 13-20 of the algorithm; processing a call site in the caller's context.
@@ -252,63 +334,131 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 		for(M sCalledProcN: callees) { //still line 14
 			//compute the call-flow function
 			FlowFunction<D> function = flowFunctions.getCallFlowFunction(n, sCalledProcN);
+			long before = beginFlowFunction();
 			Set<D> res = computeCallFlowFunction(function, d1, d2);
+			endFlowFunction(FlowFunctionKind.Call, before, res);
 			
 			Collection<N> startPointsOf = icfg.getStartPointsOf(sCalledProcN);
-			//for each result node of the call-flow function
+			processCallee(d1, n, d2, sCalledProcN, startPointsOf, returnSiteNs, res);
+		}
+		//line 17-19 of Naeem/Lhotak/Rodriguez		
+		//process intra-procedural flows along call-to-return flow functions
+		for (N returnSiteN : returnSiteNs) {
+			FlowFunction<D> callToReturnFlowFunction = flowFunctions.getCallToReturnFlowFunction(n, returnSiteN);
+			long before = beginFlowFunction();
+			Set<D> res = computeCallToReturnFlowFunction(callToReturnFlowFunction, d1, d2);
+			endFlowFunction(FlowFunctionKind.CallToReturn, before, res);
 			for(D d3: res) {
 				compactAbstractionChain(d3, d2);
-				
-				//for each callee's start point(s)
+				propagate(d1, returnSiteN, d3, n, false);
+			}
+		}
+	}
+	
+	/**
+	 * Processes all facts that have reached the same call site together.
+	 * The callees, return sites and flow functions are only looked up once
+	 * for all facts.
+	 * @param n The call site
+	 * @param d1s The facts at the start points of the caller
+	 * @param d2s The facts at the call site, aligned with d1s
+	 */
+	private void processCallBatch(N n, List<D> d1s, List<D> d2s) {
+        logger.trace("Processing {} facts at call to {}", d2s.size(), n);
+		Collection<N> returnSiteNs = icfg.getReturnSitesOfCallAt(n);
+		
+		for(M sCalledProcN: icfg.getCalleesOfCallAt(n)) {
+			FlowFunction<D> function = flowFunctions.getCallFlowFunction(n, sCalledProcN);
+			Collection<N> startPointsOf = icfg.getStartPointsOf(sCalledProcN);
+			for (int i = 0; i < d2s.size(); i++) {
+				final D d1 = d1s.get(i);
+				final D d2 = d2s.get(i);
+				long before = beginFlowFunction();
+				Set<D> res = computeCallFlowFunction(function, d1, d2);
+				endFlowFunction(FlowFunctionKind.Call, before, res);
+				processCallee(d1, n, d2, sCalledProcN, startPointsOf, returnSiteNs, res);
+			}
+		}
+		
+		for (N returnSiteN : returnSiteNs) {
+			FlowFunction<D> callToReturnFlowFunction = flowFunctions.getCallToReturnFlowFunction(n, returnSiteN);
+			for (int i = 0; i < d2s.size(); i++) {
+				final D d1 = d1s.get(i);
+				final D d2 = d2s.get(i);
+				long before = beginFlowFunction();
+				Set<D> res = computeCallToReturnFlowFunction(callToReturnFlowFunction, d1, d2);
+				endFlowFunction(FlowFunctionKind.CallToReturn, before, res);
+				for(D d3: res) {
+					compactAbstractionChain(d3, d2);
+					propagate(d1, returnSiteN, d3, n, false);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Propagates the results of a call flow function into the callee and
+	 * applies the summaries already computed for the callee
+	 * @param d1 The fact at the start point of the caller
+	 * @param n The call site
+	 * @param d2 The fact at the call site
+	 * @param sCalledProcN The callee
+	 * @param startPointsOf The start points of the callee
+	 * @param returnSiteNs The return sites of the call
+	 * @param res The results of the call flow function
+	 */
+	private void processCallee(D d1, N n, D d2, M sCalledProcN, Collection<N> startPointsOf,
+			Collection<N> returnSiteNs, Set<D> res) {
+		//for each result node of the call-flow function
+		for(D d3: res) {
+			compactAbstractionChain(d3, d2);
+			
+			//for each callee's start point(s)
+			//if we already have a complete summary for this context, we
+			//do not need to analyze the callee again
+			if (!applyPrecomputedSummary(sCalledProcN, d3))
 				for(N sP: startPointsOf) {
 					//create initial self-loop
 					propagate(d3, sP, d3, n, false); //line 15
 				}
+			
+			//register the fact that <sp,d3> has an incoming edge from <n,d2>
+			//line 15.1 of Naeem/Lhotak/Rodriguez
+			if (!addIncoming(sCalledProcN,d3,n,d1,d2))
+				continue;
+			
+			//line 15.2
+			Set<Pair<N, D>> endSumm = endSummary(sCalledProcN, d3);
 				
-				//register the fact that <sp,d3> has an incoming edge from <n,d2>
-				//line 15.1 of Naeem/Lhotak/Rodriguez
-				if (!addIncoming(sCalledProcN,d3,n,d1,d2))
-					continue;
-				
-				//line 15.2
-				Set<Pair<N, D>> endSumm = endSummary(sCalledProcN, d3);
-					
-				//still line 15.2 of Naeem/Lhotak/Rodriguez
-				//for each already-queried exit value <eP,d4> reachable from <sP,d3>,
-				//create new caller-side jump functions to the return sites
-				//because we have observed a potentially new incoming edge into <sP,d3>
-				if (endSumm != null)
-					for(Pair<N, D> entry: endSumm) {
-						N eP = entry.getO1();
-						D d4 = entry.getO2();
-						//for each return site
-						for(N retSiteN: returnSiteNs) {
-							//compute return-flow function
-							FlowFunction<D> retFunction = flowFunctions.getReturnFlowFunction(n, sCalledProcN, eP, retSiteN);
-							//for each target value of the function
-							for(D d5: computeReturnFlowFunction(retFunction, d4, n, Collections.singleton(d1))) {
-								// If we have not changed anything in the callee, we do not need the facts
-								// from there. Even if we change something: If we don't need the concrete
-								// path, we can skip the callee in the predecessor chain
-								D d5p = d5;
-								if (d5.equals(d2))
-									d5p = d2;
-								else if (setJumpPredecessors)
-									d5p.setPredecessor(d3);
-								propagate(d1, retSiteN, d5p, n, false);
-							}
+			//still line 15.2 of Naeem/Lhotak/Rodriguez
+			//for each already-queried exit value <eP,d4> reachable from <sP,d3>,
+			//create new caller-side jump functions to the return sites
+			//because we have observed a potentially new incoming edge into <sP,d3>
+			if (endSumm != null)
+				for(Pair<N, D> entry: endSumm) {
+					N eP = entry.getO1();
+					D d4 = entry.getO2();
+					//for each return site
+					for(N retSiteN: returnSiteNs) {
+						//compute return-flow function
+						FlowFunction<D> retFunction = flowFunctions.getReturnFlowFunction(n, sCalledProcN, eP, retSiteN);
+						//for each target value of the function
+						long beforeRet = beginFlowFunction();
+						Set<D> retTargets = computeReturnFlowFunction(retFunction, d4, n, Collections.singleton(d1));
+						endFlowFunction(FlowFunctionKind.Return, beforeRet, retTargets);
+						for(D d5: retTargets) {
+							// If we have not changed anything in the callee, we do not need the facts
+							// from there. Even if we change something: If we don't need the concrete
+							// path, we can skip the callee in the predecessor chain
+							D d5p = d5;
+							if (d5.equals(d2) && !resultsOnly)
+								d5p = d2;
+							else if (setJumpPredecessors && !resultsOnly)
+								d5p.setPredecessor(d3);
+							propagate(d1, retSiteN, d5p, n, false);
 						}
 					}
-			}
-		}
-		//line 17-19 of Naeem/Lhotak/Rodriguez		
-		//process intra-procedural flows along call-to-return flow functions
-		for (N returnSiteN : returnSiteNs) {
-			FlowFunction<D> callToReturnFlowFunction = flowFunctions.getCallToReturnFlowFunction(n, returnSiteN);
-			for(D d3: computeCallToReturnFlowFunction(callToReturnFlowFunction, d1, d2)) {
-				compactAbstractionChain(d3, d2);
-				propagate(d1, returnSiteN, d3, n, false);
-			}
+				}
 		}
 	}
 	
@@ -323,7 +473,7 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 	private void compactAbstractionChain(D d3, D d2) {
 		// If the flow function gave us a chain of abstractions, we can
 		// compact it
-		if (d3 != d2) {
+		if (d3 != d2 && !resultsOnly) {
 			D pred = d3.getPredecessor();
 			if (pred != null && pred != d2)
 				d3.setPredecessor(d2);
@@ -376,7 +526,9 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 		
 		//line 21.1 of Naeem/Lhotak/Rodriguez
 		//register end-summary
-		if (!addEndSummary(methodThatNeedsSummary, d1, n, d2))
+		//in results-only mode, an exit fact is processed again when it has
+		//gained new sources, which must then be passed on to the callers
+		if (!addEndSummary(methodThatNeedsSummary, d1, n, d2) && !resultsOnly)
 			return;
 		Map<N,Map<D, D>> inc = incoming(d1, methodThatNeedsSummary);
 		
@@ -390,7 +542,9 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 				for(N retSiteC: icfg.getReturnSitesOfCallAt(c)) {
 					//compute return-flow function
 					FlowFunction<D> retFunction = flowFunctions.getReturnFlowFunction(c, methodThatNeedsSummary,n,retSiteC);
+					long before = beginFlowFunction();
 					Set<D> targets = computeReturnFlowFunction(retFunction, d2, c, entry.getValue().keySet());
+					endFlowFunction(FlowFunctionKind.Return, before, targets);
 					//for each incoming-call value
 					for(Entry<D, D> d1d2entry : entry.getValue().entrySet()) {
 						final D d4 = d1d2entry.getKey();
@@ -403,9 +557,9 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 							// from there. Even if we change something: If we don't need the concrete
 							// path, we can skip the callee in the predecessor chain
 							D d5p = d5;
-							if (d5.equals(predVal))
+							if (d5.equals(predVal) && !resultsOnly)
 								d5p = predVal;
-							else if (setJumpPredecessors)
+							else if (setJumpPredecessors && !resultsOnly)
 								d5p.setPredecessor(d1);
 							propagate(d4, retSiteC, d5p, c, false);
 						}
@@ -421,7 +575,9 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 			for(N c: callers) {
 				for(N retSiteC: icfg.getReturnSitesOfCallAt(c)) {
 					FlowFunction<D> retFunction = flowFunctions.getReturnFlowFunction(c, methodThatNeedsSummary,n,retSiteC);
+					long before = beginFlowFunction();
 					Set<D> targets = computeReturnFlowFunction(retFunction, d2, c, Collections.singleton(zeroValue));
+					endFlowFunction(FlowFunctionKind.Return, before, targets);
 					for(D d5: targets) {
 						compactAbstractionChain(d5, d2);
 						propagate(zeroValue, retSiteC, d5, c, true);
@@ -458,20 +614,78 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 	 * @param edge
 	 */
 	private void processNormalFlow(PathEdge<N,D> edge) {
-		final D d1 = edge.factAtSource();
-		final N n = edge.getTarget(); 
-		final D d2 = edge.factAtTarget();
-		
+		final InlineWorklist worklist = maxInlineEdges > 0 ? new InlineWorklist() : null;
+		processNormalFlow(edge.factAtSource(), edge.getTarget(), edge.factAtTarget(), worklist);
+		if (worklist != null)
+			processInlineEdges(worklist);
+	}
+	
+	private void processNormalFlow(D d1, N n, D d2, InlineWorklist worklist) {
 		for (N m : icfg.getSuccsOf(n)) {
 			FlowFunction<D> flowFunction = flowFunctions.getNormalFlowFunction(n,m);
+			long before = beginFlowFunction();
 			Set<D> res = computeNormalFlowFunction(flowFunction, d1, d2);
+			endFlowFunction(FlowFunctionKind.Normal, before, res);
 			for (D d3 : res) {
 				compactAbstractionChain(d3, d2);
-				propagate(d1, m, d3, null, false);
+				propagateNormalFlow(d1, m, d3, worklist);
 			}
 		}
 	}
 	
+	/**
+	 * Processes the edges that have been collected for processing in the
+	 * current thread
+	 * @param worklist The edges to process
+	 */
+	private void processInlineEdges(InlineWorklist worklist) {
+		PathEdge<N,D> edge;
+		while (!executor.isTerminating() && (edge = worklist.edges.poll()) != null)
+			processNormalFlow(edge.factAtSource(), edge.getTarget(), edge.factAtTarget(), worklist);
+	}
+	
+	/**
+	 * Propagates the result of a normal flow function. If the target unit
+	 * lies on a straight-line piece of code, i.e., is no merge point, no call
+	 * and no exit, the new edge is processed directly in the current thread
+	 * instead of being handed over to the executor. The number of edges
+	 * processed this way is bounded, so that long chains and large fan-outs
+	 * still get distributed over all threads.
+	 * @param d1 The abstraction at the method's start node
+	 * @param m The target unit
+	 * @param d3 The abstraction at the target unit
+	 * @param worklist The edges to process in the current thread, or null to
+	 * always hand over new edges to the executor
+	 */
+	private void propagateNormalFlow(D d1, N m, D d3, InlineWorklist worklist) {
+		if (worklist == null || worklist.budget <= 0 || !isStraightLine(m)) {
+			propagate(d1, m, d3, null, false);
+			return;
+		}
+		if (registerJumpFunction(d1, m, d3, false)) {
+			worklist.budget--;
+			worklist.edges.add(new PathEdge<N,D>(d1, m, d3));
+			
+			propagationCount++;
+			final SolverTelemetry<M> telemetry = this.telemetry;
+			if (telemetry != null)
+				telemetry.onEdge(icfg.getMethodOf(m));
+			onNewEdge(d1, m, d3);
+		}
+	}
+	
+	/**
+	 * Checks whether the given unit can only be reached from a single normal
+	 * statement and only needs to be processed with normal flow functions
+	 * @param n The unit to check
+	 * @return True if the given unit lies on a straight-line piece of code,
+	 * otherwise false
+	 */
+	private boolean isStraightLine(N n) {
+		return !icfg.isCallStmt(n) && !icfg.isExitStmt(n) && !isMergePoint(n)
+				&& !icfg.getSuccsOf(n).isEmpty();
+	}
+	
 	/**
 	 * Computes the normal flow function for the given set of start and end
 	 * abstractions.
@@ -485,6 +699,35 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 		return flowFunction.computeTargets(d2);
 	}
 	
+	/**
+	 * Processes all facts that have reached the same unit together. The
+	 * successors and the flow functions are only looked up once for all
+	 * facts.
+	 * @param n The current unit
+	 * @param succs The successors of the current unit
+	 * @param d1s The facts at the method's start node
+	 * @param d2s The facts at the current unit, aligned with d1s
+	 */
+	private void processNormalFlowBatch(N n, List<N> succs, List<D> d1s, List<D> d2s) {
+		final InlineWorklist worklist = maxInlineEdges > 0 ? new InlineWorklist() : null;
+		for (N m : succs) {
+			FlowFunction<D> flowFunction = flowFunctions.getNormalFlowFunction(n,m);
+			for (int i = 0; i < d2s.size(); i++) {
+				final D d1 = d1s.get(i);
+				final D d2 = d2s.get(i);
+				long before = beginFlowFunction();
+				Set<D> res = computeNormalFlowFunction(flowFunction, d1, d2);
+				endFlowFunction(FlowFunctionKind.Normal, before, res);
+				for (D d3 : res) {
+					compactAbstractionChain(d3, d2);
+					propagateNormalFlow(d1, m, d3, worklist);
+				}
+			}
+		}
+		if (worklist != null)
+			processInlineEdges(worklist);
+	}
+	
 	/**
 	 * Propagates the flow further down the exploded super graph. 
 	 * @param sourceVal the source value of the propagated summary edge
@@ -518,18 +761,62 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 			/* deliberately exposed to clients */ N relatedCallSite,
 			/* deliberately exposed to clients */ boolean isUnbalancedReturn,
 			boolean forceRegister) {
-		final PathEdge<N,D> edge = new PathEdge<N,D>(sourceVal, target, targetVal);
+		// Only allocate a path edge if we actually have something new to process
+		if (registerJumpFunction(sourceVal, target, targetVal, forceRegister)) {
+			scheduleEdgeProcessing(new PathEdge<N,D>(sourceVal, target, targetVal));
+			onNewEdge(sourceVal, target, targetVal);
+		}
+	}
+	
+	/**
+	 * Records the jump function for the given edge
+	 * @param sourceVal The source value of the edge
+	 * @param target The target statement
+	 * @param targetVal The target value at the target statement
+	 * @param forceRegister True if the jump function must always be
+	 * registered, even if the target is no merge point
+	 * @return True if the edge is new and must be processed, false if it
+	 * has already been processed before
+	 */
+	private boolean registerJumpFunction(D sourceVal, N target, D targetVal,
+			boolean forceRegister) {
 		final D existingVal = (forceRegister || !enableMergePointChecking || isMergePoint(target)) ?
-				jumpFn.addFunction(edge) : null;
+				jumpFn.addFunction(sourceVal, target, targetVal) : null;
 		if (existingVal != null) {
-			if (existingVal != targetVal)
-				existingVal.addNeighbor(targetVal);
-		}
-		else {
-			scheduleEdgeProcessing(edge);
-			if(targetVal!=zeroValue)
-				logger.trace("EDGE: <{},{}> -> <{},{}>", icfg.getMethodOf(target), sourceVal, target, targetVal);
+			if (existingVal != targetVal) {
+				if (!resultsOnly)
+					existingVal.addNeighbor(targetVal);
+				else if (mergeSources(existingVal, targetVal)) {
+					// The existing fact has gained new sources, which we need
+					// to pass on to everything derived from it
+					scheduleEdgeProcessing(new PathEdge<N,D>(sourceVal, target, existingVal));
+				}
+			}
+			return false;
 		}
+		return true;
+	}
+	
+	/**
+	 * Merges the sources of a new fact into an equal fact that has already
+	 * been registered. This is only used in results-only mode, in which the
+	 * facts carry their sources instead of being linked as neighbors.
+	 * @param existingVal The fact that has already been registered
+	 * @param targetVal The new fact that is equal to the existing one
+	 * @return True if the existing fact has gained new sources and must be
+	 * processed again, otherwise false
+	 */
+	protected boolean mergeSources(D existingVal, D targetVal) {
+		return false;
+	}
+	
+	private void onNewEdge(D sourceVal, N target, D targetVal) {
+		if(targetVal!=zeroValue)
+			logger.trace("EDGE: <{},{}> -> <{},{}>", icfg.getMethodOf(target), sourceVal, target, targetVal);
+		
+		// Free some memory if we are running out of heap
+		if (summarySpiller != null)
+			summarySpiller.checkMemory(propagationCount);
 	}
 	
 	/**
@@ -555,36 +842,147 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 	}
 
 	private Set<Pair<N, D>> endSummary(M m, D d3) {
-		Set<Pair<N, D>> map = endSummary.get(new Pair<M, D>(m, d3));
-		return map;
+		final SummarySpiller<N,D,M> spiller = this.summarySpiller;
+		if (spiller != null)
+			spiller.beginAccess(m, propagationCount);
+		try {
+			Set<Pair<N, D>> map = endSummary.get(new Pair<M, D>(m, d3));
+			return map;
+		}
+		finally {
+			if (spiller != null)
+				spiller.endAccess(m);
+		}
 	}
 
-	private boolean addEndSummary(M m, D d1, N eP, D d2) {
+	/**
+	 * Checks whether a complete summary of the given method for the given
+	 * fact at the method's start points is available from outside this
+	 * solver. If so, the summary is registered as end summary and the callee
+	 * is not analyzed for this fact.
+	 * @param m The callee
+	 * @param d3 The fact at the start points of the callee
+	 * @return True if a complete summary has been registered, otherwise
+	 * false
+	 */
+	protected boolean applyPrecomputedSummary(M m, D d3) {
+		return false;
+	}
+	
+	protected boolean addEndSummary(M m, D d1, N eP, D d2) {
 		if (d1 == zeroValue)
 			return true;
 		
-		Set<Pair<N, D>> summaries = endSummary.putIfAbsentElseGet
-				(new Pair<M, D>(m, d1), new ConcurrentHashSet<Pair<N, D>>());
-		return summaries.add(new Pair<N, D>(eP, d2));
+		final SummarySpiller<N,D,M> spiller = this.summarySpiller;
+		if (spiller != null)
+			spiller.beginAccess(m, propagationCount);
+		try {
+			Set<Pair<N, D>> summaries = endSummary.putIfAbsentElseGet
+					(new Pair<M, D>(m, d1), new ConcurrentHashSet<Pair<N, D>>());
+			return summaries.add(new Pair<N, D>(eP, d2));
+		}
+		finally {
+			if (spiller != null)
+				spiller.endAccess(m);
+		}
 	}	
 	
 	protected Map<N, Map<D, D>> incoming(D d1, M m) {
-		Map<N, Map<D, D>> map = incoming.get(new Pair<M, D>(m, d1));
-		return map;
+		final SummarySpiller<N,D,M> spiller = this.summarySpiller;
+		if (spiller != null)
+			spiller.beginAccess(m, propagationCount);
+		try {
+			Map<N, Map<D, D>> map = incoming.get(new Pair<M, D>(m, d1));
+			return map;
+		}
+		finally {
+			if (spiller != null)
+				spiller.endAccess(m);
+		}
 	}
 	
 	protected boolean addIncoming(M m, D d3, N n, D d1, D d2) {
-		MyConcurrentHashMap<N, Map<D, D>> summaries = incoming.putIfAbsentElseGet
-				(new Pair<M, D>(m, d3), new MyConcurrentHashMap<N, Map<D, D>>());
-		Map<D, D> set = summaries.putIfAbsentElseGet(n, new ConcurrentHashMap<D, D>());
-		return set.put(d1, d2) == null;
+		final SummarySpiller<N,D,M> spiller = this.summarySpiller;
+		if (spiller != null)
+			spiller.beginAccess(m, propagationCount);
+		try {
+			MyConcurrentHashMap<N, Map<D, D>> summaries = incoming.putIfAbsentElseGet
+					(new Pair<M, D>(m, d3), new MyConcurrentHashMap<N, Map<D, D>>());
+			Map<D, D> set = summaries.putIfAbsentElseGet(n, new ConcurrentHashMap<D, D>());
+			return set.put(d1, d2) == null;
+		}
+		finally {
+			if (spiller != null)
+				spiller.endAccess(m);
+		}
+	}
+	
+	/**
+	 * Must be called before a flow function is computed so that the telemetry
+	 * can measure its latency
+	 * @return The value to pass to {@link #endFlowFunction(FlowFunctionKind, long, Set)}
+	 */
+	private long beginFlowFunction() {
+		final SolverTelemetry<M> telemetry = this.telemetry;
+		return telemetry == null ? 0 : telemetry.beginFlowFunction();
+	}
+	
+	/**
+	 * Must be called after a flow function has been computed to record it in
+	 * the telemetry
+	 * @param kind The kind of flow function
+	 * @param before The value returned by {@link #beginFlowFunction()}
+	 * @param res The facts computed by the flow function
+	 */
+	private void endFlowFunction(FlowFunctionKind kind, long before, Set<D> res) {
+		final SolverTelemetry<M> telemetry = this.telemetry;
+		if (telemetry != null)
+			telemetry.endFlowFunction(kind, before, res == null ? 0 : res.size());
+	}
+	
+	/**
+	 * Sets the telemetry object that shall record the statistics of this
+	 * solver. The telemetry is not started automatically, since several
+	 * solvers may share the same executor and thus run at the same time.
+	 * @param telemetry The telemetry object, or null to disable the telemetry
+	 */
+	public void setTelemetry(SolverTelemetry<M> telemetry) {
+		this.telemetry = telemetry;
+		if (telemetry != null)
+			telemetry.attach(new SolverTelemetry.ISolverState() {
+				
+				@Override
+				public long getJumpFunctionCount() {
+					return jumpFn.size();
+				}
+				
+				@Override
+				public long getIncomingCount() {
+					return incoming.size();
+				}
+				
+				@Override
+				public long getEndSummaryCount() {
+					return endSummary.size();
+				}
+				
+				@Override
+				public long getQueueSize() {
+					return executor.getQueueSize();
+				}
+				
+			});
+	}
+	
+	public SolverTelemetry<M> getTelemetry() {
+		return this.telemetry;
 	}
 	
 	/**
 	 * Factory method for this solver's thread-pool executor.
 	 */
-	protected CountingThreadPoolExecutor getExecutor() {
-		return new CountingThreadPoolExecutor(1, this.numThreads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+	protected ISolverExecutor getExecutor() {
+		return new CountingSolverExecutor(1, this.numThreads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
 	}
 	
 	/**
@@ -596,10 +994,12 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 	}
 
 	public void printStats() {
+		if (telemetry != null)
+			logger.info("{}: {}", getDebugName(), telemetry.takeSnapshot().toJson());
 		if(logger.isDebugEnabled()) {
 			if(ffCache!=null)
 				ffCache.printStats();
-		} else {
+		} else if (telemetry == null) {
 			logger.info("No statistics were collected, as DEBUG is disabled.");
 		}
 	}
@@ -625,6 +1025,71 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 		}
 	}
 	
+	/**
+	 * The facts that have reached a unit and have not been processed yet
+	 */
+	protected class EdgeBatch {
+		private final List<D> sources = new ArrayList<D>();
+		private final List<D> targets = new ArrayList<D>();
+		private boolean closed = false;
+		
+		private void add(D d1, D d2) {
+			sources.add(d1);
+			targets.add(d2);
+		}
+	}
+	
+	/**
+	 * The edges that are processed in the current thread without going
+	 * through the executor
+	 */
+	private class InlineWorklist {
+		private final ArrayDeque<PathEdge<N,D>> edges = new ArrayDeque<PathEdge<N,D>>();
+		private int budget = maxInlineEdges;
+	}
+	
+	private class EdgeBatchProcessingTask implements Runnable {
+		private final N target;
+		private final EdgeBatch batch;
+		
+		public EdgeBatchProcessingTask(N target, EdgeBatch batch) {
+			this.target = target;
+			this.batch = batch;
+		}
+		
+		public void run() {
+			// Take the batch so that all facts arriving from now on go into a
+			// new batch
+			pendingBatches.remove(target, batch);
+			synchronized (batch) {
+				batch.closed = true;
+			}
+			
+			if(icfg.isCallStmt(target)) {
+				processCallBatch(target, batch.sources, batch.targets);
+			} else {
+				if(icfg.isExitStmt(target))
+					for (int i = 0; i < batch.targets.size(); i++)
+						processExit(new PathEdge<N,D>(batch.sources.get(i), target, batch.targets.get(i)));
+				List<N> succs = icfg.getSuccsOf(target);
+				if(!succs.isEmpty())
+					processNormalFlowBatch(target, succs, batch.sources, batch.targets);
+			}
+		}
+	}
+	
+	/**
+	 * Sets whether all facts that reach the same unit before it is processed
+	 * shall be processed together in a single task. This saves task objects
+	 * and lookups of successors and flow functions when many facts flow
+	 * along the same path.
+	 * @param batchEdges True if the facts at a unit shall be processed
+	 * together, false if every edge shall be processed on its own
+	 */
+	public void setBatchEdges(boolean batchEdges) {
+		this.batchEdges = batchEdges;
+	}
+	
 	/**
 	 * Sets whether abstractions on method returns shall be connected to the
 	 * respective call abstractions to shortcut paths.
@@ -635,6 +1100,33 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 		this.setJumpPredecessors = setJumpPredecessors;
 	}
 	
+	/**
+	 * Sets whether the solver shall only compute results without recording
+	 * the graph of abstractions, i.e. without connecting abstractions to
+	 * their predecessors and neighbors. Equal facts then merge their sources
+	 * through {@link #mergeSources} instead.
+	 * @param resultsOnly True if the solver shall not record predecessors
+	 * and neighbors, otherwise false
+	 */
+	public void setResultsOnly(boolean resultsOnly) {
+		this.resultsOnly = resultsOnly;
+	}
+	
+	/**
+	 * Sets the governor that decides when the end summaries and incoming
+	 * edges of methods that have not been used recently shall be spilled to
+	 * disk. Spilled data is loaded back on demand.
+	 * @param memoryGovernor The memory governor to use, or null to keep all
+	 * data in memory
+	 */
+	public void setMemoryGovernor(MemoryGovernor memoryGovernor) {
+		if (this.summarySpiller != null)
+			this.summarySpiller.close();
+		this.summarySpiller = memoryGovernor == null ? null
+				: new SummarySpiller<N,D,M>(endSummary, incoming, jumpFn.getNodeIds(),
+						jumpFn.getFactIds(), memoryGovernor);
+	}
+	
 	/**
 	 * Sets whether only abstractions at merge points shall be recorded to jumpFn.
 	 * @param enableMergePointChecking True if only abstractions at merge points
@@ -643,5 +1135,16 @@ public class IFDSSolver<N,D extends FastSolverLinkedNode<D, N>,M,I extends BiDiI
 	public void setEnableMergePointChecking(boolean enableMergePointChecking) {
 		this.enableMergePointChecking = enableMergePointChecking;
 	}
+	
+	/**
+	 * Sets the maximum number of edges a worker processes on its own along
+	 * straight-line code before it hands over new edges to the executor
+	 * again.
+	 * @param maxInlineEdges The maximum number of edges processed in the
+	 * current thread per task. 0 hands over every edge to the executor.
+	 */
+	public void setMaxInlineEdges(int maxInlineEdges) {
+		this.maxInlineEdges = maxInlineEdges;
+	}
 
 }
@@ -11,21 +11,29 @@
 package soot.jimple.infoflow.solver.fastSolver;
 
 import heros.FlowFunction;
-import heros.solver.CountingThreadPoolExecutor;
+import heros.solver.Pair;
 import heros.solver.PathEdge;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import soot.SootMethod;
 import soot.Unit;
+import soot.jimple.infoflow.collect.ConcurrentHashSet;
 import soot.jimple.infoflow.data.Abstraction;
 import soot.jimple.infoflow.problems.AbstractInfoflowProblem;
 import soot.jimple.infoflow.solver.IInfoflowSolver;
+import soot.jimple.infoflow.solver.executors.ISolverExecutor;
 import soot.jimple.infoflow.solver.functions.SolverCallFlowFunction;
 import soot.jimple.infoflow.solver.functions.SolverCallToReturnFlowFunction;
 import soot.jimple.infoflow.solver.functions.SolverNormalFlowFunction;
 import soot.jimple.infoflow.solver.functions.SolverReturnFlowFunction;
+import soot.jimple.infoflow.solver.summaries.PersistentSummaryCache;
 import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
 /**
  * We are subclassing the JimpleIFDSSolver because we need the same executor for both the forward and the backward analysis
@@ -34,15 +42,21 @@ import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
  */
 public class InfoflowSolver extends IFDSSolver<Unit, Abstraction, SootMethod, BiDiInterproceduralCFG<Unit, SootMethod>>
 		implements IInfoflowSolver {
+	
+	private PersistentSummaryCache summaryCache = null;
+	private final Set<Pair<SootMethod, Abstraction>> summarizedContexts =
+			new ConcurrentHashSet<Pair<SootMethod, Abstraction>>();
+	private final Set<Pair<SootMethod, Abstraction>> analyzedContexts =
+			new ConcurrentHashSet<Pair<SootMethod, Abstraction>>();
 
-	public InfoflowSolver(AbstractInfoflowProblem problem, CountingThreadPoolExecutor executor) {
+	public InfoflowSolver(AbstractInfoflowProblem problem, ISolverExecutor executor) {
 		super(problem);
 		this.executor = executor;
 		problem.setSolver(this);		
 	}
 	
 	@Override
-	protected CountingThreadPoolExecutor getExecutor() {
+	protected ISolverExecutor getExecutor() {
 		return executor;
 	}
 
@@ -96,11 +110,85 @@ public class InfoflowSolver extends IFDSSolver<Unit, Abstraction, SootMethod, Bi
 			return flowFunction.computeTargets(d2);		
 	}
 	
+	@Override
+	protected boolean mergeSources(Abstraction existingVal, Abstraction targetVal) {
+		return existingVal.addSourceContexts(targetVal);
+	}
+	
+	@Override
+	protected boolean applyPrecomputedSummary(SootMethod m, Abstraction d3) {
+		if (summaryCache == null || d3 == zeroValue)
+			return false;
+		
+		Pair<SootMethod, Abstraction> context = new Pair<SootMethod, Abstraction>(m, d3);
+		if (summarizedContexts.contains(context))
+			return true;
+		
+		List<Entry<Unit, Abstraction>> exits = new ArrayList<Entry<Unit, Abstraction>>();
+		if (!summaryCache.getSummary(m, d3, exits)) {
+			analyzedContexts.add(context);
+			return false;
+		}
+		for (Entry<Unit, Abstraction> exit : exits)
+			addEndSummary(m, d3, exit.getKey(), exit.getValue());
+		summarizedContexts.add(context);
+		return true;
+	}
+	
+	/**
+	 * Sets the cache from which to take the summaries of library methods
+	 * instead of analyzing them again
+	 * @param summaryCache The summary cache to use, or null to analyze all
+	 * methods
+	 */
+	public void setSummaryCache(PersistentSummaryCache summaryCache) {
+		this.summaryCache = summaryCache;
+	}
+	
+	/**
+	 * Stores the summaries of all methods that have been analyzed by this
+	 * solver in the summary cache. Only call this method after the solver
+	 * has reached its fixed point, otherwise incomplete summaries would be
+	 * stored.
+	 * @return The number of summaries that have been stored
+	 */
+	public int storeSummaries() {
+		if (summaryCache == null)
+			return 0;
+		
+		int numStored = 0;
+		for (Pair<SootMethod, Abstraction> context : analyzedContexts) {
+			// This also loads spilled summaries back into memory
+			if (incoming(context.getO2(), context.getO1()) == null)
+				continue;
+			
+			Map<Unit, List<Abstraction>> exits = new HashMap<Unit, List<Abstraction>>();
+			Set<Pair<Unit, Abstraction>> summaries = endSummary.get(context);
+			if (summaries != null)
+				for (Pair<Unit, Abstraction> summary : summaries) {
+					List<Abstraction> exitAbs = exits.get(summary.getO1());
+					if (exitAbs == null) {
+						exitAbs = new ArrayList<Abstraction>();
+						exits.put(summary.getO1(), exitAbs);
+					}
+					exitAbs.add(summary.getO2());
+				}
+			if (summaryCache.putSummary(context.getO1(), context.getO2(), exits))
+				numStored++;
+		}
+		return numStored;
+	}
+	
 	@Override
 	public void cleanup() {
+		// The spilled data refers to the identifiers of the jump functions
+		if (this.summarySpiller != null)
+			this.summarySpiller.close();
 		this.jumpFn.clear();
 		this.incoming.clear();
 		this.endSummary.clear();
+		this.summarizedContexts.clear();
+		this.analyzedContexts.clear();
 	}
 	
 	@Override
@@ -13,23 +13,30 @@ package soot.jimple.infoflow.solver.fastSolver;
 import heros.SynchronizedBy;
 import heros.ThreadSafe;
 import heros.solver.PathEdge;
-import soot.jimple.infoflow.collect.MyConcurrentHashMap;
+import soot.jimple.infoflow.collect.ConcurrentIdTable;
+import soot.jimple.infoflow.collect.ConcurrentIntTripleMap;
 
 
 /**
- * The IDE algorithm uses a list of jump functions. Instead of a list, we use a set of three
- * maps that are kept in sync. This allows for efficient indexing: the algorithm accesses
- * elements from the list through three different indices.
+ * The IDE algorithm uses a list of jump functions. Instead of a list, we use a
+ * primitive table keyed by the integer identifiers of the source fact, the
+ * target node, and the target fact. This allows us to check whether a jump
+ * function is already known without allocating a {@link PathEdge}.
  */
 @ThreadSafe
 public class JumpFunctions<N,D> {
-		
-	//mapping from target node and value to a list of all source values and associated functions
-	//where the list is implemented as a mapping from the source value to the function
-	//we exclude empty default functions
-	@SynchronizedBy("consistent lock on this")
-	protected MyConcurrentHashMap<PathEdge<N, D>,D> nonEmptyReverseLookup =
-			new MyConcurrentHashMap<PathEdge<N,D>, D>();
+	
+	@SynchronizedBy("thread safe data structure")
+	protected final ConcurrentIdTable<N> nodeIds = new ConcurrentIdTable<N>();
+	
+	@SynchronizedBy("thread safe data structure")
+	protected final ConcurrentIdTable<D> factIds = new ConcurrentIdTable<D>();
+	
+	//mapping from source value, target node and target value to the target
+	//value that was registered first. We exclude empty default functions
+	@SynchronizedBy("thread safe data structure")
+	protected volatile ConcurrentIntTripleMap<D> nonEmptyReverseLookup =
+			new ConcurrentIntTripleMap<D>();
 	
 	public JumpFunctions() {
 	}
@@ -39,14 +46,56 @@ public class JumpFunctions<N,D> {
 	 * @see PathEdge
 	 */
 	public D addFunction(PathEdge<N, D> edge) {
-		return nonEmptyReverseLookup.putIfAbsent(edge, edge.factAtTarget());
+		return addFunction(edge.factAtSource(), edge.getTarget(), edge.factAtTarget());
+	}
+	
+	/**
+	 * Records a jump function. The source statement is implicit.
+	 * @param sourceVal The fact at the source of the jump function
+	 * @param target The target statement of the jump function
+	 * @param targetVal The fact at the target of the jump function
+	 * @return The target fact that was already registered for an equal jump
+	 * function if there was one, otherwise null
+	 */
+	public D addFunction(D sourceVal, N target, D targetVal) {
+		return nonEmptyReverseLookup.putIfAbsent(factIds.getOrCreateId(sourceVal),
+				nodeIds.getOrCreateId(target), factIds.getOrCreateId(targetVal),
+				targetVal);
+	}
+	
+	/**
+	 * Gets the number of jump functions that have been recorded
+	 * @return The number of jump functions that have been recorded
+	 */
+	public int size() {
+		return nonEmptyReverseLookup.size();
+	}
+	
+	/**
+	 * Gets the table that assigns identifiers to the target nodes of the
+	 * jump functions
+	 * @return The identifiers of the nodes
+	 */
+	public ConcurrentIdTable<N> getNodeIds() {
+		return this.nodeIds;
+	}
+	
+	/**
+	 * Gets the table that assigns identifiers to the source and target facts
+	 * of the jump functions
+	 * @return The identifiers of the facts
+	 */
+	public ConcurrentIdTable<D> getFactIds() {
+		return this.factIds;
 	}
 	
 	/**
 	 * Removes all jump functions
 	 */
 	public synchronized void clear() {
-		this.nonEmptyReverseLookup = new MyConcurrentHashMap<PathEdge<N,D>, D>();
+		this.nonEmptyReverseLookup = new ConcurrentIntTripleMap<D>();
+		this.nodeIds.clear();
+		this.factIds.clear();
 	}
 
 }
@@ -0,0 +1,416 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.fastSolver;
+
+import heros.solver.Pair;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.jimple.infoflow.collect.ConcurrentHashSet;
+import soot.jimple.infoflow.collect.ConcurrentIdTable;
+import soot.jimple.infoflow.collect.MyConcurrentHashMap;
+import soot.jimple.infoflow.solver.memory.MemoryGovernor;
+import soot.jimple.infoflow.solver.memory.SpillFile;
+
+/**
+ * Class that moves the end summaries and incoming edges of methods that
+ * have not been used recently from the tables of an {@link IFDSSolver} into
+ * a memory-mapped {@link SpillFile} when the {@link MemoryGovernor} reports
+ * that the heap is running full. Spilled methods are loaded back on their
+ * next access.
+ *
+ * Nodes and facts are written as the integer identifiers that the
+ * {@link JumpFunctions} of the solver already assign to them, so spilling
+ * does not add an index of its own. Note that this means that the fact
+ * objects themselves always stay in memory, they cannot be written to disk.
+ * What is freed are the summary sets, incoming maps, and pairs of the
+ * spilled methods, which dominate the size of the tables for large apps.
+ *
+ * All accesses to the summary tables of a method must be enclosed in calls
+ * to {@link #beginAccess(Object, long)} and {@link #endAccess(Object)}.
+ */
+public class SummarySpiller<N, D, M> {
+
+	private static final int NUM_LOCKS = 64;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Data of a method whose summaries have been spilled to disk
+	 */
+	private static class SpilledMethod {
+
+		private final long pos;
+		private final int len;
+		private boolean restored = false;
+
+		public SpilledMethod(long pos, int len) {
+			this.pos = pos;
+			this.len = len;
+		}
+
+	}
+
+	/**
+	 * Time of the last access to the summaries of a method. The time is
+	 * updated in place, so that accesses do not allocate.
+	 */
+	private static class AccessTime {
+
+		private volatile long time;
+
+		public AccessTime(long time) {
+			this.time = time;
+		}
+
+	}
+
+	/**
+	 * Growable array of integers for building records
+	 */
+	private static class IntRecord {
+
+		private int[] data = new int[64];
+		private int size = 0;
+
+		public void add(int value) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, data.length * 2);
+			data[size++] = value;
+		}
+
+		public void set(int idx, int value) {
+			data[idx] = value;
+		}
+
+		public int size() {
+			return size;
+		}
+
+	}
+
+	private final MyConcurrentHashMap<Pair<M,D>,Set<Pair<N,D>>> endSummary;
+	private final MyConcurrentHashMap<Pair<M,D>,MyConcurrentHashMap<N,Map<D, D>>> incoming;
+	private final MemoryGovernor governor;
+
+	private final ConcurrentIdTable<N> nodeIds;
+	private final ConcurrentIdTable<D> factIds;
+
+	private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[NUM_LOCKS];
+	private final MyConcurrentHashMap<M, AccessTime> accessTimes =
+			new MyConcurrentHashMap<M, AccessTime>();
+	private final MyConcurrentHashMap<M, SpilledMethod> spilledMethods =
+			new MyConcurrentHashMap<M, SpilledMethod>();
+
+	private final AtomicBoolean spilling = new AtomicBoolean(false);
+	private final AtomicInteger spillCount = new AtomicInteger();
+	private final AtomicInteger faultCount = new AtomicInteger();
+
+	private volatile long nextCheck = 0;
+	private volatile boolean disabled = false;
+	private volatile SpillFile spillFile = null;
+
+	/**
+	 * Creates a new instance of the {@link SummarySpiller} class
+	 * @param endSummary The end summary table of the solver
+	 * @param incoming The table of incoming edges of the solver
+	 * @param nodeIds The table that assigns identifiers to nodes. The
+	 * identifiers must stay valid until this spiller is closed.
+	 * @param factIds The table that assigns identifiers to facts. The
+	 * identifiers must stay valid until this spiller is closed.
+	 * @param governor The governor that decides when to spill data
+	 */
+	public SummarySpiller(MyConcurrentHashMap<Pair<M,D>,Set<Pair<N,D>>> endSummary,
+			MyConcurrentHashMap<Pair<M,D>,MyConcurrentHashMap<N,Map<D, D>>> incoming,
+			ConcurrentIdTable<N> nodeIds, ConcurrentIdTable<D> factIds,
+			MemoryGovernor governor) {
+		this.endSummary = endSummary;
+		this.incoming = incoming;
+		this.nodeIds = nodeIds;
+		this.factIds = factIds;
+		this.governor = governor;
+		for (int i = 0; i < NUM_LOCKS; i++)
+			locks[i] = new ReentrantReadWriteLock();
+	}
+
+	private ReentrantReadWriteLock getLock(M m) {
+		int h = m.hashCode();
+		h ^= (h >>> 16);
+		return locks[h & (NUM_LOCKS - 1)];
+	}
+
+	/**
+	 * Must be called before accessing the summary tables of the given method.
+	 * If the method has been spilled, its data is loaded back from disk.
+	 * @param m The method whose summaries are accessed
+	 * @param time The current logical time of the solver
+	 */
+	public void beginAccess(M m, long time) {
+		getLock(m).readLock().lock();
+		AccessTime accessTime = accessTimes.get(m);
+		if (accessTime == null)
+			accessTime = accessTimes.putIfAbsentElseGet(m, new AccessTime(time));
+		accessTime.time = time;
+
+		SpilledMethod sm = spilledMethods.get(m);
+		if (sm != null)
+			faultIn(m, sm);
+	}
+
+	/**
+	 * Must be called after accessing the summary tables of the given method
+	 * @param m The method whose summaries have been accessed
+	 */
+	public void endAccess(M m) {
+		getLock(m).readLock().unlock();
+	}
+
+	/**
+	 * Checks whether the heap is running full and spills the summaries of
+	 * the least recently used methods if necessary. The caller must not be
+	 * inside a {@link #beginAccess(Object, long)} block.
+	 * @param time The current logical time of the solver
+	 */
+	public void checkMemory(long time) {
+		if (disabled || time < nextCheck)
+			return;
+		nextCheck = time + governor.getCheckInterval();
+		if (!governor.isMemoryExhausted())
+			return;
+
+		// Only one thread spills data at a time
+		if (!spilling.compareAndSet(false, true))
+			return;
+		try {
+			spillColdMethods();
+		}
+		finally {
+			spilling.set(false);
+		}
+	}
+
+	private void spillColdMethods() {
+		// Find the least recently used methods
+		// Take a snapshot of the access times, they may change while sorting
+		List<Pair<M, Long>> candidates = new ArrayList<Pair<M, Long>>(accessTimes.size());
+		for (Entry<M, AccessTime> entry : accessTimes.entrySet())
+			candidates.add(new Pair<M, Long>(entry.getKey(), entry.getValue().time));
+		Collections.sort(candidates, new Comparator<Pair<M, Long>>() {
+
+			@Override
+			public int compare(Pair<M, Long> o1, Pair<M, Long> o2) {
+				return o1.getO2().compareTo(o2.getO2());
+			}
+
+		});
+		int numSpill = (int) Math.ceil(candidates.size() * governor.getSpillFraction());
+		if (numSpill == 0)
+			return;
+
+		Map<M, List<Pair<M, D>>> summaryKeys = new HashMap<M, List<Pair<M, D>>>(numSpill);
+		Map<M, List<Pair<M, D>>> incomingKeys = new HashMap<M, List<Pair<M, D>>>(numSpill);
+		for (int i = 0; i < numSpill; i++) {
+			summaryKeys.put(candidates.get(i).getO1(), new ArrayList<Pair<M, D>>());
+			incomingKeys.put(candidates.get(i).getO1(), new ArrayList<Pair<M, D>>());
+		}
+		for (Pair<M, D> key : endSummary.keySet()) {
+			List<Pair<M, D>> keys = summaryKeys.get(key.getO1());
+			if (keys != null)
+				keys.add(key);
+		}
+		for (Pair<M, D> key : incoming.keySet()) {
+			List<Pair<M, D>> keys = incomingKeys.get(key.getO1());
+			if (keys != null)
+				keys.add(key);
+		}
+
+		int numSpilled = 0;
+		for (int i = 0; i < numSpill && !disabled; i++) {
+			M m = candidates.get(i).getO1();
+			if (spillMethod(m, summaryKeys.get(m), incomingKeys.get(m)))
+				numSpilled++;
+		}
+		spillCount.addAndGet(numSpilled);
+		logger.info("Spilled summaries of {} methods to disk, spill file has {} MB",
+				numSpilled, spillFile == null ? 0 : spillFile.size() / (1024 * 1024));
+	}
+
+	private boolean spillMethod(M m, List<Pair<M, D>> summaryKeys,
+			List<Pair<M, D>> incomingKeys) {
+		ReentrantReadWriteLock lock = getLock(m);
+		lock.writeLock().lock();
+		try {
+			if (spilledMethods.containsKey(m))
+				return false;
+
+			// Build the record before touching the tables, so that we
+			// do not lose anything if the file cannot be written
+			IntRecord record = new IntRecord();
+			record.add(summaryKeys.size());
+			for (Pair<M, D> key : summaryKeys) {
+				Set<Pair<N, D>> summaries = endSummary.get(key);
+				if (summaries == null)
+					summaries = Collections.emptySet();
+				record.add(factIds.getOrCreateId(key.getO2()));
+				record.add(summaries.size());
+				for (Pair<N, D> summary : summaries) {
+					record.add(nodeIds.getOrCreateId(summary.getO1()));
+					record.add(factIds.getOrCreateId(summary.getO2()));
+				}
+			}
+			record.add(incomingKeys.size());
+			for (Pair<M, D> key : incomingKeys) {
+				Map<N, Map<D, D>> inc = incoming.get(key);
+				if (inc == null)
+					inc = Collections.emptyMap();
+				record.add(factIds.getOrCreateId(key.getO2()));
+				record.add(inc.size());
+				for (Entry<N, Map<D, D>> callSite : inc.entrySet()) {
+					record.add(nodeIds.getOrCreateId(callSite.getKey()));
+					int sizeIdx = record.size();
+					record.add(0);
+					int numFacts = 0;
+					for (Entry<D, D> facts : callSite.getValue().entrySet()) {
+						record.add(factIds.getOrCreateId(facts.getKey()));
+						record.add(factIds.getOrCreateId(facts.getValue()));
+						numFacts++;
+					}
+					record.set(sizeIdx, numFacts);
+				}
+			}
+
+			long pos;
+			try {
+				if (spillFile == null)
+					spillFile = new SpillFile(governor.getSpillDirectory());
+				pos = spillFile.write(record.data, record.size());
+			}
+			catch (IOException ex) {
+				logger.error("Could not write spill file, keeping all summaries in memory", ex);
+				disabled = true;
+				return false;
+			}
+
+			for (Pair<M, D> key : summaryKeys)
+				endSummary.remove(key);
+			for (Pair<M, D> key : incomingKeys)
+				incoming.remove(key);
+			spilledMethods.put(m, new SpilledMethod(pos, record.size()));
+			accessTimes.remove(m);
+			return true;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void faultIn(M m, SpilledMethod sm) {
+		synchronized (sm) {
+			if (!sm.restored) {
+				int[] data;
+				try {
+					data = spillFile.read(sm.pos, sm.len);
+				}
+				catch (IOException ex) {
+					throw new RuntimeException("Could not read spilled summaries of " + m, ex);
+				}
+
+				// New summaries may have been added in the meantime, so we
+				// merge the data from disk into the tables
+				int idx = 0;
+				int numSummaries = data[idx++];
+				for (int i = 0; i < numSummaries; i++) {
+					D d1 = factIds.getObject(data[idx++]);
+					int numEntries = data[idx++];
+					Set<Pair<N, D>> summaries = endSummary.putIfAbsentElseGet
+							(new Pair<M, D>(m, d1), new ConcurrentHashSet<Pair<N, D>>());
+					for (int j = 0; j < numEntries; j++) {
+						N eP = nodeIds.getObject(data[idx++]);
+						D d2 = factIds.getObject(data[idx++]);
+						summaries.add(new Pair<N, D>(eP, d2));
+					}
+				}
+				int numIncoming = data[idx++];
+				for (int i = 0; i < numIncoming; i++) {
+					D d3 = factIds.getObject(data[idx++]);
+					int numCallSites = data[idx++];
+					MyConcurrentHashMap<N, Map<D, D>> inc = incoming.putIfAbsentElseGet
+							(new Pair<M, D>(m, d3), new MyConcurrentHashMap<N, Map<D, D>>());
+					for (int j = 0; j < numCallSites; j++) {
+						N callSite = nodeIds.getObject(data[idx++]);
+						int numFacts = data[idx++];
+						Map<D, D> facts = inc.putIfAbsentElseGet(callSite,
+								new ConcurrentHashMap<D, D>());
+						for (int k = 0; k < numFacts; k++) {
+							D d1 = factIds.getObject(data[idx++]);
+							D d2 = factIds.getObject(data[idx++]);
+							facts.put(d1, d2);
+						}
+					}
+				}
+				sm.restored = true;
+				faultCount.incrementAndGet();
+			}
+		}
+		spilledMethods.remove(m, sm);
+	}
+
+	/**
+	 * Gets the number of times the summaries of a method have been spilled
+	 * to disk
+	 * @return The number of spilled methods
+	 */
+	public int getSpillCount() {
+		return spillCount.get();
+	}
+
+	/**
+	 * Gets the number of times the summaries of a method had to be loaded
+	 * back from disk
+	 * @return The number of loaded methods
+	 */
+	public int getFaultCount() {
+		return faultCount.get();
+	}
+
+	/**
+	 * Drops all spilled data and deletes the spill file
+	 */
+	public void close() {
+		if (spillCount.get() > 0)
+			logger.info("Spilled summaries {} times, loaded them back {} times",
+					spillCount.get(), faultCount.get());
+
+		spilledMethods.clear();
+		accessTimes.clear();
+		if (spillFile != null) {
+			spillFile.close();
+			spillFile = null;
+		}
+	}
+
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.memory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class that decides when the IFDS solvers have to free memory by spilling
+ * data to disk.
+ *
+ * The governor looks at the tenured pool of the heap and only at its
+ * collection usage, i.e. the occupancy measured by the JVM right after the
+ * last garbage collection of that pool. Unlike the difference between total
+ * and free memory, this figure does not include garbage that simply has not
+ * been collected yet. Every collection yields exactly one decision, so two
+ * spills are always separated by at least one collection that shows whether
+ * the previous spill was sufficient.
+ *
+ * Spilling starts once the collection usage exceeds the threshold and
+ * continues with every further collection until the usage has dropped below
+ * the low-water mark. If the JVM does not expose a suitable pool, the
+ * governor falls back to the overall heap usage.
+ */
+public class MemoryGovernor {
+
+	private static final double DEFAULT_THRESHOLD = 0.8;
+	private static final double DEFAULT_HYSTERESIS = 0.2;
+	private static final double DEFAULT_SPILL_FRACTION = 0.5;
+	private static final int DEFAULT_CHECK_INTERVAL = 10000;
+
+	private final double threshold;
+	private final double lowWaterMark;
+	private final double spillFraction;
+	private final int checkInterval;
+	private final String spillDirectory;
+
+	private final MemoryPoolMXBean tenuredPool;
+	private final List<GarbageCollectorMXBean> tenuredCollectors;
+
+	private long lastCollectionCount = -1;
+	private boolean exhausted = false;
+
+	/**
+	 * Creates a new instance of the {@link MemoryGovernor} class that spills
+	 * data once 80% of the tenured heap are still in use after a garbage
+	 * collection
+	 */
+	public MemoryGovernor() {
+		this(DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Creates a new instance of the {@link MemoryGovernor} class
+	 * @param threshold The fraction of the tenured heap that must still be in
+	 * use after a garbage collection for the solvers to start spilling data
+	 * to disk, e.g. 0.8 for 80%
+	 */
+	public MemoryGovernor(double threshold) {
+		this(threshold, DEFAULT_SPILL_FRACTION, DEFAULT_CHECK_INTERVAL, null);
+	}
+
+	/**
+	 * Creates a new instance of the {@link MemoryGovernor} class. The
+	 * low-water mark is set 20 percentage points below the threshold, but
+	 * never below half of it.
+	 * @param threshold The fraction of the tenured heap that must still be in
+	 * use after a garbage collection for the solvers to start spilling data
+	 * to disk, e.g. 0.8 for 80%
+	 * @param spillFraction The fraction of the methods currently held in
+	 * memory that shall be spilled to disk once the threshold is exceeded.
+	 * The least recently used methods are spilled first.
+	 * @param checkInterval The number of propagated edges after which the
+	 * memory consumption shall be checked again
+	 * @param spillDirectory The directory in which to place the spill files,
+	 * or null to use the system's temporary directory
+	 */
+	public MemoryGovernor(double threshold, double spillFraction,
+			int checkInterval, String spillDirectory) {
+		this(threshold, Math.max(threshold - DEFAULT_HYSTERESIS, threshold / 2),
+				spillFraction, checkInterval, spillDirectory);
+	}
+
+	/**
+	 * Creates a new instance of the {@link MemoryGovernor} class
+	 * @param threshold The fraction of the tenured heap that must still be in
+	 * use after a garbage collection for the solvers to start spilling data
+	 * to disk, e.g. 0.8 for 80%
+	 * @param lowWaterMark The fraction of the tenured heap below which the
+	 * usage after a garbage collection must drop before the solvers stop
+	 * spilling data to disk. Must not be larger than the threshold.
+	 * @param spillFraction The fraction of the methods currently held in
+	 * memory that shall be spilled to disk on every collection while the
+	 * usage is above the low-water mark. The least recently used methods are
+	 * spilled first.
+	 * @param checkInterval The number of propagated edges after which the
+	 * memory consumption shall be checked again
+	 * @param spillDirectory The directory in which to place the spill files,
+	 * or null to use the system's temporary directory
+	 */
+	public MemoryGovernor(double threshold, double lowWaterMark, double spillFraction,
+			int checkInterval, String spillDirectory) {
+		if (threshold <= 0 || threshold > 1)
+			throw new IllegalArgumentException("Memory threshold must be in (0, 1]");
+		if (lowWaterMark <= 0 || lowWaterMark > threshold)
+			throw new IllegalArgumentException("Low-water mark must be in (0, threshold]");
+		if (spillFraction <= 0 || spillFraction > 1)
+			throw new IllegalArgumentException("Spill fraction must be in (0, 1]");
+		if (checkInterval <= 0)
+			throw new IllegalArgumentException("Check interval must be positive");
+
+		this.threshold = threshold;
+		this.lowWaterMark = lowWaterMark;
+		this.spillFraction = spillFraction;
+		this.checkInterval = checkInterval;
+		this.spillDirectory = spillDirectory;
+
+		this.tenuredPool = findTenuredPool();
+		this.tenuredCollectors = new ArrayList<GarbageCollectorMXBean>();
+		if (tenuredPool != null)
+			for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+				if (Arrays.asList(gc.getMemoryPoolNames()).contains(tenuredPool.getName()))
+					tenuredCollectors.add(gc);
+	}
+
+	/**
+	 * Finds the memory pool that holds the long-lived objects. This is the
+	 * only heap pool that supports both usage thresholds and collection usage
+	 * thresholds.
+	 * @return The tenured memory pool, or null if no such pool exists
+	 */
+	private static MemoryPoolMXBean findTenuredPool() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP
+					&& pool.isUsageThresholdSupported()
+					&& pool.isCollectionUsageThresholdSupported())
+				return pool;
+		return null;
+	}
+
+	/**
+	 * Checks whether the solvers shall free memory. With a tenured pool, this
+	 * method returns true at most once per garbage collection of that pool,
+	 * so if several solvers share a governor, only one of them spills data
+	 * for a given collection.
+	 * @return True if the solvers shall free memory, otherwise false
+	 */
+	public synchronized boolean isMemoryExhausted() {
+		long used;
+		long max;
+		if (tenuredPool != null) {
+			// Only decide once per collection of the tenured pool. Without a
+			// new collection, we would only see the same figure again.
+			if (!tenuredCollectors.isEmpty()) {
+				long collectionCount = 0;
+				for (GarbageCollectorMXBean gc : tenuredCollectors)
+					collectionCount += Math.max(gc.getCollectionCount(), 0);
+				if (collectionCount == lastCollectionCount)
+					return false;
+				lastCollectionCount = collectionCount;
+			}
+
+			MemoryUsage usage = tenuredPool.getCollectionUsage();
+			if (usage == null)
+				return false;
+			used = usage.getUsed();
+			max = usage.getMax();
+			if (max < 0)
+				max = tenuredPool.getUsage().getMax();
+			if (max < 0)
+				max = Runtime.getRuntime().maxMemory();
+		}
+		else {
+			Runtime runtime = Runtime.getRuntime();
+			used = runtime.totalMemory() - runtime.freeMemory();
+			max = runtime.maxMemory();
+		}
+
+		if (exhausted)
+			exhausted = used >= max * lowWaterMark;
+		else
+			exhausted = used > max * threshold;
+		return exhausted;
+	}
+
+	/**
+	 * Gets the fraction of the methods currently held in memory that shall
+	 * be spilled to disk once the threshold is exceeded
+	 * @return The fraction of methods to spill
+	 */
+	public double getSpillFraction() {
+		return this.spillFraction;
+	}
+
+	/**
+	 * Gets the fraction of the tenured heap below which the usage after a
+	 * garbage collection must drop before the solvers stop spilling data
+	 * @return The low-water mark
+	 */
+	public double getLowWaterMark() {
+		return this.lowWaterMark;
+	}
+
+	/**
+	 * Gets the number of propagated edges after which the memory
+	 * consumption shall be checked again
+	 * @return The number of edges between two memory checks
+	 */
+	public int getCheckInterval() {
+		return this.checkInterval;
+	}
+
+	/**
+	 * Gets the directory in which to place the spill files
+	 * @return The directory in which to place the spill files, or null to
+	 * use the system's temporary directory
+	 */
+	public String getSpillDirectory() {
+		return this.spillDirectory;
+	}
+
+}
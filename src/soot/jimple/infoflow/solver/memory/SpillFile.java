@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Append-only temporary file of integer records that is accessed through
+ * memory-mapped regions. Only a small number of regions is mapped at any
+ * time, the least recently used region is unmapped when another one is
+ * needed. The file is deleted when it is closed or, at the latest, when the
+ * JVM terminates.
+ */
+public class SpillFile {
+
+	private static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+	private static final int MAX_MAPPED_REGIONS = 4;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final int regionSize;
+	private final Map<Integer, MappedByteBuffer> regions =
+			new LinkedHashMap<Integer, MappedByteBuffer>(MAX_MAPPED_REGIONS * 2, 0.75f, true);
+
+	private long writePos = 0;
+	private int currentRegionIdx = -1;
+	private MappedByteBuffer currentRegion = null;
+
+	/**
+	 * Creates a new spill file in the given directory
+	 * @param directory The directory in which to create the file, or null
+	 * to use the system's temporary directory
+	 * @throws IOException Thrown if the file cannot be created
+	 */
+	public SpillFile(String directory) throws IOException {
+		this(directory, DEFAULT_REGION_SIZE);
+	}
+
+	/**
+	 * Creates a new spill file in the given directory
+	 * @param directory The directory in which to create the file, or null
+	 * to use the system's temporary directory
+	 * @param regionSize The size in bytes of the regions in which the file
+	 * is mapped into memory. Must be a multiple of four.
+	 * @throws IOException Thrown if the file cannot be created
+	 */
+	public SpillFile(String directory, int regionSize) throws IOException {
+		if (regionSize <= 0 || regionSize % 4 != 0)
+			throw new IllegalArgumentException("Region size must be a positive multiple of 4");
+
+		this.file = File.createTempFile("infoflow", ".spill",
+				directory == null ? null : new File(directory));
+		this.file.deleteOnExit();
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+		this.regionSize = regionSize;
+	}
+
+	/**
+	 * Appends the given integers to this file
+	 * @param data The array containing the integers to write
+	 * @param len The number of integers to write from the beginning of the
+	 * array
+	 * @return The position of the record in this file. Pass this value to
+	 * {@link #read(long, int)} to read the record back.
+	 * @throws IOException Thrown if the file cannot be extended
+	 */
+	public synchronized long write(int[] data, int len) throws IOException {
+		long start = writePos;
+		for (int i = 0; i < len; i++) {
+			getRegion(writePos).putInt((int) (writePos % regionSize), data[i]);
+			writePos += 4;
+		}
+		return start;
+	}
+
+	/**
+	 * Reads a record from this file
+	 * @param pos The position of the record as returned by
+	 * {@link #write(int[], int)}
+	 * @param len The number of integers in the record
+	 * @return The integers in the record
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	public synchronized int[] read(long pos, int len) throws IOException {
+		if (pos < 0 || pos + len * 4L > writePos)
+			throw new IOException("Invalid record position in spill file");
+
+		int[] data = new int[len];
+		for (int i = 0; i < len; i++) {
+			data[i] = getRegion(pos).getInt((int) (pos % regionSize));
+			pos += 4;
+		}
+		return data;
+	}
+
+	private MappedByteBuffer getRegion(long pos) throws IOException {
+		int regionIdx = (int) (pos / regionSize);
+		if (regionIdx == currentRegionIdx)
+			return currentRegion;
+
+		MappedByteBuffer region = regions.get(regionIdx);
+		if (region == null) {
+			if (regions.size() >= MAX_MAPPED_REGIONS) {
+				Iterator<MappedByteBuffer> it = regions.values().iterator();
+				MappedByteBuffer eldest = it.next();
+				it.remove();
+				unmap(eldest);
+			}
+			region = channel.map(MapMode.READ_WRITE, (long) regionIdx * regionSize,
+					regionSize);
+			regions.put(regionIdx, region);
+		}
+		currentRegionIdx = regionIdx;
+		currentRegion = region;
+		return region;
+	}
+
+	/**
+	 * Releases the mapping of the given region right away instead of waiting
+	 * for the garbage collector to finalize the buffer. The JDK offers no
+	 * public API for this, so this is done on a best-effort basis. The buffer
+	 * must not be accessed afterwards.
+	 * @param region The region to unmap
+	 */
+	private static void unmap(MappedByteBuffer region) {
+		try {
+			// Java 9 and later
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), region);
+			return;
+		}
+		catch (Exception ex) {
+			// Not available, try the old way
+		}
+		try {
+			// Java 8 and earlier
+			Method cleanerMethod = region.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(region);
+			if (cleaner != null)
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+		}
+		catch (Exception ex) {
+			// The mapping is released once the buffer is garbage-collected
+		}
+	}
+
+	/**
+	 * Gets the number of bytes written to this file
+	 * @return The number of bytes written to this file
+	 */
+	public synchronized long size() {
+		return writePos;
+	}
+
+	/**
+	 * Closes and deletes this file
+	 */
+	public synchronized void close() {
+		for (MappedByteBuffer region : regions.values())
+			unmap(region);
+		regions.clear();
+		currentRegionIdx = -1;
+		currentRegion = null;
+		try {
+			channel.close();
+			raf.close();
+		}
+		catch (IOException ex) {
+			// Nothing we can do about it, the file is deleted on exit
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,656 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.summaries;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.Local;
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.data.Abstraction;
+import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
+import soot.jimple.infoflow.solver.MethodEffectSummaries;
+import soot.jimple.infoflow.solver.MethodEffectSummaries.ISideEffectCondition;
+import soot.jimple.infoflow.source.DefaultSourceSinkManager;
+import soot.jimple.infoflow.source.ISourceSinkManager;
+import soot.jimple.infoflow.taintWrappers.EasyTaintWrapper;
+import soot.jimple.infoflow.taintWrappers.ITaintPropagationWrapper;
+import soot.jimple.infoflow.taintWrappers.TaintWrapperSet;
+import soot.jimple.infoflow.util.SystemClassHandler;
+import soot.util.queue.QueueReader;
+
+/**
+ * Cache that keeps the end summaries of library methods across analysis
+ * runs. For every analyzed method and every taint at the method's start
+ * point, the cache stores the taints that reach the method's exit points.
+ * Methods are identified by their signature and a digest over their Jimple
+ * body and the bodies of all of their transitive callees in the callgraph,
+ * so summaries are discarded automatically when any of this code changes.
+ * Only methods that cannot reach any code outside the library are cached,
+ * since callbacks into the app may differ between two apps even if the
+ * library code is the same.
+ *
+ * Since summaries depend on the taint wrapper and the sources and sinks,
+ * the cache is bound to a configuration identifier that is derived from
+ * these definitions, see {@link #setConfiguration(ITaintPropagationWrapper,
+ * ISourceSinkManager, String)}. If the cache file was written with a
+ * different configuration, its contents are dropped.
+ *
+ * Only summaries for plain, active taints on access paths that are not
+ * cut-off approximations are cached. Implicit flows, exceptions and
+ * inactive aliases are always analyzed again. Unless the aliasing strategy
+ * computes aliases when returning from a method, summaries that create new
+ * heap taints are not cached either, since the aliases of these taints in
+ * the callers would be lost when skipping the method.
+ */
+public class PersistentSummaryCache {
+
+	private static final int FILE_MAGIC = 0x49464453;
+	private static final int FILE_VERSION = 2;
+
+	private static final String STATIC_BASE = "<static>";
+	private static final String NULL_TYPE = "<null>";
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * A single taint that reaches an exit point of a method
+	 */
+	private static class ExitFact {
+
+		private final int exitStmtIdx;
+		private final String accessPath;
+
+		public ExitFact(int exitStmtIdx, String accessPath) {
+			this.exitStmtIdx = exitStmtIdx;
+			this.accessPath = accessPath;
+		}
+
+	}
+
+	private final File file;
+	private String configurationId = "";
+
+	private final ConcurrentMap<String, Map<String, List<ExitFact>>> summaries =
+			new ConcurrentHashMap<String, Map<String, List<ExitFact>>>();
+	private final ConcurrentMap<SootMethod, List<Unit>> methodUnits =
+			new ConcurrentHashMap<SootMethod, List<Unit>>();
+	private volatile MethodEffectSummaries closures = null;
+
+	private final AtomicInteger hitCount = new AtomicInteger();
+	private final AtomicInteger missCount = new AtomicInteger();
+
+	private boolean modified = false;
+	private boolean aliasesComputedOnReturn = false;
+
+	/**
+	 * Creates a new instance of the {@link PersistentSummaryCache} class and
+	 * loads the summaries from the given file if it exists. Before the cache
+	 * is used, it must be bound to the current configuration using
+	 * {@link #setConfiguration(ITaintPropagationWrapper, ISourceSinkManager, String)}.
+	 * @param file The file in which the summaries are stored
+	 * @throws IOException Thrown if the summary file exists, but cannot be
+	 * read
+	 */
+	public PersistentSummaryCache(File file) throws IOException {
+		this.file = file;
+		if (file.exists())
+			load();
+	}
+
+	private void load() throws IOException {
+		DataInputStream in = new DataInputStream(new GZIPInputStream
+				(new BufferedInputStream(new FileInputStream(file))));
+		try {
+			if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+				logger.warn("Summary file {} has an unsupported format, ignoring it", file);
+				return;
+			}
+			configurationId = in.readUTF();
+			int numMethods = in.readInt();
+			for (int i = 0; i < numMethods; i++) {
+				String methodKey = in.readUTF();
+				int numEntries = in.readInt();
+				Map<String, List<ExitFact>> entries = new ConcurrentHashMap<String, List<ExitFact>>(numEntries);
+				for (int j = 0; j < numEntries; j++) {
+					String entryAP = in.readUTF();
+					int numExits = in.readInt();
+					List<ExitFact> exits = new ArrayList<ExitFact>(numExits);
+					for (int k = 0; k < numExits; k++)
+						exits.add(new ExitFact(in.readInt(), in.readUTF()));
+					entries.put(entryAP, exits);
+				}
+				summaries.put(methodKey, entries);
+			}
+			logger.info("Loaded cached summaries for {} methods", summaries.size());
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the summaries to the cache file if they have been changed
+	 * @throws IOException Thrown if the summary file cannot be written
+	 */
+	public synchronized void save() throws IOException {
+		if (!modified)
+			return;
+
+		DataOutputStream out = new DataOutputStream(new GZIPOutputStream
+				(new BufferedOutputStream(new FileOutputStream(file))));
+		try {
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			out.writeUTF(configurationId);
+			out.writeInt(summaries.size());
+			for (Entry<String, Map<String, List<ExitFact>>> method : summaries.entrySet()) {
+				out.writeUTF(method.getKey());
+				out.writeInt(method.getValue().size());
+				for (Entry<String, List<ExitFact>> entry : method.getValue().entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeInt(entry.getValue().size());
+					for (ExitFact exit : entry.getValue()) {
+						out.writeInt(exit.exitStmtIdx);
+						out.writeUTF(exit.accessPath);
+					}
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+		modified = false;
+	}
+
+	/**
+	 * Binds this cache to the given configuration. If the summaries have been
+	 * computed for a different configuration, they are discarded.
+	 * @param taintWrapper The taint wrapper used by the analysis, or null if
+	 * no taint wrapper is used
+	 * @param sourceSinkManager The manager for the sources and sinks used by
+	 * the analysis
+	 * @param analysisOptions A description of all further analysis options
+	 * that influence the summaries
+	 */
+	public synchronized void setConfiguration(ITaintPropagationWrapper taintWrapper,
+			ISourceSinkManager sourceSinkManager, String analysisOptions) {
+		String newId = computeConfigurationId(taintWrapper, sourceSinkManager, analysisOptions);
+		if (newId.equals(configurationId))
+			return;
+
+		if (!summaries.isEmpty())
+			logger.info("Configuration has changed, discarding cached summaries");
+		summaries.clear();
+		configurationId = newId;
+		modified = true;
+	}
+
+	/**
+	 * Gets the identifier of the configuration to which this cache is bound
+	 * @return The identifier of the current configuration
+	 */
+	public synchronized String getConfigurationId() {
+		return this.configurationId;
+	}
+
+	/**
+	 * Computes an identifier for the given configuration. The identifier is
+	 * a digest over the rules of {@link EasyTaintWrapper}s and the method
+	 * lists of {@link DefaultSourceSinkManager}s. For all other taint wrappers
+	 * and source/sink managers, only the class name is taken into account,
+	 * so callers that change their rules must call {@link #invalidate()} or
+	 * pass a version string as part of the analysis options.
+	 * @param taintWrapper The taint wrapper used by the analysis, or null if
+	 * no taint wrapper is used
+	 * @param sourceSinkManager The manager for the sources and sinks used by
+	 * the analysis
+	 * @param analysisOptions A description of all further analysis options
+	 * that influence the summaries
+	 * @return The identifier of the given configuration
+	 */
+	public static String computeConfigurationId(ITaintPropagationWrapper taintWrapper,
+			ISourceSinkManager sourceSinkManager, String analysisOptions) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("wrapper=");
+		appendWrapper(sb, taintWrapper);
+		sb.append("\nsourcesinks=");
+		if (sourceSinkManager instanceof DefaultSourceSinkManager) {
+			DefaultSourceSinkManager dssm = (DefaultSourceSinkManager) sourceSinkManager;
+			sb.append(DefaultSourceSinkManager.class.getName());
+			appendList(sb, "sources", dssm.getSources());
+			appendList(sb, "sinks", dssm.getSinks());
+			appendList(sb, "parameterTaint", dssm.getParameterTaintMethods());
+			appendList(sb, "returnTaint", dssm.getReturnTaintMethods());
+		}
+		else
+			sb.append(sourceSinkManager == null ? "null" : sourceSinkManager.getClass().getName());
+		sb.append("\noptions=");
+		sb.append(analysisOptions);
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			StringBuilder id = new StringBuilder();
+			for (byte b : digest.digest(sb.toString().getBytes("UTF-8")))
+				id.append(String.format("%02x", b));
+			return id.toString();
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new RuntimeException("Could not compute configuration identifier", ex);
+		}
+		catch (UnsupportedEncodingException ex) {
+			throw new RuntimeException("Could not compute configuration identifier", ex);
+		}
+	}
+
+	private static void appendWrapper(StringBuilder sb, ITaintPropagationWrapper taintWrapper) {
+		if (taintWrapper instanceof EasyTaintWrapper) {
+			EasyTaintWrapper wrapper = (EasyTaintWrapper) taintWrapper;
+			sb.append(EasyTaintWrapper.class.getName());
+			appendRules(sb, "wrap", wrapper.getClassList());
+			appendRules(sb, "exclude", wrapper.getExcludeList());
+			appendRules(sb, "kill", wrapper.getKillList());
+			appendList(sb, "include", wrapper.getIncludeList());
+			sb.append(";aggressive=").append(wrapper.getAggressiveMode());
+			sb.append(";equalsHashCode=").append(wrapper.getAlwaysModelEqualsHashCode());
+		}
+		else if (taintWrapper instanceof TaintWrapperSet) {
+			// The order of the wrappers in the set does not matter
+			Set<String> children = new TreeSet<String>();
+			for (ITaintPropagationWrapper child : ((TaintWrapperSet) taintWrapper).getWrappers()) {
+				StringBuilder childSb = new StringBuilder();
+				appendWrapper(childSb, child);
+				children.add(childSb.toString());
+			}
+			sb.append(TaintWrapperSet.class.getName()).append(children);
+		}
+		else
+			sb.append(taintWrapper == null ? "null" : taintWrapper.getClass().getName());
+	}
+
+	private static void appendRules(StringBuilder sb, String name, Map<String, Set<String>> rules) {
+		sb.append(';').append(name).append('=');
+		if (rules == null)
+			return;
+		Map<String, Set<String>> sorted = new TreeMap<String, Set<String>>();
+		for (Entry<String, Set<String>> entry : rules.entrySet())
+			sorted.put(entry.getKey(), new TreeSet<String>(entry.getValue()));
+		sb.append(sorted);
+	}
+
+	private static void appendList(StringBuilder sb, String name, Collection<String> list) {
+		sb.append(';').append(name).append('=');
+		if (list != null)
+			sb.append(new TreeSet<String>(list));
+	}
+
+	/**
+	 * Removes all cached summaries, e.g. after the taint wrapper or the
+	 * source/sink configuration has changed
+	 */
+	public synchronized void invalidate() {
+		summaries.clear();
+		modified = true;
+	}
+
+	/**
+	 * Removes all cached summaries of the method with the given signature
+	 * @param methodSignature The signature of the method whose summaries to
+	 * remove
+	 */
+	public synchronized void invalidate(String methodSignature) {
+		String prefix = methodSignature + "#";
+		for (String key : new ArrayList<String>(summaries.keySet()))
+			if (key.startsWith(prefix)) {
+				summaries.remove(key);
+				modified = true;
+			}
+	}
+
+	/**
+	 * Sets whether the aliasing strategy computes the aliases of heap taints
+	 * when returning from a method. If not, the aliases are found when the
+	 * taint is written inside the callee, so summaries that create new heap
+	 * taints cannot be cached.
+	 * @param aliasesComputedOnReturn True if the aliasing strategy computes
+	 * aliases when returning from a method, otherwise false
+	 */
+	public void setAliasesComputedOnReturn(boolean aliasesComputedOnReturn) {
+		this.aliasesComputedOnReturn = aliasesComputedOnReturn;
+	}
+	
+	/**
+	 * Gets whether the given method belongs to the library code whose
+	 * summaries can be cached. By default, only methods in system packages
+	 * are regarded as library code. Derived classes can override this method
+	 * to cache other libraries as well.
+	 * @param sm The method to check
+	 * @return True if the given method is part of the library, otherwise
+	 * false
+	 */
+	protected boolean isLibraryMethod(SootMethod sm) {
+		return SystemClassHandler.isClassInSystemPackage(sm.getDeclaringClass().getName());
+	}
+
+	/**
+	 * Gets whether the summaries of the given method can be cached. This is
+	 * the case if the method and all of its transitive callees are library
+	 * methods.
+	 * @param sm The method to check
+	 * @return True if the summaries of the given method can be cached,
+	 * otherwise false
+	 */
+	public boolean isCacheable(SootMethod sm) {
+		if (!sm.isConcrete() || !isLibraryMethod(sm))
+			return false;
+		MethodEffectSummaries closures = getClosures();
+		return closures.hasSummary(sm) && !closures.hasSideEffects(sm);
+	}
+
+	/**
+	 * Gets the digests over the transitive callees of all reachable library
+	 * methods. Reaching a method outside the library counts as a side effect.
+	 * @return The digests of the reachable library methods
+	 */
+	private MethodEffectSummaries getClosures() {
+		MethodEffectSummaries res = this.closures;
+		if (res != null)
+			return res;
+
+		synchronized (this) {
+			res = this.closures;
+			if (res == null) {
+				List<SootMethod> methods = new ArrayList<SootMethod>();
+				for (QueueReader<MethodOrMethodContext> rdr =
+						Scene.v().getReachableMethods().listener(); rdr.hasNext(); ) {
+					SootMethod sm = rdr.next().method();
+					if (sm.isConcrete() && isLibraryMethod(sm))
+						methods.add(sm);
+				}
+
+				res = new MethodEffectSummaries(Scene.v().getCallGraph(),
+						methods, new ISideEffectCondition() {
+
+					@Override
+					public boolean isEffectFree(SootMethod method) {
+						return false;
+					}
+
+					@Override
+					public boolean hasSideEffect(SootMethod method, Stmt stmt) {
+						return !isLibraryMethod(method);
+					}
+
+				}, false, true, Runtime.getRuntime().availableProcessors());
+				this.closures = res;
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Gets whether the given abstraction can be the entry or exit fact of a
+	 * cached summary
+	 * @param abs The abstraction to check
+	 * @return True if the given abstraction can be part of a cached summary,
+	 * otherwise false
+	 */
+	public boolean isCacheable(Abstraction abs) {
+		AccessPath ap = abs.getAccessPath();
+		return abs.isAbstractionActive()
+				&& !abs.isImplicit()
+				&& !abs.getExceptionThrown()
+				&& abs.getTopPostdominator() == null
+				&& !ap.isEmpty()
+				&& !ap.isCutOffApproximation();
+	}
+
+	/**
+	 * Gets the cached summary of the given method for the given taint at the
+	 * method's start point
+	 * @param sm The method for which to get the summary
+	 * @param d1 The taint at the start point of the method
+	 * @param exitAbstractions The map into which to put the exit statements
+	 * and the abstractions that reach them. The abstractions are derived
+	 * from d1.
+	 * @return True if a summary was found, otherwise false. If this method
+	 * returns true, but the map is empty, the taint does not reach any exit
+	 * point of the method.
+	 */
+	public boolean getSummary(SootMethod sm, Abstraction d1,
+			List<Entry<Unit, Abstraction>> exitAbstractions) {
+		if (!isCacheable(d1) || !isCacheable(sm))
+			return false;
+
+		Map<String, List<ExitFact>> entries = summaries.get(getMethodKey(sm));
+		List<ExitFact> exits = entries == null ? null
+				: entries.get(encodeAccessPath(d1.getAccessPath()));
+		if (exits == null) {
+			missCount.incrementAndGet();
+			return false;
+		}
+
+		List<Unit> units = getUnits(sm);
+		List<Entry<Unit, Abstraction>> res = new ArrayList<Entry<Unit, Abstraction>>(exits.size());
+		for (ExitFact exit : exits) {
+			AccessPath ap = decodeAccessPath(sm, exit.accessPath);
+			if (ap == null || exit.exitStmtIdx >= units.size())
+				return false;
+			Unit exitStmt = units.get(exit.exitStmtIdx);
+			res.add(new SimpleImmutableEntry<Unit, Abstraction>
+					(exitStmt, d1.deriveNewAbstraction(ap, (Stmt) exitStmt)));
+		}
+		exitAbstractions.addAll(res);
+		hitCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Stores the summary of the given method for the given taint at the
+	 * method's start point
+	 * @param sm The method for which to store the summary
+	 * @param d1 The taint at the start point of the method
+	 * @param exits The exit statements and the abstractions that reach them
+	 * @return True if the summary has been stored, false if it cannot be
+	 * cached
+	 */
+	public boolean putSummary(SootMethod sm, Abstraction d1,
+			Map<Unit, ? extends Iterable<Abstraction>> exits) {
+		if (!isCacheable(sm) || !isCacheable(d1))
+			return false;
+
+		List<Unit> units = getUnits(sm);
+		Map<Unit, Integer> unitIndices = new HashMap<Unit, Integer>(units.size());
+		for (int i = 0; i < units.size(); i++)
+			unitIndices.put(units.get(i), i);
+
+		List<ExitFact> exitFacts = new ArrayList<ExitFact>();
+		for (Entry<Unit, ? extends Iterable<Abstraction>> exit : exits.entrySet()) {
+			Integer idx = unitIndices.get(exit.getKey());
+			if (idx == null)
+				return false;
+			for (Abstraction abs : exit.getValue()) {
+				if (!isCacheable(abs))
+					return false;
+				
+				// Without alias computation on return, we can only take
+				// over heap taints that have not been changed by the callee
+				if (!aliasesComputedOnReturn && !abs.getAccessPath().isLocal()
+						&& !abs.getAccessPath().equals(d1.getAccessPath()))
+					return false;
+				exitFacts.add(new ExitFact(idx, encodeAccessPath(abs.getAccessPath())));
+			}
+		}
+
+		String methodKey = getMethodKey(sm);
+		Map<String, List<ExitFact>> entries = summaries.get(methodKey);
+		if (entries == null) {
+			entries = new ConcurrentHashMap<String, List<ExitFact>>();
+			Map<String, List<ExitFact>> oldEntries = summaries.putIfAbsent(methodKey, entries);
+			if (oldEntries != null)
+				entries = oldEntries;
+		}
+		entries.put(encodeAccessPath(d1.getAccessPath()), exitFacts);
+		synchronized (this) {
+			modified = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the number of methods for which summaries are cached
+	 * @return The number of methods for which summaries are cached
+	 */
+	public int size() {
+		return summaries.size();
+	}
+
+	/**
+	 * Gets the number of times a cached summary has been applied
+	 * @return The number of cache hits
+	 */
+	public int getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Gets the number of times no cached summary was available for a
+	 * cacheable method and taint
+	 * @return The number of cache misses
+	 */
+	public int getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Drops all data that refers to the current Soot scene. Call this method
+	 * before the next analysis run.
+	 */
+	public synchronized void resetScene() {
+		methodUnits.clear();
+		closures = null;
+		hitCount.set(0);
+		missCount.set(0);
+	}
+
+	private List<Unit> getUnits(SootMethod sm) {
+		List<Unit> units = methodUnits.get(sm);
+		if (units == null) {
+			units = Collections.unmodifiableList(new ArrayList<Unit>
+					(sm.getActiveBody().getUnits()));
+			methodUnits.putIfAbsent(sm, units);
+		}
+		return units;
+	}
+
+	/**
+	 * Gets the key under which the summaries of the given method are stored.
+	 * The key consists of the method signature and the digest over the
+	 * method and all of its transitive callees.
+	 * @param sm The method for which to get the key. The method must be
+	 * cacheable.
+	 * @return The key for the given method
+	 */
+	private String getMethodKey(SootMethod sm) {
+		return sm.getSignature() + "#" + getClosures().getDigest(sm);
+	}
+
+	private String encodeAccessPath(AccessPath ap) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(ap.isStaticFieldRef() ? STATIC_BASE : ap.getPlainValue().getName());
+		sb.append('|');
+		sb.append(ap.getBaseType() == null ? NULL_TYPE : ap.getBaseType().toString());
+		sb.append('|');
+		sb.append(ap.getTaintSubFields() ? '1' : '0');
+		if (ap.getFields() != null)
+			for (int i = 0; i < ap.getFields().length; i++) {
+				sb.append('|');
+				sb.append(ap.getFields()[i].getSignature());
+				sb.append('|');
+				sb.append(ap.getFieldTypes()[i]);
+			}
+		return sb.toString();
+	}
+
+	private AccessPath decodeAccessPath(SootMethod sm, String encoded) {
+		String[] parts = encoded.split("\\|");
+		if (parts.length < 3 || parts.length % 2 == 0)
+			return null;
+
+		try {
+			Local base = null;
+			if (!parts[0].equals(STATIC_BASE)) {
+				for (Local l : sm.getActiveBody().getLocals())
+					if (l.getName().equals(parts[0])) {
+						base = l;
+						break;
+					}
+				if (base == null)
+					return null;
+			}
+			Type baseType = parts[1].equals(NULL_TYPE) ? null : Scene.v().getType(parts[1]);
+			boolean taintSubFields = parts[2].equals("1");
+
+			int numFields = (parts.length - 3) / 2;
+			SootField[] fields = numFields == 0 ? null : new SootField[numFields];
+			Type[] fieldTypes = numFields == 0 ? null : new Type[numFields];
+			for (int i = 0; i < numFields; i++) {
+				fields[i] = Scene.v().grabField(parts[3 + 2 * i]);
+				if (fields[i] == null)
+					return null;
+				fieldTypes[i] = Scene.v().getType(parts[4 + 2 * i]);
+			}
+			return AccessPathFactory.v().createAccessPath(base, fields, baseType,
+					fieldTypes, taintSubFields, false, false);
+		}
+		catch (RuntimeException ex) {
+			// The scene does not contain the required types
+			logger.debug("Could not decode cached access path " + encoded, ex);
+			return null;
+		}
+	}
+
+}
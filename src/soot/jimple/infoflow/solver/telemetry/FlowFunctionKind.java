@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.telemetry;
+
+/**
+ * The kinds of flow functions the IFDS solver computes
+ */
+public enum FlowFunctionKind {
+	/**
+	 * Intraprocedural flow to the successor of a statement
+	 */
+	Normal,
+	/**
+	 * Flow from a call site into the callee
+	 */
+	Call,
+	/**
+	 * Flow from an exit statement of a callee back to the return site
+	 */
+	Return,
+	/**
+	 * Flow from a call site to its return site past the callee
+	 */
+	CallToReturn
+}
@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.telemetry;
+
+/**
+ * Listener that is notified about the state of an IFDS solver in regular
+ * intervals while the solver is running
+ */
+public interface ISolverTelemetryListener {
+
+	/**
+	 * Called whenever a new snapshot of the solver state has been taken.
+	 * This method is called on the telemetry thread, not on a solver thread,
+	 * and should return quickly.
+	 * @param snapshot The new snapshot
+	 */
+	public void onSnapshot(TelemetrySnapshot snapshot);
+
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.telemetry;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Listener that appends every telemetry snapshot as one line of JSON to a
+ * file, so that the file can be followed while the analysis is running.
+ */
+public class JsonSnapshotWriter implements ISolverTelemetryListener {
+
+	private final PrintWriter writer;
+
+	/**
+	 * Creates a new writer
+	 * @param file The file to which to append the snapshots
+	 * @throws FileNotFoundException Thrown if the file cannot be opened
+	 */
+	public JsonSnapshotWriter(File file) throws FileNotFoundException {
+		try {
+			this.writer = new PrintWriter(new OutputStreamWriter
+					(new FileOutputStream(file, true), "UTF-8"));
+		}
+		catch (UnsupportedEncodingException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	@Override
+	public synchronized void onSnapshot(TelemetrySnapshot snapshot) {
+		writer.println(snapshot.toJson());
+		writer.flush();
+	}
+
+	/**
+	 * Closes the underlying file
+	 */
+	public synchronized void close() {
+		writer.close();
+	}
+
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.telemetry;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with one bucket per power of two nanoseconds.
+ * Bucket i counts the latencies between 2^(i-1) inclusive and 2^i
+ * exclusive nanoseconds. Like {@link StripedCounter}, every thread records
+ * into its own stripe.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The number of buckets. The last bucket also takes all latencies above
+	 * 2^(BUCKETS-2) nanoseconds, i.e. roughly 4.6 minutes.
+	 */
+	public static final int BUCKETS = 40;
+
+	/**
+	 * Two extra longs per stripe for the sum of all latencies and padding
+	 */
+	private static final int STRIPE_SIZE = BUCKETS + 8;
+	private static final int SUM_OFFSET = BUCKETS;
+
+	private final AtomicLongArray cells;
+	private final int mask;
+
+	/**
+	 * Creates a new histogram
+	 * @param stripes The minimum number of stripes. The actual number is
+	 * rounded up to the next power of two.
+	 */
+	public LatencyHistogram(int stripes) {
+		int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		this.mask = size - 1;
+		this.cells = new AtomicLongArray(size * STRIPE_SIZE);
+	}
+
+	/**
+	 * Records the given latency
+	 * @param nanos The latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+		int base = StripedCounter.getStripe(mask) * STRIPE_SIZE;
+		cells.getAndIncrement(base + bucket);
+		cells.getAndAdd(base + SUM_OFFSET, nanos);
+	}
+
+	/**
+	 * Gets the number of recorded latencies in every bucket
+	 * @return The number of recorded latencies per bucket
+	 */
+	public long[] getBucketCounts() {
+		long[] counts = new long[BUCKETS];
+		for (int stripe = 0; stripe <= mask; stripe++)
+			for (int i = 0; i < BUCKETS; i++)
+				counts[i] += cells.get(stripe * STRIPE_SIZE + i);
+		return counts;
+	}
+
+	/**
+	 * Gets the sum of all recorded latencies
+	 * @return The sum of all recorded latencies in nanoseconds
+	 */
+	public long getTotalNanos() {
+		long sum = 0;
+		for (int stripe = 0; stripe <= mask; stripe++)
+			sum += cells.get(stripe * STRIPE_SIZE + SUM_OFFSET);
+		return sum;
+	}
+
+	/**
+	 * Gets the upper bound of the bucket that contains the given percentile
+	 * @param counts The bucket counts as returned by {@link #getBucketCounts()}
+	 * @param percentile The percentile between 0 and 100
+	 * @return The upper bound of the bucket containing the given percentile
+	 * in nanoseconds, or 0 if no latencies have been recorded
+	 */
+	public static long getPercentile(long[] counts, double percentile) {
+		long total = 0;
+		for (long count : counts)
+			total += count;
+		if (total == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank && seen > 0)
+				return 1L << i;
+		}
+		return 1L << (counts.length - 1);
+	}
+
+}
@@ -0,0 +1,426 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.telemetry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.jimple.infoflow.collect.MyConcurrentHashMap;
+import soot.jimple.infoflow.solver.telemetry.TelemetrySnapshot.FlowFunctionStats;
+import soot.jimple.infoflow.solver.telemetry.TelemetrySnapshot.MethodEdgeCount;
+
+/**
+ * Collects statistics about a running IFDS solver: the number of new edges
+ * per method, the invocations and latencies of the flow functions per kind,
+ * the length of the executor queue and the growth of the solver's tables.
+ * All counters are striped by thread, so that recording does not introduce
+ * contention between the solver threads. Latencies are only measured for
+ * every n-th flow function invocation to keep the overhead low.
+ *
+ * The statistics are published as {@link TelemetrySnapshot} objects to all
+ * registered listeners in regular intervals while the telemetry is running,
+ * and once more when it is stopped.
+ *
+ * @param <M> The type of objects used to represent methods
+ */
+public class SolverTelemetry<M> {
+
+	private static final Logger logger = LoggerFactory.getLogger(SolverTelemetry.class);
+
+	private static final int DEFAULT_SAMPLING_INTERVAL = 16;
+	private static final int DEFAULT_TOP_METHODS = 20;
+
+	/**
+	 * Gives the telemetry access to the sizes of the solver's tables
+	 */
+	public interface ISolverState {
+
+		/**
+		 * Gets the number of jump functions the solver has recorded
+		 * @return The number of jump functions
+		 */
+		public long getJumpFunctionCount();
+
+		/**
+		 * Gets the number of callee contexts with incoming edges
+		 * @return The number of callee contexts with incoming edges
+		 */
+		public long getIncomingCount();
+
+		/**
+		 * Gets the number of callee contexts with end summaries
+		 * @return The number of callee contexts with end summaries
+		 */
+		public long getEndSummaryCount();
+
+		/**
+		 * Gets the number of edges waiting in the executor
+		 * @return The number of edges waiting in the executor
+		 */
+		public long getQueueSize();
+
+	}
+
+	/**
+	 * The edge counts of a method before they are converted into a
+	 * {@link MethodEdgeCount}, which needs the method's name
+	 */
+	private static class EdgeCount<M> {
+
+		private final M method;
+		private final long edges;
+		private final long recentEdges;
+
+		public EdgeCount(M method, long edges, long recentEdges) {
+			this.method = method;
+			this.edges = edges;
+			this.recentEdges = recentEdges;
+		}
+
+	}
+
+	/**
+	 * Orders methods by their recent edge counts, highest first
+	 */
+	private static final Comparator<EdgeCount<?>> EDGE_COUNT_COMPARATOR =
+			new Comparator<EdgeCount<?>>() {
+
+		@Override
+		public int compare(EdgeCount<?> o1, EdgeCount<?> o2) {
+			int res = Long.compare(o2.recentEdges, o1.recentEdges);
+			if (res == 0)
+				res = Long.compare(o2.edges, o1.edges);
+			return res;
+		}
+
+	};
+
+	/**
+	 * Counter of the flow function invocations of a single thread for
+	 * deciding which invocations to measure
+	 */
+	private static class SampleTick {
+
+		private int value = 0;
+
+	}
+
+	private final String name;
+	private final int stripeMask;
+	private final MyConcurrentHashMap<M, AtomicLong>[] methodEdges;
+	private final StripedCounter edges;
+	private final StripedCounter[] invocations;
+	private final StripedCounter[] targets;
+	private final LatencyHistogram[] latencies;
+
+	private volatile int samplingMask = DEFAULT_SAMPLING_INTERVAL - 1;
+	private final ThreadLocal<SampleTick> sampleTicks = new ThreadLocal<SampleTick>() {
+
+		@Override
+		protected SampleTick initialValue() {
+			return new SampleTick();
+		}
+
+	};
+	private int topMethodCount = DEFAULT_TOP_METHODS;
+
+	private final List<ISolverTelemetryListener> listeners =
+			new CopyOnWriteArrayList<ISolverTelemetryListener>();
+	private volatile ISolverState state = null;
+	private ScheduledExecutorService scheduler = null;
+
+	// State of the previous snapshot, only accessed while holding the lock
+	// on this object
+	private long startNanos = 0;
+	private long lastNanos = 0;
+	private long lastEdges = 0;
+	private long lastJumpFunctions = 0;
+	private long lastIncoming = 0;
+	private long lastEndSummaries = 0;
+	private Map<M, Long> lastMethodEdges = Collections.emptyMap();
+
+	/**
+	 * Creates a new telemetry object
+	 * @param name The name of the solver, e.g. "forward" or "backward"
+	 * @param numThreads The number of threads the solver uses
+	 */
+	@SuppressWarnings("unchecked")
+	public SolverTelemetry(String name, int numThreads) {
+		this.name = name;
+
+		int stripes = Integer.highestOneBit(Math.max(1, numThreads - 1)) << 1;
+		this.stripeMask = stripes - 1;
+		this.methodEdges = new MyConcurrentHashMap[stripes];
+		for (int i = 0; i < stripes; i++)
+			this.methodEdges[i] = new MyConcurrentHashMap<M, AtomicLong>();
+
+		this.edges = new StripedCounter(stripes);
+		int numKinds = FlowFunctionKind.values().length;
+		this.invocations = new StripedCounter[numKinds];
+		this.targets = new StripedCounter[numKinds];
+		this.latencies = new LatencyHistogram[numKinds];
+		for (int i = 0; i < numKinds; i++) {
+			this.invocations[i] = new StripedCounter(stripes);
+			this.targets[i] = new StripedCounter(stripes);
+			this.latencies[i] = new LatencyHistogram(stripes);
+		}
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Sets how often the latency of the flow functions is measured
+	 * @param interval The latency is measured for every n-th invocation.
+	 * The value is rounded up to the next power of two. 1 measures every
+	 * invocation.
+	 */
+	public void setSamplingInterval(int interval) {
+		this.samplingMask = interval <= 1 ? 0
+				: (Integer.highestOneBit(interval - 1) << 1) - 1;
+	}
+
+	/**
+	 * Sets the number of methods with the most edges to include in every
+	 * snapshot
+	 * @param topMethodCount The number of methods to include in every
+	 * snapshot
+	 */
+	public void setTopMethodCount(int topMethodCount) {
+		this.topMethodCount = topMethodCount;
+	}
+
+	public void addListener(ISolverTelemetryListener listener) {
+		this.listeners.add(listener);
+	}
+
+	public void removeListener(ISolverTelemetryListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Connects this telemetry object to the solver whose tables it shall
+	 * monitor
+	 * @param state The object giving access to the solver's tables
+	 */
+	public void attach(ISolverState state) {
+		this.state = state;
+	}
+
+	/**
+	 * Records a new edge
+	 * @param method The method containing the target of the new edge
+	 */
+	public void onEdge(M method) {
+		edges.increment();
+		if (method == null)
+			return;
+
+		// Every thread mostly works on its own map, so the counters are
+		// hardly ever contended
+		MyConcurrentHashMap<M, AtomicLong> counters = methodEdges[StripedCounter.getStripe(stripeMask)];
+		AtomicLong counter = counters.get(method);
+		if (counter == null)
+			counter = counters.putIfAbsentElseGet(method, new AtomicLong());
+		counter.incrementAndGet();
+	}
+
+	/**
+	 * Must be called before a flow function is computed
+	 * @return The value to pass to {@link #endFlowFunction(FlowFunctionKind, long, int)}
+	 */
+	public long beginFlowFunction() {
+		// Every thread counts on its own, so the solver threads do not
+		// share a cache line
+		if ((++sampleTicks.get().value & samplingMask) != 0)
+			return 0;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Must be called after a flow function has been computed
+	 * @param kind The kind of flow function
+	 * @param before The value returned by {@link #beginFlowFunction()}
+	 * @param numTargets The number of facts the flow function has produced
+	 */
+	public void endFlowFunction(FlowFunctionKind kind, long before, int numTargets) {
+		int idx = kind.ordinal();
+		if (before != 0)
+			latencies[idx].record(System.nanoTime() - before);
+		invocations[idx].increment();
+		if (numTargets > 0)
+			targets[idx].add(numTargets);
+	}
+
+	/**
+	 * Starts publishing snapshots in the given interval
+	 * @param intervalMillis The interval in milliseconds. If this value is
+	 * not positive, only the final snapshot is published when the telemetry
+	 * is stopped.
+	 */
+	public synchronized void start(long intervalMillis) {
+		if (scheduler != null)
+			return;
+		startNanos = lastNanos = System.nanoTime();
+
+		if (intervalMillis > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SolverTelemetry-" + name);
+					thread.setDaemon(true);
+					return thread;
+				}
+
+			});
+			scheduler.scheduleAtFixedRate(new Runnable() {
+
+				@Override
+				public void run() {
+					publish(takeSnapshot());
+				}
+
+			}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Stops publishing snapshots and publishes a final snapshot
+	 */
+	public void stop() {
+		synchronized (this) {
+			if (scheduler != null) {
+				scheduler.shutdownNow();
+				scheduler = null;
+			}
+		}
+		publish(takeSnapshot());
+	}
+
+	private void publish(TelemetrySnapshot snapshot) {
+		for (ISolverTelemetryListener listener : listeners) {
+			// A broken listener must not stop the other ones or the schedule
+			try {
+				listener.onSnapshot(snapshot);
+			}
+			catch (RuntimeException ex) {
+				logger.error("Telemetry listener failed", ex);
+			}
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the current solver state. The rates in the snapshot
+	 * refer to the time since the previous snapshot.
+	 * @return The new snapshot
+	 */
+	public synchronized TelemetrySnapshot takeSnapshot() {
+		final long now = System.nanoTime();
+		final double seconds = Math.max(now - lastNanos, 1) / 1E9;
+
+		long edgeCount = edges.get();
+		Map<FlowFunctionKind, FlowFunctionStats> ffStats =
+				new EnumMap<FlowFunctionKind, FlowFunctionStats>(FlowFunctionKind.class);
+		for (FlowFunctionKind kind : FlowFunctionKind.values()) {
+			int idx = kind.ordinal();
+			ffStats.put(kind, new FlowFunctionStats(invocations[idx].get(),
+					targets[idx].get(), latencies[idx].getBucketCounts(),
+					latencies[idx].getTotalNanos()));
+		}
+
+		// Merge the per-thread method counters
+		Map<M, Long> merged = new HashMap<M, Long>();
+		for (MyConcurrentHashMap<M, AtomicLong> counters : methodEdges)
+			for (Map.Entry<M, AtomicLong> entry : counters.entrySet()) {
+				Long old = merged.get(entry.getKey());
+				long value = entry.getValue().get();
+				merged.put(entry.getKey(), old == null ? value : old + value);
+			}
+		List<MethodEdgeCount> methodCounts = getTopMethods(merged);
+
+		final ISolverState state = this.state;
+		long queueSize = state == null ? 0 : state.getQueueSize();
+		long jumpFunctions = state == null ? 0 : state.getJumpFunctionCount();
+		long incoming = state == null ? 0 : state.getIncomingCount();
+		long endSummaries = state == null ? 0 : state.getEndSummaryCount();
+
+		TelemetrySnapshot snapshot = new TelemetrySnapshot(name,
+				System.currentTimeMillis(), now - startNanos,
+				edgeCount, (edgeCount - lastEdges) / seconds,
+				ffStats, methodCounts, queueSize,
+				jumpFunctions, (jumpFunctions - lastJumpFunctions) / seconds,
+				incoming, (incoming - lastIncoming) / seconds,
+				endSummaries, (endSummaries - lastEndSummaries) / seconds);
+
+		lastNanos = now;
+		lastEdges = edgeCount;
+		lastJumpFunctions = jumpFunctions;
+		lastIncoming = incoming;
+		lastEndSummaries = endSummaries;
+		lastMethodEdges = merged;
+		return snapshot;
+	}
+
+	/**
+	 * Gets the methods with the most recent edges. Only these methods are
+	 * converted into strings.
+	 * @param methodEdges The current number of edges per method
+	 * @return The edge counts of the methods with the most recent edges,
+	 * highest first
+	 */
+	private List<MethodEdgeCount> getTopMethods(Map<M, Long> methodEdges) {
+		final int topCount = this.topMethodCount;
+		if (topCount <= 0)
+			return Collections.emptyList();
+
+		// Keep the best methods in a heap whose head is the worst of them
+		PriorityQueue<EdgeCount<M>> topMethods = new PriorityQueue<EdgeCount<M>>
+				(topCount + 1, Collections.reverseOrder(EDGE_COUNT_COMPARATOR));
+		for (Map.Entry<M, Long> entry : methodEdges.entrySet()) {
+			Long last = lastMethodEdges.get(entry.getKey());
+			long edges = entry.getValue();
+			EdgeCount<M> count = new EdgeCount<M>(entry.getKey(), edges,
+					edges - (last == null ? 0 : last));
+			if (topMethods.size() < topCount)
+				topMethods.add(count);
+			else if (EDGE_COUNT_COMPARATOR.compare(count, topMethods.peek()) < 0) {
+				topMethods.poll();
+				topMethods.add(count);
+			}
+		}
+
+		List<EdgeCount<M>> sorted = new ArrayList<EdgeCount<M>>(topMethods);
+		Collections.sort(sorted, EDGE_COUNT_COMPARATOR);
+		List<MethodEdgeCount> methodCounts = new ArrayList<MethodEdgeCount>(sorted.size());
+		for (EdgeCount<M> count : sorted)
+			methodCounts.add(new MethodEdgeCount(count.method.toString(),
+					count.edges, count.recentEdges));
+		return methodCounts;
+	}
+
+}
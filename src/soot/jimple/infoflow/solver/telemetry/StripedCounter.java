@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.telemetry;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that can be incremented by many threads at the same time
+ * without contention. Every thread writes into one of several stripes
+ * chosen by its thread id, each of which lives on its own cache line.
+ * Reading the counter sums up all stripes and is therefore more expensive
+ * than incrementing it.
+ */
+public class StripedCounter {
+
+	/**
+	 * Number of longs between two stripes, so that no two stripes share a
+	 * cache line
+	 */
+	private static final int PADDING = 8;
+
+	private final AtomicLongArray cells;
+	private final int mask;
+
+	/**
+	 * Creates a new counter
+	 * @param stripes The minimum number of stripes. The actual number is
+	 * rounded up to the next power of two.
+	 */
+	public StripedCounter(int stripes) {
+		int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		this.mask = size - 1;
+		this.cells = new AtomicLongArray(size * PADDING);
+	}
+
+	/**
+	 * Gets the stripe for the current thread
+	 * @param mask The mask for the number of stripes, i.e. the number of
+	 * stripes minus one
+	 * @return The stripe for the current thread
+	 */
+	static int getStripe(int mask) {
+		return (int) Thread.currentThread().getId() & mask;
+	}
+
+	/**
+	 * Adds the given value to this counter
+	 * @param delta The value to add
+	 */
+	public void add(long delta) {
+		cells.getAndAdd(getStripe(mask) * PADDING, delta);
+	}
+
+	/**
+	 * Increments this counter by one
+	 */
+	public void increment() {
+		add(1);
+	}
+
+	/**
+	 * Gets the current value of this counter. The value is not an atomic
+	 * snapshot if other threads modify the counter at the same time.
+	 * @return The current value of this counter
+	 */
+	public long get() {
+		long sum = 0;
+		for (int i = 0; i <= mask; i++)
+			sum += cells.get(i * PADDING);
+		return sum;
+	}
+
+}
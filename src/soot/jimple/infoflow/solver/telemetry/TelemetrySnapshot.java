@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.solver.telemetry;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of an IFDS solver at one point in time as recorded by
+ * {@link SolverTelemetry}. All rates are given per second and refer to the
+ * time since the previous snapshot of the same solver.
+ */
+public class TelemetrySnapshot {
+
+	/**
+	 * The number of edges propagated in one method
+	 */
+	public static class MethodEdgeCount {
+
+		private final String method;
+		private final long edges;
+		private final long recentEdges;
+
+		public MethodEdgeCount(String method, long edges, long recentEdges) {
+			this.method = method;
+			this.edges = edges;
+			this.recentEdges = recentEdges;
+		}
+
+		/**
+		 * Gets the signature of the method
+		 * @return The signature of the method
+		 */
+		public String getMethod() {
+			return this.method;
+		}
+
+		/**
+		 * Gets the number of edges propagated into the method since the solver
+		 * was started
+		 * @return The total number of edges in the method
+		 */
+		public long getEdges() {
+			return this.edges;
+		}
+
+		/**
+		 * Gets the number of edges propagated into the method since the
+		 * previous snapshot
+		 * @return The number of new edges in the method
+		 */
+		public long getRecentEdges() {
+			return this.recentEdges;
+		}
+
+	}
+
+	/**
+	 * The invocation count and the latencies of one kind of flow function
+	 */
+	public static class FlowFunctionStats {
+
+		private final long invocations;
+		private final long targets;
+		private final long[] latencyBuckets;
+		private final long sampledNanos;
+
+		public FlowFunctionStats(long invocations, long targets, long[] latencyBuckets,
+				long sampledNanos) {
+			this.invocations = invocations;
+			this.targets = targets;
+			this.latencyBuckets = latencyBuckets;
+			this.sampledNanos = sampledNanos;
+		}
+
+		public long getInvocations() {
+			return this.invocations;
+		}
+
+		/**
+		 * Gets the number of facts produced by all invocations
+		 * @return The number of facts produced by all invocations
+		 */
+		public long getTargets() {
+			return this.targets;
+		}
+
+		/**
+		 * Gets the latency histogram of the sampled invocations
+		 * @return The number of sampled invocations in every bucket of
+		 * {@link LatencyHistogram}
+		 */
+		public long[] getLatencyBuckets() {
+			return this.latencyBuckets.clone();
+		}
+
+		/**
+		 * Gets the number of invocations whose latency has been sampled
+		 * @return The number of sampled invocations
+		 */
+		public long getSampledInvocations() {
+			long count = 0;
+			for (long c : latencyBuckets)
+				count += c;
+			return count;
+		}
+
+		/**
+		 * Gets the mean latency of the sampled invocations
+		 * @return The mean latency in nanoseconds
+		 */
+		public double getMeanLatency() {
+			long count = getSampledInvocations();
+			return count == 0 ? 0 : (double) sampledNanos / count;
+		}
+
+		/**
+		 * Gets an upper bound for the given percentile of the latency
+		 * @param percentile The percentile between 0 and 100
+		 * @return The upper bound for the given percentile in nanoseconds
+		 */
+		public long getLatencyPercentile(double percentile) {
+			return LatencyHistogram.getPercentile(latencyBuckets, percentile);
+		}
+
+	}
+
+	private final String solverName;
+	private final long timestamp;
+	private final long elapsedNanos;
+	private final long edges;
+	private final double edgeRate;
+	private final Map<FlowFunctionKind, FlowFunctionStats> flowFunctions;
+	private final List<MethodEdgeCount> topMethods;
+	private final long queueSize;
+	private final long jumpFunctions;
+	private final double jumpFunctionRate;
+	private final long incoming;
+	private final double incomingRate;
+	private final long endSummaries;
+	private final double endSummaryRate;
+
+	TelemetrySnapshot(String solverName, long timestamp, long elapsedNanos,
+			long edges, double edgeRate,
+			Map<FlowFunctionKind, FlowFunctionStats> flowFunctions,
+			List<MethodEdgeCount> topMethods, long queueSize,
+			long jumpFunctions, double jumpFunctionRate,
+			long incoming, double incomingRate,
+			long endSummaries, double endSummaryRate) {
+		this.solverName = solverName;
+		this.timestamp = timestamp;
+		this.elapsedNanos = elapsedNanos;
+		this.edges = edges;
+		this.edgeRate = edgeRate;
+		this.flowFunctions = Collections.unmodifiableMap
+				(new EnumMap<FlowFunctionKind, FlowFunctionStats>(flowFunctions));
+		this.topMethods = Collections.unmodifiableList(topMethods);
+		this.queueSize = queueSize;
+		this.jumpFunctions = jumpFunctions;
+		this.jumpFunctionRate = jumpFunctionRate;
+		this.incoming = incoming;
+		this.incomingRate = incomingRate;
+		this.endSummaries = endSummaries;
+		this.endSummaryRate = endSummaryRate;
+	}
+
+	public String getSolverName() {
+		return this.solverName;
+	}
+
+	/**
+	 * Gets the wall clock time at which this snapshot was taken
+	 * @return The time at which this snapshot was taken in milliseconds
+	 * since the epoch
+	 */
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	/**
+	 * Gets the time since the telemetry was started
+	 * @return The time since the telemetry was started in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return this.elapsedNanos;
+	}
+
+	/**
+	 * Gets the number of new edges the solver has propagated
+	 * @return The number of new edges the solver has propagated
+	 */
+	public long getEdges() {
+		return this.edges;
+	}
+
+	public double getEdgeRate() {
+		return this.edgeRate;
+	}
+
+	public Map<FlowFunctionKind, FlowFunctionStats> getFlowFunctions() {
+		return this.flowFunctions;
+	}
+
+	/**
+	 * Gets the methods with the most edges, ordered by their number of
+	 * edges since the previous snapshot and then by their total number of
+	 * edges
+	 * @return The methods with the most edges
+	 */
+	public List<MethodEdgeCount> getTopMethods() {
+		return this.topMethods;
+	}
+
+	/**
+	 * Gets the number of edges waiting for processing in the executor
+	 * @return The number of edges waiting for processing
+	 */
+	public long getQueueSize() {
+		return this.queueSize;
+	}
+
+	public long getJumpFunctions() {
+		return this.jumpFunctions;
+	}
+
+	public double getJumpFunctionRate() {
+		return this.jumpFunctionRate;
+	}
+
+	/**
+	 * Gets the number of callee contexts with incoming edges
+	 * @return The number of callee contexts with incoming edges
+	 */
+	public long getIncoming() {
+		return this.incoming;
+	}
+
+	public double getIncomingRate() {
+		return this.incomingRate;
+	}
+
+	/**
+	 * Gets the number of callee contexts with end summaries
+	 * @return The number of callee contexts with end summaries
+	 */
+	public long getEndSummaries() {
+		return this.endSummaries;
+	}
+
+	public double getEndSummaryRate() {
+		return this.endSummaryRate;
+	}
+
+	/**
+	 * Converts this snapshot into a single-line JSON object
+	 * @return This snapshot as a JSON object
+	 */
+	public String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"solver\":").append(quote(solverName));
+		sb.append(",\"timestamp\":").append(timestamp);
+		sb.append(",\"elapsedMillis\":").append(elapsedNanos / 1000000);
+		sb.append(",\"edges\":").append(edges);
+		sb.append(",\"edgeRate\":").append(formatRate(edgeRate));
+		sb.append(",\"queueSize\":").append(queueSize);
+		sb.append(",\"jumpFunctions\":").append(jumpFunctions);
+		sb.append(",\"jumpFunctionRate\":").append(formatRate(jumpFunctionRate));
+		sb.append(",\"incoming\":").append(incoming);
+		sb.append(",\"incomingRate\":").append(formatRate(incomingRate));
+		sb.append(",\"endSummaries\":").append(endSummaries);
+		sb.append(",\"endSummaryRate\":").append(formatRate(endSummaryRate));
+
+		sb.append(",\"flowFunctions\":{");
+		boolean first = true;
+		for (Map.Entry<FlowFunctionKind, FlowFunctionStats> entry : flowFunctions.entrySet()) {
+			FlowFunctionStats stats = entry.getValue();
+			if (!first)
+				sb.append(",");
+			first = false;
+			sb.append(quote(entry.getKey().name())).append(":{");
+			sb.append("\"invocations\":").append(stats.getInvocations());
+			sb.append(",\"targets\":").append(stats.getTargets());
+			sb.append(",\"sampled\":").append(stats.getSampledInvocations());
+			sb.append(",\"meanNanos\":").append(Math.round(stats.getMeanLatency()));
+			sb.append(",\"p50Nanos\":").append(stats.getLatencyPercentile(50));
+			sb.append(",\"p99Nanos\":").append(stats.getLatencyPercentile(99));
+			sb.append(",\"maxNanos\":").append(stats.getLatencyPercentile(100));
+			sb.append("}");
+		}
+		sb.append("}");
+
+		sb.append(",\"topMethods\":[");
+		for (int i = 0; i < topMethods.size(); i++) {
+			MethodEdgeCount mec = topMethods.get(i);
+			if (i > 0)
+				sb.append(",");
+			sb.append("{\"method\":").append(quote(mec.getMethod()));
+			sb.append(",\"edges\":").append(mec.getEdges());
+			sb.append(",\"recentEdges\":").append(mec.getRecentEdges());
+			sb.append("}");
+		}
+		sb.append("]}");
+		return sb.toString();
+	}
+
+	private static String formatRate(double rate) {
+		return Long.toString(Math.round(rate));
+	}
+
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return toJson();
+	}
+
+}
@@ -13,17 +13,27 @@ package soot.jimple.infoflow.source;
 import heros.InterproceduralCFG;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
+import soot.Scene;
 import soot.SootMethod;
 import soot.Unit;
 import soot.jimple.IdentityStmt;
 import soot.jimple.ParameterRef;
 import soot.jimple.ReturnStmt;
 import soot.jimple.Stmt;
+import soot.jimple.infoflow.config.RuleBundle;
+
+import com.google.common.collect.MapMaker;
 
 /**
- * A {@link ISourceSinkManager} working on lists of source and sink methods
+ * A {@link ISourceSinkManager} working on lists of source and sink methods.
+ * The lists are compiled into {@link MethodSignatureIndex} objects on first
+ * use, which also match all methods overriding or implementing a source
+ * or sink. The source and sink status of every statement is cached until
+ * {@link #resetStatementCache()} is called.
  * 
  * @author Steven Arzt
  */
@@ -37,6 +47,58 @@ public class DefaultSourceSinkManager extends MethodBasedSourceSinkManager {
 	
 	private static final SourceInfo sourceInfo = new SourceInfo(true);
 	
+	/**
+	 * The source and sink status of a statement
+	 */
+	private static class StmtInfo {
+		
+		private static final StmtInfo NONE = new StmtInfo(null, false);
+		private static final StmtInfo SINK = new StmtInfo(null, true);
+		private static final StmtInfo SOURCE = new StmtInfo(DefaultSourceSinkManager.sourceInfo, false);
+		private static final StmtInfo SOURCE_SINK = new StmtInfo(DefaultSourceSinkManager.sourceInfo, true);
+		
+		private final SourceInfo sourceInfo;
+		private final boolean isSink;
+		
+		private StmtInfo(SourceInfo sourceInfo, boolean isSink) {
+			this.sourceInfo = sourceInfo;
+			this.isSink = isSink;
+		}
+		
+		public static StmtInfo get(SourceInfo si, boolean isSink) {
+			if (si == null)
+				return isSink ? SINK : NONE;
+			if (si == DefaultSourceSinkManager.sourceInfo)
+				return isSink ? SOURCE_SINK : SOURCE;
+			return new StmtInfo(si, isSink);
+		}
+	
+	}
+	
+	/**
+	 * The compiled source and sink definitions for one Soot scene
+	 */
+	private static class Indices {
+		
+		private final MethodSignatureIndex sources;
+		private final MethodSignatureIndex sinks;
+		private final MethodSignatureIndex parameterTaintMethods;
+		private final MethodSignatureIndex returnTaintMethods;
+		
+		public Indices(DefaultSourceSinkManager manager) {
+			this.sources = new MethodSignatureIndex(manager.sources, true);
+			this.sinks = new MethodSignatureIndex(manager.sinks, true);
+			this.parameterTaintMethods = new MethodSignatureIndex
+					(manager.parameterTaintMethods, false);
+			this.returnTaintMethods = new MethodSignatureIndex
+					(manager.returnTaintMethods, false);
+		}
+	
+	}
+	
+	private volatile Indices indices = null;
+	private volatile ConcurrentMap<Stmt, StmtInfo> stmtInfos = createStmtInfoMap();
+	
 	/**
 	 * Creates a new instance of the {@link DefaultSourceSinkManager} class
 	 * @param sources The list of methods to be treated as sources
@@ -49,7 +111,7 @@ public class DefaultSourceSinkManager extends MethodBasedSourceSinkManager {
 		this.parameterTaintMethods = null;
 		this.returnTaintMethods = null;
 	}
-
+	
 	/**
 	 * Creates a new instance of the {@link DefaultSourceSinkManager} class
 	 * @param sources The list of methods to be treated as sources
@@ -69,13 +131,30 @@ public class DefaultSourceSinkManager extends MethodBasedSourceSinkManager {
 		this.parameterTaintMethods = parameterTaintMethods;
 		this.returnTaintMethods = returnTaintMethods;
 	}
-
+	
+	/**
+	 * Creates a new instance of the {@link DefaultSourceSinkManager} class
+	 * with the source and sink definitions from the given bundle. Definitions
+	 * that are missing in the bundle are treated as empty lists.
+	 * @param bundle The bundle containing the source and sink definitions
+	 */
+	public DefaultSourceSinkManager(RuleBundle bundle) {
+		this(emptyIfNull(bundle.getSources()), emptyIfNull(bundle.getSinks()),
+				emptyIfNull(bundle.getParameterTaintMethods()),
+				emptyIfNull(bundle.getReturnTaintMethods()));
+	}
+	
+	private static Collection<String> emptyIfNull(Collection<String> methods) {
+		return methods == null ? Collections.<String>emptyList() : methods;
+	}
+	
 	/**
 	 * Sets the list of methods to be treated as sources
 	 * @param sources The list of methods to be treated as sources
 	 */
 	public void setSources(List<String> sources){
 		this.sources = sources;
+		invalidate();
 	}
 	
 	/**
@@ -84,50 +163,140 @@ public class DefaultSourceSinkManager extends MethodBasedSourceSinkManager {
 	 */
 	public void setSinks(List<String> sinks){
 		this.sinks = sinks;
+		invalidate();
+	}
+	
+	/**
+	 * Gets the methods that are treated as sources
+	 * @return The methods that are treated as sources
+	 */
+	public Collection<String> getSources() {
+		return this.sources;
+	}
+	
+	/**
+	 * Gets the methods that are treated as sinks
+	 * @return The methods that are treated as sinks
+	 */
+	public Collection<String> getSinks() {
+		return this.sinks;
+	}
+	
+	/**
+	 * Gets the methods whose parameters are regarded as taint sources
+	 * @return The methods whose parameters are regarded as sources, or null
+	 * if there are no such methods
+	 */
+	public Collection<String> getParameterTaintMethods() {
+		return this.parameterTaintMethods;
+	}
+	
+	/**
+	 * Gets the methods whose return values are regarded as taint sinks
+	 * @return The methods whose return values are regarded as sinks, or null
+	 * if there are no such methods
+	 */
+	public Collection<String> getReturnTaintMethods() {
+		return this.returnTaintMethods;
+	}
+	
+	private static ConcurrentMap<Stmt, StmtInfo> createStmtInfoMap() {
+		// Weak keys are compared by identity
+		return new MapMaker().weakKeys().concurrencyLevel
+				(Runtime.getRuntime().availableProcessors()).makeMap();
+	}
+	
+	/**
+	 * Drops the compiled source and sink definitions and the cached status
+	 * of all statements
+	 */
+	private synchronized void invalidate() {
+		this.indices = null;
+		this.stmtInfos = createStmtInfoMap();
+	}
+	
+	/**
+	 * Drops the cached source and sink status of all statements. This must
+	 * be called whenever method bodies have been changed after statements
+	 * have been looked up, e.g., by the dead code elimination.
+	 */
+	public void resetStatementCache() {
+		this.stmtInfos = createStmtInfoMap();
+	}
+	
+	/**
+	 * Gets the compiled source and sink definitions for the current Soot
+	 * scene, compiling them if necessary
+	 * @return The compiled source and sink definitions
+	 */
+	private Indices getIndices() {
+		Indices idx = this.indices;
+		if (idx != null && idx.sources.isValidFor(Scene.v()))
+			return idx;
+		
+		synchronized (this) {
+			idx = this.indices;
+			if (idx == null || !idx.sources.isValidFor(Scene.v())) {
+				idx = new Indices(this);
+				this.indices = idx;
+			}
+		}
+		return idx;
 	}
 	
 	@Override
 	public SourceInfo getSourceMethodInfo(SootMethod sMethod) {
-		if (!sources.contains(sMethod.toString()))
+		if (!getIndices().sources.contains(sMethod))
 			return null;
 		return sourceInfo;
 	}
 	
 	@Override
 	public boolean isSinkMethod(SootMethod sMethod) {
-		return sinks.contains(sMethod.toString());
+		return getIndices().sinks.contains(sMethod);
 	}
 	
-	@Override
-	public SourceInfo getSourceInfo(Stmt sCallSite, InterproceduralCFG<Unit, SootMethod> cfg) {
-		SourceInfo si = super.getSourceInfo(sCallSite, cfg);
-		if (si != null)
-			return si;
+	/**
+	 * Gets the source and sink status of the given statement, computing it
+	 * if it has not been cached yet
+	 * @param sCallSite The statement for which to get the status
+	 * @param cfg The interprocedural control flow graph
+	 * @return The source and sink status of the given statement
+	 */
+	private StmtInfo getStmtInfo(Stmt sCallSite, InterproceduralCFG<Unit, SootMethod> cfg) {
+		final ConcurrentMap<Stmt, StmtInfo> infos = this.stmtInfos;
+		StmtInfo info = infos.get(sCallSite);
+		if (info != null)
+			return info;
 		
-		if (sCallSite instanceof IdentityStmt) {
+		Indices idx = getIndices();
+		SourceInfo si = super.getSourceInfo(sCallSite, cfg);
+		if (si == null && sCallSite instanceof IdentityStmt) {
 			IdentityStmt is = (IdentityStmt) sCallSite;
 			if (is.getRightOp() instanceof ParameterRef)
-				if (this.parameterTaintMethods != null && this.parameterTaintMethods.contains
-						(cfg.getMethodOf(sCallSite).getSignature()))
-					return sourceInfo;
+				if (idx.parameterTaintMethods.contains(cfg.getMethodOf(sCallSite)))
+					si = sourceInfo;
 		}
 		
-		return null;
+		boolean isSink = super.isSink(sCallSite, cfg)
+				|| (sCallSite instanceof ReturnStmt
+						&& idx.returnTaintMethods.contains(cfg.getMethodOf(sCallSite)));
+		
+		info = StmtInfo.get(si, isSink);
+		infos.put(sCallSite, info);
+		return info;
 	}
-
+	
 	@Override
-	public boolean isSink(Stmt sCallSite, InterproceduralCFG<Unit, SootMethod> cfg) {
-		if (super.isSink(sCallSite, cfg))
-			return true;
-
-		if (sCallSite instanceof ReturnStmt)
-			if (this.returnTaintMethods != null && this.returnTaintMethods.contains
-					(cfg.getMethodOf(sCallSite).getSignature()))
-				return true;
+	public SourceInfo getSourceInfo(Stmt sCallSite, InterproceduralCFG<Unit, SootMethod> cfg) {
+		return getStmtInfo(sCallSite, cfg).sourceInfo;
+	}
 	
-		return false;
+	@Override
+	public boolean isSink(Stmt sCallSite, InterproceduralCFG<Unit, SootMethod> cfg) {
+		return getStmtInfo(sCallSite, cfg).isSink;
 	}
-
+	
 	/**
 	 * Sets the list of methods whose parameters shall be regarded as taint
 	 * sources
@@ -136,6 +305,7 @@ public class DefaultSourceSinkManager extends MethodBasedSourceSinkManager {
 	 */
 	public void setParameterTaintMethods(List<String> parameterTaintMethods) {
 		this.parameterTaintMethods = parameterTaintMethods;
+		invalidate();
 	}
 	
 	/**
@@ -146,6 +316,7 @@ public class DefaultSourceSinkManager extends MethodBasedSourceSinkManager {
 	 */
 	public void setReturnTaintMethods(List<String> returnTaintMethods) {
 		this.returnTaintMethods = returnTaintMethods;
+		invalidate();
 	}
 
 }
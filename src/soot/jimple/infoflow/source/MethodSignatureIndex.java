@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.source;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Sets;
+
+/**
+ * Index that checks whether a {@link SootMethod} is one of a list of method
+ * signatures without building and comparing signature strings on every
+ * lookup. Optionally, all methods that override or implement one of the
+ * given methods match as well.
+ *
+ * The signatures are split into their declaring classes and
+ * subsignatures. A method is only matched against them the first time it is
+ * looked up, the result is then cached by object identity. Since a method
+ * and the supertypes of its declaring class do not change once the method
+ * exists, this also covers methods and classes that are only resolved after
+ * the index has been built.
+ *
+ * The index is bound to the scene for which it was built. Check
+ * {@link #isValidFor(Scene)} before using it.
+ */
+public class MethodSignatureIndex {
+
+	private final Scene scene;
+	private final boolean resolveOverrides;
+
+	/**
+	 * Maps the subsignatures of the given methods to the names of the
+	 * classes declaring them
+	 */
+	private final Map<String, Set<String>> classesBySubSignature =
+			new HashMap<String, Set<String>>();
+
+	/**
+	 * The result of the lookup for every method that has been checked so
+	 * far. Weak keys are compared by identity.
+	 */
+	private final ConcurrentMap<SootMethod, Boolean> matches = new MapMaker()
+			.weakKeys().concurrencyLevel(Runtime.getRuntime().availableProcessors()).makeMap();
+
+	/**
+	 * Creates a new index for the given method signatures in the current
+	 * Soot scene. The methods need not exist in the scene yet.
+	 * @param signatures The signatures of the methods to include
+	 * @param resolveOverrides True if all methods that override or implement
+	 * one of the given methods shall be included as well, otherwise false
+	 */
+	public MethodSignatureIndex(Collection<String> signatures, boolean resolveOverrides) {
+		this.scene = Scene.v();
+		this.resolveOverrides = resolveOverrides;
+		if (signatures == null)
+			return;
+
+		for (String sig : signatures) {
+			// Signatures have the form <className: subSignature>. Parts of the
+			// class name that are Jimple keywords are quoted.
+			int sepIdx = sig.indexOf(": ");
+			if (!sig.startsWith("<") || !sig.endsWith(">") || sepIdx < 0)
+				continue;
+			String className = sig.substring(1, sepIdx).replace("'", "");
+			String subSig = sig.substring(sepIdx + 2, sig.length() - 1);
+
+			Set<String> classes = classesBySubSignature.get(subSig);
+			if (classes == null) {
+				classes = new HashSet<String>();
+				classesBySubSignature.put(subSig, classes);
+			}
+			classes.add(className);
+		}
+	}
+
+	/**
+	 * Checks whether the given method is contained in this index
+	 * @param sm The method to check
+	 * @return True if the given method is contained in this index,
+	 * otherwise false
+	 */
+	public boolean contains(SootMethod sm) {
+		if (classesBySubSignature.isEmpty())
+			return false;
+
+		Boolean match = matches.get(sm);
+		if (match == null) {
+			match = computeMatch(sm);
+			matches.put(sm, match);
+		}
+		return match;
+	}
+
+	/**
+	 * Checks whether the given method has one of the signatures in this
+	 * index or, if overrides shall be resolved, overrides or implements a
+	 * method with one of these signatures
+	 * @param sm The method to check
+	 * @return True if the given method is contained in this index,
+	 * otherwise false
+	 */
+	private boolean computeMatch(SootMethod sm) {
+		String subSig = sm.getSubSignature();
+		Set<String> classes = classesBySubSignature.get(subSig);
+		if (classes == null)
+			return false;
+
+		SootClass declaringClass = sm.getDeclaringClass();
+		if (classes.contains(declaringClass.getName()))
+			return true;
+		if (!resolveOverrides || sm.isStatic() || sm.isPrivate() || sm.isConstructor())
+			return false;
+
+		// Walk up the class hierarchy. We only need the names of the
+		// supertypes, so their methods need not have been resolved.
+		Set<SootClass> doneSet = Sets.newIdentityHashSet();
+		List<SootClass> workList = new ArrayList<SootClass>();
+		addSupertypes(declaringClass, workList);
+		while (!workList.isEmpty()) {
+			SootClass sc = workList.remove(workList.size() - 1);
+			if (!doneSet.add(sc))
+				continue;
+
+			// Private methods cannot be overridden
+			if (classes.contains(sc.getName())
+					&& !(sc.declaresMethod(subSig) && sc.getMethod(subSig).isPrivate()))
+				return true;
+			addSupertypes(sc, workList);
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the direct superclass and the directly implemented interfaces of
+	 * the given class to the given list
+	 * @param sc The class whose supertypes to add
+	 * @param workList The list to which to add the supertypes
+	 */
+	private void addSupertypes(SootClass sc, List<SootClass> workList) {
+		if (sc.hasSuperclass())
+			workList.add(sc.getSuperclass());
+		workList.addAll(sc.getInterfaces());
+	}
+
+	/**
+	 * Checks whether this index can be used for the given scene
+	 * @param scene The scene to check
+	 * @return True if this index has been built for the given scene,
+	 * otherwise false
+	 */
+	public boolean isValidFor(Scene scene) {
+		return this.scene == scene;
+	}
+
+}
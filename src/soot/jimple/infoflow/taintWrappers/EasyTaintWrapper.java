@@ -12,17 +12,16 @@ package soot.jimple.infoflow.taintWrappers;
 
 import heros.TwoElementSet;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,13 +35,14 @@ import soot.jimple.DefinitionStmt;
 import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.InvokeExpr;
 import soot.jimple.Stmt;
+import soot.jimple.infoflow.config.RuleBundle;
 import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
 import soot.jimple.infoflow.solver.IInfoflowCFG;
-import soot.jimple.infoflow.util.SootMethodRepresentationParser;
+import soot.jimple.toolkits.callgraph.Edge;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 
 /**
  * A list of methods is passed which contains signatures of instance methods
@@ -61,19 +61,42 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 	private final Map<String, Set<String>> killList;
 	private final Set<String> includeList;
 	
-	private LoadingCache<SootMethod, MethodWrapType> methodWrapCache = CacheBuilder.newBuilder().build
-			(new CacheLoader<SootMethod, MethodWrapType>() {
-
-				@Override
-				public MethodWrapType load(SootMethod arg0) throws Exception {
-					return getMethodWrapType(arg0.getSubSignature(), arg0.getDeclaringClass());
-				}
-				
-			});
+	/**
+	 * The default maximum number of call sites for which the computed taints
+	 * are kept in memory
+	 */
+	private static final long DEFAULT_RESULT_CACHE_SIZE = 10000;
+	
+	private final ConcurrentMap<SootMethod, MethodDispatch> dispatchTable =
+			new ConcurrentHashMap<SootMethod, MethodDispatch>();
+	private volatile Cache<Stmt, ConcurrentMap<AccessPath, Set<AccessPath>>> resultCache = null;
+	private long resultCacheSize = DEFAULT_RESULT_CACHE_SIZE;
 	
 	private boolean aggressiveMode = false;
 	private boolean alwaysModelEqualsHashCode = true;
 	
+	/**
+	 * Everything the taint wrapper needs to know about a callee. The entries
+	 * are computed once per method, including the walk over the class
+	 * hierarchy.
+	 */
+	private static class MethodDispatch {
+		
+		private final MethodWrapType wrapType;
+		private final boolean included;
+		private final boolean equalsHashCode;
+		private final boolean hasWrappedMethods;
+		
+		public MethodDispatch(MethodWrapType wrapType, boolean included,
+				boolean equalsHashCode, boolean hasWrappedMethods) {
+			this.wrapType = wrapType;
+			this.included = included;
+			this.equalsHashCode = equalsHashCode;
+			this.hasWrappedMethods = hasWrappedMethods;
+		}
+		
+	}
+	
 	/**
 	 * The possible effects this taint wrapper can have on a method invocation
 	 */
@@ -137,46 +160,120 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
         this(new File(f));
     }
 
+	/**
+	 * Creates a new instance of the {@link EasyTaintWrapper} class from the
+	 * given file. This can either be a text file in the format of
+	 * EasyTaintWrapperSource.txt or a binary {@link RuleBundle}.
+	 * @param f The file from which to load the rules
+	 * @throws IOException Thrown if the given file cannot be read
+	 */
 	public EasyTaintWrapper(File f) throws IOException{
-		BufferedReader reader = null;
-		try{
-			FileReader freader = new FileReader(f);
-			reader = new BufferedReader(freader);
-			String line = reader.readLine();
-			List<String> methodList = new LinkedList<String>();
-			List<String> excludeList = new LinkedList<String>();
-			List<String> killList = new LinkedList<String>();
-			this.includeList = new HashSet<String>();
-			while(line != null){
-				if (!line.isEmpty() && !line.startsWith("%"))
-					if (line.startsWith("~"))
-						excludeList.add(line.substring(1));
-					else if (line.startsWith("-"))
-						killList.add(line.substring(1));
-					else if (line.startsWith("^"))
-						includeList.add(line.substring(1));
-					else
-						methodList.add(line);
-				line = reader.readLine();
-			}
-			this.classList = SootMethodRepresentationParser.v().parseClassNames(methodList, true);
-			this.excludeList = SootMethodRepresentationParser.v().parseClassNames(excludeList, true);
-			this.killList = SootMethodRepresentationParser.v().parseClassNames(killList, true);
-			logger.info("Loaded wrapper entries for {} classes and {} exclusions.", classList.size(), excludeList.size());
-		}
-		finally {
-			if (reader != null)
-				reader.close();
-		}
+		this(RuleBundle.isBundle(f) ? RuleBundle.load(f) : RuleBundle.fromTaintWrapperFile(f));
+		logger.info("Loaded wrapper entries for {} classes and {} exclusions.", classList.size(), excludeList.size());
+	}
+	
+	/**
+	 * Creates a new instance of the {@link EasyTaintWrapper} class with the
+	 * rules from the given bundle. The rules are copied, so that methods can
+	 * be added to the taint wrapper.
+	 * @param bundle The bundle containing the taint wrapper rules
+	 */
+	public EasyTaintWrapper(RuleBundle bundle) {
+		this(copyRules(bundle.getWrapperRules()), copyRules(bundle.getExcludeRules()),
+				copyRules(bundle.getKillRules()), new HashSet<String>(bundle.getIncludePrefixes()));
 	}
 	
 	public EasyTaintWrapper(EasyTaintWrapper taintWrapper) {
-		this(taintWrapper.classList, taintWrapper.excludeList, taintWrapper.killList, taintWrapper.includeList);
+		this(copyRules(taintWrapper.classList), copyRules(taintWrapper.excludeList),
+				copyRules(taintWrapper.killList), new HashSet<String>(taintWrapper.includeList));
+		this.resultCacheSize = taintWrapper.resultCacheSize;
+	}
+	
+	/**
+	 * Creates a copy of the given rules, so that adding methods to the copy
+	 * does not change the original
+	 * @param rules The rules to copy. This is a mapping from class names to
+	 * sets of subsignatures.
+	 * @return The copy of the given rules
+	 */
+	private static Map<String, Set<String>> copyRules(Map<String, Set<String>> rules) {
+		Map<String, Set<String>> copy = new HashMap<String, Set<String>>(rules.size());
+		for (Map.Entry<String, Set<String>> entry : rules.entrySet())
+			copy.put(entry.getKey(), new HashSet<String>(entry.getValue()));
+		return copy;
 	}
 	
 	@Override
 	public void initialize() {
-		// nothing to initialize yet
+		dispatchTable.clear();
+		
+		// The call sites are only weakly referenced, so that the cached
+		// results do not keep statements alive after the analysis
+		resultCache = resultCacheSize > 0 ? CacheBuilder.newBuilder()
+				.concurrencyLevel(Runtime.getRuntime().availableProcessors())
+				.weakKeys().maximumSize(resultCacheSize)
+				.<Stmt, ConcurrentMap<AccessPath, Set<AccessPath>>>build() : null;
+		
+		// Resolve the hierarchy for all callees in the call graph up front,
+		// so that the solver threads only need to look up the table. Methods
+		// that only show up later are resolved on first use.
+		if (!Scene.v().hasCallGraph())
+			return;
+		long beforeDispatch = System.nanoTime();
+		for (Edge edge : Scene.v().getCallGraph()) {
+			SootMethod sm = edge.tgt();
+			if (sm != null && !dispatchTable.containsKey(sm))
+				dispatchTable.put(sm, createDispatch(sm));
+		}
+		logger.info("Built taint wrapper dispatch table for {} methods in {} seconds",
+				dispatchTable.size(), (System.nanoTime() - beforeDispatch) / 1E9);
+	}
+	
+	/**
+	 * Gets the dispatch table entry for the given callee
+	 * @param method The callee for which to get the dispatch table entry
+	 * @return The dispatch table entry for the given callee
+	 */
+	private MethodDispatch getDispatch(SootMethod method) {
+		MethodDispatch dispatch = dispatchTable.get(method);
+		if (dispatch == null) {
+			MethodDispatch newDispatch = createDispatch(method);
+			dispatch = dispatchTable.putIfAbsent(method, newDispatch);
+			if (dispatch == null)
+				dispatch = newDispatch;
+		}
+		return dispatch;
+	}
+	
+	private MethodDispatch createDispatch(SootMethod method) {
+		final String subSig = method.getSubSignature();
+		return new MethodDispatch(getMethodWrapType(subSig, method.getDeclaringClass()),
+				isIncluded(method.getDeclaringClass()),
+				subSig.equals("boolean equals(java.lang.Object)") || subSig.equals("int hashCode()"),
+				hasWrappedMethodsForClass(method.getDeclaringClass(), true, true, true));
+	}
+	
+	/**
+	 * Checks whether the given class matches one of the registered prefixes
+	 * @param sc The class to check
+	 * @return True if the name of the given class starts with one of the
+	 * registered prefixes, otherwise false
+	 */
+	private boolean isIncluded(SootClass sc) {
+		for (String supportedClass : this.includeList)
+			if (sc.getName().startsWith(supportedClass))
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Discards all information derived from the rules and the settings of
+	 * this taint wrapper. This must be done whenever one of them changes.
+	 */
+	private void invalidateCaches() {
+		dispatchTable.clear();
+		if (resultCache != null)
+			resultCache.invalidateAll();
 	}
 	
 	@Override
@@ -185,9 +282,41 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 		if (!stmt.containsInvokeExpr())
 			return Collections.emptySet();
 		
-		final Set<AccessPath> taints = new HashSet<AccessPath>();
+		final Cache<Stmt, ConcurrentMap<AccessPath, Set<AccessPath>>> cache = this.resultCache;
+		if (cache == null)
+			return computeTaintsForMethod(stmt, taintedPath);
+		
+		ConcurrentMap<AccessPath, Set<AccessPath>> callSiteTaints = cache.getIfPresent(stmt);
+		if (callSiteTaints == null) {
+			ConcurrentMap<AccessPath, Set<AccessPath>> newTaints =
+					new ConcurrentHashMap<AccessPath, Set<AccessPath>>();
+			callSiteTaints = cache.asMap().putIfAbsent(stmt, newTaints);
+			if (callSiteTaints == null)
+				callSiteTaints = newTaints;
+		}
+		
+		Set<AccessPath> taints = callSiteTaints.get(taintedPath);
+		if (taints == null) {
+			taints = computeTaintsForMethod(stmt, taintedPath);
+			callSiteTaints.put(taintedPath, taints);
+		}
+		return taints;
+	}
+	
+	/**
+	 * Computes the taints for the given tainted access path at the given
+	 * call site
+	 * @param stmt The call site
+	 * @param taintedPath The tainted access path
+	 * @return The taints after the call. The returned set must not be
+	 * modified, since it is shared through the result cache.
+	 */
+	private Set<AccessPath> computeTaintsForMethod(Stmt stmt, AccessPath taintedPath) {
 		final SootMethod method = stmt.getInvokeExpr().getMethod();
 		
+		final Set<AccessPath> taints = new HashSet<AccessPath>();
+		final MethodDispatch dispatch = getDispatch(method);
+		
 		// If the callee is a phantom class or has no body, we pass on the taint
 		if (method.isPhantom() || !method.hasActiveBody())
 			taints.add(taintedPath);
@@ -198,30 +327,21 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 			return Collections.singleton(taintedPath);
 		
 		// Do we handle equals() and hashCode() separately?
-		final String subSig = method.getSubSignature();
-		boolean taintEqualsHashCode = alwaysModelEqualsHashCode
-				&& (subSig.equals("boolean equals(java.lang.Object)") || subSig.equals("int hashCode()"));
+		boolean taintEqualsHashCode = alwaysModelEqualsHashCode && dispatch.equalsHashCode;
 		
 		// We need to handle some API calls explicitly as they do not really fit
 		// the model of our rules
 		if (!taintedPath.isEmpty()
 				&& method.getDeclaringClass().getName().equals("java.lang.String")
-				&& subSig.equals("void getChars(int,int,char[],int)"))
+				&& method.getSubSignature().equals("void getChars(int,int,char[],int)"))
 			return handleStringGetChars(stmt.getInvokeExpr(), taintedPath);
 		
 		// If this is not one of the supported classes, we skip it
-		boolean isSupported = includeList == null || includeList.isEmpty();
-		if (!isSupported)
-			for (String supportedClass : this.includeList)
-				if (method.getDeclaringClass().getName().startsWith(supportedClass)) {
-					isSupported = true;
-					break;
-				}
+		boolean isSupported = includeList == null || includeList.isEmpty() || dispatch.included;
 		if (!isSupported && !aggressiveMode && !taintEqualsHashCode)
-			return taints;
+			return Collections.unmodifiableSet(taints);
 		
-		// Check for a cached wrap type
-		final MethodWrapType wrapType = methodWrapCache.getUnchecked(method);
+		final MethodWrapType wrapType = dispatch.wrapType;
 		
 		if (stmt.getInvokeExpr() instanceof InstanceInvokeExpr) {
 			InstanceInvokeExpr iiExpr = (InstanceInvokeExpr) stmt.getInvokeExpr();			
@@ -238,7 +358,7 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 
 					// Check for exclusions
 					if (wrapType != MethodWrapType.Exclude)
-						taints.add(new AccessPath(def.getLeftOp(), true));
+						taints.add(AccessPathFactory.v().createAccessPath(def.getLeftOp(), true));
 				}
 
 				// If the base object is tainted, we pass this taint on
@@ -269,11 +389,11 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 				// If make sure to also taint the left side of an assignment
 				// if the object just got tainted 
 				if (stmt instanceof DefinitionStmt)
-					taints.add(new AccessPath(((DefinitionStmt) stmt).getLeftOp(), true));
+					taints.add(AccessPathFactory.v().createAccessPath(((DefinitionStmt) stmt).getLeftOp(), true));
 				
 				// Taint the base object
 				if (stmt.getInvokeExprBox().getValue() instanceof InstanceInvokeExpr)
-					taints.add(new AccessPath(((InstanceInvokeExpr) stmt.getInvokeExprBox().getValue()).getBase(), true));
+					taints.add(AccessPathFactory.v().createAccessPath(((InstanceInvokeExpr) stmt.getInvokeExprBox().getValue()).getBase(), true));
 				
 				// The originally tainted parameter or base object as such
 				// stays tainted
@@ -281,7 +401,7 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 			}
 		}
 		
-		return taints;
+		return Collections.unmodifiableSet(taints);
 	}
 	
 	/**
@@ -296,7 +416,7 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 		// If the base object is tainted, the third argument gets tainted as
 		// well
 		if (((InstanceInvokeExpr) invokeExpr).getBase() == taintedPath.getPlainValue())
-			return new TwoElementSet<AccessPath>(taintedPath, new AccessPath(
+			return new TwoElementSet<AccessPath>(taintedPath, AccessPathFactory.v().createAccessPath(
 					invokeExpr.getArg(2), true));
 		return Collections.singleton(taintedPath);
 	}
@@ -330,12 +450,7 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 	 */
 	private MethodWrapType getMethodWrapType(String subSig, SootClass parentClass) {
 		// If this is not one of the supported classes, we skip it
-		boolean isSupported = false;
-		for (String supportedClass : this.includeList)
-			if (parentClass.getName().startsWith(supportedClass)) {
-				isSupported = true;
-				break;
-			}
+		boolean isSupported = isIncluded(parentClass);
 		
 		// Do we always model equals() and hashCode()?
 		if (alwaysModelEqualsHashCode
@@ -422,9 +537,10 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 	@Override
 	public boolean isExclusiveInternal(Stmt stmt, AccessPath taintedPath, IInfoflowCFG icfg) {
 		SootMethod method = stmt.getInvokeExpr().getMethod();
+		MethodDispatch dispatch = getDispatch(method);
 		
 		// Do we have an entry for at least one entry in the given class?
-		if (hasWrappedMethodsForClass(method.getDeclaringClass(), true, true, true))
+		if (dispatch.hasWrappedMethods)
 			return true;
 
 		// In aggressive mode, we always taint the return value if the base
@@ -435,8 +551,7 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 				return true;
 		}
 		
-		final MethodWrapType wrapType = methodWrapCache.getUnchecked(method);
-		return wrapType != MethodWrapType.NotRegistered;
+		return dispatch.wrapType != MethodWrapType.NotRegistered;
 	}
 	
 	/**
@@ -449,6 +564,7 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 	 */
 	public void setAggressiveMode(boolean aggressiveMode) {
 		this.aggressiveMode = aggressiveMode;
+		invalidateCaches();
 	}
 	
 	/**
@@ -470,6 +586,7 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 	 */
 	public void setAlwaysModelEqualsHashCode(boolean alwaysModelEqualsHashCode) {
 		this.alwaysModelEqualsHashCode = alwaysModelEqualsHashCode;
+		invalidateCaches();
 	}
 	
 	/**
@@ -490,6 +607,7 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 	 */
 	public void addIncludePrefix(String prefix) {
 		this.includeList.add(prefix);
+		invalidateCaches();
 	}
 	
 	/**
@@ -504,6 +622,54 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 			this.classList.put(className, methods);
 		}
 		methods.add(subSignature);
+		invalidateCaches();
+	}
+	
+	/**
+	 * Gets the methods for which new taints are created. This is a mapping
+	 * from class names to sets of subsignatures.
+	 * @return The methods for which new taints are created
+	 */
+	public Map<String, Set<String>> getClassList() {
+		return Collections.unmodifiableMap(this.classList);
+	}
+	
+	/**
+	 * Gets the methods that are explicitly excluded from taint wrapping. This
+	 * is a mapping from class names to sets of subsignatures.
+	 * @return The methods that are excluded from taint wrapping
+	 */
+	public Map<String, Set<String>> getExcludeList() {
+		return Collections.unmodifiableMap(this.excludeList);
+	}
+	
+	/**
+	 * Gets the methods that kill taints. This is a mapping from class names
+	 * to sets of subsignatures.
+	 * @return The methods that kill taints
+	 */
+	public Map<String, Set<String>> getKillList() {
+		return Collections.unmodifiableMap(this.killList);
+	}
+	
+	/**
+	 * Gets the prefixes of the names of the classes that are included when
+	 * generating taints
+	 * @return The prefixes of the included class names
+	 */
+	public Set<String> getIncludeList() {
+		return Collections.unmodifiableSet(this.includeList);
+	}
+	
+	/**
+	 * Sets the maximum number of call sites for which the computed taints
+	 * are kept in memory. This setting takes effect
+	 * when the taint wrapper is initialized.
+	 * @param resultCacheSize The maximum number of cached results. Pass 0 to
+	 * disable the cache.
+	 */
+	public void setResultCacheSize(long resultCacheSize) {
+		this.resultCacheSize = resultCacheSize;
 	}
 	
 	@Override
@@ -518,15 +684,10 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 			return true;
 		
 		// Check for special models
-		final String subSig = method.getSubSignature();
-		if (alwaysModelEqualsHashCode
-				&& (subSig.equals("boolean equals(java.lang.Object)") || subSig.equals("int hashCode()")))
+		MethodDispatch dispatch = getDispatch(method);
+		if (alwaysModelEqualsHashCode && dispatch.equalsHashCode)
 			return true;
-
-		for (String supportedClass : this.includeList)
-			if (method.getDeclaringClass().getName().startsWith(supportedClass))
-				return true;
-		return false;
+		return dispatch.included;
 	}
 	
 	@Override
@@ -540,9 +701,7 @@ public class EasyTaintWrapper extends AbstractTaintWrapper implements Cloneable
 			return false;
 				
 		// We need a method that can create a taint
-		if (!aggressiveMode
-				&& getMethodWrapType(method.getSubSignature(), method.getDeclaringClass()) 
-						!= MethodWrapType.CreateTaint)
+		if (!aggressiveMode && getDispatch(method).wrapType != MethodWrapType.CreateTaint)
 			return false;
 		
 		// We need at least one non-constant argument or a tainted base
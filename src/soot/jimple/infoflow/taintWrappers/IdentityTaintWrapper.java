@@ -18,6 +18,7 @@ import soot.Value;
 import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.Stmt;
 import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
 import soot.jimple.infoflow.solver.IInfoflowCFG;
 import soot.jimple.internal.JAssignStmt;
 
@@ -51,7 +52,7 @@ public class IdentityTaintWrapper extends AbstractTaintWrapper {
 			// If the base object is tainted, the return value is always tainted
 			if (taintedPath.getPlainValue().equals(iiExpr.getBase()))
 				if (stmt instanceof JAssignStmt)
-					return Collections.singleton(new AccessPath(((JAssignStmt)stmt).getLeftOp(),
+					return Collections.singleton(AccessPathFactory.v().createAccessPath(((JAssignStmt)stmt).getLeftOp(),
 							taintedPath.getTaintSubFields()));
 		}
 			
@@ -59,7 +60,7 @@ public class IdentityTaintWrapper extends AbstractTaintWrapper {
 		for (Value param : stmt.getInvokeExpr().getArgs())
 			if (taintedPath.getPlainValue().equals(param))
 				if (stmt instanceof JAssignStmt)
-					return Collections.singleton(new AccessPath(((JAssignStmt)stmt).getLeftOp(),
+					return Collections.singleton(AccessPathFactory.v().createAccessPath(((JAssignStmt)stmt).getLeftOp(),
 							taintedPath.getTaintSubFields()));
 		
 		return Collections.emptySet();
@@ -10,6 +10,7 @@
  ******************************************************************************/
 package soot.jimple.infoflow.taintWrappers;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -42,6 +43,14 @@ public class TaintWrapperSet extends AbstractTaintWrapper {
 	public void addWrapper(ITaintPropagationWrapper wrapper) {
 		this.wrappers.add(wrapper);
 	}
+	
+	/**
+	 * Gets the wrappers in this set
+	 * @return The wrappers in this set
+	 */
+	public Set<ITaintPropagationWrapper> getWrappers() {
+		return Collections.unmodifiableSet(this.wrappers);
+	}
 
 	@Override
 	public Set<AccessPath> getTaintsForMethod(Stmt stmt, AccessPath taintedPath,
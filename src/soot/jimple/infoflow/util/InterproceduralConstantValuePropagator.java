@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,8 +56,11 @@ import soot.jimple.ThrowStmt;
 import soot.jimple.infoflow.entryPointCreators.BaseEntryPointCreator;
 import soot.jimple.infoflow.entryPointCreators.IEntryPointCreator;
 import soot.jimple.infoflow.solver.IInfoflowCFG;
+import soot.jimple.infoflow.solver.MethodEffectSummaries;
+import soot.jimple.infoflow.solver.MethodEffectSummaries.ISideEffectCondition;
 import soot.jimple.infoflow.source.ISourceSinkManager;
 import soot.jimple.infoflow.taintWrappers.ITaintPropagationWrapper;
+import soot.jimple.infoflow.util.PartitionedProcessor.IElementProcessor;
 import soot.jimple.internal.JAssignStmt;
 import soot.jimple.toolkits.callgraph.Edge;
 import soot.jimple.toolkits.scalar.ConstantPropagatorAndFolder;
@@ -70,6 +74,8 @@ import soot.util.queue.QueueReader;
 public class InterproceduralConstantValuePropagator extends SceneTransformer {
 	
     private final Logger logger = LoggerFactory.getLogger(getClass());
+    
+	private static final int FILTER_PARTITION_SIZE = 64;
 
     private final IInfoflowCFG icfg;
 	private final Set<SootMethod> excludedMethods;
@@ -84,6 +90,20 @@ public class InterproceduralConstantValuePropagator extends SceneTransformer {
 	protected final Map<SootMethod, Boolean> methodFieldReads =
 			new ConcurrentHashMap<SootMethod, Boolean>();
 	
+	protected MethodEffectSummaries effectSummaries = null;
+	
+	/**
+	 * The parameters of each method into which constants have already been
+	 * propagated
+	 */
+	protected final Map<SootMethod, boolean[]> propagatedParameters =
+			new HashMap<SootMethod, boolean[]>();
+	
+	private int callEdgesRemoved = 0;
+	private int callSitesFolded = 0;
+	private int methodsChecked = 0;
+	private int methodsProcessed = 0;
+	
 	protected SootClass exceptionClass = null;
 	protected final Map<SootClass, SootMethod> exceptionThrowers =
 			new HashMap<SootClass, SootMethod>();
@@ -137,32 +157,56 @@ public class InterproceduralConstantValuePropagator extends SceneTransformer {
 		logger.info("Removing side-effect free methods is "
 				+ (removeSideEffectFreeMethods ? "enabled" : "disabled"));
 		
+		long beforePropagation = System.nanoTime();
+		
 		// Collect all application methods that take parameters or return values
+		List<SootMethod> worklist = new ArrayList<SootMethod>();
 		for (QueueReader<MethodOrMethodContext> rdr = Scene.v().getReachableMethods().listener();
 				rdr.hasNext(); ) {
 			MethodOrMethodContext mom = rdr.next();
 			SootMethod sm = mom.method();
-			if (sm == null || !sm.hasActiveBody())
-				continue;
-			
-			// If this callee is excluded, we do not propagate out of it
-			if (excludedMethods != null && excludedMethods.contains(sm))
-				continue;
-			if (SystemClassHandler.isClassInSystemPackage(sm.getDeclaringClass().getName()))
-				continue;
+			if (isPropagationCandidate(sm))
+				worklist.add(sm);
+		}
+		
+		// Process the methods until no more constants can be propagated. Only
+		// methods whose callers or callees have changed are visited again.
+		// Finding out whether a method has anything to propagate does not
+		// modify the program, so this is done in parallel. The propagation
+		// itself changes the bodies of neighboring methods and the callgraph
+		// and is thus done sequentially.
+		int rounds = 0;
+		while (!worklist.isEmpty()) {
+			rounds++;
+			methodsChecked += worklist.size();
+			List<SootMethod> hasConstants = filterMethodsWithConstants(worklist);
 			
-			if (sm.getReturnType() != VoidType.v() || sm.getParameterCount() > 0) {
-				if (sm.getParameterCount() > 0)
-					propagateConstantsIntoCallee(sm);
+			Set<SootMethod> changedMethods = new LinkedHashSet<SootMethod>();
+			for (SootMethod sm : hasConstants) {
+				methodsProcessed++;
+				if (sm.getParameterCount() > 0 && propagateConstantsIntoCallee(sm))
+					addCallees(sm, changedMethods);
 				
 				if (typeSupportsConstants(sm.getReturnType()))
-					propagateReturnValueIntoCallers(sm);
+					for (SootMethod caller : propagateReturnValueIntoCallers(sm)) {
+						changedMethods.add(caller);
+						addCallees(caller, changedMethods);
+					}
 			}
+			
+			worklist.clear();
+			for (SootMethod sm : changedMethods)
+				if (isPropagationCandidate(sm))
+					worklist.add(sm);
 		}
 		
+		logger.info("Constant propagation took {} seconds in {} rounds. {} of {} method checks "
+				+ "found constants to propagate, {} call sites were folded",
+				(System.nanoTime() - beforePropagation) / 1E9, rounds, methodsProcessed,
+				methodsChecked, callSitesFolded);
+		
 		// Check for calls we can remove altogether
 		if (removeSideEffectFreeMethods) {
-			int callEdgesRemoved = 0;
 			for (QueueReader<MethodOrMethodContext> rdr = Scene.v().getReachableMethods().listener();
 					rdr.hasNext(); ) {
 				MethodOrMethodContext mom = rdr.next();
@@ -225,7 +269,7 @@ public class InterproceduralConstantValuePropagator extends SceneTransformer {
 						removeCallSite(s, sm);
 				}
 			}
-			System.out.println("Removed " + callEdgesRemoved + " call edges");
+			logger.info("Removed {} call edges", callEdgesRemoved);
 		}
 		
 		// If we introduced a new class, we have to reset the hierarchy
@@ -326,11 +370,12 @@ public class InterproceduralConstantValuePropagator extends SceneTransformer {
 	}
 	
 	/**
-	 * Propagates the return value of the given method into all of its callers
-	 * if the value is constant
-	 * @param sm The method whose value to propagate
+	 * Gets the constant value returned by the given method
+	 * @param sm The method whose return value to get
+	 * @return The constant value on which all exit nodes of the given method
+	 * agree, or null if there is no such value
 	 */
-	private void propagateReturnValueIntoCallers(SootMethod sm) {		
+	private Constant getConstantReturnValue(SootMethod sm) {
 		// We need to make sure that all exit nodes agree on the same
 		// constant value
 		Constant value = null;
@@ -341,73 +386,89 @@ public class InterproceduralConstantValuePropagator extends SceneTransformer {
 			
 			ReturnStmt retStmt = (ReturnStmt) retSite;
 			if (!(retStmt.getOp() instanceof Constant))
-				return;
+				return null;
 			
 			if (value != null && retStmt.getOp() != value)
-				return;
+				return null;
 			value = (Constant) retStmt.getOp();
 		}
+		return value;
+	}
+	
+	/**
+	 * Propagates the return value of the given method into all of its callers
+	 * if the value is constant
+	 * @param sm The method whose value to propagate
+	 * @return The callers whose bodies have been changed
+	 */
+	private Set<SootMethod> propagateReturnValueIntoCallers(SootMethod sm) {		
+		Constant value = getConstantReturnValue(sm);
+		if (value == null)
+			return Collections.emptySet();
 		
 		// Propagate the return value into the callers
-		if (value != null)
-			for (Unit callSite : icfg.getCallersOf(sm))
-				if (callSite instanceof AssignStmt) {
-					AssignStmt assign = (AssignStmt) callSite;
-					
-					// If we have a taint wrapper, we need to keep the stub untouched since we
-					// don't know what artificial taint the wrapper will come up with
-					if (taintWrapper != null && taintWrapper.supportsCallee(assign, icfg))
-						continue;
+		Set<SootMethod> changedCallers = new HashSet<SootMethod>();
+		for (Unit callSite : icfg.getCallersOf(sm))
+			if (callSite instanceof AssignStmt) {
+				AssignStmt assign = (AssignStmt) callSite;
+				
+				// If we have a taint wrapper, we need to keep the stub untouched since we
+				// don't know what artificial taint the wrapper will come up with
+				if (taintWrapper != null && taintWrapper.supportsCallee(assign, icfg))
+					continue;
+				
+				// If this is a call to a source method, we do not propagate
+				// constants out of the callee for not destroying data flows
+				if (sourceSinkManager != null
+						&& sourceSinkManager.getSourceInfo(assign, icfg) != null)
+					continue;
+				
+				// Make sure that we don't access anything we have already removed
+				SootMethod caller = icfg.getMethodOf(assign);
+				if (!caller.getActiveBody().getUnits().contains(assign))
+					continue;
+				
+				// If the call site has multiple callees, we cannot propagate a
+				// single constant
+				if (icfg.getCalleesOfCallAt(callSite).size() > 1)
+					continue;
+				
+				// If the call has no side effects, we can remove it altogether,
+				// otherwise we can just propagate the return value
+				Unit assignConst = Jimple.v().newAssignStmt(assign.getLeftOp(), value);
+				if (!hasSideEffectsOrCallsSink(sm)) {
+					// If this method threw an exception, we have to make up for it
+					fixExceptions(caller, callSite);
 					
-					// If this is a call to a source method, we do not propagate
-					// constants out of the callee for not destroying data flows
-					if (sourceSinkManager != null
-							&& sourceSinkManager.getSourceInfo(assign, icfg) != null)
-						continue;
+					// We don't have side effects, so we can just change
+					// a = b.foo() into a = 0.
+					caller.getActiveBody().getUnits().swapWith(assign, assignConst);
+					if (excludedMethods == null || !excludedMethods.contains(caller))
+						ConstantPropagatorAndFolder.v().transform(caller.getActiveBody());
 					
-					// Make sure that we don't access anything we have already removed
-					SootMethod caller = icfg.getMethodOf(assign);
-					if (!caller.getActiveBody().getUnits().contains(assign))
-						continue;
+					// Fix the callgraph
+					if (Scene.v().hasCallGraph())
+						Scene.v().getCallGraph().removeAllEdgesOutOf(assign);
+					callSitesFolded++;
+				}
+				else {
+					// We have side effects, so we need to keep the method call. Change
+					// a = b.foo() into b.foo(); a = 0;
+					caller.getActiveBody().getUnits().insertAfter(assignConst, assign);
+					if (excludedMethods == null || !excludedMethods.contains(caller))
+						ConstantPropagatorAndFolder.v().transform(caller.getActiveBody());
+					caller.getActiveBody().getUnits().remove(assignConst);
 					
-					// If the call site has multiple callees, we cannot propagate a
-					// single constant
-					if (icfg.getCalleesOfCallAt(callSite).size() > 1)
-						continue;
+					Stmt inv = Jimple.v().newInvokeStmt(assign.getInvokeExpr());
+					caller.getActiveBody().getUnits().swapWith(assign, inv);
 					
-					// If the call has no side effects, we can remove it altogether,
-					// otherwise we can just propagate the return value
-					Unit assignConst = Jimple.v().newAssignStmt(assign.getLeftOp(), value);
-					if (!hasSideEffectsOrCallsSink(sm)) {
-						// If this method threw an exception, we have to make up for it
-						fixExceptions(caller, callSite);
-						
-						// We don't have side effects, so we can just change
-						// a = b.foo() into a = 0.
-						caller.getActiveBody().getUnits().swapWith(assign, assignConst);
-						if (!excludedMethods.contains(caller))
-							ConstantPropagatorAndFolder.v().transform(caller.getActiveBody());
-						
-						// Fix the callgraph
-						if (Scene.v().hasCallGraph())
-							Scene.v().getCallGraph().removeAllEdgesOutOf(assign);
-					}
-					else {
-						// We have side effects, so we need to keep the method call. Change
-						// a = b.foo() into b.foo(); a = 0;
-						caller.getActiveBody().getUnits().insertAfter(assignConst, assign);
-						if (!excludedMethods.contains(caller)) 
-							ConstantPropagatorAndFolder.v().transform(caller.getActiveBody());
-						caller.getActiveBody().getUnits().remove(assignConst);
-						
-						Stmt inv = Jimple.v().newInvokeStmt(assign.getInvokeExpr());
-						caller.getActiveBody().getUnits().swapWith(assign, inv);
-						
-						// Fix the callgraph
-						if (Scene.v().hasCallGraph())
-							Scene.v().getCallGraph().swapEdgesOutOf(assign, inv);
-					}
+					// Fix the callgraph
+					if (Scene.v().hasCallGraph())
+						Scene.v().getCallGraph().swapEdgesOutOf(assign, inv);
 				}
+				changedCallers.add(caller);
+			}
+		return changedCallers;
 	}
 	
 	private void fixExceptions(SootMethod caller, Unit callSite) {
@@ -497,9 +558,60 @@ public class InterproceduralConstantValuePropagator extends SceneTransformer {
 	 * side-effects or calls a sink method, otherwise false.
 	 */
 	private boolean hasSideEffectsOrCallsSink(SootMethod method) {
+		MethodEffectSummaries summaries = getEffectSummaries();
+		if (summaries.hasSummary(method))
+			return summaries.hasSideEffects(method);
 		return hasSideEffectsOrCallsSink(method, new HashSet<SootMethod>());
 	}
 	
+	/**
+	 * Gets the summaries that record for all reachable methods whether they
+	 * or one of their transitive callees have side effects or call a sink.
+	 * The summaries are computed on first use. Since this transformer only
+	 * removes effects, they remain conservative afterwards.
+	 * @return The effect summaries for all reachable methods
+	 */
+	private MethodEffectSummaries getEffectSummaries() {
+		if (effectSummaries == null) {
+			List<SootMethod> methods = new ArrayList<SootMethod>();
+			for (QueueReader<MethodOrMethodContext> rdr = Scene.v().getReachableMethods().listener();
+					rdr.hasNext(); )
+				methods.add(rdr.next().method());
+			
+			effectSummaries = new MethodEffectSummaries(Scene.v().getCallGraph(),
+					methods, new ISideEffectCondition() {
+				
+				@Override
+				public boolean isEffectFree(SootMethod method) {
+					// Android stub methods just throw a stub exception, which
+					// will never happen in practice
+					return methodIsAndroidStub(method);
+				}
+				
+				@Override
+				public boolean hasSideEffect(SootMethod method, Stmt stmt) {
+					if (stmt instanceof AssignStmt) {
+						AssignStmt assign = (AssignStmt) stmt;
+						if (assign.getLeftOp() instanceof FieldRef
+								|| assign.getLeftOp() instanceof ArrayRef)
+							return true;
+					}
+					
+					// We need to conservatively assume that the taint wrapper
+					// can do anything
+					if (taintWrapper != null && taintWrapper.supportsCallee(stmt, icfg))
+						return true;
+					
+					// Calls to sinks must be kept
+					return stmt.containsInvokeExpr() && sourceSinkManager != null
+							&& sourceSinkManager.isSink(stmt, icfg);
+				}
+				
+			}, false, Runtime.getRuntime().availableProcessors());
+		}
+		return effectSummaries;
+	}
+	
 	/**
 	 * Checks whether the given method or one of its transitive callees has
 	 * side-effects or calls a sink method
@@ -698,15 +810,18 @@ public class InterproceduralConstantValuePropagator extends SceneTransformer {
 	}
 
 	/**
-	 * Checks whether all call sites for a specific callee agree on the same
-	 * constant value for one or more arguments. If so, these constant values
-	 * are propagated into the callee.
+	 * Gets the constant values on which all call sites for a specific callee
+	 * agree. Parameters into which a constant has already been propagated
+	 * are not considered.
 	 * @param sm The method for which to look for call sites.
+	 * @return An array with one entry per parameter that contains the
+	 * constant value of this parameter or null if the parameter is not
+	 * constant. If no parameter is constant, null is returned.
 	 */
-	private void propagateConstantsIntoCallee(SootMethod sm) {		
+	private Constant[] getConstantArguments(SootMethod sm) {
 		Collection<Unit> callSites = icfg.getCallersOf(sm);
 		if (callSites.isEmpty())
-			return;
+			return null;
 		
 		boolean[] isConstant = new boolean[sm.getParameterCount()];
 		Constant[] values = new Constant[sm.getParameterCount()];
@@ -739,31 +854,128 @@ public class InterproceduralConstantValuePropagator extends SceneTransformer {
 					isConstant[i] = false;
 			}
 		}
+		if (!hasCallSites)
+			return null;
 		
-		if (hasCallSites) {
-			// Get the constant parameters
-			List<Unit> inserted = null;
-			for (int i = 0; i < isConstant.length; i++) {
-				if (isConstant[i]) {
-					// Propagate the constant into the callee
-					Local paramLocal = sm.getActiveBody().getParameterLocal(i);
-					Unit point = getFirstNonIdentityStmt(sm);
-					Unit assignConst = Jimple.v().newAssignStmt(paramLocal, values[i]);
-					sm.getActiveBody().getUnits().insertBefore(assignConst, point);
-					
-					if (inserted == null)
-						inserted = new ArrayList<Unit>();
-					inserted.add(assignConst);
-				}
+		boolean[] propagated = propagatedParameters.get(sm);
+		boolean found = false;
+		for (int i = 0; i < isConstant.length; i++) {
+			if (!isConstant[i] || (propagated != null && propagated[i]))
+				values[i] = null;
+			found |= values[i] != null;
+		}
+		return found ? values : null;
+	}
+	
+	/**
+	 * Checks whether all call sites for a specific callee agree on the same
+	 * constant value for one or more arguments. If so, these constant values
+	 * are propagated into the callee.
+	 * @param sm The method for which to look for call sites.
+	 * @return True if at least one constant has been propagated into the
+	 * given method, otherwise false
+	 */
+	private boolean propagateConstantsIntoCallee(SootMethod sm) {		
+		Constant[] values = getConstantArguments(sm);
+		if (values == null)
+			return false;
+		
+		boolean[] propagated = propagatedParameters.get(sm);
+		if (propagated == null) {
+			propagated = new boolean[values.length];
+			propagatedParameters.put(sm, propagated);
+		}
+		
+		// Get the constant parameters
+		List<Unit> inserted = new ArrayList<Unit>();
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				// Propagate the constant into the callee
+				Local paramLocal = sm.getActiveBody().getParameterLocal(i);
+				Unit point = getFirstNonIdentityStmt(sm);
+				Unit assignConst = Jimple.v().newAssignStmt(paramLocal, values[i]);
+				sm.getActiveBody().getUnits().insertBefore(assignConst, point);
+				inserted.add(assignConst);
+				propagated[i] = true;
 			}
+		}
+		
+		// Propagate the constant inside the callee
+		ConstantPropagatorAndFolder.v().transform(sm.getActiveBody());
+		for (Unit u : inserted)
+			sm.getActiveBody().getUnits().remove(u);
+		return true;
+	}
+	
+	/**
+	 * Checks whether constants can be propagated into or out of the given
+	 * method. Only application methods that take parameters or return values
+	 * are considered.
+	 * @param sm The method to check
+	 * @return True if constants can be propagated into or out of the given
+	 * method, otherwise false
+	 */
+	private boolean isPropagationCandidate(SootMethod sm) {
+		if (sm == null || !sm.hasActiveBody())
+			return false;
+		
+		// If this callee is excluded, we do not propagate out of it
+		if (excludedMethods != null && excludedMethods.contains(sm))
+			return false;
+		if (SystemClassHandler.isClassInSystemPackage(sm.getDeclaringClass().getName()))
+			return false;
+		
+		return sm.getReturnType() != VoidType.v() || sm.getParameterCount() > 0;
+	}
+	
+	/**
+	 * Checks whether there is a constant to propagate into or out of the
+	 * given method
+	 * @param sm The method to check
+	 * @return True if there is a constant argument or a constant return
+	 * value, otherwise false
+	 */
+	private boolean hasConstantsToPropagate(SootMethod sm) {
+		if (sm.getParameterCount() > 0 && getConstantArguments(sm) != null)
+			return true;
+		return typeSupportsConstants(sm.getReturnType())
+				&& getConstantReturnValue(sm) != null;
+	}
+	
+	/**
+	 * Gets all methods from the given list that have constants to propagate.
+	 * This only reads the program, so the methods are checked in parallel.
+	 * @param methods The methods to check
+	 * @return The methods from the given list that have constants to
+	 * propagate in their original order
+	 */
+	private List<SootMethod> filterMethodsWithConstants(final List<SootMethod> methods) {
+		final boolean[] hasConstants = new boolean[methods.size()];
+		PartitionedProcessor.process(methods, new IElementProcessor<SootMethod>() {
 			
-			// Propagate the constant inside the callee
-			if (inserted != null) {
-				ConstantPropagatorAndFolder.v().transform(sm.getActiveBody());
-				for (Unit u : inserted)
-					sm.getActiveBody().getUnits().remove(u);
+			@Override
+			public void process(SootMethod sm, int index) {
+				hasConstants[index] = hasConstantsToPropagate(sm);
 			}
-		}
+			
+		}, FILTER_PARTITION_SIZE, Runtime.getRuntime().availableProcessors(),
+				"looking for constants");
+		
+		List<SootMethod> res = new ArrayList<SootMethod>();
+		for (int i = 0; i < methods.size(); i++)
+			if (hasConstants[i])
+				res.add(methods.get(i));
+		return res;
+	}
+	
+	/**
+	 * Adds all methods called by the given method to the given set
+	 * @param sm The method whose callees to add
+	 * @param callees The set to which to add the callees
+	 */
+	private void addCallees(SootMethod sm, Set<SootMethod> callees) {
+		for (Iterator<Edge> edgeIt = Scene.v().getCallGraph().edgesOutOf(sm); edgeIt.hasNext(); )
+			callees.add(edgeIt.next().tgt());
 	}
 	
 	/**
@@ -785,4 +997,41 @@ public class InterproceduralConstantValuePropagator extends SceneTransformer {
 		return null;
 	}
 	
+	/**
+	 * Gets the number of call edges removed because the callee had no side
+	 * effects
+	 * @return The number of call edges removed in the last run
+	 */
+	public int getCallEdgesRemoved() {
+		return this.callEdgesRemoved;
+	}
+	
+	/**
+	 * Gets the number of call sites replaced by the constant return value of
+	 * the callee
+	 * @return The number of call sites folded in the last run
+	 */
+	public int getCallSitesFolded() {
+		return this.callSitesFolded;
+	}
+	
+	/**
+	 * Gets the number of times a method was checked for constants to
+	 * propagate
+	 * @return The number of method checks in the last run
+	 */
+	public int getMethodsChecked() {
+		return this.methodsChecked;
+	}
+	
+	/**
+	 * Gets the number of times constants were propagated into or out of a
+	 * method
+	 * @return The number of method visits in the last run that had
+	 * constants to propagate
+	 */
+	public int getMethodsProcessed() {
+		return this.methodsProcessed;
+	}
+	
 }
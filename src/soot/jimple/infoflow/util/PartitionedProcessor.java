@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utility class for processing all elements of a list in parallel. The list
+ * is split into small partitions that the worker threads take one after
+ * another from a shared counter, so that a few expensive elements do not
+ * leave the other threads idle.
+ */
+public class PartitionedProcessor {
+
+	/**
+	 * Processes a single element of a list. Implementations must be
+	 * thread-safe, because different elements are processed concurrently.
+	 *
+	 * @param <T> The type of the elements
+	 */
+	public interface IElementProcessor<T> {
+
+		/**
+		 * Processes the given element
+		 * @param element The element to process
+		 * @param index The index of the element in the list
+		 */
+		public void process(T element, int index);
+
+	}
+
+	/**
+	 * Processes all elements of the given list. If there are fewer
+	 * partitions than threads, fewer threads are used. With a single thread,
+	 * the elements are processed in order on the calling thread.
+	 * @param elements The elements to process
+	 * @param processor The processor to apply to every element
+	 * @param partitionSize The number of elements a thread takes at once
+	 * @param numThreads The maximum number of threads to use
+	 * @param description A description of the work in progressive form,
+	 * e.g., "scanning for sources", for error messages
+	 */
+	public static <T> void process(final List<T> elements,
+			final IElementProcessor<T> processor, final int partitionSize,
+			int numThreads, String description) {
+		numThreads = Math.min(numThreads, (elements.size() + partitionSize - 1)
+				/ partitionSize);
+		if (numThreads <= 1) {
+			for (int i = 0; i < elements.size(); i++)
+				processor.process(elements.get(i), i);
+			return;
+		}
+
+		final AtomicInteger nextPartition = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>(numThreads);
+			for (int i = 0; i < numThreads; i++)
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						int start;
+						while ((start = nextPartition.getAndAdd(partitionSize)) < elements.size()) {
+							int end = Math.min(start + partitionSize, elements.size());
+							for (int j = start; j < end; j++)
+								processor.process(elements.get(j), j);
+						}
+						return null;
+					}
+
+				}));
+
+			for (Future<Void> future : futures)
+				future.get();
+		}
+		catch (InterruptedException ex) {
+			throw new RuntimeException("Interrupted while " + description, ex);
+		}
+		catch (ExecutionException ex) {
+			throw new RuntimeException("Error while " + description, ex.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
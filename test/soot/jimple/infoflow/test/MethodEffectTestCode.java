@@ -0,0 +1,513 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test;
+
+import soot.jimple.infoflow.test.android.ConnectionManager;
+import soot.jimple.infoflow.test.android.TelephonyManager;
+
+public class MethodEffectTestCode {
+	
+	private static String staticField;
+	private static String otherField;
+	private String instanceField;
+	private static String dagField;
+	
+	public void effectTest() {
+		String imei = TelephonyManager.getDeviceId();
+		writeCaller(imei);
+		String data = readLeaf();
+		recursiveA(3);
+		pure(2);
+		instanceWrite(data);
+		
+		ConnectionManager cm = new ConnectionManager();
+		cm.publish(data);
+	}
+	
+	private static String readLeaf() {
+		return staticField;
+	}
+	
+	private static void writeLeaf(String data) {
+		staticField = data;
+	}
+	
+	private static void writeCaller(String data) {
+		writeLeaf(data);
+	}
+	
+	private static int recursiveA(int i) {
+		if (i <= 0)
+			return 0;
+		return recursiveB(i - 1);
+	}
+	
+	private static int recursiveB(int i) {
+		otherField = "recursion";
+		return recursiveA(i);
+	}
+	
+	private static int pure(int i) {
+		return i * 2;
+	}
+	
+	private void instanceWrite(String data) {
+		this.instanceField = data;
+	}
+	
+	/**
+	 * Entry point into a wide and deep call DAG. Every method calls all
+	 * methods in the next layer, and the first two methods in every layer
+	 * call each other. Only the first method in the last layer writes a
+	 * field.
+	 */
+	public void dagTest() {
+		String imei = TelephonyManager.getDeviceId();
+		dag0_0(2);
+		dag0_1(2);
+		dag0_2(2);
+		dag0_3(2);
+		dag0_4(2);
+		dag0_5(2);
+		ConnectionManager cm = new ConnectionManager();
+		cm.publish(imei);
+	}
+	
+	private static void dag0_0(int n) {
+		dag1_0(n);
+		dag1_1(n);
+		dag1_2(n);
+		dag1_3(n);
+		dag1_4(n);
+		dag1_5(n);
+		if (n > 0)
+			dag0_1(n - 1);
+	}
+	
+	private static void dag0_1(int n) {
+		dag1_0(n);
+		dag1_1(n);
+		dag1_2(n);
+		dag1_3(n);
+		dag1_4(n);
+		dag1_5(n);
+		if (n > 0)
+			dag0_0(n - 1);
+	}
+	
+	private static void dag0_2(int n) {
+		dag1_0(n);
+		dag1_1(n);
+		dag1_2(n);
+		dag1_3(n);
+		dag1_4(n);
+		dag1_5(n);
+	}
+	
+	private static void dag0_3(int n) {
+		dag1_0(n);
+		dag1_1(n);
+		dag1_2(n);
+		dag1_3(n);
+		dag1_4(n);
+		dag1_5(n);
+	}
+	
+	private static void dag0_4(int n) {
+		dag1_0(n);
+		dag1_1(n);
+		dag1_2(n);
+		dag1_3(n);
+		dag1_4(n);
+		dag1_5(n);
+	}
+	
+	private static void dag0_5(int n) {
+		dag1_0(n);
+		dag1_1(n);
+		dag1_2(n);
+		dag1_3(n);
+		dag1_4(n);
+		dag1_5(n);
+	}
+	
+	private static void dag1_0(int n) {
+		dag2_0(n);
+		dag2_1(n);
+		dag2_2(n);
+		dag2_3(n);
+		dag2_4(n);
+		dag2_5(n);
+		if (n > 0)
+			dag1_1(n - 1);
+	}
+	
+	private static void dag1_1(int n) {
+		dag2_0(n);
+		dag2_1(n);
+		dag2_2(n);
+		dag2_3(n);
+		dag2_4(n);
+		dag2_5(n);
+		if (n > 0)
+			dag1_0(n - 1);
+	}
+	
+	private static void dag1_2(int n) {
+		dag2_0(n);
+		dag2_1(n);
+		dag2_2(n);
+		dag2_3(n);
+		dag2_4(n);
+		dag2_5(n);
+	}
+	
+	private static void dag1_3(int n) {
+		dag2_0(n);
+		dag2_1(n);
+		dag2_2(n);
+		dag2_3(n);
+		dag2_4(n);
+		dag2_5(n);
+	}
+	
+	private static void dag1_4(int n) {
+		dag2_0(n);
+		dag2_1(n);
+		dag2_2(n);
+		dag2_3(n);
+		dag2_4(n);
+		dag2_5(n);
+	}
+	
+	private static void dag1_5(int n) {
+		dag2_0(n);
+		dag2_1(n);
+		dag2_2(n);
+		dag2_3(n);
+		dag2_4(n);
+		dag2_5(n);
+	}
+	
+	private static void dag2_0(int n) {
+		dag3_0(n);
+		dag3_1(n);
+		dag3_2(n);
+		dag3_3(n);
+		dag3_4(n);
+		dag3_5(n);
+		if (n > 0)
+			dag2_1(n - 1);
+	}
+	
+	private static void dag2_1(int n) {
+		dag3_0(n);
+		dag3_1(n);
+		dag3_2(n);
+		dag3_3(n);
+		dag3_4(n);
+		dag3_5(n);
+		if (n > 0)
+			dag2_0(n - 1);
+	}
+	
+	private static void dag2_2(int n) {
+		dag3_0(n);
+		dag3_1(n);
+		dag3_2(n);
+		dag3_3(n);
+		dag3_4(n);
+		dag3_5(n);
+	}
+	
+	private static void dag2_3(int n) {
+		dag3_0(n);
+		dag3_1(n);
+		dag3_2(n);
+		dag3_3(n);
+		dag3_4(n);
+		dag3_5(n);
+	}
+	
+	private static void dag2_4(int n) {
+		dag3_0(n);
+		dag3_1(n);
+		dag3_2(n);
+		dag3_3(n);
+		dag3_4(n);
+		dag3_5(n);
+	}
+	
+	private static void dag2_5(int n) {
+		dag3_0(n);
+		dag3_1(n);
+		dag3_2(n);
+		dag3_3(n);
+		dag3_4(n);
+		dag3_5(n);
+	}
+	
+	private static void dag3_0(int n) {
+		dag4_0(n);
+		dag4_1(n);
+		dag4_2(n);
+		dag4_3(n);
+		dag4_4(n);
+		dag4_5(n);
+		if (n > 0)
+			dag3_1(n - 1);
+	}
+	
+	private static void dag3_1(int n) {
+		dag4_0(n);
+		dag4_1(n);
+		dag4_2(n);
+		dag4_3(n);
+		dag4_4(n);
+		dag4_5(n);
+		if (n > 0)
+			dag3_0(n - 1);
+	}
+	
+	private static void dag3_2(int n) {
+		dag4_0(n);
+		dag4_1(n);
+		dag4_2(n);
+		dag4_3(n);
+		dag4_4(n);
+		dag4_5(n);
+	}
+	
+	private static void dag3_3(int n) {
+		dag4_0(n);
+		dag4_1(n);
+		dag4_2(n);
+		dag4_3(n);
+		dag4_4(n);
+		dag4_5(n);
+	}
+	
+	private static void dag3_4(int n) {
+		dag4_0(n);
+		dag4_1(n);
+		dag4_2(n);
+		dag4_3(n);
+		dag4_4(n);
+		dag4_5(n);
+	}
+	
+	private static void dag3_5(int n) {
+		dag4_0(n);
+		dag4_1(n);
+		dag4_2(n);
+		dag4_3(n);
+		dag4_4(n);
+		dag4_5(n);
+	}
+	
+	private static void dag4_0(int n) {
+		dag5_0(n);
+		dag5_1(n);
+		dag5_2(n);
+		dag5_3(n);
+		dag5_4(n);
+		dag5_5(n);
+		if (n > 0)
+			dag4_1(n - 1);
+	}
+	
+	private static void dag4_1(int n) {
+		dag5_0(n);
+		dag5_1(n);
+		dag5_2(n);
+		dag5_3(n);
+		dag5_4(n);
+		dag5_5(n);
+		if (n > 0)
+			dag4_0(n - 1);
+	}
+	
+	private static void dag4_2(int n) {
+		dag5_0(n);
+		dag5_1(n);
+		dag5_2(n);
+		dag5_3(n);
+		dag5_4(n);
+		dag5_5(n);
+	}
+	
+	private static void dag4_3(int n) {
+		dag5_0(n);
+		dag5_1(n);
+		dag5_2(n);
+		dag5_3(n);
+		dag5_4(n);
+		dag5_5(n);
+	}
+	
+	private static void dag4_4(int n) {
+		dag5_0(n);
+		dag5_1(n);
+		dag5_2(n);
+		dag5_3(n);
+		dag5_4(n);
+		dag5_5(n);
+	}
+	
+	private static void dag4_5(int n) {
+		dag5_0(n);
+		dag5_1(n);
+		dag5_2(n);
+		dag5_3(n);
+		dag5_4(n);
+		dag5_5(n);
+	}
+	
+	private static void dag5_0(int n) {
+		dag6_0(n);
+		dag6_1(n);
+		dag6_2(n);
+		dag6_3(n);
+		dag6_4(n);
+		dag6_5(n);
+		if (n > 0)
+			dag5_1(n - 1);
+	}
+	
+	private static void dag5_1(int n) {
+		dag6_0(n);
+		dag6_1(n);
+		dag6_2(n);
+		dag6_3(n);
+		dag6_4(n);
+		dag6_5(n);
+		if (n > 0)
+			dag5_0(n - 1);
+	}
+	
+	private static void dag5_2(int n) {
+		dag6_0(n);
+		dag6_1(n);
+		dag6_2(n);
+		dag6_3(n);
+		dag6_4(n);
+		dag6_5(n);
+	}
+	
+	private static void dag5_3(int n) {
+		dag6_0(n);
+		dag6_1(n);
+		dag6_2(n);
+		dag6_3(n);
+		dag6_4(n);
+		dag6_5(n);
+	}
+	
+	private static void dag5_4(int n) {
+		dag6_0(n);
+		dag6_1(n);
+		dag6_2(n);
+		dag6_3(n);
+		dag6_4(n);
+		dag6_5(n);
+	}
+	
+	private static void dag5_5(int n) {
+		dag6_0(n);
+		dag6_1(n);
+		dag6_2(n);
+		dag6_3(n);
+		dag6_4(n);
+		dag6_5(n);
+	}
+	
+	private static void dag6_0(int n) {
+		dag7_0(n);
+		dag7_1(n);
+		dag7_2(n);
+		dag7_3(n);
+		dag7_4(n);
+		dag7_5(n);
+		if (n > 0)
+			dag6_1(n - 1);
+	}
+	
+	private static void dag6_1(int n) {
+		dag7_0(n);
+		dag7_1(n);
+		dag7_2(n);
+		dag7_3(n);
+		dag7_4(n);
+		dag7_5(n);
+		if (n > 0)
+			dag6_0(n - 1);
+	}
+	
+	private static void dag6_2(int n) {
+		dag7_0(n);
+		dag7_1(n);
+		dag7_2(n);
+		dag7_3(n);
+		dag7_4(n);
+		dag7_5(n);
+	}
+	
+	private static void dag6_3(int n) {
+		dag7_0(n);
+		dag7_1(n);
+		dag7_2(n);
+		dag7_3(n);
+		dag7_4(n);
+		dag7_5(n);
+	}
+	
+	private static void dag6_4(int n) {
+		dag7_0(n);
+		dag7_1(n);
+		dag7_2(n);
+		dag7_3(n);
+		dag7_4(n);
+		dag7_5(n);
+	}
+	
+	private static void dag6_5(int n) {
+		dag7_0(n);
+		dag7_1(n);
+		dag7_2(n);
+		dag7_3(n);
+		dag7_4(n);
+		dag7_5(n);
+	}
+	
+	private static void dag7_0(int n) {
+		dagField = "leaf";
+		if (n > 0)
+			dag7_1(n - 1);
+	}
+	
+	private static void dag7_1(int n) {
+		if (n > 0)
+			dag7_0(n - 1);
+	}
+	
+	private static void dag7_2(int n) {
+	}
+	
+	private static void dag7_3(int n) {
+	}
+	
+	private static void dag7_4(int n) {
+	}
+	
+	private static void dag7_5(int n) {
+	}
+	
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test;
+
+import soot.jimple.infoflow.test.android.ConnectionManager;
+import soot.jimple.infoflow.test.android.TelephonyManager;
+
+public class SummaryCacheTestCode {
+	
+	private class AppData {
+		
+		private final String data;
+		
+		public AppData(String data) {
+			this.data = data;
+		}
+		
+		@Override
+		public String toString() {
+			return data;
+		}
+		
+	}
+	
+	public void libraryCallTest() {
+		int imei = TelephonyManager.getIMEI();
+		int abs = Math.abs(imei);
+		
+		ConnectionManager cm = new ConnectionManager();
+		cm.publish(abs);
+	}
+	
+	public void libraryCallbackTest() {
+		AppData appData = new AppData(TelephonyManager.getDeviceId());
+		String str = String.valueOf(appData);
+		
+		ConnectionManager cm = new ConnectionManager();
+		cm.publish(str);
+	}
+	
+}
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import soot.jimple.infoflow.Infoflow.AnalysisPhase;
+
+/**
+ * Compares the results of the macro benchmarks against a baseline. For
+ * every configuration, the medians of the measured runs are compared. Wall
+ * times and memory may exceed the baseline by the given threshold, since
+ * they always vary a bit between runs. The number of results must never
+ * grow. The number of propagated edges only varies slightly with the order
+ * in which the solver threads process the edges, so it is compared with a
+ * tolerance of {@value #EDGE_THRESHOLD} percent.
+ *
+ * Usage: InfoflowBenchmarkComparator BASELINE.csv CURRENT.csv [THRESHOLD]
+ */
+public class InfoflowBenchmarkComparator {
+
+	/**
+	 * Phases that take less time than this in the baseline are not
+	 * compared, since their measurements are dominated by noise
+	 */
+	private static final long MIN_PHASE_TIME = 50;
+
+	private static final double EDGE_THRESHOLD = 1;
+
+	private interface Metric {
+
+		long getValue(InfoflowBenchmarkResult result);
+
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: InfoflowBenchmarkComparator BASELINE.csv "
+					+ "CURRENT.csv [THRESHOLD]");
+			System.exit(2);
+		}
+		double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+		List<String> regressions = compare(InfoflowBenchmarkResult.readCsv(new File(args[0])),
+				InfoflowBenchmarkResult.readCsv(new File(args[1])), threshold);
+		if (regressions.isEmpty())
+			System.out.println("No regressions found");
+		else {
+			for (String regression : regressions)
+				System.out.println(regression);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Compares the given results against the given baseline
+	 * @param baseline The results of the baseline
+	 * @param current The results to compare with the baseline
+	 * @param threshold The tolerance for times and memory in percent
+	 * @return A description of every regression found. If there are no
+	 * regressions, the list is empty.
+	 */
+	public static List<String> compare(List<InfoflowBenchmarkResult> baseline,
+			List<InfoflowBenchmarkResult> current, double threshold) {
+		Map<String, List<InfoflowBenchmarkResult>> baselineRuns = groupByConfiguration(baseline);
+		Map<String, List<InfoflowBenchmarkResult>> currentRuns = groupByConfiguration(current);
+
+		List<String> regressions = new ArrayList<String>();
+		for (Map.Entry<String, List<InfoflowBenchmarkResult>> entry : currentRuns.entrySet()) {
+			List<InfoflowBenchmarkResult> base = baselineRuns.get(entry.getKey());
+			if (base == null)
+				continue;
+			List<InfoflowBenchmarkResult> cur = entry.getValue();
+
+			checkTolerance(regressions, entry.getKey(), "total time", base, cur, threshold, 0,
+					new Metric() {
+
+				@Override
+				public long getValue(InfoflowBenchmarkResult result) {
+					return result.getTotalTime();
+				}
+
+			});
+			checkTolerance(regressions, entry.getKey(), "peak memory", base, cur, threshold, 0,
+					new Metric() {
+
+				@Override
+				public long getValue(InfoflowBenchmarkResult result) {
+					return result.getMaxMemory();
+				}
+
+			});
+			checkTolerance(regressions, entry.getKey(), "GC time", base, cur, threshold,
+					MIN_PHASE_TIME, new Metric() {
+
+				@Override
+				public long getValue(InfoflowBenchmarkResult result) {
+					return result.getGcTime();
+				}
+
+			});
+			for (final AnalysisPhase phase : AnalysisPhase.values())
+				checkTolerance(regressions, entry.getKey(), "time of phase " + phase, base, cur,
+						threshold, MIN_PHASE_TIME, new Metric() {
+
+					@Override
+					public long getValue(InfoflowBenchmarkResult result) {
+						return result.getPhaseTime(phase);
+					}
+
+				});
+
+			checkTolerance(regressions, entry.getKey(), "forward edges", base, cur,
+					EDGE_THRESHOLD, 0, new Metric() {
+
+				@Override
+				public long getValue(InfoflowBenchmarkResult result) {
+					return result.getForwardEdges();
+				}
+
+			});
+			checkTolerance(regressions, entry.getKey(), "backward edges", base, cur,
+					EDGE_THRESHOLD, 0, new Metric() {
+
+				@Override
+				public long getValue(InfoflowBenchmarkResult result) {
+					return result.getBackwardEdges();
+				}
+
+			});
+			checkTolerance(regressions, entry.getKey(), "results", base, cur, 0, 0,
+					new Metric() {
+
+				@Override
+				public long getValue(InfoflowBenchmarkResult result) {
+					return result.getResults();
+				}
+
+			});
+		}
+		return regressions;
+	}
+
+	private static Map<String, List<InfoflowBenchmarkResult>> groupByConfiguration
+			(List<InfoflowBenchmarkResult> results) {
+		Map<String, List<InfoflowBenchmarkResult>> groups =
+				new TreeMap<String, List<InfoflowBenchmarkResult>>();
+		for (InfoflowBenchmarkResult result : results) {
+			List<InfoflowBenchmarkResult> group = groups.get(result.getConfigurationKey());
+			if (group == null) {
+				group = new ArrayList<InfoflowBenchmarkResult>();
+				groups.put(result.getConfigurationKey(), group);
+			}
+			group.add(result);
+		}
+		return groups;
+	}
+
+	/**
+	 * Checks whether the median of the given metric exceeds the baseline by
+	 * more than the given threshold and records a regression if so
+	 */
+	private static void checkTolerance(List<String> regressions, String configuration,
+			String metricName, List<InfoflowBenchmarkResult> baseline,
+			List<InfoflowBenchmarkResult> current, double threshold, long minValue,
+			Metric metric) {
+		long baseValue = getMedian(baseline, metric);
+		long curValue = getMedian(current, metric);
+
+		// Metrics that have not been recorded cannot be compared
+		if (baseValue < 0 || curValue < 0 || baseValue < minValue)
+			return;
+		if (curValue > baseValue * (1 + threshold / 100)) {
+			double change = baseValue == 0 ? Double.POSITIVE_INFINITY
+					: (curValue - baseValue) * 100.0 / baseValue;
+			regressions.add(configuration + ": " + metricName + " increased from "
+					+ baseValue + " to " + curValue + String.format(" (+%.1f%%)", change));
+		}
+	}
+
+	private static long getMedian(List<InfoflowBenchmarkResult> results, Metric metric) {
+		List<Long> values = new ArrayList<Long>(results.size());
+		for (InfoflowBenchmarkResult result : results)
+			values.add(metric.getValue(result));
+		Collections.sort(values);
+		return values.get(values.size() / 2);
+	}
+
+}
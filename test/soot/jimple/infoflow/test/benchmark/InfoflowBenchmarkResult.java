@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.jimple.infoflow.Infoflow.AnalysisPhase;
+
+/**
+ * The measurements of a single analysis run in the macro benchmarks. All
+ * times are wall times in milliseconds, memory is given in bytes.
+ */
+public class InfoflowBenchmarkResult {
+
+	private static final String[] COLUMNS = new String[] { "scenario",
+		"aliasing", "pathBuilder", "threads", "taintWrapper", "run",
+		"totalTime", "forwardEdges", "backwardEdges", "maxMemory", "gcTime",
+		"gcCount", "results" };
+
+	private final String scenario;
+	private final String aliasing;
+	private final String pathBuilder;
+	private final int threads;
+	private final boolean taintWrapper;
+	private final int run;
+
+	private long totalTime = -1;
+	private long forwardEdges = -1;
+	private long backwardEdges = -1;
+	private long maxMemory = -1;
+	private long gcTime = -1;
+	private long gcCount = -1;
+	private int results = -1;
+	private final Map<AnalysisPhase, Long> phaseTimes =
+			new EnumMap<AnalysisPhase, Long>(AnalysisPhase.class);
+
+	public InfoflowBenchmarkResult(String scenario, String aliasing,
+			String pathBuilder, int threads, boolean taintWrapper, int run) {
+		this.scenario = scenario;
+		this.aliasing = aliasing;
+		this.pathBuilder = pathBuilder;
+		this.threads = threads;
+		this.taintWrapper = taintWrapper;
+		this.run = run;
+	}
+
+	/**
+	 * Gets the key identifying the configuration of this run. All runs of
+	 * the same scenario with the same configuration have the same key.
+	 * @return The key identifying the configuration of this run
+	 */
+	public String getConfigurationKey() {
+		return scenario + "," + aliasing + "," + pathBuilder + "," + threads
+				+ "," + taintWrapper;
+	}
+
+	public String getScenario() {
+		return this.scenario;
+	}
+
+	public int getRun() {
+		return this.run;
+	}
+
+	public long getTotalTime() {
+		return this.totalTime;
+	}
+
+	public void setTotalTime(long totalTime) {
+		this.totalTime = totalTime;
+	}
+
+	public long getForwardEdges() {
+		return this.forwardEdges;
+	}
+
+	public void setForwardEdges(long forwardEdges) {
+		this.forwardEdges = forwardEdges;
+	}
+
+	public long getBackwardEdges() {
+		return this.backwardEdges;
+	}
+
+	public void setBackwardEdges(long backwardEdges) {
+		this.backwardEdges = backwardEdges;
+	}
+
+	public long getMaxMemory() {
+		return this.maxMemory;
+	}
+
+	public void setMaxMemory(long maxMemory) {
+		this.maxMemory = maxMemory;
+	}
+
+	public long getGcTime() {
+		return this.gcTime;
+	}
+
+	public void setGcTime(long gcTime) {
+		this.gcTime = gcTime;
+	}
+
+	public long getGcCount() {
+		return this.gcCount;
+	}
+
+	public void setGcCount(long gcCount) {
+		this.gcCount = gcCount;
+	}
+
+	public int getResults() {
+		return this.results;
+	}
+
+	public void setResults(int results) {
+		this.results = results;
+	}
+
+	/**
+	 * Gets the wall time of the given phase
+	 * @param phase The phase for which to get the wall time
+	 * @return The wall time of the given phase in milliseconds, or -1 if
+	 * the phase has not been run
+	 */
+	public long getPhaseTime(AnalysisPhase phase) {
+		Long time = phaseTimes.get(phase);
+		return time == null ? -1 : time;
+	}
+
+	public void setPhaseTime(AnalysisPhase phase, long time) {
+		if (time < 0)
+			phaseTimes.remove(phase);
+		else
+			phaseTimes.put(phase, time);
+	}
+
+	/**
+	 * Gets the header line of the CSV format
+	 * @return The header line of the CSV format
+	 */
+	public static String getCsvHeader() {
+		StringBuilder sb = new StringBuilder();
+		for (String column : COLUMNS) {
+			if (sb.length() > 0)
+				sb.append(",");
+			sb.append(column);
+		}
+		for (AnalysisPhase phase : AnalysisPhase.values())
+			sb.append(",").append(getPhaseColumn(phase));
+		return sb.toString();
+	}
+
+	private static String getPhaseColumn(AnalysisPhase phase) {
+		return "time" + phase.name();
+	}
+
+	/**
+	 * Converts this result into a line of the CSV format
+	 * @return This result as a line of the CSV format
+	 */
+	public String toCsv() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(getConfigurationKey()).append(",");
+		sb.append(run).append(",");
+		sb.append(totalTime).append(",");
+		sb.append(forwardEdges).append(",");
+		sb.append(backwardEdges).append(",");
+		sb.append(maxMemory).append(",");
+		sb.append(gcTime).append(",");
+		sb.append(gcCount).append(",");
+		sb.append(results);
+		for (AnalysisPhase phase : AnalysisPhase.values())
+			sb.append(",").append(getPhaseTime(phase));
+		return sb.toString();
+	}
+
+	/**
+	 * Parses a line of the CSV format
+	 * @param header The columns of the CSV file as given in its header line
+	 * @param line The line to parse
+	 * @return The result read from the given line
+	 */
+	public static InfoflowBenchmarkResult fromCsv(String[] header, String line) {
+		String[] values = line.split(",", -1);
+		if (values.length != header.length)
+			throw new IllegalArgumentException("Invalid benchmark result: " + line);
+
+		Map<String, String> columns = new HashMap<String, String>();
+		for (int i = 0; i < header.length; i++)
+			columns.put(header[i], values[i]);
+
+		InfoflowBenchmarkResult result = new InfoflowBenchmarkResult(
+				columns.get("scenario"), columns.get("aliasing"),
+				columns.get("pathBuilder"), Integer.parseInt(columns.get("threads")),
+				Boolean.parseBoolean(columns.get("taintWrapper")),
+				Integer.parseInt(columns.get("run")));
+		result.totalTime = parseLong(columns.get("totalTime"));
+		result.forwardEdges = parseLong(columns.get("forwardEdges"));
+		result.backwardEdges = parseLong(columns.get("backwardEdges"));
+		result.maxMemory = parseLong(columns.get("maxMemory"));
+		result.gcTime = parseLong(columns.get("gcTime"));
+		result.gcCount = parseLong(columns.get("gcCount"));
+		result.results = (int) parseLong(columns.get("results"));
+
+		// Baselines from older versions may lack some phases
+		for (AnalysisPhase phase : AnalysisPhase.values())
+			result.setPhaseTime(phase, parseLong(columns.get(getPhaseColumn(phase))));
+		return result;
+	}
+
+	private static long parseLong(String value) {
+		return value == null || value.isEmpty() ? -1 : Long.parseLong(value);
+	}
+
+	/**
+	 * Converts this result into a JSON object
+	 * @return This result as a JSON object
+	 */
+	public String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		sb.append("\"scenario\": \"").append(scenario).append("\", ");
+		sb.append("\"aliasing\": \"").append(aliasing).append("\", ");
+		sb.append("\"pathBuilder\": \"").append(pathBuilder).append("\", ");
+		sb.append("\"threads\": ").append(threads).append(", ");
+		sb.append("\"taintWrapper\": ").append(taintWrapper).append(", ");
+		sb.append("\"run\": ").append(run).append(", ");
+		sb.append("\"totalTime\": ").append(totalTime).append(", ");
+		sb.append("\"forwardEdges\": ").append(forwardEdges).append(", ");
+		sb.append("\"backwardEdges\": ").append(backwardEdges).append(", ");
+		sb.append("\"maxMemory\": ").append(maxMemory).append(", ");
+		sb.append("\"gcTime\": ").append(gcTime).append(", ");
+		sb.append("\"gcCount\": ").append(gcCount).append(", ");
+		sb.append("\"results\": ").append(results).append(", ");
+		sb.append("\"phases\": {");
+		boolean first = true;
+		for (Map.Entry<AnalysisPhase, Long> entry : phaseTimes.entrySet()) {
+			if (!first)
+				sb.append(", ");
+			sb.append("\"").append(entry.getKey().name()).append("\": ").append(entry.getValue());
+			first = false;
+		}
+		sb.append("}}");
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the given results into a CSV file
+	 * @param results The results to write
+	 * @param file The file to write to
+	 * @throws IOException Thrown if the file cannot be written
+	 */
+	public static void writeCsv(List<InfoflowBenchmarkResult> results, File file)
+			throws IOException {
+		PrintWriter writer = new PrintWriter(file, "UTF-8");
+		try {
+			writer.println(getCsvHeader());
+			for (InfoflowBenchmarkResult result : results)
+				writer.println(result.toCsv());
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Writes the given results into a JSON file
+	 * @param results The results to write
+	 * @param file The file to write to
+	 * @throws IOException Thrown if the file cannot be written
+	 */
+	public static void writeJson(List<InfoflowBenchmarkResult> results, File file)
+			throws IOException {
+		PrintWriter writer = new PrintWriter(file, "UTF-8");
+		try {
+			writer.println("[");
+			for (int i = 0; i < results.size(); i++)
+				writer.println("  " + results.get(i).toJson()
+						+ (i < results.size() - 1 ? "," : ""));
+			writer.println("]");
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Reads the results from a CSV file written by
+	 * {@link #writeCsv(List, File)}
+	 * @param file The file to read
+	 * @return The results read from the given file
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	public static List<InfoflowBenchmarkResult> readCsv(File file) throws IOException {
+		List<InfoflowBenchmarkResult> results = new ArrayList<InfoflowBenchmarkResult>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line = reader.readLine();
+			if (line == null)
+				return results;
+			String[] header = line.split(",");
+			while ((line = reader.readLine()) != null)
+				if (!line.isEmpty())
+					results.add(fromCsv(header, line));
+		}
+		finally {
+			reader.close();
+		}
+		return results;
+	}
+
+}
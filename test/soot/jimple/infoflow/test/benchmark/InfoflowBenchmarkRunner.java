@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import soot.jimple.infoflow.IInfoflow.AliasingAlgorithm;
+import soot.jimple.infoflow.Infoflow;
+import soot.jimple.infoflow.Infoflow.AnalysisPhase;
+import soot.jimple.infoflow.data.pathBuilders.DefaultPathBuilderFactory;
+import soot.jimple.infoflow.data.pathBuilders.DefaultPathBuilderFactory.PathBuilder;
+
+/**
+ * Runs the complete analysis on the JUnit and SecuriBench scenarios and
+ * records the wall time per phase, the number of propagated edges, the peak
+ * memory consumption and the time spent in garbage collection. Every
+ * combination of scenario, aliasing algorithm, path builder and thread count
+ * runs in its own JVM, so that the runs do not influence each other through
+ * the JIT or the heap. The results are written as CSV and JSON files and can
+ * optionally be compared against a baseline with the
+ * {@link InfoflowBenchmarkComparator}.
+ *
+ * Options:
+ * <ul>
+ * <li>-out DIR: The directory for the result files (default: benchmarkresults)</li>
+ * <li>-scenarios REGEX: Only run the scenarios whose name matches the given
+ * regular expression, e.g. "junit/.*" (default: all scenarios)</li>
+ * <li>-aliasing A,B: The aliasing algorithms (default: FlowSensitive)</li>
+ * <li>-pathbuilders A,B: The path builders (default: ContextSensitive)</li>
+ * <li>-threads N,M: The thread counts (default: number of processors)</li>
+ * <li>-warmup N: The number of unmeasured runs per JVM (default: 1)</li>
+ * <li>-repeat N: The number of measured runs per JVM (default: 3)</li>
+ * <li>-taintwrapper: Use the taint wrapper in all scenarios</li>
+ * <li>-xmx SIZE: The maximum heap size of the forked JVMs (default: 4g)</li>
+ * <li>-baseline FILE: A CSV file to compare the results with</li>
+ * <li>-threshold PERCENT: The tolerance for the comparison (default: 10)</li>
+ * </ul>
+ */
+public class InfoflowBenchmarkRunner {
+
+	private static final String RESULT_PREFIX = "BENCHMARK_RESULT:";
+
+	private File outputDir = new File("benchmarkresults");
+	private Pattern scenarioFilter = Pattern.compile(".*");
+	private List<AliasingAlgorithm> aliasingAlgorithms =
+			Arrays.asList(AliasingAlgorithm.FlowSensitive);
+	private List<PathBuilder> pathBuilders = Arrays.asList(PathBuilder.ContextSensitive);
+	private List<Integer> threadCounts =
+			Arrays.asList(Runtime.getRuntime().availableProcessors());
+	private int warmupRuns = 1;
+	private int measuredRuns = 3;
+	private boolean useTaintWrapper = false;
+	private String maxHeap = "4g";
+	private File baseline = null;
+	private double threshold = 10;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("-child")) {
+			runChild(args);
+			return;
+		}
+
+		InfoflowBenchmarkRunner runner = new InfoflowBenchmarkRunner();
+		runner.parseOptions(args);
+		if (!runner.run())
+			System.exit(1);
+	}
+
+	private void parseOptions(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (option.equals("-taintwrapper")) {
+				useTaintWrapper = true;
+				continue;
+			}
+			if (i + 1 >= args.length)
+				throw new IllegalArgumentException("Missing value for option " + option);
+			String value = args[++i];
+
+			if (option.equals("-out"))
+				outputDir = new File(value);
+			else if (option.equals("-scenarios"))
+				scenarioFilter = Pattern.compile(value);
+			else if (option.equals("-aliasing")) {
+				aliasingAlgorithms = new ArrayList<AliasingAlgorithm>();
+				for (String s : value.split(","))
+					aliasingAlgorithms.add(AliasingAlgorithm.valueOf(s.trim()));
+			}
+			else if (option.equals("-pathbuilders")) {
+				pathBuilders = new ArrayList<PathBuilder>();
+				for (String s : value.split(","))
+					pathBuilders.add(PathBuilder.valueOf(s.trim()));
+			}
+			else if (option.equals("-threads")) {
+				threadCounts = new ArrayList<Integer>();
+				for (String s : value.split(","))
+					threadCounts.add(Integer.parseInt(s.trim()));
+			}
+			else if (option.equals("-warmup"))
+				warmupRuns = Integer.parseInt(value);
+			else if (option.equals("-repeat"))
+				measuredRuns = Integer.parseInt(value);
+			else if (option.equals("-xmx"))
+				maxHeap = value;
+			else if (option.equals("-baseline"))
+				baseline = new File(value);
+			else if (option.equals("-threshold"))
+				threshold = Double.parseDouble(value);
+			else
+				throw new IllegalArgumentException("Unknown option " + option);
+		}
+	}
+
+	/**
+	 * Runs all selected scenarios in all selected configurations
+	 * @return False if a run failed or a regression against the baseline
+	 * has been found, otherwise true
+	 */
+	private boolean run() throws IOException, InterruptedException {
+		List<InfoflowBenchmarkScenario> scenarios = new ArrayList<InfoflowBenchmarkScenario>();
+		for (InfoflowBenchmarkScenario scenario : InfoflowBenchmarkScenario.findScenarios())
+			if (scenarioFilter.matcher(scenario.getName()).matches())
+				scenarios.add(scenario);
+		if (scenarios.isEmpty()) {
+			System.err.println("No scenarios found. Are build/testclasses on the classpath?");
+			return false;
+		}
+
+		boolean success = true;
+		List<InfoflowBenchmarkResult> results = new ArrayList<InfoflowBenchmarkResult>();
+		for (InfoflowBenchmarkScenario scenario : scenarios)
+			for (AliasingAlgorithm aliasing : aliasingAlgorithms)
+				for (PathBuilder pathBuilder : pathBuilders)
+					for (int threads : threadCounts) {
+						System.out.println("Running " + scenario + " with " + aliasing
+								+ " aliasing, " + pathBuilder + " path builder and "
+								+ threads + " threads...");
+						List<InfoflowBenchmarkResult> scenarioResults = fork(scenario,
+								aliasing, pathBuilder, threads);
+						if (scenarioResults.size() != measuredRuns) {
+							System.err.println("Benchmark " + scenario + " failed");
+							success = false;
+						}
+						results.addAll(scenarioResults);
+					}
+
+		if (!outputDir.exists() && !outputDir.mkdirs())
+			throw new IOException("Could not create output directory " + outputDir);
+		File csvFile = new File(outputDir, "results.csv");
+		InfoflowBenchmarkResult.writeCsv(results, csvFile);
+		InfoflowBenchmarkResult.writeJson(results, new File(outputDir, "results.json"));
+		System.out.println("Wrote " + results.size() + " results to " + csvFile);
+
+		if (baseline != null) {
+			List<String> regressions = InfoflowBenchmarkComparator.compare
+					(InfoflowBenchmarkResult.readCsv(baseline), results, threshold);
+			for (String regression : regressions)
+				System.out.println(regression);
+			if (!regressions.isEmpty())
+				success = false;
+		}
+		return success;
+	}
+
+	/**
+	 * Runs a scenario in a new JVM
+	 * @return The results of the measured runs
+	 */
+	private List<InfoflowBenchmarkResult> fork(InfoflowBenchmarkScenario scenario,
+			AliasingAlgorithm aliasing, PathBuilder pathBuilder, int threads)
+			throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java");
+		command.add("-Xmx" + maxHeap);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(InfoflowBenchmarkRunner.class.getName());
+		command.add("-child");
+		command.add(scenario.getName());
+		command.add(aliasing.name());
+		command.add(pathBuilder.name());
+		command.add(Integer.toString(threads));
+		command.add(Integer.toString(warmupRuns));
+		command.add(Integer.toString(measuredRuns));
+		command.add(Boolean.toString(useTaintWrapper));
+
+		ProcessBuilder pb = new ProcessBuilder(command);
+		pb.redirectErrorStream(true);
+		Process process = pb.start();
+
+		// The analysis writes its log to the same stream as the results
+		String[] header = InfoflowBenchmarkResult.getCsvHeader().split(",");
+		List<InfoflowBenchmarkResult> results = new ArrayList<InfoflowBenchmarkResult>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader
+				(process.getInputStream()));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null)
+				if (line.startsWith(RESULT_PREFIX))
+					results.add(InfoflowBenchmarkResult.fromCsv(header,
+							line.substring(RESULT_PREFIX.length())));
+		}
+		finally {
+			reader.close();
+		}
+		if (process.waitFor() != 0)
+			System.err.println("Forked JVM for " + scenario + " exited with code "
+					+ process.exitValue());
+		return results;
+	}
+
+	/**
+	 * Runs a single scenario inside a forked JVM and prints the results to
+	 * the standard output
+	 */
+	private static void runChild(String[] args) throws IOException {
+		InfoflowBenchmarkScenario scenario = InfoflowBenchmarkScenario.findScenario(args[1]);
+		AliasingAlgorithm aliasing = AliasingAlgorithm.valueOf(args[2]);
+		PathBuilder pathBuilder = PathBuilder.valueOf(args[3]);
+		int threads = Integer.parseInt(args[4]);
+		int warmupRuns = Integer.parseInt(args[5]);
+		int measuredRuns = Integer.parseInt(args[6]);
+		boolean useTaintWrapper = Boolean.parseBoolean(args[7]);
+
+		for (int run = -warmupRuns; run < measuredRuns; run++) {
+			Infoflow infoflow = scenario.createInfoflow(useTaintWrapper);
+			infoflow.setAliasingAlgorithm(aliasing);
+			infoflow.setPathBuilderFactory(new DefaultPathBuilderFactory(pathBuilder, false));
+			infoflow.setMaxThreadNum(threads);
+
+			System.gc();
+			long gcTimeBefore = getGcTime();
+			long gcCountBefore = getGcCount();
+			long before = System.nanoTime();
+			scenario.run(infoflow);
+			long totalTime = System.nanoTime() - before;
+			if (run < 0)
+				continue;
+
+			InfoflowBenchmarkResult result = new InfoflowBenchmarkResult(scenario.getName(),
+					aliasing.name(), pathBuilder.name(), threads, useTaintWrapper, run);
+			result.setTotalTime(totalTime / 1000000);
+			result.setGcTime(getGcTime() - gcTimeBefore);
+			result.setGcCount(getGcCount() - gcCountBefore);
+			result.setForwardEdges(infoflow.getForwardPropagationCount());
+			result.setBackwardEdges(infoflow.getBackwardPropagationCount());
+			result.setMaxMemory(infoflow.getMaxMemoryConsumption());
+			result.setResults(infoflow.isResultAvailable() ? infoflow.getResults().size() : -1);
+			for (Map.Entry<AnalysisPhase, Long> entry : infoflow.getPhaseTimes().entrySet())
+				result.setPhaseTime(entry.getKey(), entry.getValue() / 1000000);
+			System.out.println(RESULT_PREFIX + result.toCsv());
+		}
+	}
+
+	private static long getGcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			time += Math.max(0, gc.getCollectionTime());
+		return time;
+	}
+
+	private static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+}
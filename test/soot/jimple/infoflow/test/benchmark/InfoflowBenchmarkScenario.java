@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeSet;
+
+import soot.jimple.infoflow.Infoflow;
+
+/**
+ * A scenario for the macro benchmarks. Every scenario runs the complete
+ * analysis on one class of the JUnit test code or on one package of
+ * SecuriBench Micro, using the same sources, sinks and Soot configuration
+ * as the respective JUnit tests.
+ */
+public class InfoflowBenchmarkScenario {
+
+	private static final String JUNIT_PACKAGE = "soot.jimple.infoflow.test";
+	private static final String SECURIBENCH_PACKAGE = "securibench.micro";
+
+	/**
+	 * The test corpora from which the scenarios are taken
+	 */
+	public enum Corpus {
+		JUnit,
+		SecuriBench
+	}
+
+	/**
+	 * Gives access to the configuration of the JUnit tests
+	 */
+	private static class JUnitCorpus extends soot.jimple.infoflow.test.junit.JUnitTests {
+
+		private Infoflow create(boolean useTaintWrapper) {
+			return initInfoflow(useTaintWrapper);
+		}
+
+		private void run(Infoflow infoflow, List<String> entryPoints) {
+			infoflow.computeInfoflow(appPath, libPath, entryPoints, sources, sinks);
+		}
+
+	}
+
+	/**
+	 * Gives access to the configuration of the SecuriBench tests
+	 */
+	private static class SecuriBenchCorpus extends soot.jimple.infoflow.test.securibench.JUnitTests {
+
+		private Infoflow create(List<String> entryPoints, boolean useTaintWrapper) {
+			taintWrapper = useTaintWrapper;
+			return initInfoflow(entryPoints);
+		}
+
+		private void run(Infoflow infoflow) {
+			infoflow.computeInfoflow(appPath, libPath, entryPointCreator, sources, sinks);
+		}
+
+	}
+
+	private final String name;
+	private final Corpus corpus;
+	private final List<String> entryPoints;
+
+	private JUnitCorpus junitCorpus = null;
+	private SecuriBenchCorpus securiBenchCorpus = null;
+
+	private InfoflowBenchmarkScenario(String name, Corpus corpus, List<String> entryPoints) {
+		this.name = name;
+		this.corpus = corpus;
+		this.entryPoints = entryPoints;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public Corpus getCorpus() {
+		return this.corpus;
+	}
+
+	public List<String> getEntryPoints() {
+		return Collections.unmodifiableList(this.entryPoints);
+	}
+
+	/**
+	 * Creates a new analysis object configured in the same way as for the
+	 * JUnit tests of this scenario's corpus
+	 * @param useTaintWrapper True if the analysis shall use the taint wrapper
+	 * defined in EasyTaintWrapperSource.txt, otherwise false
+	 * @return The new analysis object
+	 * @throws IOException Thrown if the class directories of the tests
+	 * cannot be found
+	 */
+	public Infoflow createInfoflow(boolean useTaintWrapper) throws IOException {
+		switch (corpus) {
+			case JUnit:
+				if (junitCorpus == null) {
+					JUnitCorpus.setUp();
+					junitCorpus = new JUnitCorpus();
+				}
+				return junitCorpus.create(useTaintWrapper);
+			case SecuriBench:
+				if (securiBenchCorpus == null) {
+					SecuriBenchCorpus.setUp();
+					securiBenchCorpus = new SecuriBenchCorpus();
+				}
+				return securiBenchCorpus.create(entryPoints, useTaintWrapper);
+			default:
+				throw new RuntimeException("Unsupported corpus");
+		}
+	}
+
+	/**
+	 * Runs the analysis for this scenario. The analysis object must have
+	 * been created with {@link #createInfoflow(boolean)} on this scenario.
+	 * @param infoflow The analysis object to run
+	 */
+	public void run(Infoflow infoflow) {
+		// Every run starts from a clean Soot instance
+		soot.G.reset();
+		switch (corpus) {
+			case JUnit:
+				junitCorpus.run(infoflow, entryPoints);
+				break;
+			case SecuriBench:
+				securiBenchCorpus.run(infoflow);
+				break;
+			default:
+				throw new RuntimeException("Unsupported corpus");
+		}
+	}
+
+	/**
+	 * Finds all scenarios on the current classpath. Every test code class
+	 * in the soot.jimple.infoflow.test package is one JUnit scenario with all
+	 * of its public methods as entry points. Every package of SecuriBench
+	 * Micro is one SecuriBench scenario with the doGet and doPost methods of
+	 * all of its classes as entry points.
+	 * @return The scenarios on the current classpath, ordered by name
+	 * @throws IOException Thrown if the class directories cannot be read
+	 */
+	public static List<InfoflowBenchmarkScenario> findScenarios() throws IOException {
+		List<InfoflowBenchmarkScenario> scenarios = new ArrayList<InfoflowBenchmarkScenario>();
+
+		for (String className : findClasses(JUNIT_PACKAGE)) {
+			if (!className.endsWith("TestCode"))
+				continue;
+			List<String> entryPoints = new ArrayList<String>();
+			for (Method m : loadClass(className).getDeclaredMethods())
+				if (Modifier.isPublic(m.getModifiers()) && !m.isSynthetic())
+					entryPoints.add(getSootSignature(m));
+			if (!entryPoints.isEmpty())
+				scenarios.add(new InfoflowBenchmarkScenario("junit/"
+						+ className.substring(JUNIT_PACKAGE.length() + 1),
+						Corpus.JUnit, entryPoints));
+		}
+
+		for (String subPackage : findSubPackages(SECURIBENCH_PACKAGE)) {
+			List<String> entryPoints = new ArrayList<String>();
+			for (String className : findClasses(SECURIBENCH_PACKAGE + "." + subPackage))
+				for (Method m : loadClass(className).getDeclaredMethods())
+					if ((m.getName().equals("doGet") || m.getName().equals("doPost"))
+							&& !m.isSynthetic())
+						entryPoints.add(getSootSignature(m));
+			if (!entryPoints.isEmpty())
+				scenarios.add(new InfoflowBenchmarkScenario("securibench/" + subPackage,
+						Corpus.SecuriBench, entryPoints));
+		}
+		return scenarios;
+	}
+
+	/**
+	 * Finds the scenario with the given name
+	 * @param name The name of the scenario to find
+	 * @return The scenario with the given name
+	 * @throws IOException Thrown if the class directories cannot be read
+	 */
+	public static InfoflowBenchmarkScenario findScenario(String name) throws IOException {
+		for (InfoflowBenchmarkScenario scenario : findScenarios())
+			if (scenario.getName().equals(name))
+				return scenario;
+		throw new RuntimeException("Scenario " + name + " not found");
+	}
+
+	private static Class<?> loadClass(String className) {
+		try {
+			return Class.forName(className, false,
+					InfoflowBenchmarkScenario.class.getClassLoader());
+		}
+		catch (ClassNotFoundException ex) {
+			throw new RuntimeException("Could not load class " + className, ex);
+		}
+	}
+
+	/**
+	 * Gets the directories on the classpath that belong to the given package
+	 * @param packageName The name of the package
+	 * @return The directories on the classpath that belong to the given
+	 * package. Packages inside JAR files are not supported.
+	 * @throws IOException Thrown if the classpath cannot be read
+	 */
+	private static List<File> getPackageDirectories(String packageName) throws IOException {
+		List<File> dirs = new ArrayList<File>();
+		Enumeration<URL> urls = InfoflowBenchmarkScenario.class.getClassLoader()
+				.getResources(packageName.replace('.', '/'));
+		while (urls.hasMoreElements()) {
+			URL url = urls.nextElement();
+			if (!url.getProtocol().equals("file"))
+				continue;
+			try {
+				dirs.add(new File(url.toURI()));
+			}
+			catch (URISyntaxException ex) {
+				throw new IOException("Invalid classpath entry " + url, ex);
+			}
+		}
+		return dirs;
+	}
+
+	private static TreeSet<String> findClasses(String packageName) throws IOException {
+		TreeSet<String> classes = new TreeSet<String>();
+		for (File dir : getPackageDirectories(packageName)) {
+			File[] files = dir.listFiles();
+			if (files != null)
+				for (File f : files)
+					if (f.isFile() && f.getName().endsWith(".class")
+							&& !f.getName().contains("$"))
+						classes.add(packageName + "." + f.getName().substring
+								(0, f.getName().length() - ".class".length()));
+		}
+		return classes;
+	}
+
+	private static TreeSet<String> findSubPackages(String packageName) throws IOException {
+		TreeSet<String> packages = new TreeSet<String>();
+		for (File dir : getPackageDirectories(packageName)) {
+			File[] files = dir.listFiles();
+			if (files != null)
+				for (File f : files)
+					if (f.isDirectory())
+						packages.add(f.getName());
+		}
+		return packages;
+	}
+
+	/**
+	 * Gets the Soot signature of the given method
+	 * @param m The method for which to get the Soot signature
+	 * @return The Soot signature of the given method
+	 */
+	private static String getSootSignature(Method m) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<");
+		sb.append(m.getDeclaringClass().getName());
+		sb.append(": ");
+		sb.append(getTypeName(m.getReturnType()));
+		sb.append(" ");
+		sb.append(m.getName());
+		sb.append("(");
+		Class<?>[] params = m.getParameterTypes();
+		for (int i = 0; i < params.length; i++) {
+			if (i > 0)
+				sb.append(",");
+			sb.append(getTypeName(params[i]));
+		}
+		sb.append(")>");
+		return sb.toString();
+	}
+
+	private static String getTypeName(Class<?> c) {
+		if (c.isArray())
+			return getTypeName(c.getComponentType()) + "[]";
+		return c.getName();
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+
+}
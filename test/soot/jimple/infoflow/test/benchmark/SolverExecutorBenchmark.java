@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import soot.jimple.infoflow.solver.executors.DefaultSolverExecutorFactory;
+import soot.jimple.infoflow.solver.executors.DefaultSolverExecutorFactory.SolverExecutor;
+import soot.jimple.infoflow.solver.executors.ISolverExecutor;
+
+/**
+ * Measures the throughput of the solver executors in edges per second for a
+ * growing number of threads. Every task simulates the processing of a path
+ * edge and spawns new edges, mostly in the same method, just like the IFDS
+ * solver does.
+ */
+public class SolverExecutorBenchmark {
+	
+	private static final int NUM_METHODS = 512;
+	private static final int FAN_OUT = 3;
+	private static final int MAX_DEPTH = 12;
+	private static final int ROOT_EDGES = 64;
+	
+	private static class EdgeTask implements Runnable {
+		
+		private final ISolverExecutor executor;
+		private final AtomicLong edgeCounter;
+		private final int method;
+		private final int depth;
+		
+		public EdgeTask(ISolverExecutor executor, AtomicLong edgeCounter,
+				int method, int depth) {
+			this.executor = executor;
+			this.edgeCounter = edgeCounter;
+			this.method = method;
+			this.depth = depth;
+		}
+		
+		@Override
+		public void run() {
+			edgeCounter.incrementAndGet();
+			
+			// Simulate the flow function computation
+			int h = method;
+			for (int i = 0; i < 200; i++)
+				h = h * 31 + i;
+			if (depth >= MAX_DEPTH || h == 42)
+				return;
+			
+			for (int i = 0; i < FAN_OUT; i++) {
+				// Most successors are in the same method, some are callees
+				int target = i == 0 ? (method * 7 + depth) % NUM_METHODS : method;
+				EdgeTask task = new EdgeTask(executor, edgeCounter, target, depth + 1);
+				if (executor.usesAffinity())
+					executor.execute(task, target);
+				else
+					executor.execute(task);
+			}
+		}
+		
+	}
+	
+	private static double measure(DefaultSolverExecutorFactory factory,
+			int numThreads) throws InterruptedException {
+		ISolverExecutor executor = factory.createExecutor(numThreads);
+		AtomicLong edgeCounter = new AtomicLong();
+		long beforeRun = System.nanoTime();
+		for (int i = 0; i < ROOT_EDGES; i++)
+			executor.execute(new EdgeTask(executor, edgeCounter, i % NUM_METHODS, 0));
+		executor.awaitCompletion();
+		long duration = System.nanoTime() - beforeRun;
+		executor.shutdown();
+		if (executor.getException() != null)
+			throw new RuntimeException(executor.getException());
+		return edgeCounter.get() / (duration / 1E9);
+	}
+	
+	public static void main(String[] args) throws InterruptedException {
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		DefaultSolverExecutorFactory[] factories = new DefaultSolverExecutorFactory[] {
+				new DefaultSolverExecutorFactory(),
+				new DefaultSolverExecutorFactory(SolverExecutor.WorkStealing, false, 16),
+				new DefaultSolverExecutorFactory(SolverExecutor.WorkStealing, true, 16) };
+		String[] names = new String[] { "ThreadPool", "WorkStealing", "WorkStealing+Affinity" };
+		
+		System.out.println("executor,threads,edgesPerSecond");
+		for (int f = 0; f < factories.length; f++)
+			for (int numThreads = 1; numThreads <= maxThreads; numThreads *= 2) {
+				// Warm up the JIT before measuring
+				measure(factories[f], numThreads);
+				System.out.println(names[f] + "," + numThreads + ","
+						+ (long) measure(factories[f], numThreads));
+			}
+	}
+	
+}
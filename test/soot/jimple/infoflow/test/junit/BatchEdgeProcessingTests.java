@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.jimple.infoflow.Infoflow;
+
+/**
+ * Tests that processing all facts at a statement together yields the same
+ * results as processing every edge on its own
+ */
+public class BatchEdgeProcessingTests extends JUnitTests {
+
+	private Infoflow initBatchInfoflow() {
+		Infoflow infoflow = initInfoflow();
+		infoflow.setBatchEdgeProcessing(true);
+		return infoflow;
+	}
+
+	@Test(timeout = 300000)
+	public void batchMethodTest() {
+		Infoflow infoflow = initBatchInfoflow();
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void methodTest1()>");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		checkInfoflow(infoflow, 1);
+	}
+
+	@Test(timeout = 300000)
+	public void batchAliasTest() {
+		Infoflow infoflow = initBatchInfoflow();
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void functionAliasTest()>");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		checkInfoflow(infoflow, 1);
+	}
+
+	@Test(timeout = 300000)
+	public void batchNegativeTest() {
+		Infoflow infoflow = initBatchInfoflow();
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void testForWrapper()>");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		negativeCheckInfoflow(infoflow);
+	}
+
+	@Test(timeout = 600000)
+	public void batchSameResultsTest() {
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void methodTest1()>");
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void functionAliasTest()>");
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void functionAliasTest2()>");
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void multiLevelTaint()>");
+
+		Infoflow infoflow = initInfoflow();
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		int expectedSize = infoflow.getResults().size();
+
+		Infoflow batchInfoflow = initBatchInfoflow();
+		batchInfoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		Assert.assertEquals(expectedSize, batchInfoflow.getResults().size());
+	}
+
+}
@@ -20,6 +20,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import soot.jimple.infoflow.Infoflow;
+import soot.jimple.infoflow.results.InfoflowResults;
 import soot.jimple.infoflow.taintWrappers.EasyTaintWrapper;
 
 /**
@@ -186,4 +187,57 @@ public class EasyWrapperTests extends JUnitTests {
 		Assert.assertTrue(infoflow.getResults().isPathBetweenMethods(sink, sourcePwd));
     }
 	
+	@Test
+	public void cloneIsIndependentTest() {
+		EasyTaintWrapper wrapper = easyWrapper.clone();
+		wrapper.addMethodForWrapping("java.lang.String", "java.lang.String cloneTestMethod()");
+		wrapper.addMethodForWrapping("soot.jimple.infoflow.test.EasyWrapperTestCode$I1",
+				"void taintMe(java.lang.String)");
+		wrapper.addIncludePrefix("soot.jimple.infoflow.test");
+		
+		Assert.assertTrue(wrapper.getClassList().get("java.lang.String").contains
+				("java.lang.String cloneTestMethod()"));
+		Assert.assertFalse(easyWrapper.getClassList().get("java.lang.String").contains
+				("java.lang.String cloneTestMethod()"));
+		Assert.assertFalse(easyWrapper.getClassList().containsKey
+				("soot.jimple.infoflow.test.EasyWrapperTestCode$I1"));
+		Assert.assertFalse(easyWrapper.getIncludeList().contains("soot.jimple.infoflow.test"));
+	}
+	
+	private InfoflowResults runWithResultCache(String epoint, long resultCacheSize) {
+		EasyTaintWrapper wrapper = easyWrapper.clone();
+		wrapper.addIncludePrefix("soot.jimple.infoflow.test");
+		wrapper.addMethodForWrapping("soot.jimple.infoflow.test.EasyWrapperTestCode$I1",
+				"void taintMe(java.lang.String)");
+		wrapper.setResultCacheSize(resultCacheSize);
+		
+		Infoflow infoflow = initInfoflow();
+		List<String> epoints = new ArrayList<String>();
+		epoints.add(epoint);
+		infoflow.setTaintWrapper(wrapper);
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		return infoflow.getResults();
+	}
+	
+	@Test(timeout=600000)
+	public void resultCacheTest() {
+		String[] epoints = new String[] {
+				"<soot.jimple.infoflow.test.EasyWrapperTestCode: void stringConcatTest()>",
+				"<soot.jimple.infoflow.test.EasyWrapperTestCode: void interfaceInheritanceTest2()>",
+				"<soot.jimple.infoflow.test.EasyWrapperTestCode: void interfaceInheritanceTest4()>",
+				"<soot.jimple.infoflow.test.EasyWrapperTestCode: void equalsTest2()>" };
+		for (String epoint : epoints) {
+			InfoflowResults cached = runWithResultCache(epoint, 10000);
+			InfoflowResults uncached = runWithResultCache(epoint, 0);
+			Assert.assertEquals(epoint, uncached == null ? 0 : uncached.size(),
+					cached == null ? 0 : cached.size());
+			Assert.assertEquals(epoint,
+					uncached != null && uncached.isPathBetweenMethods(sink, sourceDeviceId),
+					cached != null && cached.isPathBetweenMethods(sink, sourceDeviceId));
+			Assert.assertEquals(epoint,
+					uncached != null && uncached.isPathBetweenMethods(sink, sourcePwd),
+					cached != null && cached.isPathBetweenMethods(sink, sourcePwd));
+		}
+	}
+	
 }
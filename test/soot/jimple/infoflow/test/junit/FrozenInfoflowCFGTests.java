@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.junit;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.infoflow.Infoflow;
+import soot.jimple.infoflow.handlers.ResultsAvailableHandler;
+import soot.jimple.infoflow.results.InfoflowResults;
+import soot.jimple.infoflow.solver.FrozenInfoflowCFG;
+import soot.jimple.infoflow.solver.IInfoflowCFG;
+import soot.util.queue.QueueReader;
+
+/**
+ * Tests for the array-based snapshot of the interprocedural control-flow
+ * graph
+ */
+public class FrozenInfoflowCFGTests extends JUnitTests {
+
+	private Infoflow initFrozenInfoflow() {
+		Infoflow infoflow = initInfoflow();
+		infoflow.setFreezeICFG(true);
+		return infoflow;
+	}
+
+	private List<SootMethod> getReachableMethods() {
+		List<SootMethod> methods = new ArrayList<SootMethod>();
+		for (QueueReader<MethodOrMethodContext> rdr =
+				Scene.v().getReachableMethods().listener(); rdr.hasNext(); ) {
+			SootMethod sm = rdr.next().method();
+			if (sm.hasActiveBody())
+				methods.add(sm);
+		}
+		return methods;
+	}
+
+	private static <T> void assertSameElements(String message, Collection<T> expected,
+			Collection<T> actual) {
+		Assert.assertEquals(message, new HashSet<T>(expected), new HashSet<T>(actual));
+		Assert.assertEquals(message, expected.size(), actual.size());
+	}
+
+	@Test(timeout=300000)
+	public void frozenMethodTest() {
+		Infoflow infoflow = initFrozenInfoflow();
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void methodTest1()>");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		checkInfoflow(infoflow, 1);
+	}
+
+	@Test(timeout=300000)
+	public void frozenAliasTest() {
+		Infoflow infoflow = initFrozenInfoflow();
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void functionAliasTest()>");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		checkInfoflow(infoflow, 1);
+	}
+
+	@Test(timeout=300000)
+	public void frozenNegativeTest() {
+		Infoflow infoflow = initFrozenInfoflow();
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void testForWrapper()>");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		negativeCheckInfoflow(infoflow);
+	}
+
+	@Test(timeout=300000)
+	public void snapshotMatchesOriginalTest() {
+		final AtomicInteger checkedUnits = new AtomicInteger();
+		Infoflow infoflow = initFrozenInfoflow();
+		infoflow.addResultsAvailableHandler(new ResultsAvailableHandler() {
+
+			@Override
+			public void onResultsAvailable(IInfoflowCFG cfg, InfoflowResults results) {
+				Assert.assertTrue(cfg instanceof FrozenInfoflowCFG);
+				IInfoflowCFG original = ((FrozenInfoflowCFG) cfg).getDelegate();
+
+				for (SootMethod sm : getReachableMethods()) {
+					String msg = sm.getSignature();
+					assertSameElements(msg, original.getStartPointsOf(sm), cfg.getStartPointsOf(sm));
+					assertSameElements(msg, original.getEndPointsOf(sm), cfg.getEndPointsOf(sm));
+					assertSameElements(msg, original.getCallersOf(sm), cfg.getCallersOf(sm));
+
+					for (Unit u : sm.getActiveBody().getUnits()) {
+						msg = sm.getSignature() + " " + u;
+						Assert.assertSame(msg, original.getMethodOf(u), cfg.getMethodOf(u));
+						Assert.assertEquals(msg, original.getSuccsOf(u), cfg.getSuccsOf(u));
+						Assert.assertEquals(msg, original.getPredsOf(u), cfg.getPredsOf(u));
+						Assert.assertEquals(msg, original.isCallStmt(u), cfg.isCallStmt(u));
+						Assert.assertEquals(msg, original.isExitStmt(u), cfg.isExitStmt(u));
+						Assert.assertEquals(msg, original.isStartPoint(u), cfg.isStartPoint(u));
+						Assert.assertEquals(msg, original.isReturnSite(u), cfg.isReturnSite(u));
+						if (original.isCallStmt(u)) {
+							assertSameElements(msg, original.getCalleesOfCallAt(u),
+									cfg.getCalleesOfCallAt(u));
+							assertSameElements(msg, original.getReturnSitesOfCallAt(u),
+									cfg.getReturnSitesOfCallAt(u));
+						}
+						checkedUnits.incrementAndGet();
+					}
+				}
+				Assert.assertEquals(checkedUnits.get(), ((FrozenInfoflowCFG) cfg).getUnitCount());
+			}
+
+		});
+
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void methodTest1()>");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		checkInfoflow(infoflow, 1);
+		Assert.assertTrue(checkedUnits.get() > 0);
+	}
+
+	@Test(timeout=300000)
+	public void changedMethodTest() {
+		final AtomicInteger checkedMethods = new AtomicInteger();
+		Infoflow infoflow = initFrozenInfoflow();
+		infoflow.addResultsAvailableHandler(new ResultsAvailableHandler() {
+
+			@Override
+			public void onResultsAvailable(IInfoflowCFG cfg, InfoflowResults results) {
+				// Take a new snapshot on top of a graph that counts the
+				// queries it receives
+				final IInfoflowCFG original = ((FrozenInfoflowCFG) cfg).getDelegate();
+				final AtomicInteger delegateCalls = new AtomicInteger();
+				IInfoflowCFG countingCfg = (IInfoflowCFG) Proxy.newProxyInstance
+						(IInfoflowCFG.class.getClassLoader(), new Class<?>[] { IInfoflowCFG.class },
+						new InvocationHandler() {
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args)
+							throws Throwable {
+						delegateCalls.incrementAndGet();
+						try {
+							return method.invoke(original, args);
+						}
+						catch (InvocationTargetException ex) {
+							throw ex.getCause();
+						}
+					}
+
+				});
+
+				SootMethod sm = Scene.v().getMethod("<soot.jimple.infoflow.test.HeapTestCode: void methodTest1()>");
+				FrozenInfoflowCFG frozen = new FrozenInfoflowCFG(countingCfg,
+						Collections.singletonList(sm));
+				Unit u = sm.getActiveBody().getUnits().getFirst();
+
+				// Frozen methods are answered from the snapshot
+				delegateCalls.set(0);
+				Assert.assertEquals(original.getSuccsOf(u), frozen.getSuccsOf(u));
+				assertSameElements(null, original.getStartPointsOf(sm), frozen.getStartPointsOf(sm));
+				Assert.assertEquals(0, delegateCalls.get());
+
+				// Changed methods are answered by the original graph
+				frozen.notifyMethodChanged(sm);
+				delegateCalls.set(0);
+				Assert.assertEquals(original.getSuccsOf(u), frozen.getSuccsOf(u));
+				assertSameElements(null, original.getStartPointsOf(sm), frozen.getStartPointsOf(sm));
+				Assert.assertEquals(2, delegateCalls.get());
+				checkedMethods.incrementAndGet();
+			}
+
+		});
+
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void methodTest1()>");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		Assert.assertEquals(1, checkedMethods.get());
+	}
+
+}
@@ -34,6 +34,7 @@ import soot.jimple.Stmt;
 import soot.jimple.infoflow.IInfoflow.AliasingAlgorithm;
 import soot.jimple.infoflow.Infoflow;
 import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
 import soot.jimple.infoflow.entryPointCreators.DefaultEntryPointCreator;
 import soot.jimple.infoflow.results.InfoflowResults;
 import soot.jimple.infoflow.solver.IInfoflowCFG;
@@ -436,14 +437,14 @@ public class HeapTests extends JUnitTests {
 							.getInvokeExpr();
 					if (taintedPath.getPlainValue() == iinv.getArg(0)) {
 						RefType rt = (RefType) iinv.getBase().getType();
-						AccessPath ap = new AccessPath(iinv.getBase(),
+						AccessPath ap = AccessPathFactory.v().createAccessPath(iinv.getBase(),
 								new SootField[] { rt.getSootClass()
 										.getFieldByName("b1") }, true);
 						res.add(ap);
 					}
 					if (taintedPath.getPlainValue() == iinv.getArg(1)) {
 						RefType rt = (RefType) iinv.getBase().getType();
-						AccessPath ap = new AccessPath(iinv.getBase(),
+						AccessPath ap = AccessPathFactory.v().createAccessPath(iinv.getBase(),
 								new SootField[] { rt.getSootClass()
 										.getFieldByName("b2") }, true);
 						res.add(ap);
@@ -454,13 +455,13 @@ public class HeapTests extends JUnitTests {
 							.getInvokeExpr();
 					if (taintedPath.getPlainValue() == iinv.getArg(0)) {
 						RefType rt = (RefType) iinv.getBase().getType();
-						AccessPath ap = new AccessPath(iinv.getBase(),
+						AccessPath ap = AccessPathFactory.v().createAccessPath(iinv.getBase(),
 								new SootField[] { rt.getSootClass()
 										.getFieldByName("b1") }, true);
 						res.add(ap);
 					} else if (taintedPath.getPlainValue() == iinv.getBase()) {
 						DefinitionStmt def = (DefinitionStmt) stmt;
-						AccessPath ap = new AccessPath(
+						AccessPath ap = AccessPathFactory.v().createAccessPath(
 								def.getLeftOp(),
 								Scene.v()
 										.getSootClass(
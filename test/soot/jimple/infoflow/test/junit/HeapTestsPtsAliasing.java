@@ -28,6 +28,7 @@ import soot.jimple.Stmt;
 import soot.jimple.infoflow.IInfoflow.AliasingAlgorithm;
 import soot.jimple.infoflow.Infoflow;
 import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
 import soot.jimple.infoflow.solver.IInfoflowCFG;
 import soot.jimple.infoflow.taintWrappers.AbstractTaintWrapper;
 
@@ -437,7 +438,7 @@ public class HeapTestsPtsAliasing extends JUnitTests {
 							.getInvokeExpr();
 					if (taintedPath.getPlainValue() == iinv.getArg(0)) {
 						RefType rt = (RefType) iinv.getBase().getType();
-						AccessPath ap = new AccessPath(iinv.getBase(),
+						AccessPath ap = AccessPathFactory.v().createAccessPath(iinv.getBase(),
 								new SootField[] { rt.getSootClass()
 										.getFieldByName("b1") /*
 															 * , Scene.v().
@@ -456,7 +457,7 @@ public class HeapTestsPtsAliasing extends JUnitTests {
 					}
 					if (taintedPath.getPlainValue() == iinv.getArg(1)) {
 						RefType rt = (RefType) iinv.getBase().getType();
-						AccessPath ap = new AccessPath(iinv.getBase(),
+						AccessPath ap = AccessPathFactory.v().createAccessPath(iinv.getBase(),
 								new SootField[] { rt.getSootClass()
 										.getFieldByName("b2") /*
 															 * , Scene.v().
@@ -479,7 +480,7 @@ public class HeapTestsPtsAliasing extends JUnitTests {
 							.getInvokeExpr();
 					if (taintedPath.getPlainValue() == iinv.getArg(0)) {
 						RefType rt = (RefType) iinv.getBase().getType();
-						AccessPath ap = new AccessPath(iinv.getBase(),
+						AccessPath ap = AccessPathFactory.v().createAccessPath(iinv.getBase(),
 								new SootField[] { rt.getSootClass()
 										.getFieldByName("b1") /*
 															 * , Scene.v().
@@ -501,7 +502,7 @@ public class HeapTestsPtsAliasing extends JUnitTests {
 					 * .attr && taintedPath.getLastField().getName().equals("b")
 					 */) {
 						DefinitionStmt def = (DefinitionStmt) stmt;
-						AccessPath ap = new AccessPath(
+						AccessPath ap = AccessPathFactory.v().createAccessPath(
 								def.getLeftOp(),
 								Scene.v()
 										.getSootClass(
@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.junit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootField;
+import soot.SootMethod;
+import soot.jimple.AssignStmt;
+import soot.jimple.FieldRef;
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.IInfoflow.CodeEliminationMode;
+import soot.jimple.infoflow.Infoflow;
+import soot.jimple.infoflow.handlers.ResultsAvailableHandler;
+import soot.jimple.infoflow.results.InfoflowResults;
+import soot.jimple.infoflow.solver.IInfoflowCFG;
+import soot.jimple.infoflow.solver.MethodEffectSummaries;
+import soot.jimple.infoflow.solver.MethodEffectSummaries.ISideEffectCondition;
+import soot.util.queue.QueueReader;
+
+/**
+ * Tests for the bottom-up summaries of method effects
+ */
+public class MethodEffectSummariesTests extends JUnitTests {
+	
+	private static final String testCode = "soot.jimple.infoflow.test.MethodEffectTestCode";
+	
+	/**
+	 * Condition that regards all writes to fields as side effects
+	 */
+	private static class FieldWriteCondition implements ISideEffectCondition {
+		
+		private final SootMethod effectFreeMethod;
+		
+		public FieldWriteCondition(SootMethod effectFreeMethod) {
+			this.effectFreeMethod = effectFreeMethod;
+		}
+		
+		@Override
+		public boolean isEffectFree(SootMethod method) {
+			return method == effectFreeMethod;
+		}
+		
+		@Override
+		public boolean hasSideEffect(SootMethod method, Stmt stmt) {
+			return stmt instanceof AssignStmt
+					&& ((AssignStmt) stmt).getLeftOp() instanceof FieldRef;
+		}
+		
+	}
+	
+	/**
+	 * Runs the analysis on the test code and invokes the given handler once
+	 * the callgraph is available
+	 * @param handler The handler that checks the summaries
+	 */
+	private void runOnTestCode(ResultsAvailableHandler handler) {
+		runOnTestCode("void effectTest()", handler);
+	}
+	
+	/**
+	 * Runs the analysis on the given method of the test code and invokes the
+	 * given handler once the callgraph is available
+	 * @param entryPoint The subsignature of the entry point
+	 * @param handler The handler that checks the summaries
+	 */
+	private void runOnTestCode(String entryPoint, ResultsAvailableHandler handler) {
+		final AtomicInteger invocations = new AtomicInteger();
+		Infoflow infoflow = initInfoflow();
+		// Keep the calls to methods without side effects
+		infoflow.setCodeEliminationMode(CodeEliminationMode.NoCodeElimination);
+		infoflow.addResultsAvailableHandler(handler);
+		infoflow.addResultsAvailableHandler(new ResultsAvailableHandler() {
+			
+			@Override
+			public void onResultsAvailable(IInfoflowCFG cfg, InfoflowResults results) {
+				invocations.incrementAndGet();
+			}
+			
+		});
+		
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<" + testCode + ": " + entryPoint + ">");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		checkInfoflow(infoflow, 1);
+		Assert.assertEquals(1, invocations.get());
+	}
+	
+	private static SootMethod getMethod(String subSig) {
+		return Scene.v().getSootClass(testCode).getMethod(subSig);
+	}
+	
+	private static SootField getField(String name) {
+		return Scene.v().getSootClass(testCode).getFieldByName(name);
+	}
+	
+	private static MethodEffectSummaries computeSummaries(ISideEffectCondition condition,
+			int numThreads) {
+		List<SootMethod> methods = new ArrayList<SootMethod>();
+		for (QueueReader<MethodOrMethodContext> rdr =
+				Scene.v().getReachableMethods().listener(); rdr.hasNext(); )
+			methods.add(rdr.next().method());
+		return new MethodEffectSummaries(Scene.v().getCallGraph(), methods,
+				condition, true, true, numThreads);
+	}
+	
+	@Test(timeout=300000)
+	public void staticFieldTest() {
+		runOnTestCode(new ResultsAvailableHandler() {
+			
+			@Override
+			public void onResultsAvailable(IInfoflowCFG cfg, InfoflowResults results) {
+				MethodEffectSummaries summaries = computeSummaries
+						(new FieldWriteCondition(null), 1);
+				SootField staticField = getField("staticField");
+				SootField otherField = getField("otherField");
+				
+				SootMethod readLeaf = getMethod("java.lang.String readLeaf()");
+				Assert.assertTrue(summaries.isStaticFieldRead(readLeaf, staticField));
+				Assert.assertFalse(summaries.isStaticFieldUsed(readLeaf, otherField));
+				
+				// Writes in callees are visible in the callers
+				SootMethod writeCaller = getMethod("void writeCaller(java.lang.String)");
+				Assert.assertTrue(summaries.isStaticFieldUsed(writeCaller, staticField));
+				Assert.assertFalse(summaries.isStaticFieldRead(writeCaller, staticField));
+				
+				SootMethod entry = getMethod("void effectTest()");
+				Assert.assertTrue(summaries.isStaticFieldRead(entry, staticField));
+				Assert.assertTrue(summaries.isStaticFieldUsed(entry, otherField));
+				
+				SootMethod pure = getMethod("int pure(int)");
+				Assert.assertTrue(summaries.hasSummary(pure));
+				Assert.assertFalse(summaries.isStaticFieldUsed(pure, staticField));
+				Assert.assertFalse(summaries.isStaticFieldUsed(pure, otherField));
+				
+				// The control-flow graph must give the same answers
+				Assert.assertTrue(cfg.isStaticFieldRead(readLeaf, staticField));
+				Assert.assertTrue(cfg.isStaticFieldUsed(writeCaller, staticField));
+				Assert.assertFalse(cfg.isStaticFieldUsed(pure, staticField));
+			}
+			
+		});
+	}
+	
+	@Test(timeout=300000)
+	public void sideEffectTest() {
+		runOnTestCode(new ResultsAvailableHandler() {
+			
+			@Override
+			public void onResultsAvailable(IInfoflowCFG cfg, InfoflowResults results) {
+				MethodEffectSummaries summaries = computeSummaries
+						(new FieldWriteCondition(null), 1);
+				Assert.assertFalse(summaries.hasSideEffects(getMethod("java.lang.String readLeaf()")));
+				Assert.assertFalse(summaries.hasSideEffects(getMethod("int pure(int)")));
+				Assert.assertTrue(summaries.hasSideEffects(getMethod("void writeLeaf(java.lang.String)")));
+				Assert.assertTrue(summaries.hasSideEffects(getMethod("void writeCaller(java.lang.String)")));
+				Assert.assertTrue(summaries.hasSideEffects(getMethod("void instanceWrite(java.lang.String)")));
+				Assert.assertTrue(summaries.hasSideEffects(getMethod("void effectTest()")));
+				
+				// Methods that are declared free of effects hide the effects
+				// of their bodies from their callers
+				SootMethod writeLeaf = getMethod("void writeLeaf(java.lang.String)");
+				summaries = computeSummaries(new FieldWriteCondition(writeLeaf), 1);
+				Assert.assertFalse(summaries.hasSideEffects(writeLeaf));
+				Assert.assertFalse(summaries.hasSideEffects(getMethod("void writeCaller(java.lang.String)")));
+			}
+			
+		});
+	}
+	
+	@Test(timeout=300000)
+	public void recursionTest() {
+		runOnTestCode(new ResultsAvailableHandler() {
+			
+			@Override
+			public void onResultsAvailable(IInfoflowCFG cfg, InfoflowResults results) {
+				MethodEffectSummaries summaries = computeSummaries
+						(new FieldWriteCondition(null), 1);
+				SootField otherField = getField("otherField");
+				SootMethod recursiveA = getMethod("int recursiveA(int)");
+				SootMethod recursiveB = getMethod("int recursiveB(int)");
+				
+				// Both methods are in the same component and share the
+				// effects of recursiveB
+				Assert.assertTrue(summaries.hasSideEffects(recursiveA));
+				Assert.assertTrue(summaries.isStaticFieldUsed(recursiveA, otherField));
+				Assert.assertTrue(summaries.isStaticFieldUsed(recursiveB, otherField));
+				Assert.assertNotNull(summaries.getDigest(recursiveA));
+				Assert.assertEquals(summaries.getDigest(recursiveA), summaries.getDigest(recursiveB));
+				Assert.assertFalse(summaries.getDigest(recursiveA).equals
+						(summaries.getDigest(getMethod("int pure(int)"))));
+			}
+			
+		});
+	}
+	
+	@Test(timeout=300000)
+	public void parallelTest() {
+		runOnTestCode(new ResultsAvailableHandler() {
+			
+			@Override
+			public void onResultsAvailable(IInfoflowCFG cfg, InfoflowResults results) {
+				MethodEffectSummaries sequential = computeSummaries
+						(new FieldWriteCondition(null), 1);
+				MethodEffectSummaries parallel = computeSummaries
+						(new FieldWriteCondition(null), 4);
+				Assert.assertEquals(sequential.size(), parallel.size());
+				
+				List<SootField> fields = new ArrayList<SootField>();
+				Collections.addAll(fields, getField("staticField"), getField("otherField"));
+				for (QueueReader<MethodOrMethodContext> rdr =
+						Scene.v().getReachableMethods().listener(); rdr.hasNext(); ) {
+					SootMethod sm = rdr.next().method();
+					Assert.assertEquals(sequential.hasSideEffects(sm), parallel.hasSideEffects(sm));
+					Assert.assertEquals(sequential.getDigest(sm), parallel.getDigest(sm));
+					for (SootField field : fields) {
+						Assert.assertEquals(sequential.isStaticFieldRead(sm, field),
+								parallel.isStaticFieldRead(sm, field));
+						Assert.assertEquals(sequential.isStaticFieldUsed(sm, field),
+								parallel.isStaticFieldUsed(sm, field));
+					}
+				}
+			}
+			
+		});
+	}
+	
+	@Test(timeout=300000)
+	public void parallelDagTest() {
+		runOnTestCode("void dagTest()", new ResultsAvailableHandler() {
+			
+			@Override
+			public void onResultsAvailable(IInfoflowCFG cfg, InfoflowResults results) {
+				SootField dagField = getField("dagField");
+				List<SootMethod> dagMethods = new ArrayList<SootMethod>();
+				for (SootMethod sm : Scene.v().getSootClass(testCode).getMethods())
+					if (sm.getName().startsWith("dag"))
+						dagMethods.add(sm);
+				Assert.assertEquals(49, dagMethods.size());
+				
+				MethodEffectSummaries sequential = computeSummaries
+						(new FieldWriteCondition(null), 1);
+				
+				// Repeat the parallel computation, since components that are
+				// scheduled twice only show up with some interleavings
+				for (int run = 0; run < 20; run++) {
+					MethodEffectSummaries parallel = computeSummaries
+							(new FieldWriteCondition(null), 8);
+					for (SootMethod sm : dagMethods) {
+						String msg = run + " " + sm.getSignature();
+						Assert.assertTrue(msg, parallel.hasSummary(sm));
+						Assert.assertEquals(msg, sequential.hasSideEffects(sm), parallel.hasSideEffects(sm));
+						Assert.assertEquals(msg, sequential.isStaticFieldUsed(sm, dagField),
+								parallel.isStaticFieldUsed(sm, dagField));
+						Assert.assertEquals(msg, sequential.getDigest(sm), parallel.getDigest(sm));
+					}
+					
+					// Every layer but the last one reaches the field write
+					SootMethod entry = getMethod("void dagTest()");
+					Assert.assertTrue(parallel.hasSideEffects(entry));
+					Assert.assertTrue(parallel.isStaticFieldUsed(entry, dagField));
+					Assert.assertTrue(parallel.isStaticFieldUsed(getMethod("void dag6_5(int)"), dagField));
+					Assert.assertFalse(parallel.isStaticFieldUsed(getMethod("void dag7_5(int)"), dagField));
+				}
+			}
+			
+		});
+	}
+	
+}
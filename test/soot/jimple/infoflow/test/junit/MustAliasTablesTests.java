@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.Body;
+import soot.Local;
+import soot.MethodOrMethodContext;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.Infoflow;
+import soot.jimple.infoflow.aliasing.MustAliasTables;
+import soot.jimple.infoflow.handlers.ResultsAvailableHandler;
+import soot.jimple.infoflow.results.InfoflowResults;
+import soot.jimple.infoflow.solver.IInfoflowCFG;
+import soot.jimple.toolkits.pointer.LocalMustAliasAnalysis;
+import soot.jimple.toolkits.pointer.StrongLocalMustAliasAnalysis;
+import soot.toolkits.graph.UnitGraph;
+import soot.util.queue.QueueReader;
+
+/**
+ * Tests for the precomputed must-alias tables
+ */
+public class MustAliasTablesTests extends JUnitTests {
+
+	private List<SootMethod> getTestMethods() {
+		List<SootMethod> methods = new ArrayList<SootMethod>();
+		for (QueueReader<MethodOrMethodContext> rdr =
+				Scene.v().getReachableMethods().listener(); rdr.hasNext(); ) {
+			SootMethod sm = rdr.next().method();
+			if (sm.hasActiveBody()
+					&& sm.getDeclaringClass().getName().startsWith("soot.jimple.infoflow.test"))
+				methods.add(sm);
+		}
+		return methods;
+	}
+
+	private List<Local> getRefLocals(Body body) {
+		List<Local> locals = new ArrayList<Local>();
+		for (Local l : body.getLocals())
+			if (l.getType() instanceof RefLikeType)
+				locals.add(l);
+		return locals;
+	}
+
+	/**
+	 * Checks the tables against the must-alias analysis for all pairs of
+	 * reference locals in the given method
+	 * @param cfg The interprocedural control flow graph
+	 * @param tables The tables to check
+	 * @param boundedTables Tables that are too small to keep any entry
+	 * @param sm The method to check
+	 * @return The number of pairs of locals that must alias
+	 */
+	private int checkMethod(IInfoflowCFG cfg, MustAliasTables tables,
+			MustAliasTables boundedTables, SootMethod sm) {
+		Assert.assertTrue(tables.hasTable(sm));
+
+		int mustAliases = 0;
+		LocalMustAliasAnalysis lmaa = new StrongLocalMustAliasAnalysis
+				((UnitGraph) cfg.getOrCreateUnitGraph(sm));
+		List<Local> locals = getRefLocals(sm.getActiveBody());
+		for (Unit u : sm.getActiveBody().getUnits()) {
+			Stmt stmt = (Stmt) u;
+			for (Local l1 : locals)
+				for (Local l2 : locals) {
+					if (l1 == l2)
+						continue;
+					String msg = sm.getSignature() + " " + stmt + " " + l1 + " " + l2;
+					boolean mustAlias = tables.mustAlias(l1, l2, sm, stmt);
+					Assert.assertEquals(msg, mustAlias, boundedTables.mustAlias(l1, l2, sm, stmt));
+					if (mustAlias) {
+						Assert.assertTrue(msg, lmaa.mustAlias(l1, stmt, l2, stmt));
+						mustAliases++;
+					}
+				}
+		}
+		return mustAliases;
+	}
+
+	@Test(timeout=300000)
+	public void tablesMatchAnalysisTest() {
+		final AtomicInteger mustAliases = new AtomicInteger();
+		Infoflow infoflow = initInfoflow();
+		infoflow.addResultsAvailableHandler(new ResultsAvailableHandler() {
+
+			@Override
+			public void onResultsAvailable(IInfoflowCFG cfg, InfoflowResults results) {
+				MustAliasTables tables = new MustAliasTables(cfg);
+				List<SootMethod> methods = getTestMethods();
+				tables.precompute(methods, 4);
+
+				// A table that cannot keep anything must still give the same
+				// answers
+				MustAliasTables boundedTables = new MustAliasTables(cfg, 1);
+				for (SootMethod sm : methods)
+					mustAliases.addAndGet(checkMethod(cfg, tables, boundedTables, sm));
+			}
+
+		});
+
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void functionAliasTest()>");
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void multiLevelTaint()>");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		checkInfoflow(infoflow, 2);
+		Assert.assertTrue(mustAliases.get() > 0);
+	}
+
+	@Test(timeout=300000)
+	public void changedBodyTest() {
+		final AtomicInteger checkedMethods = new AtomicInteger();
+		Infoflow infoflow = initInfoflow();
+		infoflow.addResultsAvailableHandler(new ResultsAvailableHandler() {
+
+			@Override
+			public void onResultsAvailable(IInfoflowCFG cfg, InfoflowResults results) {
+				MustAliasTables tables = new MustAliasTables(cfg);
+				MustAliasTables boundedTables = new MustAliasTables(cfg, 1);
+				for (SootMethod sm : getTestMethods()) {
+					int before = checkMethod(cfg, tables, boundedTables, sm);
+					if (before == 0)
+						continue;
+
+					// The statements of the new body are not in the old
+					// table, so the table must be rebuilt
+					Body oldBody = sm.getActiveBody();
+					sm.setActiveBody((Body) oldBody.clone());
+					try {
+						Assert.assertEquals(sm.getSignature(), before,
+								checkMethod(cfg, tables, boundedTables, sm));
+					}
+					finally {
+						sm.setActiveBody(oldBody);
+					}
+					checkedMethods.incrementAndGet();
+				}
+			}
+
+		});
+
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void functionAliasTest()>");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		checkInfoflow(infoflow, 1);
+		Assert.assertTrue(checkedMethods.get() > 0);
+	}
+
+}
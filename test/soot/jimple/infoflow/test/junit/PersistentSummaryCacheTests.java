@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.Scene;
+import soot.jimple.infoflow.Infoflow;
+import soot.jimple.infoflow.solver.summaries.PersistentSummaryCache;
+import soot.jimple.infoflow.source.DefaultSourceSinkManager;
+
+/**
+ * Tests for reusing library summaries across analysis runs
+ */
+public class PersistentSummaryCacheTests extends JUnitTests {
+	
+	private File cacheFile;
+	
+	@Before
+	public void createCacheFile() throws IOException {
+		cacheFile = File.createTempFile("infoflow", ".summaries");
+		cacheFile.delete();
+	}
+	
+	@After
+	public void deleteCacheFile() {
+		cacheFile.delete();
+	}
+	
+	private PersistentSummaryCache runWithCache(String epoint, List<String> sinks)
+			throws IOException {
+		soot.G.reset();
+		PersistentSummaryCache cache = new PersistentSummaryCache(cacheFile);
+		Infoflow infoflow = initInfoflow();
+		infoflow.setSummaryCache(cache);
+		infoflow.computeInfoflow(appPath, libPath, Collections.singletonList(epoint),
+				sources, sinks);
+		checkInfoflow(infoflow, 1);
+		return cache;
+	}
+	
+	@Test(timeout=300000)
+	public void missThenHitTest() throws IOException {
+		String epoint = "<soot.jimple.infoflow.test.SummaryCacheTestCode: void libraryCallTest()>";
+		
+		// The first run must analyze the library method and store its summary
+		PersistentSummaryCache cache = runWithCache(epoint, sinks);
+		Assert.assertEquals(0, cache.getHitCount());
+		Assert.assertTrue(cache.getMissCount() > 0);
+		Assert.assertTrue(cache.size() > 0);
+		Assert.assertTrue(cacheFile.exists());
+		
+		// The second run must take the summary from the file
+		cache = runWithCache(epoint, sinks);
+		Assert.assertTrue(cache.getHitCount() > 0);
+	}
+	
+	@Test(timeout=300000)
+	public void configurationChangeTest() throws IOException {
+		String epoint = "<soot.jimple.infoflow.test.SummaryCacheTestCode: void libraryCallTest()>";
+		PersistentSummaryCache cache = runWithCache(epoint, sinks);
+		String oldId = cache.getConfigurationId();
+		
+		// Changing the sinks must discard all summaries
+		List<String> newSinks = new ArrayList<String>(sinks);
+		newSinks.add("<soot.jimple.infoflow.test.android.ConnectionManager: void publish(java.lang.Object)>");
+		cache = runWithCache(epoint, newSinks);
+		Assert.assertFalse(oldId.equals(cache.getConfigurationId()));
+		Assert.assertEquals(0, cache.getHitCount());
+		
+		// The summaries of the new configuration must be used again
+		cache = runWithCache(epoint, newSinks);
+		Assert.assertTrue(cache.getHitCount() > 0);
+	}
+	
+	@Test(timeout=300000)
+	public void invalidateTest() throws IOException {
+		String epoint = "<soot.jimple.infoflow.test.SummaryCacheTestCode: void libraryCallTest()>";
+		PersistentSummaryCache cache = runWithCache(epoint, sinks);
+		Assert.assertTrue(cache.size() > 0);
+		cache.invalidate();
+		Assert.assertEquals(0, cache.size());
+		cache.save();
+		
+		cache = runWithCache(epoint, sinks);
+		Assert.assertEquals(0, cache.getHitCount());
+	}
+	
+	@Test(timeout=300000)
+	public void libraryCallbackTest() throws IOException {
+		// String.valueOf() calls back into the app, so it must not be cached
+		String epoint = "<soot.jimple.infoflow.test.SummaryCacheTestCode: void libraryCallbackTest()>";
+		PersistentSummaryCache cache = runWithCache(epoint, sinks);
+		Assert.assertFalse(cache.isCacheable(Scene.v().getMethod
+				("<java.lang.String: java.lang.String valueOf(java.lang.Object)>")));
+	}
+	
+	@Test
+	public void configurationIdTest() {
+		String id1 = PersistentSummaryCache.computeConfigurationId(null,
+				new DefaultSourceSinkManager(Arrays.asList("a", "b"), Arrays.asList("c")), "");
+		String id2 = PersistentSummaryCache.computeConfigurationId(null,
+				new DefaultSourceSinkManager(Arrays.asList("b", "a"), Arrays.asList("c")), "");
+		String id3 = PersistentSummaryCache.computeConfigurationId(null,
+				new DefaultSourceSinkManager(Arrays.asList("a", "b"), Arrays.asList("d")), "");
+		Assert.assertEquals(id1, id2);
+		Assert.assertFalse(id1.equals(id3));
+	}
+	
+}
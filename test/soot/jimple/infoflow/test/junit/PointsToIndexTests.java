@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.Local;
+import soot.MethodOrMethodContext;
+import soot.PointsToAnalysis;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SootMethod;
+import soot.jimple.infoflow.IInfoflow.AliasingAlgorithm;
+import soot.jimple.infoflow.Infoflow;
+import soot.jimple.infoflow.aliasing.PointsToIndex;
+import soot.jimple.infoflow.aliasing.PointsToIndex.PointsToSetId;
+import soot.jimple.infoflow.handlers.ResultsAvailableHandler;
+import soot.jimple.infoflow.results.InfoflowResults;
+import soot.jimple.infoflow.solver.IInfoflowCFG;
+import soot.util.queue.QueueReader;
+
+/**
+ * Tests for the interned points-to sets and the bounded memo of their
+ * intersections
+ */
+public class PointsToIndexTests extends JUnitTests {
+
+	/**
+	 * Handler that checks the intersections reported by a points-to index
+	 * against the points-to analysis for all pairs of reference locals in
+	 * the test code
+	 */
+	private static class IntersectionChecker implements ResultsAvailableHandler {
+
+		private final int maxIntersections;
+		private final AtomicInteger checkedPairs = new AtomicInteger();
+
+		public IntersectionChecker(int maxIntersections) {
+			this.maxIntersections = maxIntersections;
+		}
+
+		@Override
+		public void onResultsAvailable(IInfoflowCFG cfg, InfoflowResults results) {
+			PointsToAnalysis pta = Scene.v().getPointsToAnalysis();
+			PointsToIndex index = new PointsToIndex(pta, maxIntersections);
+
+			for (QueueReader<MethodOrMethodContext> rdr =
+					Scene.v().getReachableMethods().listener(); rdr.hasNext(); ) {
+				SootMethod sm = rdr.next().method();
+				if (!sm.hasActiveBody()
+						|| !sm.getDeclaringClass().getName().startsWith("soot.jimple.infoflow.test"))
+					continue;
+
+				List<Local> locals = new ArrayList<Local>();
+				for (Local l : sm.getActiveBody().getLocals())
+					if (l.getType() instanceof RefLikeType)
+						locals.add(l);
+
+				// Ask twice, so that the second round is answered from the
+				// memo as far as it has not been evicted
+				for (int round = 0; round < 2; round++)
+					for (Local l1 : locals)
+						for (Local l2 : locals) {
+							PointsToSetId pts1 = index.getPointsToSet(l1);
+							PointsToSetId pts2 = index.getPointsToSet(l2);
+							boolean expected = pta.reachingObjects(l1).hasNonEmptyIntersection
+									(pta.reachingObjects(l2));
+							Assert.assertEquals(sm.getSignature() + " " + l1 + " " + l2,
+									expected, index.hasNonEmptyIntersection(pts1, pts2));
+							Assert.assertTrue(index.getCachedIntersectionCount() <= maxIntersections);
+							checkedPairs.incrementAndGet();
+						}
+			}
+		}
+
+	}
+
+	private void runWithChecker(IntersectionChecker checker) {
+		Infoflow infoflow = initInfoflow();
+		infoflow.setAliasingAlgorithm(AliasingAlgorithm.PtsBased);
+		infoflow.addResultsAvailableHandler(checker);
+
+		List<String> epoints = new ArrayList<String>();
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void functionAliasTest()>");
+		epoints.add("<soot.jimple.infoflow.test.HeapTestCode: void multiLevelTaint()>");
+		infoflow.computeInfoflow(appPath, libPath, epoints, sources, sinks);
+		Assert.assertTrue(checker.checkedPairs.get() > 0);
+	}
+
+	@Test(timeout=300000)
+	public void intersectionTest() {
+		runWithChecker(new IntersectionChecker(1 << 20));
+	}
+
+	@Test(timeout=300000)
+	public void boundedIntersectionTest() {
+		runWithChecker(new IntersectionChecker(4));
+	}
+
+}
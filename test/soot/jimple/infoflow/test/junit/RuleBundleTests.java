@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.jimple.infoflow.config.RuleBundle;
+import soot.jimple.infoflow.source.DefaultSourceSinkManager;
+import soot.jimple.infoflow.taintWrappers.EasyTaintWrapper;
+
+/**
+ * Tests for writing and loading binary rule bundles
+ */
+public class RuleBundleTests {
+
+	private static final String SOURCE = "<android.telephony.TelephonyManager: java.lang.String getDeviceId()>";
+	private static final String SINK = "<android.telephony.SmsManager: void sendTextMessage(java.lang.String,"
+			+ "java.lang.String,java.lang.String,android.app.PendingIntent,android.app.PendingIntent)>";
+
+	private static Map<String, Set<String>> createClassMap(String className, String... subSigs) {
+		Map<String, Set<String>> classMap = new HashMap<String, Set<String>>();
+		classMap.put(className, new HashSet<String>(Arrays.asList(subSigs)));
+		return classMap;
+	}
+
+	private static RuleBundle createBundle(List<String> sources, List<String> sinks) {
+		return new RuleBundle(
+				createClassMap("java.lang.StringBuilder", "java.lang.StringBuilder append(java.lang.String)",
+						"java.lang.String toString()"),
+				createClassMap("java.util.List", "int size()"),
+				createClassMap("java.util.Map", "void clear()"),
+				new HashSet<String>(Arrays.asList("java.", "android.")),
+				sources, sinks,
+				Collections.singletonList("<com.example.Main: void onCreate(android.os.Bundle)>"),
+				null);
+	}
+
+	private static void assertSameRules(RuleBundle expected, RuleBundle actual) {
+		Assert.assertEquals(expected.getWrapperRules(), actual.getWrapperRules());
+		Assert.assertEquals(expected.getExcludeRules(), actual.getExcludeRules());
+		Assert.assertEquals(expected.getKillRules(), actual.getKillRules());
+		Assert.assertEquals(expected.getIncludePrefixes(), actual.getIncludePrefixes());
+		Assert.assertEquals(expected.getSources(), actual.getSources());
+		Assert.assertEquals(expected.getSinks(), actual.getSinks());
+		Assert.assertEquals(expected.getParameterTaintMethods(), actual.getParameterTaintMethods());
+		Assert.assertEquals(expected.getReturnTaintMethods(), actual.getReturnTaintMethods());
+	}
+
+	private static File writeBundle(RuleBundle bundle) throws IOException {
+		File file = File.createTempFile("rules", ".bundle");
+		file.deleteOnExit();
+		bundle.write(file);
+		return file;
+	}
+
+	@Test
+	public void roundTripTest() throws IOException {
+		RuleBundle bundle = createBundle(Collections.singletonList(SOURCE),
+				Collections.singletonList(SINK));
+		File file = writeBundle(bundle);
+		try {
+			Assert.assertTrue(RuleBundle.isBundle(file));
+			RuleBundle loaded = RuleBundle.load(file);
+			assertSameRules(bundle, loaded);
+			Assert.assertNull(loaded.getReturnTaintMethods());
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void textFileRoundTripTest() throws IOException {
+		File textFile = new File("EasyTaintWrapperSource.txt");
+		Assert.assertFalse(RuleBundle.isBundle(textFile));
+
+		RuleBundle bundle = RuleBundle.fromTaintWrapperFile(textFile);
+		Assert.assertFalse(bundle.getWrapperRules().isEmpty());
+		File file = writeBundle(bundle);
+		try {
+			assertSameRules(bundle, RuleBundle.load(file));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void corruptBundleTest() throws IOException {
+		File file = writeBundle(createBundle(Collections.singletonList(SOURCE),
+				Collections.singletonList(SINK)));
+		try {
+			// Flip a byte behind the header
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.seek(raf.length() - 5);
+				int b = raf.read();
+				raf.seek(raf.length() - 5);
+				raf.write(b ^ 0xFF);
+			}
+			finally {
+				raf.close();
+			}
+
+			try {
+				RuleBundle.load(file);
+				Assert.fail("Corrupt bundle was loaded");
+			}
+			catch (IOException ex) {
+				Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("corrupt"));
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void truncatedBundleTest() throws IOException {
+		File file = writeBundle(createBundle(Collections.singletonList(SOURCE),
+				Collections.singletonList(SINK)));
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(10);
+			}
+			finally {
+				raf.close();
+			}
+
+			try {
+				RuleBundle.load(file);
+				Assert.fail("Truncated bundle was loaded");
+			}
+			catch (IOException ex) {
+				// expected
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void wrongVersionTest() throws IOException {
+		File file = writeBundle(createBundle(Collections.singletonList(SOURCE),
+				Collections.singletonList(SINK)));
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.seek(4);
+				raf.writeInt(RuleBundle.VERSION + 1);
+			}
+			finally {
+				raf.close();
+			}
+
+			try {
+				RuleBundle.load(file);
+				Assert.fail("Bundle with wrong version was loaded");
+			}
+			catch (IOException ex) {
+				Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("version"));
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void bundleIsReadOnlyTest() {
+		Map<String, Set<String>> wrapperRules = createClassMap("java.lang.String", "java.lang.String trim()");
+		RuleBundle bundle = new RuleBundle(wrapperRules, new HashMap<String, Set<String>>(),
+				new HashMap<String, Set<String>>(), new HashSet<String>(), null, null, null, null);
+
+		// Changing the original map must not change the bundle
+		wrapperRules.get("java.lang.String").add("int length()");
+		Assert.assertFalse(bundle.getWrapperRules().get("java.lang.String").contains("int length()"));
+
+		try {
+			bundle.getWrapperRules().get("java.lang.String").add("int length()");
+			Assert.fail("Bundle rules were modified");
+		}
+		catch (UnsupportedOperationException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void wrapperCopiesRulesTest() {
+		RuleBundle bundle = createBundle(null, null);
+		EasyTaintWrapper wrapper1 = new EasyTaintWrapper(bundle);
+		EasyTaintWrapper wrapper2 = new EasyTaintWrapper(bundle);
+
+		wrapper1.addMethodForWrapping("java.lang.StringBuilder", "int length()");
+		wrapper1.addMethodForWrapping("java.lang.String", "java.lang.String trim()");
+		Assert.assertTrue(wrapper1.getClassList().get("java.lang.StringBuilder").contains("int length()"));
+		Assert.assertFalse(wrapper2.getClassList().get("java.lang.StringBuilder").contains("int length()"));
+		Assert.assertFalse(wrapper2.getClassList().containsKey("java.lang.String"));
+		Assert.assertFalse(bundle.getWrapperRules().get("java.lang.StringBuilder").contains("int length()"));
+		Assert.assertFalse(bundle.getWrapperRules().containsKey("java.lang.String"));
+	}
+
+	@Test
+	public void missingSourcesAndSinksTest() throws IOException {
+		RuleBundle bundle = createBundle(null, null);
+		File file = writeBundle(bundle);
+		try {
+			RuleBundle loaded = RuleBundle.load(file);
+			Assert.assertNull(loaded.getSources());
+			Assert.assertNull(loaded.getSinks());
+
+			DefaultSourceSinkManager manager = new DefaultSourceSinkManager(loaded);
+			Assert.assertNotNull(manager.getSources());
+			Assert.assertTrue(manager.getSources().isEmpty());
+			Assert.assertNotNull(manager.getSinks());
+			Assert.assertTrue(manager.getSinks().isEmpty());
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+}
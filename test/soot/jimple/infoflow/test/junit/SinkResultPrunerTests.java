@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.junit;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.RefType;
+import soot.SootField;
+import soot.jimple.Jimple;
+import soot.jimple.Stmt;
+import soot.jimple.infoflow.data.Abstraction;
+import soot.jimple.infoflow.data.AbstractionAtSink;
+import soot.jimple.infoflow.data.AccessPath;
+import soot.jimple.infoflow.data.AccessPathFactory;
+import soot.jimple.infoflow.data.SinkResultPruner;
+import soot.jimple.infoflow.data.SourceContext;
+
+/**
+ * Tests for pruning the results whose access paths are entailed by other
+ * results at the same sink
+ */
+public class SinkResultPrunerTests {
+
+	private final Local a = Jimple.v().newLocal("a", RefType.v("Outer"));
+	private final Local b = Jimple.v().newLocal("b", RefType.v("Outer"));
+	private final SootField f = new SootField("f", RefType.v("Inner"));
+	private final SootField g = new SootField("g", IntType.v());
+	private final SootField h = new SootField("h", IntType.v());
+	private final SootField s = new SootField("s", RefType.v("Inner"), Modifier.STATIC);
+
+	private final Stmt sourceStmt = Jimple.v().newNopStmt();
+	private final Stmt sink1 = Jimple.v().newNopStmt();
+	private final Stmt sink2 = Jimple.v().newNopStmt();
+	private final Abstraction source = new Abstraction(
+			AccessPathFactory.v().createAccessPath(a, false), sourceStmt, null, false, false);
+
+	private AccessPath ap(Local base, SootField... fields) {
+		return AccessPathFactory.v().createAccessPath(base,
+				fields.length == 0 ? null : fields, false);
+	}
+
+	private AbstractionAtSink result(AccessPath ap, Stmt sink) {
+		return result(ap, sink, false);
+	}
+
+	private AbstractionAtSink result(AccessPath ap, Stmt sink, boolean implicit) {
+		return new AbstractionAtSink(source.deriveNewAbstraction(ap, sink, implicit), sink);
+	}
+
+	private Set<AbstractionAtSink> resultSet(AbstractionAtSink... results) {
+		return new HashSet<AbstractionAtSink>(Arrays.asList(results));
+	}
+
+	@Test
+	public void prefixTest() {
+		AbstractionAtSink af = result(ap(a, f), sink1);
+		AbstractionAtSink afg = result(ap(a, f, g), sink1);
+		AbstractionAtSink afh = result(ap(a, f, h), sink1);
+		Set<AbstractionAtSink> results = resultSet(afg, af, afh);
+
+		Assert.assertEquals(2, SinkResultPruner.prune(results));
+		Assert.assertEquals(resultSet(af), results);
+	}
+
+	@Test
+	public void plainLocalTest() {
+		// A plain local and a field on it entail each other. The field is
+		// kept.
+		AbstractionAtSink plain = result(ap(a), sink1);
+		AbstractionAtSink af = result(ap(a, f), sink1);
+		AbstractionAtSink afg = result(ap(a, f, g), sink1);
+		Set<AbstractionAtSink> results = resultSet(plain, af, afg);
+
+		Assert.assertEquals(2, SinkResultPruner.prune(results));
+		Assert.assertEquals(resultSet(af), results);
+	}
+
+	@Test
+	public void equalPathsTest() {
+		// a.f and a.f.* have the same fields, so only one of them survives
+		AbstractionAtSink af = result(ap(a, f), sink1);
+		AbstractionAtSink afStar = result(AccessPathFactory.v().createAccessPath(
+				a, new SootField[] { f }, true), sink1);
+		Set<AbstractionAtSink> results = resultSet(af, afStar);
+
+		Assert.assertEquals(1, SinkResultPruner.prune(results));
+		Assert.assertEquals(1, results.size());
+		Assert.assertTrue(results.contains(af) || results.contains(afStar));
+	}
+
+	@Test
+	public void sameSinkTest() {
+		// Results at different sinks or on different bases are kept
+		AbstractionAtSink af1 = result(ap(a, f), sink1);
+		AbstractionAtSink afg1 = result(ap(a, f, g), sink1);
+		AbstractionAtSink afg2 = result(ap(a, f, g), sink2);
+		AbstractionAtSink bfg1 = result(ap(b, f, g), sink1);
+		Set<AbstractionAtSink> results = resultSet(af1, afg1, afg2, bfg1);
+
+		Assert.assertEquals(1, SinkResultPruner.prune(results));
+		Assert.assertEquals(resultSet(af1, afg2, bfg1), results);
+	}
+
+	@Test
+	public void implicitTest() {
+		// Implicit and explicit results are not pruned against each other
+		AbstractionAtSink af = result(ap(a, f), sink1, false);
+		AbstractionAtSink afgImplicit = result(ap(a, f, g), sink1, true);
+		AbstractionAtSink afImplicit = result(ap(a, f), sink1, true);
+		Set<AbstractionAtSink> results = resultSet(af, afgImplicit);
+
+		Assert.assertEquals(0, SinkResultPruner.prune(results));
+		Assert.assertEquals(resultSet(af, afgImplicit), results);
+
+		results.add(afImplicit);
+		Assert.assertEquals(1, SinkResultPruner.prune(results));
+		Assert.assertEquals(resultSet(af, afImplicit), results);
+	}
+
+	@Test
+	public void staticFieldTest() {
+		// Static fields have no base, but are still pruned against each
+		// other. They never entail fields on a local.
+		AbstractionAtSink st = result(AccessPathFactory.v().createAccessPath(s, false), sink1);
+		AbstractionAtSink stg = result(AccessPathFactory.v().createAccessPath(
+				null, new SootField[] { s, g }, false), sink1);
+		AbstractionAtSink afg = result(ap(a, f, g), sink1);
+		Set<AbstractionAtSink> results = resultSet(stg, st, afg);
+
+		Assert.assertEquals(1, SinkResultPruner.prune(results));
+		Assert.assertEquals(resultSet(st, afg), results);
+	}
+
+	@Test
+	public void differentSourcesTest() {
+		// Results from different sources are the only records of their
+		// sources and must all be kept
+		Abstraction af = source.deriveNewAbstraction(ap(a, f), sink1);
+		Abstraction afg = source.deriveNewAbstraction(ap(a, f, g), sink1);
+		SourceContext sc1 = new SourceContext(ap(a), sourceStmt);
+		SourceContext sc2 = new SourceContext(ap(b), sourceStmt);
+		AbstractionAtSink af1 = new AbstractionAtSink(af.injectSourceContext(sc1), sink1);
+		AbstractionAtSink afg1 = new AbstractionAtSink(afg.injectSourceContext(sc1), sink1);
+		AbstractionAtSink af2 = new AbstractionAtSink(af.injectSourceContext(sc2), sink1);
+		Set<AbstractionAtSink> results = resultSet(af1, afg1, af2);
+
+		Assert.assertEquals(1, SinkResultPruner.prune(results));
+		Assert.assertEquals(resultSet(af1, af2), results);
+	}
+
+}
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.junit;
+
+import heros.solver.Pair;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.jimple.infoflow.collect.ConcurrentHashSet;
+import soot.jimple.infoflow.collect.ConcurrentIdTable;
+import soot.jimple.infoflow.collect.MyConcurrentHashMap;
+import soot.jimple.infoflow.solver.fastSolver.SummarySpiller;
+import soot.jimple.infoflow.solver.memory.MemoryGovernor;
+import soot.jimple.infoflow.solver.memory.SpillFile;
+
+/**
+ * Tests for spilling end summaries and incoming edges to disk and loading
+ * them back
+ */
+public class SummarySpillerTests {
+
+	/**
+	 * Governor that always reports that memory is exhausted
+	 */
+	private static class AlwaysExhaustedGovernor extends MemoryGovernor {
+
+		public AlwaysExhaustedGovernor(double spillFraction) {
+			super(0.8, spillFraction, 1, null);
+		}
+
+		@Override
+		public boolean isMemoryExhausted() {
+			return true;
+		}
+
+	}
+
+	private MyConcurrentHashMap<Pair<String, String>, Set<Pair<String, String>>> endSummary;
+	private MyConcurrentHashMap<Pair<String, String>, MyConcurrentHashMap<String, Map<String, String>>> incoming;
+
+	private void fillTables(String... methods) {
+		endSummary = new MyConcurrentHashMap<Pair<String, String>, Set<Pair<String, String>>>();
+		incoming = new MyConcurrentHashMap<Pair<String, String>,
+				MyConcurrentHashMap<String, Map<String, String>>>();
+		for (String m : methods) {
+			for (int i = 0; i < 3; i++) {
+				Set<Pair<String, String>> summaries = new ConcurrentHashSet<Pair<String, String>>();
+				for (int j = 0; j < 5; j++)
+					summaries.add(new Pair<String, String>(m + "_exit" + j, "d" + i + "_" + j));
+				endSummary.put(new Pair<String, String>(m, "d" + i), summaries);
+
+				MyConcurrentHashMap<String, Map<String, String>> inc =
+						new MyConcurrentHashMap<String, Map<String, String>>();
+				Map<String, String> facts = new ConcurrentHashMap<String, String>();
+				facts.put("caller_d" + i, "callee_d" + i);
+				facts.put("caller_e" + i, "callee_e" + i);
+				inc.put(m + "_callSite", facts);
+				incoming.put(new Pair<String, String>(m, "d" + i), inc);
+			}
+		}
+	}
+
+	private Map<Object, Object> snapshot() {
+		Map<Object, Object> snapshot = new HashMap<Object, Object>();
+		for (Pair<String, String> key : endSummary.keySet())
+			snapshot.put(key, new HashSet<Pair<String, String>>(endSummary.get(key)));
+		for (Pair<String, String> key : incoming.keySet()) {
+			Map<String, Map<String, String>> inc = new HashMap<String, Map<String, String>>();
+			for (Map.Entry<String, Map<String, String>> entry : incoming.get(key).entrySet())
+				inc.put(entry.getKey(), new HashMap<String, String>(entry.getValue()));
+			snapshot.put("incoming " + key, inc);
+		}
+		return snapshot;
+	}
+
+	private SummarySpiller<String, String, String> createSpiller(MemoryGovernor governor) {
+		return new SummarySpiller<String, String, String>(endSummary, incoming,
+				new ConcurrentIdTable<String>(), new ConcurrentIdTable<String>(), governor);
+	}
+
+	@Test
+	public void spillAndReloadTest() {
+		fillTables("a", "b", "c", "d");
+		Map<Object, Object> before = snapshot();
+
+		SummarySpiller<String, String, String> spiller = createSpiller
+				(new AlwaysExhaustedGovernor(1.0));
+		try {
+			for (String m : new String[] { "a", "b", "c", "d" }) {
+				spiller.beginAccess(m, 1);
+				spiller.endAccess(m);
+			}
+			spiller.checkMemory(10);
+			Assert.assertEquals(4, spiller.getSpillCount());
+			Assert.assertTrue(endSummary.isEmpty());
+			Assert.assertTrue(incoming.isEmpty());
+
+			for (String m : new String[] { "a", "b", "c", "d" }) {
+				spiller.beginAccess(m, 20);
+				spiller.endAccess(m);
+			}
+			Assert.assertEquals(4, spiller.getFaultCount());
+			Assert.assertEquals(before, snapshot());
+		}
+		finally {
+			spiller.close();
+		}
+	}
+
+	@Test
+	public void spillLeastRecentlyUsedTest() {
+		fillTables("a", "b", "c", "d");
+		SummarySpiller<String, String, String> spiller = createSpiller
+				(new AlwaysExhaustedGovernor(0.5));
+		try {
+			long time = 0;
+			for (String m : new String[] { "c", "a", "d", "b" }) {
+				spiller.beginAccess(m, time++);
+				spiller.endAccess(m);
+			}
+			spiller.checkMemory(10);
+			Assert.assertEquals(2, spiller.getSpillCount());
+
+			// "c" and "a" were used first, so they must have been spilled
+			Set<String> remaining = new HashSet<String>();
+			for (Pair<String, String> key : endSummary.keySet())
+				remaining.add(key.getO1());
+			Assert.assertEquals(new HashSet<String>(Arrays.asList("b", "d")),
+					remaining);
+		}
+		finally {
+			spiller.close();
+		}
+	}
+
+	@Test
+	public void mergeOnReloadTest() {
+		fillTables("a");
+		Map<Object, Object> before = snapshot();
+		SummarySpiller<String, String, String> spiller = createSpiller
+				(new AlwaysExhaustedGovernor(1.0));
+		try {
+			spiller.beginAccess("a", 1);
+			spiller.endAccess("a");
+			spiller.checkMemory(10);
+			Assert.assertEquals(1, spiller.getSpillCount());
+
+			// Data that is added while the method is spilled must be kept
+			// when the spilled data is loaded back
+			Set<Pair<String, String>> newSummaries = new ConcurrentHashSet<Pair<String, String>>();
+			newSummaries.add(new Pair<String, String>("a_exitNew", "dNew"));
+			endSummary.put(new Pair<String, String>("a", "d0"), newSummaries);
+
+			spiller.beginAccess("a", 20);
+			spiller.endAccess("a");
+			Set<Pair<String, String>> summaries = endSummary.get(new Pair<String, String>("a", "d0"));
+			Assert.assertTrue(summaries.contains(new Pair<String, String>("a_exitNew", "dNew")));
+			summaries.remove(new Pair<String, String>("a_exitNew", "dNew"));
+			Assert.assertEquals(before, snapshot());
+		}
+		finally {
+			spiller.close();
+		}
+	}
+
+	@Test
+	public void spillFileRegionsTest() throws IOException {
+		// Use tiny regions, so that we need more regions than can be mapped
+		// at the same time
+		SpillFile file = new SpillFile(null, 64);
+		try {
+			long[] positions = new long[100];
+			for (int i = 0; i < positions.length; i++) {
+				int[] record = new int[i + 1];
+				for (int j = 0; j <= i; j++)
+					record[j] = i * 1000 + j;
+				positions[i] = file.write(record, record.length);
+			}
+			for (int i = positions.length - 1; i >= 0; i--) {
+				int[] record = file.read(positions[i], i + 1);
+				for (int j = 0; j <= i; j++)
+					Assert.assertEquals(i * 1000 + j, record[j]);
+			}
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void invalidLowWaterMarkTest() {
+		new MemoryGovernor(0.6, 0.7, 0.5, 1000, null);
+	}
+
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Secure Software Engineering Group at EC SPRIDE.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ * 
+ * Contributors: Christian Fritz, Steven Arzt, Siegfried Rasthofer, Eric
+ * Bodden, and others.
+ ******************************************************************************/
+package soot.jimple.infoflow.test.junit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.jimple.infoflow.solver.executors.WorkStealingSolverExecutor;
+
+/**
+ * Tests for the termination and the exception handling of the
+ * {@link WorkStealingSolverExecutor}
+ */
+public class WorkStealingSolverExecutorTests {
+
+	/**
+	 * Task that spawns a binary tree of tasks below itself
+	 */
+	private static class SpawningTask implements Runnable {
+
+		private final WorkStealingSolverExecutor executor;
+		private final AtomicInteger counter;
+		private final int depth;
+
+		public SpawningTask(WorkStealingSolverExecutor executor, AtomicInteger counter,
+				int depth) {
+			this.executor = executor;
+			this.counter = counter;
+			this.depth = depth;
+		}
+
+		@Override
+		public void run() {
+			counter.incrementAndGet();
+			if (depth > 0) {
+				executor.execute(new SpawningTask(executor, counter, depth - 1), depth);
+				executor.execute(new SpawningTask(executor, counter, depth - 1));
+			}
+		}
+
+	}
+
+	private void awaitTermination(WorkStealingSolverExecutor executor)
+			throws InterruptedException {
+		executor.shutdown();
+		while (!executor.isTerminated())
+			Thread.sleep(1);
+	}
+
+	@Test(timeout=30000)
+	public void spawnedTasksTest() throws InterruptedException {
+		for (boolean affinity : new boolean[] { false, true }) {
+			WorkStealingSolverExecutor executor = new WorkStealingSolverExecutor(4, affinity, 16);
+			AtomicInteger counter = new AtomicInteger();
+			executor.execute(new SpawningTask(executor, counter, 14));
+			executor.awaitCompletion();
+
+			Assert.assertNull(executor.getException());
+			Assert.assertEquals((1 << 15) - 1, counter.get());
+			Assert.assertEquals(0, executor.getQueueSize());
+			awaitTermination(executor);
+		}
+	}
+
+	@Test(timeout=30000)
+	public void singleWorkerTest() throws InterruptedException {
+		WorkStealingSolverExecutor executor = new WorkStealingSolverExecutor(1, false, 1);
+		AtomicInteger counter = new AtomicInteger();
+		executor.execute(new SpawningTask(executor, counter, 10));
+		executor.awaitCompletion();
+		Assert.assertEquals((1 << 11) - 1, counter.get());
+		awaitTermination(executor);
+	}
+
+	@Test(timeout=30000)
+	public void exceptionTest() throws InterruptedException {
+		final WorkStealingSolverExecutor executor = new WorkStealingSolverExecutor(1, false, 16);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		final AtomicInteger counter = new AtomicInteger();
+		final RuntimeException failure = new RuntimeException("Task failed");
+
+		// Block the only worker until all other tasks have been queued
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					gate.await();
+				}
+				catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+
+		});
+		started.await();
+		for (int i = 0; i < 100; i++)
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					counter.incrementAndGet();
+				}
+
+			});
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				throw failure;
+			}
+
+		});
+		gate.countDown();
+		executor.awaitCompletion();
+
+		// The worker takes the newest task first, so the failing task runs
+		// before all others, which must then be dropped
+		Assert.assertSame(failure, executor.getException());
+		awaitTermination(executor);
+		Assert.assertEquals(0, counter.get());
+		Assert.assertEquals(0, executor.getQueueSize());
+	}
+
+}